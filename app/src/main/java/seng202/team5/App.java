@@ -1,31 +1,64 @@
 package seng202.team5;
 
+import seng202.team5.data.CachingTrailRepo;
+import seng202.team5.data.DatabaseBackupService;
 import seng202.team5.data.DatabaseService;
+import seng202.team5.data.FilterOptionsRepo;
+import seng202.team5.data.InMemoryStorage;
+import seng202.team5.data.KeywordRepo;
 import seng202.team5.data.SqlBasedFilterOptionsRepo;
 import seng202.team5.data.SqlBasedKeywordRepo;
 import seng202.team5.data.SqlBasedTrailLogRepo;
 import seng202.team5.data.SqlBasedTrailRepo;
+import seng202.team5.data.SqlBasedUserRepo;
+import seng202.team5.data.TrailLogRepo;
+import seng202.team5.data.TrailRepo;
+import seng202.team5.data.WriteBehindQueue;
 import seng202.team5.gui.FXAppEntry;
 import seng202.team5.services.SetupService;
 import seng202.team5.services.UserService;
 
+import java.nio.file.Path;
+import java.sql.SQLException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 /**
  * Main application entry point.
  * Launches the application.
+ * <p>
+ * Data is stored in the SQLite database unless the app is started with
+ * {@code -Dyompyomp.storage=memory}, which keeps everything in memory and
+ * loads the bundled trails fresh each run, for benchmarking without disk I/O.
+ * Starting it with {@code -Dyompyomp.writeBehind=true} commits single trail and
+ * log saves in batches from a background thread instead of one at a time.
  */
 public class App {
+    private static final boolean inMemory = "memory".equalsIgnoreCase(System.getProperty("yompyomp.storage"));
+    private static final boolean writeBehind = !inMemory && Boolean.getBoolean("yompyomp.writeBehind");
+
     private static SetupService setupService;
     private static final DatabaseService databaseService = new DatabaseService();
+    private static final DatabaseBackupService backupService = new DatabaseBackupService(databaseService);
+    private static final InMemoryStorage memoryStorage = inMemory ? new InMemoryStorage() : null;
 
-    private static final SqlBasedFilterOptionsRepo filterOptionsRepo = new SqlBasedFilterOptionsRepo(databaseService);
-    private static final SqlBasedKeywordRepo keywordRepo = new SqlBasedKeywordRepo(databaseService);
-    private static final SqlBasedTrailLogRepo trailLogRepo = new SqlBasedTrailLogRepo(databaseService);
-    private static final SqlBasedTrailRepo trailRepo = new SqlBasedTrailRepo(databaseService);
+    private static final TrailRepo trailRepo = inMemory
+            ? memoryStorage.getTrailRepo()
+            : new CachingTrailRepo(databaseService);
+    private static final FilterOptionsRepo filterOptionsRepo = inMemory
+            ? memoryStorage.getFilterOptionsRepo()
+            : new SqlBasedFilterOptionsRepo(databaseService);
+    private static final KeywordRepo keywordRepo = inMemory
+            ? memoryStorage.getKeywordRepo()
+            : new SqlBasedKeywordRepo(databaseService);
+    private static final TrailLogRepo trailLogRepo = inMemory
+            ? memoryStorage.getTrailLogRepo()
+            : new SqlBasedTrailLogRepo(databaseService);
+    private static final WriteBehindQueue writeBehindQueue = writeBehind ? new WriteBehindQueue(databaseService) : null;
 
-    private static final UserService userService = new UserService(trailRepo, databaseService);
+    private static final UserService userService = new UserService(trailRepo, inMemory
+            ? memoryStorage.getUserRepo()
+            : new SqlBasedUserRepo(databaseService));
 
     /**
      * Application entry point. It handles the starting of the executer and then
@@ -34,6 +67,21 @@ public class App {
      * @param args Command line arguments
      */
     public static void main(String[] args) {
+        if (writeBehindQueue != null) {
+            if (trailRepo instanceof SqlBasedTrailRepo sqlTrailRepo) {
+                sqlTrailRepo.setWriteBehindQueue(writeBehindQueue);
+            }
+            if (trailLogRepo instanceof SqlBasedTrailLogRepo sqlTrailLogRepo) {
+                sqlTrailLogRepo.setWriteBehindQueue(writeBehindQueue);
+            }
+        }
+        // commit queued writes then close pooled database connections when application closed
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (writeBehindQueue != null) {
+                writeBehindQueue.close();
+            }
+            databaseService.shutdown();
+        }));
         setupApplication();
         FXAppEntry.launch(FXAppEntry.class, args);
 
@@ -43,11 +91,43 @@ public class App {
      * Resets the application data by clearing the database and re-running setup.
      */
     public static void resetApplication() {
+        if (inMemory) {
+            App.getUserService().clearUser();
+            memoryStorage.clear();
+            setupApplication();
+            return;
+        }
+        flushPendingWrites();
+        try {
+            // Taken first so the logbook can be restored after a reset
+            backupService.backup();
+        } catch (SQLException e) {
+            System.err.println("Failed to back up database before reset: " + e.getMessage());
+        }
         App.getUserService().clearUser();
         databaseService.deleteDatabase();
+        invalidateTrailCache();
         setupApplication();
     }
 
+    /**
+     * Replaces the database with a backup, committing queued writes first and
+     * dropping cached data read from the old database.
+     *
+     * @param backup the backup file, from the backup service
+     * @throws SQLException if the backup can't be restored, in which case the
+     *                      database is unchanged, or data is only kept in memory
+     */
+    public static void restoreBackup(Path backup) throws SQLException {
+        if (inMemory) {
+            throw new SQLException("Backups can't be restored while data is only kept in memory");
+        }
+        flushPendingWrites();
+        backupService.restore(backup);
+        invalidateTrailCache();
+        userService.invalidateCache();
+    }
+
     /**
      * Sets up the application by setting up the database and scraping images
      */
@@ -73,7 +153,13 @@ public class App {
         setupExec.execute(() -> {
             System.out.println("setup starting...");
             try {
-                setupService.setupApplication();
+                if (inMemory) {
+                    setupService.setupWithoutDatabase();
+                } else {
+                    setupService.setupApplication();
+                }
+                // setup may have replaced the database file under the trail cache
+                invalidateTrailCache();
                 System.out.println("setup complete.");
             } catch (Exception e) {
                 System.err.println("setup failed: " + e.getMessage());
@@ -81,6 +167,16 @@ public class App {
         });
     }
 
+    /**
+     * Drops the trails cached from the database, for when the database file has
+     * been replaced
+     */
+    private static void invalidateTrailCache() {
+        if (trailRepo instanceof CachingTrailRepo cachingTrailRepo) {
+            cachingTrailRepo.invalidate();
+        }
+    }
+
     /**
      * Gets the setup service instance
      *
@@ -99,6 +195,15 @@ public class App {
         return databaseService;
     }
 
+    /**
+     * Gets the database backup service instance
+     *
+     * @return the database backup service instance
+     */
+    public static DatabaseBackupService getBackupService() {
+        return backupService;
+    }
+
     /**
      * Gets the user service instance
      *
@@ -113,7 +218,7 @@ public class App {
      *
      * @return the filter options repository instance
      */
-    public static SqlBasedFilterOptionsRepo getFilterOptionsRepo() {
+    public static FilterOptionsRepo getFilterOptionsRepo() {
         return filterOptionsRepo;
     }
 
@@ -122,7 +227,7 @@ public class App {
      *
      * @return the keyword repository instance
      */
-    public static SqlBasedKeywordRepo getKeywordRepo() {
+    public static KeywordRepo getKeywordRepo() {
         return keywordRepo;
     }
 
@@ -131,7 +236,7 @@ public class App {
      *
      * @return the trail log repository instance
      */
-    public static SqlBasedTrailLogRepo getTrailLogRepo() {
+    public static TrailLogRepo getTrailLogRepo() {
         return trailLogRepo;
     }
 
@@ -140,7 +245,16 @@ public class App {
      *
      * @return the trail repository instance
      */
-    public static SqlBasedTrailRepo getTrailRepo() {
+    public static TrailRepo getTrailRepo() {
         return trailRepo;
     }
+
+    /**
+     * Waits for queued writes to be committed, if writes are queued at all
+     */
+    private static void flushPendingWrites() {
+        if (writeBehindQueue != null) {
+            writeBehindQueue.flush();
+        }
+    }
 }
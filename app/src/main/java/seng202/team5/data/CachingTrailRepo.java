@@ -0,0 +1,364 @@
+package seng202.team5.data;
+
+import seng202.team5.models.Trail;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+/**
+ * Trail repository that keeps every trail in memory after the first read, so
+ * services asking for all trails or a trail by id don't re-read and re-map the
+ * whole table each time. Searches without a text match are answered from a
+ * {@link TrailFacetIndex} over the cached trails; text searches still go to
+ * the full-text index.
+ * <p>
+ * The cached trails are an immutable snapshot. Each change this repository
+ * publishes updates the snapshot for just the trails it touches, before any
+ * subscriber hears about it; bulk inserts drop it so the next read loads it
+ * again. Writes made to the database any other way need {@link #invalidate()}
+ * to be called.
+ */
+public class CachingTrailRepo extends SqlBasedTrailRepo {
+    private static final int MAX_TRAILS_RELOADED = 50;
+
+    private final Object lock = new Object();
+    private volatile Snapshot snapshot;
+    private long generation; // bumped on every write, guarded by lock
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Creates a caching trail repository
+     *
+     * @param databaseService provider of JDBC connection used by QueryHelper
+     */
+    public CachingTrailRepo(DatabaseService databaseService) {
+        super(databaseService);
+    }
+
+    /**
+     * Retrieves all trails, from the cache when loaded
+     *
+     * @return an unmodifiable list of all rows in the trail table
+     */
+    @Override
+    public List<Trail> getAllTrails() {
+        return getSnapshot().trails();
+    }
+
+    /**
+     * Finds a single trail by its primary key, from the cache when loaded
+     *
+     * @param id id of the object
+     * @return an Optional containing the trail if found; otherwise empty
+     */
+    @Override
+    public Optional<Trail> findById(int id) {
+        return Optional.ofNullable(getSnapshot().byId().get(id));
+    }
+
+    /**
+     * Finds every trail with one of the given ids, from the cache when loaded.
+     * Each id is looked up on its own, so the cost depends on the number of ids
+     * rather than the number of trails.
+     *
+     * @param ids ids of the trails to find
+     * @return the trails found, in table order, which is id order; ids with no
+     *         trail are skipped
+     */
+    @Override
+    public List<Trail> findAllByIds(Collection<Integer> ids) {
+        Map<Integer, Trail> byId = getSnapshot().byId();
+        return ids.stream()
+                .distinct()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .sorted(Comparator.comparingInt(Trail::getId))
+                .toList();
+    }
+
+    /**
+     * Finds the page of trails matching a search. Unless it searches text, the
+     * search is answered from the facet index over the cached trails.
+     *
+     * @param query the search to run
+     * @return the matching trails for the requested page
+     */
+    @Override
+    public List<Trail> searchTrails(TrailQuery query) {
+        if (hasTextMatch(query)) {
+            return super.searchTrails(query);
+        }
+        return getSnapshot().facets().search(query, nameFilter(query));
+    }
+
+    /**
+     * Counts the trails matching a search, from the facet index over the cached
+     * trails unless it searches text
+     *
+     * @param query the search to count
+     * @return number of matching trails
+     */
+    @Override
+    public int countTrails(TrailQuery query) {
+        if (hasTextMatch(query)) {
+            return super.countTrails(query);
+        }
+        return getSnapshot().facets().count(query, nameFilter(query));
+    }
+
+    /**
+     * Counts the trails matching a search for each value of a field, from the
+     * facet index over the cached trails unless it searches text
+     *
+     * @param query the search, whose paging is ignored
+     * @param facet the field to count by
+     * @return count per lower case value; trails with no value are counted under
+     *         the empty string
+     */
+    @Override
+    public Map<String, Integer> countTrailsByFacet(TrailQuery query, TrailQuery.Facet facet) {
+        if (hasTextMatch(query)) {
+            return super.countTrailsByFacet(query, facet);
+        }
+        // The name filter checks the fields too, so it mustn't see the field being counted
+        return getSnapshot().facets().countByFacet(query, facet, nameFilter(query.withoutFilter(facet)));
+    }
+
+    /**
+     * Brings the cache up to date with a committed change before passing it on to
+     * the event bus, so subscribers reading trails see the change
+     *
+     * @param event the change
+     */
+    @Override
+    protected void publish(DataChangeEvent event) {
+        switch (event) {
+            case DataChangeEvent.TrailsUpserted upserted -> reloadTrails(upserted.trailIds());
+            case DataChangeEvent.TrailDeleted deleted -> update(cached -> cached.without(deleted.trailId()));
+            case DataChangeEvent.TrailWeightsUpdated updated -> update(cached -> cached.withUpdatedTrails(
+                    trail -> updated.weights().containsKey(trail.getId())
+                            ? new Trail.Builder().from(trail).userWeight(updated.weights().get(trail.getId())).build()
+                            : trail));
+            // A NULL weight is read back as 0
+            case DataChangeEvent.TrailWeightsCleared cleared -> update(cached -> cached.withUpdatedTrails(
+                    trail -> new Trail.Builder().from(trail).userWeight(0).build()));
+            default -> {
+            }
+        }
+        super.publish(event);
+    }
+
+    /**
+     * Drops the cached trails so the next read loads them from the database
+     */
+    public void invalidate() {
+        synchronized (lock) {
+            generation++;
+            snapshot = null;
+        }
+        invalidations.incrementAndGet();
+    }
+
+    /**
+     * Gets the number of reads answered from the cache
+     *
+     * @return cache hit count
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of reads that had to load the trails from the database
+     *
+     * @return cache miss count
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Gets the number of times the whole cache has been dropped
+     *
+     * @return invalidation count
+     */
+    public long getInvalidationCount() {
+        return invalidations.get();
+    }
+
+    /**
+     * Gets the fraction of reads answered from the cache
+     *
+     * @return hit rate between 0 and 1, or 0 if nothing has been read
+     */
+    public double getHitRate() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * Checks whether a search needs the full-text index
+     *
+     * @param query the search
+     * @return true if it has text to match
+     */
+    private static boolean hasTextMatch(TrailQuery query) {
+        return query.getTextMatch() != null && !query.getTextMatch().isBlank();
+    }
+
+    /**
+     * Compiles the name filter of a search, which the facet index doesn't cover
+     *
+     * @param query the search
+     * @return the filter, or null if the search has no name filter
+     */
+    private static TrailFilter nameFilter(TrailQuery query) {
+        return query.getNameContains() == null || query.getNameContains().isEmpty()
+                ? null
+                : TrailFilter.compile(query);
+    }
+
+    /**
+     * Gets the cached trails, loading them if needed. A load that overlaps a
+     * write is returned to its caller but not cached, as it may be stale.
+     *
+     * @return the current snapshot
+     */
+    private Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            hits.incrementAndGet();
+            return current;
+        }
+
+        misses.incrementAndGet();
+        long loadGeneration;
+        synchronized (lock) {
+            loadGeneration = generation;
+        }
+
+        Snapshot loaded = Snapshot.of(super.getAllTrails());
+        synchronized (lock) {
+            if (generation == loadGeneration && snapshot == null) {
+                snapshot = loaded;
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Re-reads trails after they have been written and puts them in the cache.
+     * Larger writes drop the cache instead, as reloading it all at once on the
+     * next read is cheaper.
+     *
+     * @param ids ids of the trails that changed
+     */
+    private void reloadTrails(List<Integer> ids) {
+        if (snapshot == null) {
+            update(cached -> cached); // Nothing to patch, but stops an overlapping load being cached
+            return;
+        }
+        if (ids.size() > MAX_TRAILS_RELOADED) {
+            invalidate();
+            return;
+        }
+
+        List<Trail> stored = super.findAllByIds(ids);
+        Set<Integer> missing = new HashSet<>(ids);
+        stored.forEach(trail -> missing.remove(trail.getId()));
+        update(cached -> cached.with(stored, missing));
+    }
+
+    /**
+     * Applies a change to the cached trails, if they are loaded
+     *
+     * @param change builds the new snapshot from the current one
+     */
+    private void update(UnaryOperator<Snapshot> change) {
+        synchronized (lock) {
+            generation++;
+            if (snapshot != null) {
+                snapshot = change.apply(snapshot);
+            }
+        }
+    }
+
+    /**
+     * An immutable copy of the trail table with lookup by id and by facet.
+     *
+     * @param trails trails in table order
+     * @param byId   the same trails keyed by id
+     * @param facets the same trails indexed by their filter values
+     */
+    private record Snapshot(List<Trail> trails, Map<Integer, Trail> byId, TrailFacetIndex facets) {
+
+        /**
+         * Creates a snapshot of the given trails
+         *
+         * @param trails trails in table order
+         * @return the snapshot
+         */
+        static Snapshot of(Iterable<Trail> trails) {
+            Map<Integer, Trail> byId = new LinkedHashMap<>();
+            for (Trail trail : trails) {
+                byId.put(trail.getId(), trail);
+            }
+            List<Trail> ordered = List.copyOf(byId.values());
+            return new Snapshot(ordered, Collections.unmodifiableMap(byId), TrailFacetIndex.of(ordered));
+        }
+
+        /**
+         * Creates a copy with some trails added or replaced and others removed,
+         * rebuilding the index once for all of them
+         *
+         * @param changed the new versions of the trails
+         * @param removed ids of the trails to remove
+         * @return the new snapshot
+         */
+        Snapshot with(Collection<Trail> changed, Collection<Integer> removed) {
+            if (changed.isEmpty() && removed.stream().noneMatch(byId::containsKey)) {
+                return this;
+            }
+            Map<Integer, Trail> updated = new LinkedHashMap<>(byId);
+            for (Trail trail : changed) {
+                updated.put(trail.getId(), trail);
+            }
+            updated.keySet().removeAll(removed);
+            return of(updated.values());
+        }
+
+        /**
+         * Creates a copy without a trail
+         *
+         * @param id id of the trail to remove
+         * @return the new snapshot
+         */
+        Snapshot without(int id) {
+            return with(List.of(), List.of(id));
+        }
+
+        /**
+         * Creates a copy with every trail passed through a function
+         *
+         * @param change returns the new version of a trail
+         * @return the new snapshot
+         */
+        Snapshot withUpdatedTrails(UnaryOperator<Trail> change) {
+            return of(trails.stream().map(change).toList());
+        }
+    }
+}
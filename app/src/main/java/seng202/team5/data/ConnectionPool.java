@@ -0,0 +1,315 @@
+package seng202.team5.data;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of SQLite connections to a single database file.
+ * <p>
+ * Connections are opened and configured once, then handed out wrapped so that
+ * calling close() hands them back to the pool instead of closing them. Callers
+ * keep using try-with-resources exactly as they would with a fresh connection.
+ * Each connection keeps its own {@link StatementCache}, so prepareStatement(sql)
+ * reuses compiled statements across borrows.
+ */
+class ConnectionPool {
+    private static final long BORROW_TIMEOUT_SECONDS = 30;
+    private static final int STATEMENT_CACHE_SIZE = 32;
+
+    private final String url;
+    private final ConnectionConfigurer configurer;
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idleConnections = new ArrayDeque<>();
+    private final AtomicInteger inUseCount = new AtomicInteger();
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+    private volatile boolean shutdown = false;
+
+    /**
+     * Creates a pool for the given JDBC url
+     *
+     * @param url        the JDBC url of the database
+     * @param maxSize    the maximum number of connections open at once
+     * @param configurer applied once to every newly opened connection
+     */
+    ConnectionPool(String url, int maxSize, ConnectionConfigurer configurer) {
+        this.url = url;
+        this.configurer = configurer;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Borrows a connection, reusing an idle one if there is one. Blocks while
+     * every connection is in use.
+     *
+     * @return a pooled connection, closing it returns it to the pool
+     * @throws SQLException if the pool is shut down, no connection frees up in
+     *                      time or a new connection cannot be opened
+     */
+    Connection borrow() throws SQLException {
+        if (shutdown) {
+            throw new SQLException("Connection pool has been shut down");
+        }
+
+        try {
+            if (!permits.tryAcquire(BORROW_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new SQLException("Timed out waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for a database connection", e);
+        }
+
+        try {
+            PooledConnection pooled = takeIdleConnection();
+            if (pooled == null) {
+                pooled = openConnection();
+            }
+            inUseCount.incrementAndGet();
+            return wrap(pooled);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the number of open connections waiting in the pool
+     *
+     * @return idle connection count
+     */
+    int getIdleCount() {
+        synchronized (idleConnections) {
+            return idleConnections.size();
+        }
+    }
+
+    /**
+     * Gets the number of connections currently borrowed
+     *
+     * @return in-use connection count
+     */
+    int getInUseCount() {
+        return inUseCount.get();
+    }
+
+    /**
+     * Gets the number of prepareStatement calls served from a statement cache
+     *
+     * @return statement cache hit count
+     */
+    long getStatementCacheHits() {
+        return statementCacheHits.get();
+    }
+
+    /**
+     * Gets the number of prepareStatement calls that had to compile the SQL
+     *
+     * @return statement cache miss count
+     */
+    long getStatementCacheMisses() {
+        return statementCacheMisses.get();
+    }
+
+    /**
+     * Closes every idle connection and stops handing out new ones. Connections
+     * still borrowed are closed when they are returned.
+     */
+    void shutdown() {
+        shutdown = true;
+        synchronized (idleConnections) {
+            while (!idleConnections.isEmpty()) {
+                closeQuietly(idleConnections.poll().raw());
+            }
+        }
+    }
+
+    /**
+     * Checks whether the pool has been shut down
+     *
+     * @return true once shutdown() has been called
+     */
+    boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * Takes the most recently used idle connection, dropping any that have been
+     * closed underneath us
+     *
+     * @return an open idle connection, or null if there are none
+     * @throws SQLException if a connection cannot be checked
+     */
+    private PooledConnection takeIdleConnection() throws SQLException {
+        synchronized (idleConnections) {
+            while (!idleConnections.isEmpty()) {
+                PooledConnection pooled = idleConnections.pop();
+                if (!pooled.raw().isClosed()) {
+                    return pooled;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Opens and configures a brand new connection
+     *
+     * @return the configured connection
+     * @throws SQLException if the connection cannot be opened or configured
+     */
+    private PooledConnection openConnection() throws SQLException {
+        Connection raw = DriverManager.getConnection(url);
+        try {
+            configurer.configure(raw);
+        } catch (SQLException e) {
+            closeQuietly(raw);
+            throw e;
+        }
+        StatementCache statements = new StatementCache(raw, STATEMENT_CACHE_SIZE,
+                statementCacheHits, statementCacheMisses);
+        return new PooledConnection(raw, statements);
+    }
+
+    /**
+     * Returns a borrowed connection to the pool, resetting any transaction state
+     * left behind by the borrower
+     *
+     * @param pooled the underlying connection
+     */
+    private void release(PooledConnection pooled) {
+        inUseCount.decrementAndGet();
+        Connection raw = pooled.raw();
+        try {
+            pooled.statements().releaseInUse();
+            if (shutdown || raw.isClosed()) {
+                closeQuietly(raw);
+                return;
+            }
+            if (!raw.getAutoCommit()) {
+                raw.rollback();
+                raw.setAutoCommit(true);
+            }
+            synchronized (idleConnections) {
+                idleConnections.push(pooled);
+            }
+        } catch (SQLException e) {
+            closeQuietly(raw);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Wraps a connection so that close() returns it to this pool
+     *
+     * @param pooled the underlying connection
+     * @return the wrapped connection
+     */
+    private Connection wrap(PooledConnection pooled) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                new PooledConnectionHandler(pooled));
+    }
+
+    /**
+     * Closes a connection, ignoring any error
+     *
+     * @param connection the connection to close
+     */
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // Nothing more we can do with it
+        }
+    }
+
+    /**
+     * Functional interface for configuring a newly opened connection.
+     */
+    @FunctionalInterface
+    interface ConnectionConfigurer {
+        /**
+         * Configures a connection before it is first handed out
+         *
+         * @param connection the new connection
+         * @throws SQLException if configuring fails
+         */
+        void configure(Connection connection) throws SQLException;
+    }
+
+    /**
+     * An open connection together with its statement cache
+     */
+    private record PooledConnection(Connection raw, StatementCache statements) {
+    }
+
+    /**
+     * Forwards calls to the underlying connection, except close() which hands it
+     * back to the pool and prepareStatement(sql) which goes through the statement
+     * cache. The wrapper is unusable once closed.
+     */
+    private class PooledConnectionHandler implements InvocationHandler {
+        private final PooledConnection pooled;
+        private final Connection raw;
+        private boolean returned = false;
+
+        PooledConnectionHandler(PooledConnection pooled) {
+            this.pooled = pooled;
+            this.raw = pooled.raw();
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (!returned) {
+                        returned = true;
+                        release(pooled);
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return returned || raw.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Pooled" + raw;
+                }
+                default -> {
+                    if (returned) {
+                        throw new SQLException("Connection has already been returned to the pool");
+                    }
+                }
+            }
+
+            if (method.getName().equals("prepareStatement") && args.length == 1) {
+                return pooled.statements().prepare((String) args[0]);
+            }
+
+            try {
+                return method.invoke(raw, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package seng202.team5.data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A change to the data in the database, published on the {@link DataEventBus}
+ * by the repos once the change has been committed.
+ */
+public sealed interface DataChangeEvent {
+
+    /**
+     * Trails were inserted or updated.
+     *
+     * @param trailIds ids of the trails written
+     */
+    record TrailsUpserted(List<Integer> trailIds) implements DataChangeEvent {
+    }
+
+    /**
+     * A trail was deleted, along with its logs and categories.
+     *
+     * @param trailId id of the deleted trail
+     */
+    record TrailDeleted(int trailId) implements DataChangeEvent {
+    }
+
+    /**
+     * Trail user weights were regenerated.
+     *
+     * @param weights the new weight of each trail written, by trail id
+     */
+    record TrailWeightsUpdated(Map<Integer, Double> weights) implements DataChangeEvent {
+    }
+
+    /**
+     * Every trail's user weight was cleared.
+     */
+    record TrailWeightsCleared() implements DataChangeEvent {
+    }
+
+    /**
+     * Trail logs were added or updated.
+     *
+     * @param logIds ids of the logs written
+     */
+    record TrailLogsUpserted(List<Integer> logIds) implements DataChangeEvent {
+    }
+
+    /**
+     * A trail log was removed.
+     *
+     * @param logId id of the deleted log
+     */
+    record TrailLogDeleted(int logId) implements DataChangeEvent {
+    }
+
+    /**
+     * The stored user profile was saved or removed.
+     */
+    record UserChanged() implements DataChangeEvent {
+    }
+
+    /**
+     * The filter options were worked out again from the trails.
+     */
+    record FilterOptionsRefreshed() implements DataChangeEvent {
+    }
+
+    /**
+     * The whole database was replaced by a backup, so anything read from it may
+     * have changed.
+     */
+    record DatabaseRestored() implements DataChangeEvent {
+    }
+}
@@ -0,0 +1,132 @@
+package seng202.team5.data;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * In-process publish/subscribe bus for {@link DataChangeEvent}s, so caches and
+ * screens can react to the data they show changing instead of reloading
+ * everything.
+ * <p>
+ * Synchronous subscribers run on the publishing thread, in the order they
+ * subscribed, before publish returns. Asynchronous subscribers each run on a
+ * virtual thread of their own, in no particular order. A subscriber that throws
+ * is logged and does not stop the others being told.
+ */
+public class DataEventBus {
+    private static final DataEventBus instance = new DataEventBus();
+
+    private final List<Subscriber<?>> subscribers = new CopyOnWriteArrayList<>();
+    private final ExecutorService asyncExecutor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("data-event-", 0).factory());
+
+    /**
+     * Gets the bus shared by every repo by default
+     *
+     * @return the shared bus
+     */
+    public static DataEventBus getInstance() {
+        return instance;
+    }
+
+    /**
+     * Subscribes to events of a type, run on the publishing thread
+     *
+     * @param type     the event type, or DataChangeEvent for every event
+     * @param listener called with each matching event
+     * @param <E>      the event type
+     * @return the subscription, close it to unsubscribe
+     */
+    public <E extends DataChangeEvent> Subscription subscribe(Class<E> type, Consumer<? super E> listener) {
+        return add(new Subscriber<>(type, listener, false));
+    }
+
+    /**
+     * Subscribes to events of a type, run on a background thread
+     *
+     * @param type     the event type, or DataChangeEvent for every event
+     * @param listener called with each matching event
+     * @param <E>      the event type
+     * @return the subscription, close it to unsubscribe
+     */
+    public <E extends DataChangeEvent> Subscription subscribeAsync(Class<E> type, Consumer<? super E> listener) {
+        return add(new Subscriber<>(type, listener, true));
+    }
+
+    /**
+     * Publishes an event to every subscriber of its type. Should only be called
+     * once the change is committed.
+     *
+     * @param event the change that happened
+     */
+    public void publish(DataChangeEvent event) {
+        for (Subscriber<?> subscriber : subscribers) {
+            if (!subscriber.type().isInstance(event)) {
+                continue;
+            }
+            if (subscriber.async()) {
+                asyncExecutor.execute(() -> subscriber.deliver(event));
+            } else {
+                subscriber.deliver(event);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of current subscriptions
+     *
+     * @return subscriber count
+     */
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Adds a subscriber
+     *
+     * @param subscriber the subscriber
+     * @return a subscription that removes it
+     */
+    private Subscription add(Subscriber<?> subscriber) {
+        subscribers.add(subscriber);
+        return () -> subscribers.remove(subscriber);
+    }
+
+    /**
+     * A subscription to the bus. Closing it stops further events being
+     * delivered.
+     */
+    @FunctionalInterface
+    public interface Subscription extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * A listener for one event type.
+     *
+     * @param type     the event type
+     * @param listener called with each matching event
+     * @param async    whether it runs on a background thread
+     * @param <E>      the event type
+     */
+    private record Subscriber<E extends DataChangeEvent>(Class<E> type, Consumer<? super E> listener,
+            boolean async) {
+
+        /**
+         * Passes an event to the listener, logging anything it throws
+         *
+         * @param event an event of this subscriber's type
+         */
+        void deliver(DataChangeEvent event) {
+            try {
+                listener.accept(type.cast(event));
+            } catch (RuntimeException e) {
+                System.err.println("Data change listener failed for " + event + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package seng202.team5.data;
+
+import org.sqlite.SQLiteConnection;
+import org.sqlite.core.DB;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Takes online backups of the database and restores them, using SQLite's
+ * backup API.
+ * <p>
+ * A backup copies a batch of pages at a time and lets go of the database in
+ * between, so the app keeps reading and writing while it runs; if a write lands
+ * mid-backup SQLite starts the copy again so the backup is always consistent.
+ * Backups are named after the time they were taken and only the newest few are
+ * kept.
+ * <p>
+ * Restoring replaces the whole database. Callers should flush any queued writes
+ * first and drop cached data afterwards.
+ */
+public class DatabaseBackupService {
+    private static final int DEFAULT_MAX_BACKUPS = 5;
+    private static final int PAGES_PER_STEP = 256;
+    private static final int BUSY_SLEEP_MILLIS = 50;
+    private static final int BUSY_RETRIES = 100;
+
+    private static final String BACKUP_PREFIX = "main-";
+    private static final String BACKUP_SUFFIX = ".db";
+    private static final DateTimeFormatter BACKUP_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSSSSS");
+
+    private final DatabaseService databaseService;
+    private final Path backupDirectory;
+    private final int maxBackups;
+
+    /**
+     * Creates a backup service keeping the default number of backups in a
+     * backups folder next to the database
+     *
+     * @param databaseService the database to back up
+     */
+    public DatabaseBackupService(DatabaseService databaseService) {
+        this(databaseService, null, DEFAULT_MAX_BACKUPS);
+    }
+
+    /**
+     * Creates a backup service
+     *
+     * @param databaseService the database to back up
+     * @param backupDirectory folder to keep backups in, or null for a backups
+     *                        folder next to the database
+     * @param maxBackups      number of backups to keep, oldest are deleted first
+     */
+    public DatabaseBackupService(DatabaseService databaseService, Path backupDirectory, int maxBackups) {
+        if (maxBackups <= 0) {
+            throw new IllegalArgumentException("Must keep at least one backup");
+        }
+        this.databaseService = databaseService;
+        this.backupDirectory = backupDirectory;
+        this.maxBackups = maxBackups;
+    }
+
+    /**
+     * Backs up the database, then deletes backups beyond the number kept
+     *
+     * @return the new backup file
+     * @throws SQLException if there is no database or the backup fails
+     */
+    public Path backup() throws SQLException {
+        Path database = Path.of(databaseService.getDatabasePath());
+        if (!Files.exists(database)) {
+            throw new SQLException("No database to back up at " + database);
+        }
+
+        Path directory = getBackupDirectory();
+        Path target = directory.resolve(BACKUP_PREFIX + LocalDateTime.now().format(BACKUP_TIME) + BACKUP_SUFFIX);
+        Path partial = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(directory);
+            Files.deleteIfExists(partial);
+        } catch (IOException e) {
+            throw new SQLException("Failed to prepare backup folder " + directory, e);
+        }
+
+        // Written under a temporary name so a failed backup never looks like a good one
+        try (Connection connection = databaseService.getConnection()) {
+            DB db = connection.unwrap(SQLiteConnection.class).getDatabase();
+            int result = db.backup("main", partial.toString(), null, BUSY_SLEEP_MILLIS, BUSY_RETRIES, PAGES_PER_STEP);
+            if (result != 0) {
+                throw new SQLException("Backup to " + target + " failed with SQLite error " + result);
+            }
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new SQLException("Failed to save backup " + target, e);
+        } finally {
+            deleteQuietly(partial);
+        }
+
+        deleteOldBackups();
+        return target;
+    }
+
+    /**
+     * Backs up the database on the shared database executor
+     *
+     * @return a future of the new backup file
+     */
+    public CompletableFuture<Path> backupAsync() {
+        return DatabaseExecutor.supplyAsync(this::backup);
+    }
+
+    /**
+     * Lists the backups kept, newest first
+     *
+     * @return the backup files
+     */
+    public List<Path> listBackups() {
+        Path directory = getBackupDirectory();
+        List<Path> backups = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return backups;
+        }
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                BACKUP_PREFIX + "*" + BACKUP_SUFFIX)) {
+            files.forEach(backups::add);
+        } catch (IOException e) {
+            System.err.println("Failed to list database backups: " + e.getMessage());
+        }
+        // Names start with the time taken, so name order is age order
+        backups.sort(Comparator.comparing((Path path) -> path.getFileName().toString()).reversed());
+        return backups;
+    }
+
+    /**
+     * Replaces the database with a backup. The backup is checked and brought up
+     * to the current schema on a copy first, so the database is left as it was
+     * if the backup can't be used.
+     *
+     * @param backup the backup file
+     * @throws SQLException if the backup is missing, can't be migrated or fails to
+     *                      restore
+     */
+    public void restore(Path backup) throws SQLException {
+        if (!Files.isRegularFile(backup)) {
+            throw new SQLException("No backup at " + backup);
+        }
+
+        Path staging = getBackupDirectory().resolve(backup.getFileName() + ".restore");
+        DatabaseService stagingService = new DatabaseService(staging.toString());
+        try {
+            Files.createDirectories(staging.getParent());
+            Files.copy(backup, staging, StandardCopyOption.REPLACE_EXISTING);
+            if (!stagingService.isSchemaUpToDate() && !stagingService.migrateSchema()) {
+                throw new SQLException("Backup " + backup.getFileName() + " is not a database this version can use");
+            }
+            stagingService.shutdown();
+
+            // Pooled connections hold cached statements, which would keep the restore from
+            // getting the lock it needs
+            databaseService.shutdown();
+            try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + databaseService.getDatabasePath())) {
+                DB db = connection.unwrap(SQLiteConnection.class).getDatabase();
+                int result = db.restore("main", staging.toString(), null, BUSY_SLEEP_MILLIS, BUSY_RETRIES, PAGES_PER_STEP);
+                if (result != 0) {
+                    throw new SQLException("Restore from " + backup + " failed with SQLite error " + result);
+                }
+            }
+        } catch (IOException e) {
+            throw new SQLException("Failed to read backup " + backup, e);
+        } finally {
+            stagingService.shutdown();
+            deleteQuietly(staging);
+            deleteQuietly(staging.resolveSibling(staging.getFileName() + "-wal"));
+            deleteQuietly(staging.resolveSibling(staging.getFileName() + "-shm"));
+        }
+
+        DataEventBus.getInstance().publish(new DataChangeEvent.DatabaseRestored());
+    }
+
+    /**
+     * Gets the folder backups are kept in
+     *
+     * @return the backup folder
+     */
+    public Path getBackupDirectory() {
+        if (backupDirectory != null) {
+            return backupDirectory;
+        }
+        return Path.of(databaseService.getDatabasePath()).toAbsolutePath().resolveSibling("backups");
+    }
+
+    /**
+     * Deletes the oldest backups beyond the number kept
+     */
+    private void deleteOldBackups() {
+        List<Path> backups = listBackups();
+        for (Path old : backups.subList(Math.min(maxBackups, backups.size()), backups.size())) {
+            deleteQuietly(old);
+        }
+    }
+
+    /**
+     * Deletes a file if it exists, logging rather than throwing on failure
+     *
+     * @param path the file
+     */
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.err.println("Failed to delete " + path + ": " + e.getMessage());
+        }
+    }
+}
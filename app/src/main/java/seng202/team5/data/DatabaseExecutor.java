@@ -0,0 +1,89 @@
+package seng202.team5.data;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Shared executor for running blocking database work off the calling thread.
+ * <p>
+ * Every task gets its own virtual thread, so waiting on SQLite costs no
+ * platform threads. A semaphore caps how many tasks touch the database at once,
+ * kept below the connection pool size so background work can never starve
+ * synchronous callers of a connection.
+ */
+public class DatabaseExecutor {
+    private static final int MAX_CONCURRENT_TASKS = 4;
+
+    private static final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("db-worker-", 0).factory());
+    private static final Semaphore permits = new Semaphore(MAX_CONCURRENT_TASKS, true);
+
+    /**
+     * Runs a task that produces a value on the shared database executor
+     *
+     * @param task the blocking database work
+     * @return a future completed with the task's result, or exceptionally with
+     *         whatever it threw
+     * @param <T> the type of the result
+     */
+    public static <T> CompletableFuture<T> supplyAsync(Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.completeExceptionally(e);
+                return;
+            }
+
+            try {
+                future.complete(task.call());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            } finally {
+                permits.release();
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Runs a task with no result on the shared database executor
+     *
+     * @param task the blocking database work
+     * @return a future completed once the task finishes, or exceptionally with
+     *         whatever it threw
+     */
+    public static CompletableFuture<Void> runAsync(DatabaseAction task) {
+        return supplyAsync(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Gets the number of tasks that can run against the database at once
+     *
+     * @return the concurrency limit
+     */
+    public static int getMaxConcurrentTasks() {
+        return MAX_CONCURRENT_TASKS;
+    }
+
+    /**
+     * Functional interface for database work that returns nothing.
+     */
+    @FunctionalInterface
+    public interface DatabaseAction {
+        /**
+         * Performs the work
+         *
+         * @throws Exception if the work fails
+         */
+        void run() throws Exception;
+    }
+}
@@ -1,9 +1,17 @@
 package seng202.team5.data;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 
 import seng202.team5.utils.AppDataManager;
 
@@ -11,8 +19,20 @@ import seng202.team5.utils.AppDataManager;
  * Service class for managing the application's database
  */
 public class DatabaseService {
+    private static final int MAX_POOL_SIZE = 8;
+    // Prebuilt, fully populated database bundled by the buildDatabaseSnapshot task
+    private static final String SNAPSHOT_RESOURCE = "/database/trails.db";
+
+    // Oldest schema version that can be migrated rather than recreated
+    private static final String BASELINE_SCHEMA_VERSION = "2.3";
+    // Versions with a script in /schema/migrations/<version>.sql, each applied
+    // on top of the one before it. Add a new version here whenever schema.sql is
+    // changed, the last entry must match the version in schema.sql.
+    private static final List<String> MIGRATION_VERSIONS = List.of("2.4", "2.5", "2.6", "2.7", "2.8");
+
     private final String customDatabasePath;
     private static String currentSchemaVersion;
+    private ConnectionPool connectionPool;
 
     /**
      * Constructor for DatabaseService
@@ -29,20 +49,89 @@ public class DatabaseService {
      */
     public DatabaseService(String databasePath) {
         this.customDatabasePath = databasePath;
+        currentSchemaVersion = getCurrentSchemaVersion();
     }
 
     /**
-     * Creates a new database connection to the existing database.
+     * Gets a connection to the existing database from the connection pool.
+     * Closing the connection returns it to the pool for reuse.
      *
-     * @return the new connection
+     * @return a pooled connection
      * @throws SQLException if an error occurs while creating connection
      */
     public Connection getConnection() throws SQLException {
-        String databasePath = getDatabasePath();
-        String url = "jdbc:sqlite:" + databasePath;
+        return getConnectionPool().borrow();
+    }
+
+    /**
+     * Gets the number of open connections currently waiting in the pool
+     *
+     * @return idle connection count
+     */
+    public int getIdleConnectionCount() {
+        return getConnectionPool().getIdleCount();
+    }
+
+    /**
+     * Gets the number of pooled connections currently in use
+     *
+     * @return in-use connection count
+     */
+    public int getInUseConnectionCount() {
+        return getConnectionPool().getInUseCount();
+    }
+
+    /**
+     * Gets the number of prepared statements reused from a connection's statement
+     * cache rather than compiled again
+     *
+     * @return statement cache hit count
+     */
+    public long getStatementCacheHits() {
+        return getConnectionPool().getStatementCacheHits();
+    }
+
+    /**
+     * Gets the number of prepared statements that had to be compiled
+     *
+     * @return statement cache miss count
+     */
+    public long getStatementCacheMisses() {
+        return getConnectionPool().getStatementCacheMisses();
+    }
+
+    /**
+     * Closes all pooled connections. A new pool is opened if a connection is
+     * requested afterwards.
+     */
+    public synchronized void shutdown() {
+        if (connectionPool != null) {
+            connectionPool.shutdown();
+            connectionPool = null;
+        }
+    }
 
-        Connection connection = DriverManager.getConnection(url);
+    /**
+     * Gets the connection pool for the current database path, creating it if
+     * needed
+     *
+     * @return the connection pool
+     */
+    private synchronized ConnectionPool getConnectionPool() {
+        if (connectionPool == null || connectionPool.isShutdown()) {
+            String url = "jdbc:sqlite:" + getDatabasePath();
+            connectionPool = new ConnectionPool(url, MAX_POOL_SIZE, this::configureConnection);
+        }
+        return connectionPool;
+    }
 
+    /**
+     * Applies per-connection settings. Runs once when the pool opens a connection.
+     *
+     * @param connection the newly opened connection
+     * @throws SQLException if a setting cannot be applied
+     */
+    private void configureConnection(Connection connection) throws SQLException {
         try (Statement stmt = connection.createStatement()) {
             // Enable foreign keys
             stmt.execute("PRAGMA foreign_keys = ON");
@@ -53,8 +142,7 @@ public class DatabaseService {
             stmt.execute("PRAGMA temp_store = MEMORY");
             stmt.execute("PRAGMA mmap_size = 268435456");
         }
-
-        return connection;
+        SqlFunctions.register(connection);
     }
 
     /**
@@ -89,6 +177,8 @@ public class DatabaseService {
      */
     public boolean deleteDatabase() {
         System.out.println("Deleting database");
+        // Pooled connections would keep the old file (and its WAL) alive
+        shutdown();
         String databasePath = getDatabasePath();
         java.io.File dbFile = new java.io.File(databasePath);
         if (dbFile.exists()) {
@@ -115,6 +205,77 @@ public class DatabaseService {
         }
     }
 
+    /**
+     * Installs the bundled database snapshot in place of a missing database, so
+     * first start and reset skip parsing, processing and categorising every trail.
+     * A snapshot built for an older schema is migrated, or discarded if it
+     * cannot be.
+     *
+     * @return true if a snapshot was installed and is up to date, false if there
+     *         is no snapshot or the database already exists
+     */
+    public boolean installSnapshot() {
+        if (databaseExists()) {
+            return false;
+        }
+
+        try (java.io.InputStream snapshot = getClass().getResourceAsStream(SNAPSHOT_RESOURCE)) {
+            return snapshot != null && installSnapshot(snapshot);
+        } catch (java.io.IOException e) {
+            System.err.println("Failed to read database snapshot: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Copies a snapshot database into place and brings it up to date
+     *
+     * @param snapshot the snapshot database file contents
+     * @return true if the snapshot was installed and is up to date
+     */
+    boolean installSnapshot(java.io.InputStream snapshot) {
+        try {
+            Path databasePath = Path.of(getDatabasePath());
+            Files.createDirectories(databasePath.toAbsolutePath().getParent());
+            Path tempPath = databasePath.resolveSibling(databasePath.getFileName() + ".tmp");
+            Files.copy(snapshot, tempPath, StandardCopyOption.REPLACE_EXISTING);
+            shutdown();
+            Files.move(tempPath, databasePath, StandardCopyOption.REPLACE_EXISTING);
+        } catch (java.io.IOException e) {
+            System.err.println("Failed to install database snapshot: " + e.getMessage());
+            return false;
+        }
+
+        try {
+            if (isSchemaUpToDate() || migrateSchema()) {
+                System.out.println("Installed database snapshot");
+                return true;
+            }
+        } catch (SQLException e) {
+            System.err.println("Failed to migrate database snapshot: " + e.getMessage());
+        }
+        deleteDatabase();
+        return false;
+    }
+
+    /**
+     * Refreshes the query planner statistics, merges the full-text index and
+     * compacts the database file, for producing a snapshot. Closes all pooled connections first, as VACUUM cannot
+     * run while their cached statements are open, and uses a connection of its
+     * own so the write ahead log is merged into the main file when it closes.
+     *
+     * @throws SQLException if the database cannot be optimised
+     */
+    public void optimiseForSnapshot() throws SQLException {
+        shutdown();
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + getDatabasePath());
+                Statement statement = connection.createStatement()) {
+            statement.execute("INSERT INTO trailSearch (trailSearch) VALUES ('optimize')");
+            statement.execute("ANALYZE");
+            statement.execute("VACUUM");
+        }
+    }
+
     /**
      * Checks if the database schema is up to date.
      *
@@ -126,22 +287,10 @@ public class DatabaseService {
         }
 
         try (Connection connection = getConnection()) {
-            // Check if schema_version table exists
-            var metaData = connection.getMetaData();
-            var tables = metaData.getTables(null, null, "schema_version", null);
-
-            if (!tables.next()) {
-                return false; // If there's no version table, it's outdated
-            }
-
-            // Check the version matches our current version
-            try (var stmt = connection.prepareStatement("SELECT version FROM schema_version LIMIT 1")) {
-                var rs = stmt.executeQuery();
-                if (rs.next()) {
-                    return currentSchemaVersion.equals(rs.getString("version"));
-                }
-            }
-            return false;
+            // No version table means it's outdated
+            return getStoredSchemaVersion(connection)
+                    .map(currentSchemaVersion::equals)
+                    .orElse(false);
         } catch (SQLException e) {
             return false;
         }
@@ -154,25 +303,160 @@ public class DatabaseService {
      * @throws SQLException if error executing the schema
      */
     private void executeSchemaScript(Connection connection) throws SQLException {
-        String schemaContent = readSchemaFile();
+        String schemaContent = readResource("/schema/schema.sql");
 
         try (Statement statement = connection.createStatement()) {
-            String[] statements = schemaContent.split(";");
-            for (String sql : statements) {
-                sql = sql.trim();
-                if (!sql.isEmpty() && !sql.startsWith("--")) {
-                    statement.execute(sql);
+            for (String sql : SqlScript.split(schemaContent)) {
+                statement.execute(sql);
+            }
+        }
+        setStoredSchemaVersion(connection, currentSchemaVersion);
+    }
+
+    /**
+     * Brings an existing database up to the current schema version by applying
+     * each migration script after its stored version in order. Existing data is
+     * kept; migrations only change or empty the tables they need to, and the
+     * normal setup sync steps refill any derived table left empty.
+     *
+     * @return true if the database is now at the current version, false if there
+     *         is no migration path from its version and it must be recreated
+     * @throws SQLException if a migration fails, it is rolled back first
+     */
+    public boolean migrateSchema() throws SQLException {
+        List<Migration> migrations = new ArrayList<>();
+        for (String version : MIGRATION_VERSIONS) {
+            migrations.add(new Migration(version, readResource("/schema/migrations/" + version + ".sql")));
+        }
+        return migrateSchema(BASELINE_SCHEMA_VERSION, migrations);
+    }
+
+    /**
+     * Applies the migrations after the database's stored version, each in its own
+     * transaction
+     *
+     * @param baselineVersion oldest version the migrations start from
+     * @param migrations      migrations in ascending version order
+     * @return true if the database is now at the current version, false if there
+     *         is no migration path from its version
+     * @throws SQLException if a migration fails, it is rolled back first
+     */
+    boolean migrateSchema(String baselineVersion, List<Migration> migrations) throws SQLException {
+        if (!databaseExists()) {
+            return false;
+        }
+
+        String targetVersion = migrations.isEmpty() ? baselineVersion : migrations.getLast().version();
+        if (!targetVersion.equals(currentSchemaVersion)) {
+            System.err.println("No migration to schema version " + currentSchemaVersion
+                    + ", last migration is " + targetVersion);
+            return false;
+        }
+
+        try (Connection connection = getConnection()) {
+            Optional<String> storedVersion = getStoredSchemaVersion(connection);
+            if (storedVersion.isEmpty()) {
+                return false;
+            }
+
+            String version = storedVersion.get();
+            if (version.equals(currentSchemaVersion)) {
+                return true;
+            }
+            if (compareVersions(version, baselineVersion) < 0 || compareVersions(version, currentSchemaVersion) > 0) {
+                return false;
+            }
+
+            for (Migration migration : migrations) {
+                if (compareVersions(migration.version(), version) > 0) {
+                    applyMigration(connection, migration);
+                    version = migration.version();
                 }
             }
+            return version.equals(currentSchemaVersion);
+        }
+    }
 
-            // Insert schema version
+    /**
+     * Runs a single migration script and records its version in one transaction
+     *
+     * @param connection the database connection
+     * @param migration  the migration to apply
+     * @throws SQLException if any statement fails, after rolling back
+     */
+    private void applyMigration(Connection connection, Migration migration) throws SQLException {
+        System.out.println("Migrating database schema to " + migration.version());
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : SqlScript.split(migration.script())) {
+                statement.execute(sql);
+            }
+            setStoredSchemaVersion(connection, migration.version());
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw new SQLException("Migration to schema version " + migration.version() + " failed", e);
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Reads the schema version stored in the database
+     *
+     * @param connection the database connection
+     * @return the stored version, or empty if the database has none
+     * @throws SQLException if the version cannot be read
+     */
+    private Optional<String> getStoredSchemaVersion(Connection connection) throws SQLException {
+        try (var tables = connection.getMetaData().getTables(null, null, "schema_version", null)) {
+            if (!tables.next()) {
+                return Optional.empty();
+            }
+        }
+
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT version FROM schema_version LIMIT 1");
+                ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? Optional.ofNullable(rs.getString("version")) : Optional.empty();
+        }
+    }
+
+    /**
+     * Replaces the schema version stored in the database
+     *
+     * @param connection the database connection
+     * @param version    the version to store
+     * @throws SQLException if the version cannot be written
+     */
+    private void setStoredSchemaVersion(Connection connection, String version) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
             statement.execute("CREATE TABLE IF NOT EXISTS schema_version (version TEXT PRIMARY KEY)");
-            try (var preparedStmt = connection
-                    .prepareStatement("INSERT OR REPLACE INTO schema_version (version) VALUES (?)")) {
-                preparedStmt.setString(1, currentSchemaVersion);
-                preparedStmt.execute();
+            statement.execute("DELETE FROM schema_version");
+        }
+        try (PreparedStatement stmt = connection.prepareStatement("INSERT INTO schema_version (version) VALUES (?)")) {
+            stmt.setString(1, version);
+            stmt.execute();
+        }
+    }
+
+    /**
+     * Compares two dotted version numbers numerically, so 2.10 is after 2.9
+     *
+     * @param a the first version
+     * @param b the second version
+     * @return negative, zero or positive as a is before, equal to or after b
+     */
+    static int compareVersions(String a, String b) {
+        String[] aParts = a.split("\\.");
+        String[] bParts = b.split("\\.");
+        for (int i = 0; i < Math.max(aParts.length, bParts.length); i++) {
+            int aPart = i < aParts.length ? Integer.parseInt(aParts[i].trim()) : 0;
+            int bPart = i < bParts.length ? Integer.parseInt(bParts[i].trim()) : 0;
+            if (aPart != bPart) {
+                return Integer.compare(aPart, bPart);
             }
         }
+        return 0;
     }
 
     /**
@@ -181,7 +465,7 @@ public class DatabaseService {
      * @return the current schema version
      */
     private String getCurrentSchemaVersion() {
-        String schema = readSchemaFile();
+        String schema = readResource("/schema/schema.sql");
         String version = null;
         for (String line : schema.split("\n")) {
             if (line.startsWith("-- Schema version:")) {
@@ -193,19 +477,25 @@ public class DatabaseService {
     }
 
     /**
-     * Reads the schema file from resources.
+     * Reads a schema script from resources.
      *
-     * @return the schema file content as a string
+     * @param path the resource path of the script
+     * @return the script content as a string
      */
-    private String readSchemaFile() {
-        try {
-            java.io.InputStream inputStream = getClass().getResourceAsStream("/schema/schema.sql");
+    private String readResource(String path) {
+        try (java.io.InputStream inputStream = getClass().getResourceAsStream(path)) {
             if (inputStream == null) {
-                throw new RuntimeException("Schema file not found in resources");
+                throw new RuntimeException("Schema file not found in resources: " + path);
             }
             return new String(inputStream.readAllBytes());
         } catch (java.io.IOException e) {
-            throw new RuntimeException("Error reading schema file", e);
+            throw new RuntimeException("Error reading schema file: " + path, e);
         }
     }
+
+    /**
+     * A migration script and the schema version it brings the database up to
+     */
+    record Migration(String version, String script) {
+    }
 }
@@ -0,0 +1,86 @@
+package seng202.team5.data;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Storage for the options shown in the trail filter dropdowns, worked out from
+ * the trails. Implemented over SQLite by {@link SqlBasedFilterOptionsRepo} and
+ * in memory by {@link InMemoryFilterOptionsRepo}.
+ */
+public interface FilterOptionsRepo {
+
+    /**
+     * Gets all filter options for a specific filter type.
+     *
+     * @param filterType The filter type (e.g: "completionType", "difficulty")
+     * @return List of option values, in display order
+     */
+    List<String> getFilterOptions(String filterType);
+
+    /**
+     * Gets all filter options for a specific filter type on the shared database
+     * executor.
+     *
+     * @param filterType The filter type (e.g: "completionType", "difficulty")
+     * @return future of the list of option values
+     */
+    default CompletableFuture<List<String>> getFilterOptionsAsync(String filterType) {
+        return DatabaseExecutor.supplyAsync(() -> getFilterOptions(filterType));
+    }
+
+    /**
+     * Checks if filter options exist for a given filter type.
+     *
+     * @param filterType The filter type to check
+     * @return true if options exist, false otherwise
+     */
+    boolean hasFilterOptions(String filterType);
+
+    /**
+     * Works out every filter's options again from the trails.
+     * This should be called when trails are added/updated.
+     */
+    void refreshAllFilterOptions();
+
+    /**
+     * Refreshes region filter options from RegionFinder
+     */
+    void refreshRegionOptions();
+
+    /**
+     * Gets all available filter types that have options.
+     *
+     * @return List of filter types
+     */
+    List<String> getAvailableFilterTypes();
+
+    /**
+     * Gets filter options for multiple filter types.
+     *
+     * @param filterTypes List of filter types to get options for
+     * @return Map of filter type to list of options
+     */
+    default Map<String, List<String>> getFilterOptionsMap(List<String> filterTypes) {
+        Map<String, List<String>> optionsMap = new HashMap<>();
+
+        for (String filterType : filterTypes) {
+            optionsMap.put(filterType, getFilterOptions(filterType));
+        }
+
+        return optionsMap;
+    }
+
+    /**
+     * Gets filter options for multiple filter types on the shared database
+     * executor.
+     *
+     * @param filterTypes List of filter types to get options for
+     * @return future of the map of filter type to list of options
+     */
+    default CompletableFuture<Map<String, List<String>>> getFilterOptionsMapAsync(List<String> filterTypes) {
+        return DatabaseExecutor.supplyAsync(() -> getFilterOptionsMap(filterTypes));
+    }
+}
@@ -0,0 +1,152 @@
+package seng202.team5.data;
+
+import seng202.team5.models.Trail;
+import seng202.team5.services.RegionFinder;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Filter options repository that works out the options from the trails in
+ * memory, with the same values and display order as
+ * {@link SqlBasedFilterOptionsRepo}.
+ */
+public class InMemoryFilterOptionsRepo implements FilterOptionsRepo {
+    private static final List<String> DIFFICULTY_ORDER = List.of("easiest", "easy", "intermediate", "advanced",
+            "expert");
+    private static final int UNLISTED_ORDER = 999;
+
+    // Option value to display order, by filter type
+    private final Map<String, Map<String, Integer>> options = new ConcurrentHashMap<>();
+    private final TrailRepo trailRepo;
+    private final DataEventBus eventBus;
+
+    /**
+     * Creates an in-memory filter options repository with no options yet
+     *
+     * @param trailRepo repository to work the options out from
+     */
+    public InMemoryFilterOptionsRepo(TrailRepo trailRepo) {
+        this(trailRepo, DataEventBus.getInstance());
+    }
+
+    /**
+     * Creates an in-memory filter options repository with no options yet, that
+     * publishes its refreshes to the given bus
+     *
+     * @param trailRepo repository to work the options out from
+     * @param eventBus  bus to publish refreshes on
+     */
+    public InMemoryFilterOptionsRepo(TrailRepo trailRepo, DataEventBus eventBus) {
+        this.trailRepo = trailRepo;
+        this.eventBus = eventBus;
+    }
+
+    @Override
+    public List<String> getFilterOptions(String filterType) {
+        return options.getOrDefault(filterType, Map.of()).entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().thenComparing(Map.Entry.comparingByKey()))
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    @Override
+    public boolean hasFilterOptions(String filterType) {
+        return !options.getOrDefault(filterType, Map.of()).isEmpty();
+    }
+
+    @Override
+    public synchronized void refreshAllFilterOptions() {
+        options.clear();
+
+        List<Trail> trails = trailRepo.getAllTrails();
+        addTrailValues("completionType", trails, Trail::getCompletionType);
+        addTrailValues("timeUnit", trails, Trail::getTimeUnit);
+        addTrailValues("difficulty", trails, Trail::getDifficulty);
+        refreshRegionOptions();
+
+        // Add multi-day options manually since it's a derived field
+        insertOption("multiDay", "Multi-day", 1);
+        insertOption("multiDay", "Day walk", 2);
+
+        eventBus.publish(new DataChangeEvent.FilterOptionsRefreshed());
+    }
+
+    @Override
+    public void refreshRegionOptions() {
+        RegionFinder regionFinder = new RegionFinder();
+        List<String> orderedRegions = regionFinder.getRegionNames();
+
+        for (int i = 0; i < orderedRegions.size(); i++) {
+            insertOption("regions", orderedRegions.get(i), i);
+        }
+    }
+
+    @Override
+    public List<String> getAvailableFilterTypes() {
+        return options.entrySet().stream()
+                .filter(entry -> !entry.getValue().isEmpty())
+                .map(Map.Entry::getKey)
+                .sorted()
+                .toList();
+    }
+
+    /**
+     * Removes every option, for resetting the storage
+     */
+    void clear() {
+        options.clear();
+    }
+
+    /**
+     * Adds an option for each value the trails use, other than unknown. Values
+     * differing only by case are one option, spelt as the first trail has it.
+     *
+     * @param filterType the filter type
+     * @param trails     the trails
+     * @param field      gets the value from a trail
+     */
+    private void addTrailValues(String filterType, List<Trail> trails, Function<Trail, String> field) {
+        Map<String, String> values = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (Trail trail : trails) {
+            String value = field.apply(trail);
+            if (value != null && !value.isBlank() && !value.equalsIgnoreCase("unknown")) {
+                values.putIfAbsent(value, value);
+            }
+        }
+        for (String value : values.values()) {
+            insertOption(filterType, value, displayOrder(filterType, value));
+        }
+    }
+
+    /**
+     * Gets the display order of a value. Difficulties run from easiest to hardest,
+     * other values are ordered by name alone.
+     *
+     * @param filterType the filter type
+     * @param value      the option value
+     * @return the display order, lower first
+     */
+    private static int displayOrder(String filterType, String value) {
+        if (!filterType.equals("difficulty")) {
+            return 0;
+        }
+        int index = DIFFICULTY_ORDER.indexOf(value.toLowerCase(Locale.ROOT));
+        return index < 0 ? UNLISTED_ORDER : index + 1;
+    }
+
+    /**
+     * Inserts or updates a single filter option.
+     *
+     * @param filterType   The filter type
+     * @param optionValue  The option value
+     * @param displayOrder The display order (lower numbers appear first)
+     */
+    private void insertOption(String filterType, String optionValue, int displayOrder) {
+        options.computeIfAbsent(filterType, type -> new ConcurrentHashMap<>()).put(optionValue, displayOrder);
+    }
+}
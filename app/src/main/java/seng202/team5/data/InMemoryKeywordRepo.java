@@ -0,0 +1,110 @@
+package seng202.team5.data;
+
+import seng202.team5.models.Trail;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keyword repository that keeps categories, keywords and trail categories in
+ * memory instead of a database. Categories and their keywords are guarded by
+ * one lock as they are small and rarely written; trail categories are
+ * concurrent.
+ * <p>
+ * Trail categories are dropped when their trail is deleted from the trail
+ * repository the keyword repository was created with.
+ */
+public class InMemoryKeywordRepo implements KeywordRepo {
+    private final Map<String, SortedSet<String>> keywords = new TreeMap<>(); // guarded by itself
+    private final Map<Integer, Set<String>> trailCategories = new ConcurrentHashMap<>();
+    private final InMemoryTrailRepo trailRepo;
+
+    /**
+     * Creates an empty in-memory keyword repository
+     *
+     * @param trailRepo repository the categorised trails are in
+     */
+    public InMemoryKeywordRepo(InMemoryTrailRepo trailRepo) {
+        this.trailRepo = trailRepo;
+        trailRepo.addDeleteListener(trailCategories::remove);
+    }
+
+    @Override
+    public Map<String, List<String>> getKeywords() {
+        Map<String, List<String>> categoryKeywords = new LinkedHashMap<>();
+        synchronized (keywords) {
+            keywords.forEach((category, values) -> categoryKeywords.put(category, new ArrayList<>(values)));
+        }
+        return categoryKeywords;
+    }
+
+    @Override
+    public int countCategories() {
+        synchronized (keywords) {
+            return keywords.size();
+        }
+    }
+
+    @Override
+    public void insertCategoriesAndKeywords(Map<String, List<String>> keywords) {
+        synchronized (this.keywords) {
+            for (Map.Entry<String, List<String>> entry : keywords.entrySet()) {
+                SortedSet<String> values = this.keywords.computeIfAbsent(entry.getKey(), category -> new TreeSet<>());
+                for (String keyword : entry.getValue()) {
+                    if (keyword != null && !keyword.trim().isEmpty()) {
+                        values.add(keyword);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void assignTrailCategories(List<Trail> trails) {
+        for (Trail trail : trails) {
+            if (trailRepo.findById(trail.getId()).isEmpty()) {
+                throw new IllegalArgumentException("No trail " + trail.getId() + " to assign categories to");
+            }
+
+            Set<String> known = new HashSet<>(trail.getCategories());
+            synchronized (keywords) {
+                known.retainAll(keywords.keySet());
+            }
+            if (!known.isEmpty()) {
+                trailCategories.computeIfAbsent(trail.getId(), id -> ConcurrentHashMap.newKeySet()).addAll(known);
+            }
+        }
+    }
+
+    @Override
+    public Set<String> getCategoriesForTrail(int trailId) {
+        return new HashSet<>(trailCategories.getOrDefault(trailId, Set.of()));
+    }
+
+    @Override
+    public Map<Integer, Set<String>> getAllTrailCategories() {
+        Map<Integer, Set<String>> categories = new HashMap<>();
+        trailCategories.forEach((trailId, names) -> categories.put(trailId, new HashSet<>(names)));
+        return categories;
+    }
+
+    /**
+     * Removes every category, keyword and trail category, for resetting the
+     * storage
+     */
+    void clear() {
+        synchronized (keywords) {
+            keywords.clear();
+        }
+        trailCategories.clear();
+    }
+}
@@ -0,0 +1,51 @@
+package seng202.team5.data;
+
+/**
+ * The in-memory storage backend: one of each in-memory repository, wired
+ * together so deleting a trail drops its logs and categories. Nothing is read
+ * from or written to disk, so it starts empty each run.
+ */
+public class InMemoryStorage {
+    private final InMemoryTrailRepo trailRepo;
+    private final InMemoryTrailLogRepo trailLogRepo;
+    private final InMemoryKeywordRepo keywordRepo;
+    private final InMemoryFilterOptionsRepo filterOptionsRepo;
+    private final InMemoryUserRepo userRepo;
+
+    /**
+     * Creates empty in-memory storage publishing its changes on the shared bus
+     */
+    public InMemoryStorage() {
+        this(DataEventBus.getInstance());
+    }
+
+    /**
+     * Creates empty in-memory storage
+     *
+     * @param eventBus bus the repositories publish their changes on
+     */
+    public InMemoryStorage(DataEventBus eventBus) {
+        this.trailRepo = new InMemoryTrailRepo(eventBus);
+        this.trailLogRepo = new InMemoryTrailLogRepo(trailRepo, eventBus);
+        this.keywordRepo = new InMemoryKeywordRepo(trailRepo);
+        this.filterOptionsRepo = new InMemoryFilterOptionsRepo(trailRepo, eventBus);
+        this.userRepo = new InMemoryUserRepo(eventBus);
+    }
+
+    /**
+     * Removes everything stored, as deleting the database file would
+     */
+    public void clear() {
+        userRepo.clear();
+        filterOptionsRepo.clear();
+        keywordRepo.clear();
+        trailLogRepo.clear();
+        trailRepo.clear();
+    }
+
+    public TrailRepo getTrailRepo() { return trailRepo; }
+    public TrailLogRepo getTrailLogRepo() { return trailLogRepo; }
+    public KeywordRepo getKeywordRepo() { return keywordRepo; }
+    public FilterOptionsRepo getFilterOptionsRepo() { return filterOptionsRepo; }
+    public UserRepo getUserRepo() { return userRepo; }
+}
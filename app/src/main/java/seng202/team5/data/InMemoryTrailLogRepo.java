@@ -0,0 +1,135 @@
+package seng202.team5.data;
+
+import seng202.team5.exceptions.MatchmakingFailedException;
+import seng202.team5.models.LoggedTrail;
+import seng202.team5.models.Trail;
+import seng202.team5.models.TrailLog;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * TrailLog repository that keeps trailLogs in a concurrent map instead of a
+ * database. Logs are copied on the way in and out, as they are mutable.
+ * <p>
+ * A log must belong to a trail in the trail repository it was created with, and
+ * is dropped when its trail is deleted, as the database's foreign key would
+ * require.
+ */
+public class InMemoryTrailLogRepo implements TrailLogRepo {
+    private final ConcurrentSkipListMap<Integer, TrailLog> trailLogs = new ConcurrentSkipListMap<>();
+    private final InMemoryTrailRepo trailRepo;
+    private final DataEventBus eventBus;
+
+    /**
+     * Creates an empty in-memory trailLog repository
+     *
+     * @param trailRepo repository the logged trails are in
+     */
+    public InMemoryTrailLogRepo(InMemoryTrailRepo trailRepo) {
+        this(trailRepo, DataEventBus.getInstance());
+    }
+
+    /**
+     * Creates an empty in-memory trailLog repository that publishes its changes
+     * to the given bus
+     *
+     * @param trailRepo repository the logged trails are in
+     * @param eventBus  bus to publish trailLog changes on
+     */
+    public InMemoryTrailLogRepo(InMemoryTrailRepo trailRepo, DataEventBus eventBus) {
+        this.trailRepo = trailRepo;
+        this.eventBus = eventBus;
+        trailRepo.addDeleteListener(trailId -> trailLogs.values().removeIf(log -> log.getTrailId() == trailId));
+    }
+
+    @Override
+    public List<TrailLog> getAllTrailLogs() {
+        return trailLogs.values().stream().map(SqlBasedTrailLogRepo::copyOf).toList();
+    }
+
+    @Override
+    public Stream<TrailLog> streamAllTrailLogs() {
+        return getAllTrailLogs().stream();
+    }
+
+    @Override
+    public List<LoggedTrail> getAllTrailLogsWithTrails() {
+        List<LoggedTrail> loggedTrails = new ArrayList<>();
+        for (TrailLog trailLog : trailLogs.values()) {
+            Optional<Trail> trail = trailRepo.findById(trailLog.getTrailId());
+            trail.ifPresent(found -> loggedTrails.add(new LoggedTrail(SqlBasedTrailLogRepo.copyOf(trailLog), found)));
+        }
+        return loggedTrails;
+    }
+
+    @Override
+    public Optional<TrailLog> findById(int id) {
+        return Optional.ofNullable(trailLogs.get(id)).map(SqlBasedTrailLogRepo::copyOf);
+    }
+
+    @Override
+    public int countTrailLogs() {
+        return trailLogs.size();
+    }
+
+    @Override
+    public void upsert(TrailLog trailLog) {
+        put(trailLog);
+        eventBus.publish(new DataChangeEvent.TrailLogsUpserted(List.of(trailLog.getId())));
+    }
+
+    @Override
+    public void upsertAll(List<TrailLog> trailLogs) throws MatchmakingFailedException {
+        if (trailLogs.isEmpty())
+            throw new MatchmakingFailedException("trailLogs is empty.");
+
+        for (TrailLog trailLog : trailLogs) {
+            put(trailLog);
+        }
+        eventBus.publish(new DataChangeEvent.TrailLogsUpserted(trailLogs.stream().map(TrailLog::getId).toList()));
+    }
+
+    @Override
+    public void deleteById(int id) {
+        trailLogs.remove(id);
+        eventBus.publish(new DataChangeEvent.TrailLogDeleted(id));
+    }
+
+    @Override
+    public int getNewTrailLogId() {
+        return trailLogs.isEmpty() ? 1 : trailLogs.lastKey() + 1;
+    }
+
+    @Override
+    public Optional<TrailLog> findByTrailId(int trailId) {
+        return trailLogs.values().stream()
+                .filter(trailLog -> trailLog.getTrailId() == trailId)
+                .findFirst()
+                .map(SqlBasedTrailLogRepo::copyOf);
+    }
+
+    /**
+     * Removes every trailLog without publishing anything, for resetting the
+     * storage
+     */
+    void clear() {
+        trailLogs.clear();
+    }
+
+    /**
+     * Stores a copy of a trailLog
+     *
+     * @param trailLog the trailLog
+     * @throws IllegalArgumentException if its trail doesn't exist
+     */
+    private void put(TrailLog trailLog) {
+        if (trailRepo.findById(trailLog.getTrailId()).isEmpty()) {
+            throw new IllegalArgumentException("No trail " + trailLog.getTrailId() + " for trailLog " + trailLog.getId());
+        }
+        trailLogs.put(trailLog.getId(), SqlBasedTrailLogRepo.copyOf(trailLog));
+    }
+}
@@ -0,0 +1,663 @@
+package seng202.team5.data;
+
+import seng202.team5.exceptions.MatchmakingFailedException;
+import seng202.team5.models.Trail;
+import seng202.team5.models.TrailSearchResult;
+import seng202.team5.utils.GeoUtils;
+import seng202.team5.utils.StringManipulator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.IntConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Trail repository that keeps trails in a concurrent map instead of a
+ * database, for tests and benchmarks that shouldn't touch the disk.
+ * <p>
+ * Searches narrow the trails with a {@link TrailFacetIndex}, rebuilt on the
+ * first search after a write, then check name and text filters against what
+ * is left, with the same matching rules as {@link SqlBasedTrailRepo}. Full-text search ranks trails
+ * by how many of their words match, weighted like the SQL index, rather than
+ * by bm25. Changes are published as soon as they are made, as there are no
+ * transactions to wait for.
+ */
+public class InMemoryTrailRepo implements TrailRepo {
+    private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}]+");
+    private static final int SNIPPET_TOKENS = 12;
+    private static final int NO_DIFFICULTY_RANK = 999;
+
+    private final ConcurrentSkipListMap<Integer, Trail> trails = new ConcurrentSkipListMap<>();
+    private final List<IntConsumer> deleteListeners = new CopyOnWriteArrayList<>();
+    private final DataEventBus eventBus;
+
+    private final Object facetLock = new Object();
+    private volatile TrailFacetIndex facets; // null until searched after a write
+    private long generation; // bumped on every write, guarded by facetLock
+
+    /**
+     * Creates an empty in-memory trail repository
+     */
+    public InMemoryTrailRepo() {
+        this(DataEventBus.getInstance());
+    }
+
+    /**
+     * Creates an empty in-memory trail repository that publishes its changes to
+     * the given bus
+     *
+     * @param eventBus bus to publish trail changes on
+     */
+    public InMemoryTrailRepo(DataEventBus eventBus) {
+        this.eventBus = eventBus;
+    }
+
+    /**
+     * Retrieves all trails held in memory
+     *
+     * @return a list of every trail, in id order
+     */
+    @Override
+    public List<Trail> getAllTrails() {
+        return List.copyOf(trails.values());
+    }
+
+    /**
+     * Streams all trails. The trails are copied first, so the stream holds
+     * nothing open and needn't be closed, though it may be.
+     *
+     * @return a stream over every trail, in id order
+     */
+    @Override
+    public Stream<Trail> streamAllTrails() {
+        return getAllTrails().stream();
+    }
+
+    /**
+     * Returns if the trail has been processed or not, meaning it is stored with
+     * a known completion type
+     *
+     * @param trail the trail to be checked
+     * @return boolean indicating if trail has been processed
+     */
+    @Override
+    public boolean isTrailProcessed(Trail trail) {
+        Trail stored = trails.get(trail.getId());
+        return stored != null && stored.getCompletionType() != null && !stored.getCompletionType().isBlank()
+                && !stored.getCompletionType().equalsIgnoreCase("unknown");
+    }
+
+    /**
+     * Finds a single trail by its id
+     *
+     * @param id id of the object
+     * @return an Optional containing the trail if found; otherwise empty
+     */
+    @Override
+    public Optional<Trail> findById(int id) {
+        return Optional.ofNullable(trails.get(id));
+    }
+
+    /**
+     * Finds every trail with one of the given ids
+     *
+     * @param ids ids of the trails to find
+     * @return the trails found, in id order; ids with no trail are skipped
+     */
+    @Override
+    public List<Trail> findAllByIds(Collection<Integer> ids) {
+        return new TreeSet<>(ids).stream()
+                .map(trails::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    /**
+     * Inserts a trail only if there isn't one with the same id already. If there
+     * is, it is ignored (no update occurs).
+     *
+     * @param trail trail that needs to be inserted if not exists
+     */
+    @Override
+    public void insertOrIgnore(Trail trail) {
+        if (trails.putIfAbsent(trail.getId(), toStored(trail)) == null) {
+            invalidateFacets();
+            eventBus.publish(new DataChangeEvent.TrailsUpserted(List.of(trail.getId())));
+        }
+    }
+
+    /**
+     * Inserts or replaces a trail by its id
+     *
+     * @param trail trail that needs to be upserted
+     */
+    @Override
+    public void upsert(Trail trail) {
+        trails.put(trail.getId(), toStored(trail));
+        invalidateFacets();
+        eventBus.publish(new DataChangeEvent.TrailsUpserted(List.of(trail.getId())));
+    }
+
+    /**
+     * Inserts all supplied trails that don't already exist. Existing trails are
+     * ignored (no update occurs).
+     *
+     * @param trails List of trails to insert if not exists
+     * @throws MatchmakingFailedException if there are no trails in the list
+     */
+    @Override
+    public void insertOrIgnoreAll(List<Trail> trails) throws MatchmakingFailedException {
+        if (trails.isEmpty())
+            throw new MatchmakingFailedException("Trails is empty.");
+
+        for (Trail trail : trails) {
+            this.trails.putIfAbsent(trail.getId(), toStored(trail));
+        }
+        invalidateFacets();
+        eventBus.publish(new DataChangeEvent.TrailsUpserted(trails.stream().map(Trail::getId).toList()));
+    }
+
+    /**
+     * Inserts or replaces all supplied trails by their ids
+     *
+     * @param trails List of trails to upsert
+     * @throws MatchmakingFailedException if there are no trails in the list
+     */
+    @Override
+    public void upsertAll(List<Trail> trails) throws MatchmakingFailedException {
+        if (trails.isEmpty())
+            throw new MatchmakingFailedException("Trails is empty.");
+
+        for (Trail trail : trails) {
+            this.trails.put(trail.getId(), toStored(trail));
+        }
+        invalidateFacets();
+        eventBus.publish(new DataChangeEvent.TrailsUpserted(trails.stream().map(Trail::getId).toList()));
+    }
+
+    /**
+     * Updates the trail user weights, skipping trails that aren't stored
+     *
+     * @param trails List of trails to update user weights for
+     */
+    @Override
+    public void updateUserWeights(List<Trail> trails) {
+        if (trails.isEmpty())
+            return;
+
+        Map<Integer, Double> weights = new LinkedHashMap<>();
+        for (Trail trail : trails) {
+            this.trails.computeIfPresent(trail.getId(),
+                    (id, stored) -> new Trail.Builder().from(stored).userWeight(trail.getUserWeight()).build());
+            weights.put(trail.getId(), trail.getUserWeight());
+        }
+        invalidateFacets();
+        eventBus.publish(new DataChangeEvent.TrailWeightsUpdated(weights));
+    }
+
+    /**
+     * Deletes a trail by its id, letting the delete listeners drop anything
+     * held for it first
+     *
+     * @param id the trail identifier to delete
+     */
+    @Override
+    public void deleteById(int id) {
+        trails.remove(id);
+        invalidateFacets();
+        for (IntConsumer listener : deleteListeners) {
+            listener.accept(id);
+        }
+        eventBus.publish(new DataChangeEvent.TrailDeleted(id));
+    }
+
+    /**
+     * Clears every trail's user weight, which reads back as 0 as it does from
+     * the database
+     */
+    @Override
+    public void clearUserWeights() {
+        trails.replaceAll((id, stored) -> new Trail.Builder().from(stored).userWeight(0).build());
+        invalidateFacets();
+        eventBus.publish(new DataChangeEvent.TrailWeightsCleared());
+    }
+
+    /**
+     * Counts all the trails
+     *
+     * @return number of trails as an integer
+     */
+    @Override
+    public int countTrails() {
+        return trails.size();
+    }
+
+    /**
+     * Finds the page of trails matching a search, sorted as requested. The field
+     * filters and sort come from the facet index, and only as many trails as the
+     * page needs are checked against the name and text filters.
+     *
+     * @param query the search to run
+     * @return the matching trails for the requested page
+     */
+    @Override
+    public List<Trail> searchTrails(TrailQuery query) {
+        return getFacets().search(query, residual(query));
+    }
+
+    /**
+     * Counts the trails matching a search, ignoring its paging
+     *
+     * @param query the search to count
+     * @return number of matching trails
+     */
+    @Override
+    public int countTrails(TrailQuery query) {
+        return getFacets().count(query, residual(query));
+    }
+
+    /**
+     * Counts the trails matching a search for each value of a field, with one
+     * AND of the facet index's bitmaps per value
+     *
+     * @param query the search, whose paging is ignored
+     * @param facet the field to count by
+     * @return count per lower case value; trails with no value are counted under
+     *         the empty string
+     */
+    @Override
+    public Map<String, Integer> countTrailsByFacet(TrailQuery query, TrailQuery.Facet facet) {
+        // The residual checks the fields too, so it mustn't see the field being counted
+        return getFacets().countByFacet(query, facet, residual(query.withoutFilter(facet)));
+    }
+
+    /**
+     * Searches trail names, translations and descriptions, best matches first.
+     * Each word in the text matches as a prefix, ignoring case and macrons, and
+     * every word must match.
+     *
+     * @param text  the text to search for
+     * @param limit maximum number of results
+     * @return matching trails ordered by weighted match count, with highlighted
+     *         names and description snippets
+     */
+    @Override
+    public List<TrailSearchResult> searchTrailText(String text, int limit) {
+        List<String> terms = searchTerms(text);
+        if (terms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        List<TrailSearchResult> results = new ArrayList<>();
+        for (Trail trail : trails.values()) {
+            if (!matchesText(trail, terms)) {
+                continue;
+            }
+            // Weighted as the full-text index weights its columns, negated so lower is better
+            double rank = -(10.0 * countMatches(trail.getName(), terms)
+                    + 5.0 * countMatches(trail.getTranslation(), terms)
+                    + countMatches(trail.getDescription(), terms));
+            results.add(new TrailSearchResult(trail.getId(), rank,
+                    highlight(trail.getName(), terms, false),
+                    highlight(trail.getDescription(), terms, true)));
+        }
+        return results.stream()
+                .sorted(Comparator.comparingDouble(TrailSearchResult::rank)
+                        .thenComparingInt(TrailSearchResult::trailId))
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * Finds every trail whose coordinates are inside a box, such as the visible
+     * part of a map
+     *
+     * @param minLat southern edge in decimal degrees
+     * @param maxLat northern edge in decimal degrees
+     * @param minLon western edge in decimal degrees
+     * @param maxLon eastern edge in decimal degrees
+     * @return the trails in the box, in id order
+     */
+    @Override
+    public List<Trail> findTrailsInBounds(double minLat, double maxLat, double minLon, double maxLon) {
+        return trails.values().stream()
+                .filter(trail -> trail.getLat() >= minLat && trail.getLat() <= maxLat
+                        && trail.getLon() >= minLon && trail.getLon() <= maxLon)
+                .toList();
+    }
+
+    /**
+     * Finds every trail within a great-circle distance of a point
+     *
+     * @param lat      latitude of the centre in decimal degrees
+     * @param lon      longitude of the centre in decimal degrees
+     * @param radiusKm the distance in kilometres
+     * @return the trails within the distance, nearest first
+     */
+    @Override
+    public List<Trail> findTrailsWithinRadius(double lat, double lon, double radiusKm) {
+        if (radiusKm < 0) {
+            return List.of();
+        }
+
+        Map<Trail, Double> distances = new LinkedHashMap<>();
+        for (Trail trail : trails.values()) {
+            double distance = GeoUtils.distanceKm(lat, lon, trail.getLat(), trail.getLon());
+            if (distance <= radiusKm) {
+                distances.put(trail, distance);
+            }
+        }
+        return distances.entrySet().stream()
+                .sorted(Map.Entry.<Trail, Double>comparingByValue()
+                        .thenComparingInt(entry -> entry.getKey().getId()))
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    /**
+     * Checks if a trail name is already taken (case, macron and whitespace
+     * insensitive)
+     *
+     * @param name      the trail name to check
+     * @param excludeId optional trail ID to exclude from the check (for editing
+     *                  existing trails)
+     * @return true if the name exists, false otherwise
+     */
+    @Override
+    public boolean existsByName(String name, Integer excludeId) {
+        if (name == null) {
+            return false;
+        }
+        String folded = StringManipulator.fold(name.trim());
+        return trails.values().stream()
+                .filter(trail -> excludeId == null || trail.getId() != excludeId)
+                .anyMatch(trail -> trail.getName() != null
+                        && folded.equals(StringManipulator.fold(trail.getName().trim())));
+    }
+
+    /**
+     * Returns a new value of trail id, one past the highest stored
+     *
+     * @return new trail id
+     */
+    @Override
+    public int getNewTrailId() {
+        return trails.isEmpty() ? 1 : trails.lastKey() + 1;
+    }
+
+    /**
+     * Registers work to run when a trail is deleted, before the deletion is
+     * published, so repositories holding rows for the trail can drop them as the
+     * database's cascading deletes would
+     *
+     * @param listener called with the id of each deleted trail
+     */
+    void addDeleteListener(IntConsumer listener) {
+        deleteListeners.add(listener);
+    }
+
+    /**
+     * Removes every trail without publishing anything, for resetting the storage
+     */
+    void clear() {
+        trails.clear();
+        invalidateFacets();
+    }
+
+    /**
+     * Copies a trail as it would be read back from the database, which doesn't
+     * store the categories it carries
+     *
+     * @param trail the trail being written
+     * @return the trail to store
+     */
+    private static Trail toStored(Trail trail) {
+        return new Trail.Builder().from(trail).categories(new HashSet<>()).build();
+    }
+
+    /**
+     * Compiles the filters of a search the facet index can't answer
+     *
+     * @param query the search
+     * @return true for trails passing the name and text filters, or null if the
+     *         search has neither
+     */
+    private static TrailFilter residual(TrailQuery query) {
+        boolean hasName = query.getNameContains() != null && !query.getNameContains().isEmpty();
+        boolean hasText = query.getTextMatch() != null && !query.getTextMatch().isBlank();
+        if (!hasName && !hasText) {
+            return null;
+        }
+        return TrailFilter.compile(query, text -> {
+            List<String> terms = searchTerms(text);
+            return trail -> matchesText(trail, terms);
+        });
+    }
+
+    /**
+     * Gets the facet index over the current trails, building it if a write has
+     * dropped it. An index built while a write is under way is used by its
+     * caller but not kept, as it may be stale.
+     *
+     * @return the index
+     */
+    private TrailFacetIndex getFacets() {
+        TrailFacetIndex current = facets;
+        if (current != null) {
+            return current;
+        }
+
+        long buildGeneration;
+        synchronized (facetLock) {
+            buildGeneration = generation;
+        }
+        TrailFacetIndex built = TrailFacetIndex.of(getAllTrails());
+        synchronized (facetLock) {
+            if (generation == buildGeneration && facets == null) {
+                facets = built;
+            }
+        }
+        return built;
+    }
+
+    /**
+     * Drops the facet index after a write, so the next search rebuilds it
+     */
+    private void invalidateFacets() {
+        synchronized (facetLock) {
+            generation++;
+            facets = null;
+        }
+    }
+
+    /**
+     * Builds the order of a search's results. Ties fall back to id order so pages
+     * are stable.
+     *
+     * @param query the search
+     * @return the comparator
+     */
+    static Comparator<Trail> comparator(TrailQuery query) {
+        Comparator<Trail> order = keyOrder(query.getSortKey(), query.getDifficultyOrder());
+        if (!query.isAscending()) {
+            order = order.reversed();
+        }
+        return order.thenComparingInt(Trail::getId);
+    }
+
+    /**
+     * Builds the ascending order of a sort field alone, without the id
+     * tie-break
+     *
+     * @param sortKey         the field
+     * @param difficultyOrder lower case difficulties, easiest first
+     * @return the comparator
+     */
+    static Comparator<Trail> keyOrder(TrailQuery.SortKey sortKey, List<String> difficultyOrder) {
+        return switch (sortKey) {
+            case TIME -> Comparator.comparingInt(Trail::getAvgCompletionTimeMinutes);
+            case DIFFICULTY -> {
+                Map<String, Integer> ranks = new HashMap<>();
+                for (int i = 0; i < difficultyOrder.size(); i++) {
+                    ranks.putIfAbsent(difficultyOrder.get(i), i);
+                }
+                yield Comparator.comparingInt(trail -> difficultyRank(trail, ranks));
+            }
+            // Best match first when ascending
+            case MATCH -> Comparator.comparingDouble(Trail::getUserWeight).reversed();
+            default -> Comparator.comparing(Trail::getName, Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER));
+        };
+    }
+
+    /**
+     * Gets where a trail's difficulty falls in a sort order
+     *
+     * @param trail the trail
+     * @param ranks position of each lower case difficulty, easiest first
+     * @return the difficulty's position, or a large number if it isn't listed
+     */
+    private static int difficultyRank(Trail trail, Map<String, Integer> ranks) {
+        Integer rank = trail.getDifficulty() == null ? null : ranks.get(trail.getDifficulty().toLowerCase(Locale.ROOT));
+        return rank == null ? NO_DIFFICULTY_RANK : rank;
+    }
+
+    /**
+     * Splits search text into folded words
+     *
+     * @param text the text to search for
+     * @return the words, empty if there are none
+     */
+    private static List<String> searchTerms(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text != null) {
+            Matcher matcher = WORD.matcher(text);
+            while (matcher.find()) {
+                terms.add(StringManipulator.fold(matcher.group()));
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Checks every search word is the start of a word in the trail's name,
+     * translation or description
+     *
+     * @param trail the trail
+     * @param terms the folded search words
+     * @return true if the trail matches
+     */
+    private static boolean matchesText(Trail trail, List<String> terms) {
+        if (terms.isEmpty()) {
+            return false; // Only punctuation, nothing can match
+        }
+        Set<String> words = new HashSet<>();
+        for (String field : new String[] { trail.getName(), trail.getTranslation(), trail.getDescription() }) {
+            for (Token token : tokenize(field, terms)) {
+                words.add(token.word());
+            }
+        }
+        return terms.stream().allMatch(term -> words.stream().anyMatch(word -> word.startsWith(term)));
+    }
+
+    /**
+     * Counts the words in some text that a search word is the start of
+     *
+     * @param text  the text
+     * @param terms the folded search words
+     * @return number of matching words
+     */
+    private static int countMatches(String text, List<String> terms) {
+        return (int) tokenize(text, terms).stream().filter(Token::matched).count();
+    }
+
+    /**
+     * Wraps the words of some text that match a search in brackets
+     *
+     * @param text    the text
+     * @param terms   the folded search words
+     * @param snippet true to cut the text down to a few words around the first
+     *                match, marking cut ends with "..."
+     * @return the highlighted text
+     */
+    private static String highlight(String text, List<String> terms, boolean snippet) {
+        List<Token> tokens = tokenize(text, terms);
+        if (tokens.isEmpty()) {
+            return text == null ? "" : text;
+        }
+
+        int first = 0;
+        int last = tokens.size();
+        if (snippet && tokens.size() > SNIPPET_TOKENS) {
+            int firstMatch = 0;
+            while (firstMatch < tokens.size() && !tokens.get(firstMatch).matched()) {
+                firstMatch++;
+            }
+            first = firstMatch == tokens.size() ? 0 : Math.min(firstMatch, tokens.size() - SNIPPET_TOKENS);
+            last = first + SNIPPET_TOKENS;
+        }
+
+        StringBuilder result = new StringBuilder();
+        int position = snippet ? tokens.get(first).start() : 0;
+        if (snippet && first > 0) {
+            result.append("...");
+        }
+        for (Token token : tokens.subList(first, last)) {
+            result.append(text, position, token.start());
+            String word = text.substring(token.start(), token.end());
+            result.append(token.matched() ? "[" + word + "]" : word);
+            position = token.end();
+        }
+        if (snippet && last < tokens.size()) {
+            result.append("...");
+        } else {
+            result.append(text.substring(position));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Splits text into words, noting which ones match a search
+     *
+     * @param text  the text, may be null
+     * @param terms the folded search words
+     * @return the words in order
+     */
+    private static List<Token> tokenize(String text, List<String> terms) {
+        List<Token> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        Matcher matcher = WORD.matcher(text);
+        while (matcher.find()) {
+            String word = StringManipulator.fold(matcher.group());
+            tokens.add(new Token(matcher.start(), matcher.end(), word, terms.stream().anyMatch(word::startsWith)));
+        }
+        return tokens;
+    }
+
+    /**
+     * A word in some text.
+     *
+     * @param start   index of its first character
+     * @param end     index after its last character
+     * @param word    the word folded for matching
+     * @param matched whether a search word is the start of it
+     */
+    private record Token(int start, int end, String word, boolean matched) {
+    }
+}
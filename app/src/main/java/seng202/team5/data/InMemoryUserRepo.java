@@ -0,0 +1,105 @@
+package seng202.team5.data;
+
+import seng202.team5.models.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * User repository that keeps the user in memory instead of a database. Users
+ * are copied on the way in and out, as they are mutable.
+ * <p>
+ * There are no transactions in memory: work run "in a transaction" runs
+ * straight away, and anything it wrote before failing stays written.
+ */
+public class InMemoryUserRepo implements UserRepo {
+    private final Map<Integer, User> users = new ConcurrentSkipListMap<>();
+    private final DataEventBus eventBus;
+
+    /**
+     * Creates an empty in-memory user repository
+     */
+    public InMemoryUserRepo() {
+        this(DataEventBus.getInstance());
+    }
+
+    /**
+     * Creates an empty in-memory user repository that publishes its changes to
+     * the given bus
+     *
+     * @param eventBus bus to publish user changes on
+     */
+    public InMemoryUserRepo(DataEventBus eventBus) {
+        this.eventBus = eventBus;
+    }
+
+    @Override
+    public Optional<User> findUser() {
+        return users.values().stream().findFirst().map(InMemoryUserRepo::copyOf);
+    }
+
+    @Override
+    public void upsert(User user) {
+        users.put(user.getId(), copyOf(user));
+        eventBus.publish(new DataChangeEvent.UserChanged());
+    }
+
+    @Override
+    public void deleteAll() {
+        users.clear();
+        eventBus.publish(new DataChangeEvent.UserChanged());
+    }
+
+    @Override
+    public int deleteIncomplete() {
+        int before = users.size();
+        users.values().removeIf(user -> !user.isProfileComplete());
+        int removed = before - users.size();
+        if (removed > 0) {
+            eventBus.publish(new DataChangeEvent.UserChanged());
+        }
+        return removed;
+    }
+
+    @Override
+    public <E extends Exception> void runInTransaction(QueryHelper.TransactionAction<E> work) throws E {
+        work.run();
+    }
+
+    /**
+     * Removes the user without publishing anything, for resetting the storage
+     */
+    void clear() {
+        users.clear();
+    }
+
+    /**
+     * Copies a user as it would be read back from the database
+     *
+     * @param user the user
+     * @return a new user with the same values
+     */
+    private static User copyOf(User user) {
+        return new User(
+                user.getId(),
+                user.getName(),
+                user.getRegion() != null ? new ArrayList<>(user.getRegion()) : List.of(),
+                user.isFamilyFriendly(),
+                user.isAccessible(),
+                user.getExperienceLevel(),
+                user.getGradientPreference(),
+                user.getBushPreference(),
+                user.getReservePreference(),
+                user.getLakeRiverPreference(),
+                user.getCoastPreference(),
+                user.getMountainPreference(),
+                user.getWildlifePreference(),
+                user.getHistoricPreference(),
+                user.getWaterfallPreference(),
+                user.isProfileComplete(),
+                user.getProfilePicture());
+    }
+}
@@ -0,0 +1,69 @@
+package seng202.team5.data;
+
+import seng202.team5.models.Trail;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Storage for the matchmaking categories, their keywords and the categories
+ * each trail falls in. Implemented over SQLite by {@link SqlBasedKeywordRepo}
+ * and in memory by {@link InMemoryKeywordRepo}.
+ */
+public interface KeywordRepo {
+
+    /**
+     * Returns keywords grouped by category
+     *
+     * @return Map of category names to lists of keywords in that category
+     */
+    Map<String, List<String>> getKeywords();
+
+    /**
+     * Returns keywords grouped by category on the shared database executor
+     *
+     * @return a future of the map of category names to their keywords
+     */
+    default CompletableFuture<Map<String, List<String>>> getKeywordsAsync() {
+        return DatabaseExecutor.supplyAsync(this::getKeywords);
+    }
+
+    /**
+     * Counts the number of categories.
+     *
+     * @return the number of categories
+     */
+    int countCategories();
+
+    /**
+     * Adds categories and their keywords, skipping any already stored.
+     *
+     * @param keywords Map of category names to lists of keywords
+     */
+    void insertCategoriesAndKeywords(Map<String, List<String>> keywords);
+
+    /**
+     * Adds the categories each trail carries to the trail, ignoring categories
+     * that don't exist
+     *
+     * @param trails List of trails to assign categories to
+     */
+    void assignTrailCategories(List<Trail> trails);
+
+    /**
+     * Gets all categories for a given trail.
+     *
+     * @param trailId the trail identifier
+     * @return set of category names
+     */
+    Set<String> getCategoriesForTrail(int trailId);
+
+    /**
+     * Gets all categories for all trails at once.
+     *
+     * @return Map of trail ID to set of category names
+     */
+    Map<Integer, Set<String>> getAllTrailCategories();
+}
@@ -5,8 +5,16 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Query helper for executing SQL
@@ -17,15 +25,34 @@ import java.util.Optional;
  * row mapping.
  */
 public class QueryHelper {
+    private static final int DEFAULT_FETCH_SIZE = 256;
+
+    // Units of work in progress on each thread, by the database they belong to
+    private static final ThreadLocal<Map<DatabaseService, UnitOfWork>> unitsOfWork =
+            ThreadLocal.withInitial(IdentityHashMap::new);
+
     private final DatabaseService databaseService;
+    private final QueryMetrics metrics;
+    private int fetchSize = DEFAULT_FETCH_SIZE;
 
     /**
-     * Constructor for QueryHelper class
+     * Constructor for QueryHelper class, reporting to the shared query metrics
      *
      * @param databaseService the databaseService instance
      */
     public QueryHelper(DatabaseService databaseService) {
+        this(databaseService, QueryMetrics.getInstance());
+    }
+
+    /**
+     * Constructor for QueryHelper class
+     *
+     * @param databaseService the databaseService instance
+     * @param metrics         registry every executed statement is reported to
+     */
+    public QueryHelper(DatabaseService databaseService, QueryMetrics metrics) {
         this.databaseService = databaseService;
+        this.metrics = metrics;
     }
 
     /**
@@ -39,7 +66,9 @@ public class QueryHelper {
      */
     public <T> List<T> executeQuery(String sql, ParameterSetter paramSetter, RowMapper<T> rowMapper) {
         List<T> results = new ArrayList<>();
-        try (Connection conn = databaseService.getConnection();
+        long start = System.nanoTime();
+        boolean failed = true;
+        try (Connection conn = getConnection();
                 PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             if (paramSetter != null) {
@@ -51,12 +80,136 @@ public class QueryHelper {
                     results.add(rowMapper.mapRow(rs));
                 }
             }
+            failed = false;
         } catch (SQLException e) {
             throw new RuntimeException("Query execution failed: " + sql, e);
+        } finally {
+            metrics.record(sql, System.nanoTime() - start, results.size(), failed);
         }
         return results;
     }
 
+    /**
+     * Execute a query as a lazy stream. Rows are read from the ResultSet and
+     * mapped one at a time as the stream is consumed, so large scans run in
+     * constant memory and stop reading as soon as the stream does.
+     * <p>
+     * The stream holds a connection open until it is closed, so always use it in
+     * a try-with-resources block.
+     *
+     * @param sql         the SQL query string
+     * @param paramSetter functional interface to set query parameters
+     * @param rowMapper   functional interface to map each ResultSet row to a type T
+     * @return a stream of results which must be closed
+     * @param <T> the type of results
+     */
+    public <T> Stream<T> executeStream(String sql, ParameterSetter paramSetter, RowMapper<T> rowMapper) {
+        long start = System.nanoTime();
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            conn = getConnection();
+            stmt = conn.prepareStatement(sql);
+            stmt.setFetchSize(fetchSize);
+
+            if (paramSetter != null) {
+                paramSetter.setParameters(stmt);
+            }
+
+            rs = stmt.executeQuery();
+        } catch (SQLException e) {
+            closeAll(rs, stmt, conn);
+            metrics.record(sql, System.nanoTime() - start, 0, true);
+            throw new RuntimeException("Query execution failed: " + sql, e);
+        }
+
+        ResultSet resultSet = rs;
+        PreparedStatement statement = stmt;
+        Connection connection = conn;
+        long[] rowCount = new long[1];
+        boolean[] failed = new boolean[1];
+        Spliterator<T> rows = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!resultSet.next()) {
+                        return false;
+                    }
+                    rowCount[0]++;
+                    action.accept(rowMapper.mapRow(resultSet));
+                    return true;
+                } catch (SQLException e) {
+                    failed[0] = true;
+                    throw new RuntimeException("Query execution failed: " + sql, e);
+                }
+            }
+        };
+
+        // Timed until the stream is closed, as that is how long the connection is held
+        return StreamSupport.stream(rows, false)
+                .onClose(() -> {
+                    closeAll(resultSet, statement, connection);
+                    metrics.record(sql, System.nanoTime() - start, rowCount[0], failed[0]);
+                });
+    }
+
+    /**
+     * Execute a query and hand each row to a consumer as it is read, without
+     * building a list of results
+     *
+     * @param sql         the SQL query string
+     * @param paramSetter functional interface to set query parameters
+     * @param rowConsumer functional interface called once per ResultSet row
+     */
+    public void executeForEach(String sql, ParameterSetter paramSetter, RowConsumer rowConsumer) {
+        long start = System.nanoTime();
+        long rows = 0;
+        boolean failed = true;
+        try (Connection conn = getConnection();
+                PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setFetchSize(fetchSize);
+
+            if (paramSetter != null) {
+                paramSetter.setParameters(stmt);
+            }
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    rows++;
+                    rowConsumer.accept(rs);
+                }
+            }
+            failed = false;
+        } catch (SQLException e) {
+            throw new RuntimeException("Query execution failed: " + sql, e);
+        } finally {
+            metrics.record(sql, System.nanoTime() - start, rows, failed);
+        }
+    }
+
+    /**
+     * Sets the number of rows the driver is asked to fetch at a time for
+     * streamed queries
+     *
+     * @param fetchSize rows per fetch, must be positive
+     */
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("Fetch size must be positive: " + fetchSize);
+        }
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Gets the number of rows fetched at a time for streamed queries
+     *
+     * @return rows per fetch
+     */
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
     /**
      * Execute a query for single result
      *
@@ -79,16 +232,23 @@ public class QueryHelper {
      * @return the number of affected rows
      */
     public int executeUpdate(String sql, ParameterSetter paramSetter) {
-        try (Connection conn = databaseService.getConnection();
+        long start = System.nanoTime();
+        int rows = 0;
+        boolean failed = true;
+        try (Connection conn = getConnection();
                 PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             if (paramSetter != null) {
                 paramSetter.setParameters(stmt);
             }
 
-            return stmt.executeUpdate();
+            rows = stmt.executeUpdate();
+            failed = false;
+            return rows;
         } catch (SQLException e) {
             throw new RuntimeException("Update execution failed: " + sql, e);
+        } finally {
+            metrics.record(sql, System.nanoTime() - start, rows, failed);
         }
     }
 
@@ -100,7 +260,9 @@ public class QueryHelper {
      * @return the integer result
      */
     public int executeCountQuery(String sql, ParameterSetter paramSetter) {
-        try (Connection conn = databaseService.getConnection();
+        long start = System.nanoTime();
+        boolean failed = true;
+        try (Connection conn = getConnection();
                 PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             if (paramSetter != null) {
@@ -108,10 +270,14 @@ public class QueryHelper {
             }
 
             try (ResultSet rs = stmt.executeQuery()) {
-                return rs.next() ? rs.getInt(1) : 0;
+                int count = rs.next() ? rs.getInt(1) : 0;
+                failed = false;
+                return count;
             }
         } catch (SQLException e) {
             throw new RuntimeException("Count query execution failed: " + sql, e);
+        } finally {
+            metrics.record(sql, System.nanoTime() - start, 1, failed);
         }
     }
 
@@ -127,7 +293,9 @@ public class QueryHelper {
             return;
         }
 
-        try (Connection conn = databaseService.getConnection();
+        long start = System.nanoTime();
+        boolean failed = true;
+        try (Connection conn = getConnection();
                 PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             // temp disable auto-commit for speeeeeed
@@ -141,6 +309,7 @@ public class QueryHelper {
 
                 stmt.executeBatch();
                 conn.commit(); // Commit all at once
+                failed = false;
 
             } catch (SQLException e) {
                 conn.rollback();
@@ -150,6 +319,8 @@ public class QueryHelper {
             }
         } catch (SQLException e) {
             throw new RuntimeException("Batch execution failed: " + sql, e);
+        } finally {
+            metrics.record(sql, System.nanoTime() - start, items.size(), failed);
         }
     }
 
@@ -164,20 +335,27 @@ public class QueryHelper {
             return;
         }
 
-        try (Connection conn = databaseService.getConnection()) {
+        try (Connection conn = getConnection()) {
             conn.setAutoCommit(false);
 
             try {
                 for (SqlStatement statement : statements) {
+                    long start = System.nanoTime();
+                    int rows = 0;
+                    boolean failed = true;
                     try (PreparedStatement stmt = conn.prepareStatement(statement.sql())) {
                         if (statement.paramSetter() != null) {
                             statement.paramSetter().setParameters(stmt);
                         }
-                        stmt.executeUpdate();
+                        rows = stmt.executeUpdate();
+                        failed = false;
+                    } finally {
+                        metrics.record(statement.sql(), System.nanoTime() - start, rows, failed);
                     }
                 }
                 conn.commit();
-            } catch (SQLException e) {
+            } catch (SQLException | RuntimeException e) {
+                // Roll back here, as turning autocommit back on would commit the partial work
                 conn.rollback();
                 throw e;
             } finally {
@@ -188,6 +366,202 @@ public class QueryHelper {
         }
     }
 
+    /**
+     * Runs work as one unit of work: every statement any QueryHelper on the same
+     * database runs from this thread until the work returns shares one
+     * transaction, which commits once at the end or rolls back if the work
+     * throws. Calls made inside another unit of work join it.
+     *
+     * @param work the work, usually several repository calls
+     * @return the work's result
+     * @param <T> the type of the result
+     * @param <E> the checked exception the work can throw
+     * @throws E if the work fails, after the transaction is rolled back
+     */
+    public <T, E extends Exception> T supplyInTransaction(TransactionWork<T, E> work) throws E {
+        Map<DatabaseService, UnitOfWork> current = unitsOfWork.get();
+        UnitOfWork outer = current.get(databaseService);
+        if (outer != null) {
+            try {
+                return work.run();
+            } catch (Exception | Error e) {
+                outer.setRollbackOnly();
+                throw e;
+            }
+        }
+
+        UnitOfWork unitOfWork;
+        try {
+            unitOfWork = new UnitOfWork(databaseService.getConnection());
+        } catch (SQLException e) {
+            throw new RuntimeException("Transaction could not be started", e);
+        }
+        current.put(databaseService, unitOfWork);
+        try {
+            T result;
+            try {
+                result = work.run();
+            } catch (Exception | Error e) {
+                try {
+                    unitOfWork.rollback();
+                } catch (SQLException rollbackFailure) {
+                    e.addSuppressed(rollbackFailure);
+                }
+                throw e;
+            }
+            try {
+                unitOfWork.commit();
+            } catch (SQLException e) {
+                throw new RuntimeException("Transaction execution failed", e);
+            }
+            return result;
+        } finally {
+            current.remove(databaseService);
+            unitOfWork.close();
+        }
+    }
+
+    /**
+     * Runs work that returns nothing as one unit of work
+     *
+     * @param work the work, usually several repository calls
+     * @param <E>  the checked exception the work can throw
+     * @throws E if the work fails, after the transaction is rolled back
+     * @see #supplyInTransaction(TransactionWork)
+     */
+    public <E extends Exception> void runInTransaction(TransactionAction<E> work) throws E {
+        supplyInTransaction(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs an action once the calling thread's unit of work commits, or straight
+     * away if it is not in one. The action is dropped if the unit of work rolls
+     * back.
+     *
+     * @param action the action, such as publishing a change event
+     */
+    public void afterCommit(Runnable action) {
+        UnitOfWork current = unitsOfWork.get().get(databaseService);
+        if (current != null) {
+            current.afterCommit(action);
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Checks whether the calling thread is in a unit of work on this database
+     *
+     * @return true if statements run now join a unit of work's transaction
+     */
+    public boolean isInTransaction() {
+        return unitsOfWork.get().containsKey(databaseService);
+    }
+
+    /**
+     * Execute a query for result list on the shared database executor
+     *
+     * @param sql         the SQL query string
+     * @param paramSetter functional interface to set query parameters
+     * @param rowMapper   functional interface to map each ResultSet row to a type T
+     * @return a future of the list of results
+     * @param <T> the type of results
+     */
+    public <T> CompletableFuture<List<T>> executeQueryAsync(String sql, ParameterSetter paramSetter,
+            RowMapper<T> rowMapper) {
+        return DatabaseExecutor.supplyAsync(() -> executeQuery(sql, paramSetter, rowMapper));
+    }
+
+    /**
+     * Execute a query for single result on the shared database executor
+     *
+     * @param sql         the SQL query string
+     * @param paramSetter functional interface to set query parameters
+     * @param rowMapper   functional interface to map each ResultSet row to a type T
+     * @return a future of an optional containing the result if found
+     * @param <T> the type of the result
+     */
+    public <T> CompletableFuture<Optional<T>> executeQuerySingleAsync(String sql, ParameterSetter paramSetter,
+            RowMapper<T> rowMapper) {
+        return DatabaseExecutor.supplyAsync(() -> executeQuerySingle(sql, paramSetter, rowMapper));
+    }
+
+    /**
+     * Execute an update/insert/delete operation on the shared database executor
+     *
+     * @param sql         the SQL statement
+     * @param paramSetter functional interface to set statement parameters
+     * @return a future of the number of affected rows
+     */
+    public CompletableFuture<Integer> executeUpdateAsync(String sql, ParameterSetter paramSetter) {
+        return DatabaseExecutor.supplyAsync(() -> executeUpdate(sql, paramSetter));
+    }
+
+    /**
+     * Execute a count query on the shared database executor
+     *
+     * @param sql         the SQL query string
+     * @param paramSetter functional interface to set query parameters
+     * @return a future of the integer result
+     */
+    public CompletableFuture<Integer> executeCountQueryAsync(String sql, ParameterSetter paramSetter) {
+        return DatabaseExecutor.supplyAsync(() -> executeCountQuery(sql, paramSetter));
+    }
+
+    /**
+     * Execute multiple SQL statements in a single transaction on the shared
+     * database executor
+     *
+     * @param statements List of SQL statements with their parameter setters
+     * @return a future completed once the transaction commits
+     */
+    public CompletableFuture<Void> executeTransactionAsync(List<SqlStatement> statements) {
+        return DatabaseExecutor.runAsync(() -> executeTransaction(statements));
+    }
+
+    /**
+     * Gets the connection for a statement: the unit of work's connection if the
+     * calling thread is in one on this database, or else a pooled connection
+     *
+     * @return the connection, which must be closed after use
+     * @throws SQLException if no connection can be borrowed
+     */
+    private Connection getConnection() throws SQLException {
+        UnitOfWork current = unitsOfWork.get().get(databaseService);
+        return current != null ? current.getConnection() : databaseService.getConnection();
+    }
+
+    /**
+     * Closes query resources in reverse order of opening, ignoring nulls
+     *
+     * @param rs   the result set
+     * @param stmt the statement
+     * @param conn the connection
+     */
+    private static void closeAll(ResultSet rs, PreparedStatement stmt, Connection conn) {
+        try {
+            if (rs != null) {
+                rs.close();
+            }
+            if (stmt != null) {
+                stmt.close();
+            }
+        } catch (SQLException ignored) {
+            // Closing the connection below still cleans up
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.close();
+                } catch (SQLException ignored) {
+                    // Nothing more we can do with it
+                }
+            }
+        }
+    }
+
     /**
      * Record to hold SQL statement and its parameter setter
      */
@@ -226,6 +600,52 @@ public class QueryHelper {
         T mapRow(ResultSet rs) throws SQLException;
     }
 
+    /**
+     * Functional interface for consuming ResultSet rows one at a time.
+     */
+    @FunctionalInterface
+    public interface RowConsumer {
+        /**
+         * Reads a single row of the ResultSet.
+         *
+         * @param rs the ResultSet, positioned at the current row
+         * @throws SQLException if reading from ResultSet fails
+         */
+        void accept(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Functional interface for work run in a unit of work.
+     *
+     * @param <T> the type of the result
+     * @param <E> the checked exception the work can throw
+     */
+    @FunctionalInterface
+    public interface TransactionWork<T, E extends Exception> {
+        /**
+         * Runs the work
+         *
+         * @return the result
+         * @throws E if the work fails
+         */
+        T run() throws E;
+    }
+
+    /**
+     * Functional interface for work run in a unit of work that returns nothing.
+     *
+     * @param <E> the checked exception the work can throw
+     */
+    @FunctionalInterface
+    public interface TransactionAction<E extends Exception> {
+        /**
+         * Runs the work
+         *
+         * @throws E if the work fails
+         */
+        void run() throws E;
+    }
+
     /**
      * Functional interface for setting parameters for a batch update on a
      * PreparedStatement.
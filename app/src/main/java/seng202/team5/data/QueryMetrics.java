@@ -0,0 +1,329 @@
+package seng202.team5.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * In-process registry of SQL execution statistics, keyed by SQL template.
+ * <p>
+ * QueryHelper reports every statement it runs here, recording how long it took,
+ * how many rows it returned or changed and whether it failed. Latencies go into
+ * a histogram with power-of-two buckets so percentiles can be read cheaply.
+ * Statements slower than the slow query threshold are logged as they happen.
+ * <p>
+ * The template for each raw SQL string is cached so repeated statements skip
+ * normalising, but only for the most recently run strings, as SQL built at
+ * runtime could otherwise fill the cache without end.
+ */
+public class QueryMetrics {
+    private static final long DEFAULT_SLOW_QUERY_THRESHOLD_MILLIS = 250;
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\?(?: ?, ?\\?)+");
+    static final int TEMPLATE_CACHE_SIZE = 256;
+    private static final QueryMetrics instance = new QueryMetrics();
+
+    private final Map<String, QueryStats> statsBySql = new ConcurrentHashMap<>();
+    private final Map<String, String> templatesBySql = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                    return size() > TEMPLATE_CACHE_SIZE;
+                }
+            });
+    private volatile long slowQueryThresholdNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SLOW_QUERY_THRESHOLD_MILLIS);
+
+    /**
+     * Gets the registry shared by every QueryHelper by default
+     *
+     * @return the shared registry
+     */
+    public static QueryMetrics getInstance() {
+        return instance;
+    }
+
+    /**
+     * Records one execution of a SQL statement
+     *
+     * @param sql          the SQL that was run
+     * @param elapsedNanos how long it took in nanoseconds
+     * @param rows         rows returned or affected
+     * @param failed       whether it threw
+     */
+    public void record(String sql, long elapsedNanos, long rows, boolean failed) {
+        String template = templatesBySql.computeIfAbsent(sql, QueryMetrics::normalise);
+        QueryStats stats = statsBySql.computeIfAbsent(template, QueryStats::new);
+        stats.add(elapsedNanos, rows, failed);
+
+        if (elapsedNanos >= slowQueryThresholdNanos) {
+            System.err.printf("Slow query (%.1f ms, %d params, %d rows): %s%n",
+                    elapsedNanos / 1_000_000.0, stats.getParameterCount(), rows, template);
+        }
+    }
+
+    /**
+     * Gets the statistics for a single SQL template
+     *
+     * @param sql the SQL, whitespace differences are ignored
+     * @return the statistics if the SQL has been run; otherwise empty
+     */
+    public Optional<QueryStats> getStats(String sql) {
+        return Optional.ofNullable(statsBySql.get(normalise(sql)));
+    }
+
+    /**
+     * Gets the statistics for every SQL template run so far, most total time
+     * first
+     *
+     * @return list of statistics
+     */
+    public List<QueryStats> getAllStats() {
+        List<QueryStats> all = new ArrayList<>(statsBySql.values());
+        all.sort(Comparator.comparingLong(QueryStats::getTotalNanos).reversed());
+        return all;
+    }
+
+    /**
+     * Sets how slow a statement has to be before it is logged
+     *
+     * @param thresholdMillis threshold in milliseconds, must not be negative
+     */
+    public void setSlowQueryThresholdMillis(long thresholdMillis) {
+        if (thresholdMillis < 0) {
+            throw new IllegalArgumentException("Slow query threshold must not be negative: " + thresholdMillis);
+        }
+        this.slowQueryThresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    }
+
+    /**
+     * Gets how slow a statement has to be before it is logged
+     *
+     * @return threshold in milliseconds
+     */
+    public long getSlowQueryThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(slowQueryThresholdNanos);
+    }
+
+    /**
+     * Clears all recorded statistics
+     */
+    public void reset() {
+        statsBySql.clear();
+        templatesBySql.clear();
+    }
+
+    /**
+     * Gets how many raw SQL strings have their template cached
+     *
+     * @return number of cached templates
+     */
+    int getCachedTemplateCount() {
+        return templatesBySql.size();
+    }
+
+    /**
+     * Collapses whitespace so the same statement written across lines or with
+     * different indentation is counted once, and lists of placeholders such as
+     * {@code IN (?, ?, ?)} into {@code ?…} so a list built to the length of a
+     * filter selection is one template rather than one per length
+     *
+     * @param sql the SQL
+     * @return the SQL template
+     */
+    static String normalise(String sql) {
+        String collapsed = WHITESPACE.matcher(sql.strip()).replaceAll(" ");
+        return PLACEHOLDER_LIST.matcher(collapsed).replaceAll("?…");
+    }
+
+    /**
+     * Counts the bind parameters in a SQL template, ignoring any question marks
+     * inside string literals
+     *
+     * @param sql the SQL template
+     * @return number of bind parameters
+     */
+    static int countParameters(String sql) {
+        int count = 0;
+        boolean inString = false;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                inString = !inString;
+            } else if (c == '?' && !inString) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Running statistics for a single SQL template.
+     */
+    public static class QueryStats {
+        private static final int BUCKET_COUNT = 40;
+
+        private final String sql;
+        private final int parameterCount;
+        private final long[] buckets = new long[BUCKET_COUNT];
+        private long count;
+        private long errorCount;
+        private long totalRows;
+        private long totalNanos;
+        private long maxNanos;
+
+        /**
+         * Creates empty statistics for a SQL template
+         *
+         * @param sql the SQL template
+         */
+        QueryStats(String sql) {
+            this.sql = sql;
+            this.parameterCount = countParameters(sql);
+        }
+
+        /**
+         * Adds one execution to the statistics
+         *
+         * @param elapsedNanos how long it took in nanoseconds
+         * @param rows         rows returned or affected
+         * @param failed       whether it threw
+         */
+        synchronized void add(long elapsedNanos, long rows, boolean failed) {
+            count++;
+            totalRows += rows;
+            totalNanos += elapsedNanos;
+            maxNanos = Math.max(maxNanos, elapsedNanos);
+            if (failed) {
+                errorCount++;
+            }
+            buckets[bucketFor(elapsedNanos)]++;
+        }
+
+        /**
+         * Gets the latency at the given percentile. The result is the upper bound
+         * of the histogram bucket it falls in, so is accurate to within a factor
+         * of two.
+         *
+         * @param percentile percentile between 0 and 100
+         * @return latency in milliseconds, or 0 if nothing has been recorded
+         */
+        public synchronized double getPercentileMillis(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+            }
+            if (count == 0) {
+                return 0;
+            }
+
+            long rank = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    long upperMicros = 1L << (i + 1);
+                    return Math.min(upperMicros * 1_000, maxNanos) / 1_000_000.0;
+                }
+            }
+            return maxNanos / 1_000_000.0;
+        }
+
+        /**
+         * Gets the SQL template these statistics are for
+         *
+         * @return SQL template
+         */
+        public String getSql() {
+            return sql;
+        }
+
+        /**
+         * Gets the number of bind parameters in the SQL template
+         *
+         * @return bind parameter count
+         */
+        public int getParameterCount() {
+            return parameterCount;
+        }
+
+        /**
+         * Gets the number of times the statement has run
+         *
+         * @return execution count
+         */
+        public synchronized long getCount() {
+            return count;
+        }
+
+        /**
+         * Gets the number of times the statement has failed
+         *
+         * @return error count
+         */
+        public synchronized long getErrorCount() {
+            return errorCount;
+        }
+
+        /**
+         * Gets the total rows returned or affected across every run
+         *
+         * @return total row count
+         */
+        public synchronized long getTotalRows() {
+            return totalRows;
+        }
+
+        /**
+         * Gets the total time spent running the statement
+         *
+         * @return total time in nanoseconds
+         */
+        public synchronized long getTotalNanos() {
+            return totalNanos;
+        }
+
+        /**
+         * Gets the mean time per run
+         *
+         * @return mean latency in milliseconds, or 0 if nothing has been recorded
+         */
+        public synchronized double getMeanMillis() {
+            return count == 0 ? 0 : totalNanos / (double) count / 1_000_000.0;
+        }
+
+        /**
+         * Gets the slowest single run
+         *
+         * @return max latency in milliseconds
+         */
+        public synchronized double getMaxMillis() {
+            return maxNanos / 1_000_000.0;
+        }
+
+        /**
+         * Gets the histogram bucket for a latency, bucket i holding latencies
+         * below 2^(i+1) microseconds
+         *
+         * @param elapsedNanos the latency in nanoseconds
+         * @return bucket index
+         */
+        private static int bucketFor(long elapsedNanos) {
+            long micros = Math.max(1, elapsedNanos / 1_000);
+            int bucket = 63 - Long.numberOfLeadingZeros(micros);
+            return Math.min(bucket, BUCKET_COUNT - 1);
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("%d runs, %d errors, %d rows, mean %.2f ms, p50 %.2f ms, p99 %.2f ms: %s",
+                    count, errorCount, totalRows, getMeanMillis(), getPercentileMillis(50),
+                    getPercentileMillis(99), sql);
+        }
+    }
+}
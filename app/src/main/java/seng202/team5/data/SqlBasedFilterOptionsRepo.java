@@ -1,8 +1,6 @@
 package seng202.team5.data;
 
 import java.util.List;
-import java.util.Map;
-import java.util.HashMap;
 
 import seng202.team5.services.RegionFinder;
 
@@ -11,8 +9,9 @@ import seng202.team5.services.RegionFinder;
  * Provides efficient access to filter dropdown options without
  * needing to process all trails in memory.
  */
-public class SqlBasedFilterOptionsRepo {
+public class SqlBasedFilterOptionsRepo implements FilterOptionsRepo {
     private final QueryHelper queryHelper;
+    private final DataEventBus eventBus;
 
     // SQL Constants
     private static final String SELECT_OPTIONS_BY_TYPE = """
@@ -28,6 +27,10 @@ public class SqlBasedFilterOptionsRepo {
             WHERE filterType = ?
             """;
 
+    private static final String SELECT_FILTER_TYPES = "SELECT DISTINCT filterType FROM filterOptions ORDER BY filterType";
+
+    private static final String DELETE_ALL_OPTIONS = "DELETE FROM filterOptions";
+
     private static final String UPSERT_OPTION = """
             INSERT INTO filterOptions (filterType, optionValue, displayOrder)
             VALUES (?, ?, ?)
@@ -35,30 +38,27 @@ public class SqlBasedFilterOptionsRepo {
                 displayOrder = excluded.displayOrder
             """;
 
+    // Options come from the lookup tables, keeping only values some trail still uses
     private static final String REFRESH_COMPLETION_TYPE_OPTIONS = """
             INSERT OR REPLACE INTO filterOptions (filterType, optionValue, displayOrder)
-            SELECT 'completionType', completionType, 0
-            FROM trail
-            WHERE completionType IS NOT NULL
-            AND completionType != 'unknown'
-            AND completionType != ''
-            GROUP BY completionType
+            SELECT 'completionType', name, 0
+            FROM completionTypeLookup
+            WHERE name != 'unknown'
+            AND EXISTS (SELECT 1 FROM trail WHERE completionTypeId = completionTypeLookup.id)
             """;
 
     private static final String REFRESH_TIME_UNIT_OPTIONS = """
             INSERT OR REPLACE INTO filterOptions (filterType, optionValue, displayOrder)
-            SELECT 'timeUnit', timeUnit, 0
-            FROM trail
-            WHERE timeUnit IS NOT NULL
-            AND timeUnit != 'unknown'
-            AND timeUnit != ''
-            GROUP BY timeUnit
+            SELECT 'timeUnit', name, 0
+            FROM timeUnitLookup
+            WHERE name != 'unknown'
+            AND EXISTS (SELECT 1 FROM trail WHERE timeUnitId = timeUnitLookup.id)
             """;
 
     private static final String REFRESH_DIFFICULTY_OPTIONS = """
             INSERT OR REPLACE INTO filterOptions (filterType, optionValue, displayOrder)
-            SELECT 'difficulty', difficulty,
-                CASE difficulty
+            SELECT 'difficulty', name,
+                CASE name
                     WHEN 'easiest' THEN 1
                     WHEN 'easy' THEN 2
                     WHEN 'intermediate' THEN 3
@@ -66,11 +66,9 @@ public class SqlBasedFilterOptionsRepo {
                     WHEN 'expert' THEN 5
                     ELSE 999
                 END as displayOrder
-            FROM trail
-            WHERE difficulty IS NOT NULL
-            AND difficulty != 'unknown'
-            AND difficulty != ''
-            GROUP BY difficulty
+            FROM difficultyLookup
+            WHERE name != 'unknown'
+            AND EXISTS (SELECT 1 FROM trail WHERE difficultyId = difficultyLookup.id)
             """;
 
     /**
@@ -79,7 +77,19 @@ public class SqlBasedFilterOptionsRepo {
      * @param databaseService provider of connection
      */
     public SqlBasedFilterOptionsRepo(DatabaseService databaseService) {
+        this(databaseService, DataEventBus.getInstance());
+    }
+
+    /**
+     * Creates a SQL-based filter options repository that publishes its refreshes
+     * to the given bus
+     *
+     * @param databaseService provider of connection
+     * @param eventBus        bus to publish refreshes on
+     */
+    public SqlBasedFilterOptionsRepo(DatabaseService databaseService, DataEventBus eventBus) {
         this.queryHelper = new QueryHelper(databaseService);
+        this.eventBus = eventBus;
     }
 
     /**
@@ -88,6 +98,7 @@ public class SqlBasedFilterOptionsRepo {
      * @param filterType The filter type (e.g: "completionType", "difficulty")
      * @return List of option values
      */
+    @Override
     public List<String> getFilterOptions(String filterType) {
         return queryHelper.executeQuery(
                 SELECT_OPTIONS_BY_TYPE,
@@ -101,6 +112,7 @@ public class SqlBasedFilterOptionsRepo {
      * @param filterType The filter type to check
      * @return true if options exist, false otherwise
      */
+    @Override
     public boolean hasFilterOptions(String filterType) {
         int count = queryHelper.executeCountQuery(
                 COUNT_OPTIONS,
@@ -112,6 +124,7 @@ public class SqlBasedFilterOptionsRepo {
      * Refreshes all filter options by querying the trail table.
      * This should be called when trails are added/updated.
      */
+    @Override
     public void refreshAllFilterOptions() {
         clearAllFilterOptions();
 
@@ -123,11 +136,14 @@ public class SqlBasedFilterOptionsRepo {
         // Add multi-day options manually since it's a derived field
         insertOption("multiDay", "Multi-day", 1);
         insertOption("multiDay", "Day walk", 2);
+
+        queryHelper.afterCommit(() -> eventBus.publish(new DataChangeEvent.FilterOptionsRefreshed()));
     }
 
     /**
      * Refreshes region filter options from RegionFinder
      */
+    @Override
     public void refreshRegionOptions() {
         RegionFinder regionFinder = new RegionFinder();
         List<String> orderedRegions = regionFinder.getRegionNames();
@@ -141,7 +157,7 @@ public class SqlBasedFilterOptionsRepo {
      * Clears all filter options from the database.
      */
     private void clearAllFilterOptions() {
-        queryHelper.executeUpdate("DELETE FROM filterOptions", null);
+        queryHelper.executeUpdate(DELETE_ALL_OPTIONS, null);
     }
 
     /**
@@ -166,26 +182,11 @@ public class SqlBasedFilterOptionsRepo {
      *
      * @return List of filter types
      */
+    @Override
     public List<String> getAvailableFilterTypes() {
         return queryHelper.executeQuery(
-                "SELECT DISTINCT filterType FROM filterOptions ORDER BY filterType",
+                SELECT_FILTER_TYPES,
                 null,
                 rs -> rs.getString("filterType"));
     }
-
-    /**
-     * Gets filter options for multiple filter types efficiently.
-     *
-     * @param filterTypes List of filter types to get options for
-     * @return Map of filter type to list of options
-     */
-    public Map<String, List<String>> getFilterOptionsMap(List<String> filterTypes) {
-        Map<String, List<String>> optionsMap = new HashMap<>();
-
-        for (String filterType : filterTypes) {
-            optionsMap.put(filterType, getFilterOptions(filterType));
-        }
-
-        return optionsMap;
-    }
 }
\ No newline at end of file
@@ -9,7 +9,7 @@ import seng202.team5.models.Trail;
  * This class provides methods to retrieve keywords grouped by categories from
  * the SQL database.
  */
-public class SqlBasedKeywordRepo {
+public class SqlBasedKeywordRepo implements KeywordRepo {
     private final QueryHelper queryHelper;
 
     private static final String SELECT_ALL_CATEGORIES_WITH_KEYWORDS = """
@@ -19,6 +19,33 @@ public class SqlBasedKeywordRepo {
             ORDER BY c.name, k.value
             """;
 
+    private static final String COUNT_CATEGORIES = "SELECT COUNT(*) FROM category LIMIT 1";
+
+    private static final String INSERT_CATEGORY = "INSERT OR IGNORE INTO category (name) VALUES (?)";
+
+    private static final String INSERT_KEYWORD = """
+            INSERT OR IGNORE INTO keyword (value, categoryId)
+            SELECT ?, id FROM category WHERE name = ?
+            """;
+
+    private static final String INSERT_TRAIL_CATEGORY = """
+            INSERT OR IGNORE INTO trailCategory (trailId, categoryId)
+            SELECT ?, id FROM category WHERE name = ?
+            """;
+
+    private static final String SELECT_CATEGORIES_FOR_TRAIL = """
+            SELECT c.name FROM category c
+            JOIN trailCategory tc ON c.id = tc.categoryId
+            WHERE tc.trailId = ?
+            """;
+
+    private static final String SELECT_ALL_TRAIL_CATEGORIES = """
+            SELECT tc.trailId, c.name as category_name
+            FROM trailCategory tc
+            JOIN category c ON tc.categoryId = c.id
+            ORDER BY tc.trailId
+            """;
+
     /**
      * Creates a SQL-based keyword repository
      *
@@ -33,10 +60,11 @@ public class SqlBasedKeywordRepo {
      *
      * @return Map of category names to lists of keywords in that category
      */
+    @Override
     public Map<String, List<String>> getKeywords() {
         Map<String, List<String>> categoryKeywords = new LinkedHashMap<>();
 
-        queryHelper.executeQuery(SELECT_ALL_CATEGORIES_WITH_KEYWORDS, null, rs -> {
+        queryHelper.executeForEach(SELECT_ALL_CATEGORIES_WITH_KEYWORDS, null, rs -> {
             String categoryName = rs.getString("category_name");
             String keywordValue = rs.getString("keyword_value");
 
@@ -44,8 +72,6 @@ public class SqlBasedKeywordRepo {
             if (keywordValue != null && !keywordValue.trim().isEmpty()) {
                 categoryKeywords.get(categoryName).add(keywordValue);
             }
-
-            return null;
         });
 
         return categoryKeywords;
@@ -56,10 +82,9 @@ public class SqlBasedKeywordRepo {
      *
      * @return the number of categories
      */
+    @Override
     public int countCategories() {
-        return queryHelper.executeCountQuery(
-                "SELECT COUNT(*) FROM category LIMIT 1",
-                null);
+        return queryHelper.executeCountQuery(COUNT_CATEGORIES, null);
     }
 
     /**
@@ -67,11 +92,12 @@ public class SqlBasedKeywordRepo {
      *
      * @param keywords Map of category names to lists of keywords
      */
+    @Override
     public void insertCategoriesAndKeywords(Map<String, List<String>> keywords) {
         // Categories
         List<String> categoryNames = new ArrayList<>(keywords.keySet());
         if (!categoryNames.isEmpty()) {
-            queryHelper.executeBatch("INSERT OR IGNORE INTO category (name) VALUES (?)",
+            queryHelper.executeBatch(INSERT_CATEGORY,
                     categoryNames,
                     (stmt, category) -> stmt.setString(1, category));
         }
@@ -88,8 +114,7 @@ public class SqlBasedKeywordRepo {
         }
         if (!keywordEntries.isEmpty()) {
             queryHelper.executeBatch(
-                    "INSERT OR IGNORE INTO keyword (value, categoryId) " +
-                            "SELECT ?, id FROM category WHERE name = ?",
+                    INSERT_KEYWORD,
                     keywordEntries,
                     (stmt, keywordEntry) -> {
                         stmt.setString(1, keywordEntry.keyword);
@@ -103,6 +128,7 @@ public class SqlBasedKeywordRepo {
      *
      * @param trails List of trails to assign categories to
      */
+    @Override
     public void assignTrailCategories(List<Trail> trails) {
         if (trails.isEmpty())
             return;
@@ -115,8 +141,7 @@ public class SqlBasedKeywordRepo {
         }
 
         queryHelper.executeBatch(
-                "INSERT OR IGNORE INTO trailCategory (trailId, categoryId) " +
-                        "SELECT ?, id FROM category WHERE name = ?",
+                INSERT_TRAIL_CATEGORY,
                 entries,
                 (stmt, entry) -> {
                     stmt.setInt(1, entry.trailId);
@@ -130,17 +155,13 @@ public class SqlBasedKeywordRepo {
      * @param trailId the trail identifier
      * @return set of category names
      */
+    @Override
     public Set<String> getCategoriesForTrail(int trailId) {
         Set<String> categories = new HashSet<>();
-        queryHelper.executeQuery(
-                "SELECT c.name FROM category c " +
-                        "JOIN trailCategory tc ON c.id = tc.categoryId " +
-                        "WHERE tc.trailId = ?",
+        queryHelper.executeForEach(
+                SELECT_CATEGORIES_FOR_TRAIL,
                 stmt -> stmt.setInt(1, trailId),
-                rs -> {
-                    categories.add(rs.getString("name"));
-                    return null;
-                });
+                rs -> categories.add(rs.getString("name")));
         return categories;
     }
 
@@ -151,13 +172,11 @@ public class SqlBasedKeywordRepo {
      *
      * @return Map of trail ID to set of category names
      */
+    @Override
     public Map<Integer, Set<String>> getAllTrailCategories() {
         Map<Integer, Set<String>> trailCategories = new HashMap<>();
-        queryHelper.executeQuery(
-                "SELECT tc.trailId, c.name as category_name " +
-                        "FROM trailCategory tc " +
-                        "JOIN category c ON tc.categoryId = c.id " +
-                        "ORDER BY tc.trailId",
+        queryHelper.executeForEach(
+                SELECT_ALL_TRAIL_CATEGORIES,
                 null,
                 rs -> {
                     int trailId = rs.getInt("trailId");
@@ -165,7 +184,6 @@ public class SqlBasedKeywordRepo {
 
                     trailCategories.putIfAbsent(trailId, new HashSet<>());
                     trailCategories.get(trailId).add(categoryName);
-                    return null;
                 });
         return trailCategories;
     }
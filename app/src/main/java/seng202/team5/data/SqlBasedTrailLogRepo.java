@@ -1,19 +1,24 @@
 package seng202.team5.data;
 
 import seng202.team5.exceptions.MatchmakingFailedException;
+import seng202.team5.models.LoggedTrail;
 import seng202.team5.models.TrailLog;
 
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 /**
  * Class is responsible for holding and executing all SQL queries related to
  * 'Trail Logs'
  */
-public class SqlBasedTrailLogRepo {
+public class SqlBasedTrailLogRepo implements TrailLogRepo {
 
     private final QueryHelper queryHelper;
+    private final DataEventBus eventBus;
+    private volatile WriteBehindQueue writeBehindQueue;
 
     // SQL Constants
     private static final String SELECT_ALL = """
@@ -23,6 +28,8 @@ public class SqlBasedTrailLogRepo {
 
     private static final String SELECT_BY_ID = SELECT_ALL + " WHERE id = ?";
 
+    private static final String SELECT_BY_TRAIL_ID = SELECT_ALL + " WHERE trailId = ? LIMIT 1";
+
     private static final String UPSERT_SQL = """
             INSERT OR REPLACE INTO trailLog (
                 id, trailId, startDate, completionTime, timeUnit, completionType,
@@ -30,8 +37,21 @@ public class SqlBasedTrailLogRepo {
             ) VALUES (?,?,?,?,?,?,?,?,?)
             """;
 
+    // Log columns are prefixed as the trail table shares some of their names
+    private static final String SELECT_ALL_WITH_TRAIL = """
+            SELECT %s,
+                l.id AS log_id, l.trailId AS log_trailId, l.startDate AS log_startDate,
+                l.completionTime AS log_completionTime, l.timeUnit AS log_timeUnit,
+                l.completionType AS log_completionType, l.rating AS log_rating,
+                l.perceivedDifficulty AS log_perceivedDifficulty, l.notes AS log_notes
+            FROM trailLog l
+            JOIN trail t ON t.id = l.trailId
+            ORDER BY l.id
+            """.formatted(SqlBasedTrailRepo.trailColumns("t"));
+
     private static final String DELETE_SQL = "DELETE FROM trailLog WHERE id = ?";
     private static final String COUNT_SQL = "SELECT COUNT(*) FROM trailLog";
+    private static final String MAX_ID_SQL = "SELECT MAX(id) FROM trailLog";
 
     /**
      * Create a SQL-based trailLog repository, uses query helper class
@@ -39,7 +59,19 @@ public class SqlBasedTrailLogRepo {
      * @param databaseService provider of JDBC connection used by QueryHelper
      */
     public SqlBasedTrailLogRepo(DatabaseService databaseService) {
+        this(databaseService, DataEventBus.getInstance());
+    }
+
+    /**
+     * Create a SQL-based trailLog repository that publishes its changes to the
+     * given bus
+     *
+     * @param databaseService provider of JDBC connection used by QueryHelper
+     * @param eventBus        bus to publish trailLog changes on
+     */
+    public SqlBasedTrailLogRepo(DatabaseService databaseService, DataEventBus eventBus) {
         this.queryHelper = new QueryHelper(databaseService);
+        this.eventBus = eventBus;
     }
 
     /**
@@ -47,16 +79,43 @@ public class SqlBasedTrailLogRepo {
      *
      * @return a list of all rows in the trailLog table
      */
+    @Override
     public List<TrailLog> getAllTrailLogs() {
         return queryHelper.executeQuery(SELECT_ALL, null, this::mapRowToTrailLog);
     }
 
+    /**
+     * Streams all trailLogs from the database without loading them all into
+     * memory. The stream holds a database connection until closed, so use it in a
+     * try-with-resources block.
+     *
+     * @return a lazy stream over every row in the trailLog table
+     */
+    @Override
+    public Stream<TrailLog> streamAllTrailLogs() {
+        return queryHelper.executeStream(SELECT_ALL, null, this::mapRowToTrailLog);
+    }
+
+    /**
+     * Retrieves all trailLogs together with their trails in a single query. Logs
+     * whose trail no longer exists are left out.
+     *
+     * @return every trailLog with its trail, in log id order
+     */
+    @Override
+    public List<LoggedTrail> getAllTrailLogsWithTrails() {
+        return queryHelper.executeQuery(SELECT_ALL_WITH_TRAIL, null, rs -> new LoggedTrail(
+                mapRowToTrailLog(rs, "log_"),
+                SqlBasedTrailRepo.mapRowToTrail(rs)));
+    }
+
     /**
      * Finds a single trailLog by its primary key
      *
      * @param id id of the object
      * @return an Optional containing the trailLog if found; otherwise empty
      */
+    @Override
     public Optional<TrailLog> findById(int id) {
         return queryHelper.executeQuerySingle(
                 SELECT_BY_ID,
@@ -69,6 +128,7 @@ public class SqlBasedTrailLogRepo {
      *
      * @return number of trailLogs as an integer
      */
+    @Override
     public int countTrailLogs() {
         return queryHelper.executeCountQuery(COUNT_SQL, null);
     }
@@ -80,8 +140,46 @@ public class SqlBasedTrailLogRepo {
      *
      * @param trailLog trailLog that needs to be updated
      */
+    @Override
     public void upsert(TrailLog trailLog) {
+        // Inside a unit of work the upsert joins its transaction instead
+        if (writeBehindQueue != null && !queryHelper.isInTransaction()) {
+            WriteBehindQueue.await(upsertAsync(trailLog));
+            return;
+        }
         queryHelper.executeUpdate(UPSERT_SQL, stmt -> setTrailLogParameters(stmt, trailLog));
+        publishAfterCommit(new DataChangeEvent.TrailLogsUpserted(List.of(trailLog.getId())));
+    }
+
+    /**
+     * Upserts a trailLog on the shared database executor, or through the
+     * write-behind queue if one is set
+     *
+     * @param trailLog trailLog that needs to be updated
+     * @return a future completed once the trailLog is written
+     */
+    @Override
+    public CompletableFuture<Void> upsertAsync(TrailLog trailLog) {
+        WriteBehindQueue queue = writeBehindQueue;
+        if (queue == null) {
+            return DatabaseExecutor.runAsync(() -> upsert(trailLog));
+        }
+        // Copied as the log is mutable and is only written when the batch commits
+        TrailLog copy = copyOf(trailLog);
+        return queue.submit(UPSERT_SQL, stmt -> setTrailLogParameters(stmt, copy))
+                .thenRun(() -> eventBus.publish(new DataChangeEvent.TrailLogsUpserted(List.of(copy.getId()))));
+    }
+
+    /**
+     * Sets the write-behind queue single trailLog upserts go through, so they are
+     * committed in batches. Other writes wait for pending upserts first so they
+     * stay in order. Reads don't, so flush the queue before reading if it must
+     * include pending upserts.
+     *
+     * @param writeBehindQueue the queue, or null to write straight through
+     */
+    public void setWriteBehindQueue(WriteBehindQueue writeBehindQueue) {
+        this.writeBehindQueue = writeBehindQueue;
     }
 
     /**
@@ -90,11 +188,14 @@ public class SqlBasedTrailLogRepo {
      * @param trailLogs List of trailLogs to insert into the database
      * @throws MatchmakingFailedException if trailLogs is empty
      */
+    @Override
     public void upsertAll(List<TrailLog> trailLogs) throws MatchmakingFailedException {
         if (trailLogs.isEmpty())
             throw new MatchmakingFailedException("trailLogs is empty.");
 
+        flushPendingWrites();
         queryHelper.executeBatch(UPSERT_SQL, trailLogs, this::setTrailLogParameters);
+        publishAfterCommit(new DataChangeEvent.TrailLogsUpserted(trailLogs.stream().map(TrailLog::getId).toList()));
     }
 
     /**
@@ -102,8 +203,11 @@ public class SqlBasedTrailLogRepo {
      *
      * @param id the trailLog identifier to delete
      */
+    @Override
     public void deleteById(int id) {
+        flushPendingWrites();
         queryHelper.executeUpdate(DELETE_SQL, stmt -> stmt.setInt(1, id));
+        publishAfterCommit(new DataChangeEvent.TrailLogDeleted(id));
     }
 
     /**
@@ -111,9 +215,9 @@ public class SqlBasedTrailLogRepo {
      *
      * @return new trailLog id
      */
+    @Override
     public int getNewTrailLogId() {
-        String maxIdQuery = "SELECT MAX(id) FROM trailLog";
-        return queryHelper.executeQuerySingle(maxIdQuery, null, rs -> rs.getInt(1)).orElse(0) + 1;
+        return queryHelper.executeQuerySingle(MAX_ID_SQL, null, rs -> rs.getInt(1)).orElse(0) + 1;
     }
 
     /**
@@ -122,13 +226,47 @@ public class SqlBasedTrailLogRepo {
      * @param trailId the id of the trail
      * @return an Optional containing the trail log if found; otherwise empty
      */
+    @Override
     public Optional<TrailLog> findByTrailId(int trailId) {
         return queryHelper.executeQuerySingle(
-                "SELECT * FROM trailLog WHERE trailId = ? LIMIT 1",
+                SELECT_BY_TRAIL_ID,
                 stmt -> stmt.setInt(1, trailId),
                 this::mapRowToTrailLog);
     }
 
+    /**
+     * Publishes a change once it is committed, which is straight away unless the
+     * write was part of a unit of work
+     *
+     * @param event the change
+     */
+    private void publishAfterCommit(DataChangeEvent event) {
+        queryHelper.afterCommit(() -> eventBus.publish(event));
+    }
+
+    /**
+     * Waits for any upserts in the write-behind queue to be committed. Skipped in
+     * a unit of work, as the queue can't commit while it may hold the write lock.
+     */
+    private void flushPendingWrites() {
+        WriteBehindQueue queue = writeBehindQueue;
+        if (queue != null && !queryHelper.isInTransaction()) {
+            queue.flush();
+        }
+    }
+
+    /**
+     * Copies a trailLog
+     *
+     * @param trailLog the trailLog to copy
+     * @return a new trailLog with the same values
+     */
+    static TrailLog copyOf(TrailLog trailLog) {
+        return new TrailLog(trailLog.getId(), trailLog.getTrailId(), trailLog.getStartDate(),
+                trailLog.getCompletionTime(), trailLog.getTimeUnit(), trailLog.getCompletionType(),
+                trailLog.getRating(), trailLog.getPerceivedDifficulty(), trailLog.getNotes());
+    }
+
     /**
      * Maps the current result set row to a trailLog
      *
@@ -137,20 +275,33 @@ public class SqlBasedTrailLogRepo {
      * @throws SQLException if the column cannot be read
      */
     public TrailLog mapRowToTrailLog(ResultSet rs) throws SQLException {
-        String dateString = rs.getString("startDate");
+        return mapRowToTrailLog(rs, "");
+    }
+
+    /**
+     * Maps the trailLog columns of the current result set row, where each column
+     * name starts with the given prefix
+     *
+     * @param rs     result set positioned at a row containing a trailLog
+     * @param prefix prefix of the trailLog column names
+     * @return mapped trailLog
+     * @throws SQLException if the column cannot be read
+     */
+    private TrailLog mapRowToTrailLog(ResultSet rs, String prefix) throws SQLException {
+        String dateString = rs.getString(prefix + "startDate");
         LocalDate startDate = null;
         if (dateString != null)
             startDate = LocalDate.parse(dateString);
         return new TrailLog(
-                rs.getInt("id"),
-                rs.getInt("trailId"),
+                rs.getInt(prefix + "id"),
+                rs.getInt(prefix + "trailId"),
                 startDate,
-                (Integer) rs.getObject("completionTime"),
-                rs.getString("timeUnit"),
-                rs.getString("completionType"),
-                (Integer) rs.getObject("rating"),
-                rs.getString("perceivedDifficulty"),
-                rs.getString("notes"));
+                (Integer) rs.getObject(prefix + "completionTime"),
+                rs.getString(prefix + "timeUnit"),
+                rs.getString(prefix + "completionType"),
+                (Integer) rs.getObject(prefix + "rating"),
+                rs.getString(prefix + "perceivedDifficulty"),
+                rs.getString(prefix + "notes"));
     }
 
     /**
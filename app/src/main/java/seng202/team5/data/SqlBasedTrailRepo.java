@@ -2,50 +2,80 @@ package seng202.team5.data;
 
 import seng202.team5.exceptions.MatchmakingFailedException;
 import seng202.team5.models.Trail;
+import seng202.team5.models.TrailSearchResult;
+import seng202.team5.utils.GeoUtils;
+import seng202.team5.utils.StringManipulator;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Class is responsible for holding and executing all SQL queries related to
  * 'Trails'
  */
-public class SqlBasedTrailRepo {
+public class SqlBasedTrailRepo implements TrailRepo {
     private final QueryHelper queryHelper;
+    private final DataEventBus eventBus;
+    private volatile WriteBehindQueue writeBehindQueue;
+
+    // Trail fields stored as ids into a lookup table named after the column
+    private static final List<LookupColumn> LOOKUP_COLUMNS = List.of(
+            new LookupColumn("region", Trail::getRegion),
+            new LookupColumn("difficulty", Trail::getDifficulty),
+            new LookupColumn("completionType", Trail::getCompletionType),
+            new LookupColumn("timeUnit", Trail::getTimeUnit));
 
     // SQL Constants
-    private static final String SELECT_ALL = """
-            SELECT *
-            FROM trail
-            """;
+    private static final String SELECT_ALL = "SELECT " + trailColumns("trail") + " FROM trail";
 
     private static final String SELECT_BY_ID = SELECT_ALL + " WHERE id = ?";
 
-    private static final String INSERT_OR_IGNORE_SQL = """
-            INSERT OR IGNORE INTO trail (
-                id, name, translation, region, difficulty, description, completionInfo, minCompletionTimeMinutes,
-                maxCompletionTimeMinutes, completionType, timeUnit, isMultiDay, hasVariableTime,
-                thumbUrl, webUrl, cultureUrl, userWeight, lat, lon
-            ) VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)
+    // Ids are bound as one JSON array so the statement is the same for any number of ids
+    private static final String SELECT_BY_IDS = SELECT_ALL + " WHERE id IN (SELECT value FROM json_each(?))";
+
+    // Lookup values are bound by name and stored as their ids, which the names
+    // must already have; blank values have no id
+    private static final String TRAIL_VALUES = """
+            trail (
+                id, name, translation, regionId, difficultyId, description, completionInfo, minCompletionTimeMinutes,
+                maxCompletionTimeMinutes, completionTypeId, timeUnitId, isMultiDay, hasVariableTime,
+                thumbUrl, webUrl, cultureUrl, userWeight, lat, lon, foldedName
+            ) VALUES (
+                ?, ?, ?,
+                (SELECT id FROM regionLookup WHERE name = ?),
+                (SELECT id FROM difficultyLookup WHERE name = ?),
+                ?, ?, ?, ?,
+                (SELECT id FROM completionTypeLookup WHERE name = ?),
+                (SELECT id FROM timeUnitLookup WHERE name = ?),
+                ?, ?, ?, ?, ?, ?, ?, ?, ?
+            )
             """;
 
-    private static final String UPSERT_SQL = """
-            INSERT INTO trail (
-                id, name, translation, region, difficulty, description, completionInfo, minCompletionTimeMinutes,
-                maxCompletionTimeMinutes, completionType, timeUnit, isMultiDay, hasVariableTime,
-                thumbUrl, webUrl, cultureUrl, userWeight, lat, lon
-            ) VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)
+    private static final String INSERT_OR_IGNORE_SQL = "INSERT OR IGNORE INTO " + TRAIL_VALUES;
+
+    private static final String UPSERT_SQL = "INSERT INTO " + TRAIL_VALUES + """
             ON CONFLICT(id) DO UPDATE SET
                 name = excluded.name,
                 translation = excluded.translation,
-                region = excluded.region,
-                difficulty = excluded.difficulty,
+                regionId = excluded.regionId,
+                difficultyId = excluded.difficultyId,
                 description = excluded.description,
                 completionInfo = excluded.completionInfo,
                 minCompletionTimeMinutes = excluded.minCompletionTimeMinutes,
                 maxCompletionTimeMinutes = excluded.maxCompletionTimeMinutes,
-                completionType = excluded.completionType,
-                timeUnit = excluded.timeUnit,
+                completionTypeId = excluded.completionTypeId,
+                timeUnitId = excluded.timeUnitId,
                 isMultiDay = excluded.isMultiDay,
                 hasVariableTime = excluded.hasVariableTime,
                 thumbUrl = excluded.thumbUrl,
@@ -53,10 +83,72 @@ public class SqlBasedTrailRepo {
                 cultureUrl = excluded.cultureUrl,
                 userWeight = excluded.userWeight,
                 lat = excluded.lat,
-                lon = excluded.lon
+                lon = excluded.lon,
+                foldedName = excluded.foldedName
             """;
 
     private static final String COUNT_SQL = "SELECT COUNT(*) FROM trail";
+    private static final String MAX_ID_SQL = "SELECT MAX(id) FROM trail";
+
+    private static final String COUNT_PROCESSED_SQL = """
+            SELECT COUNT(*) FROM trail
+            WHERE id = ? AND completionTypeId IS NOT NULL
+              AND completionTypeId NOT IN (SELECT id FROM completionTypeLookup WHERE name = 'unknown')
+            """;
+
+    private static final String UPDATE_USER_WEIGHT_SQL = "UPDATE trail SET userWeight = ? WHERE id = ?";
+    private static final String CLEAR_USER_WEIGHTS_SQL = "UPDATE trail SET userWeight = NULL";
+
+    private static final String DELETE_SQL = "DELETE FROM trail WHERE id = ?";
+    private static final String DELETE_CATEGORIES_SQL = "DELETE FROM trailCategory WHERE trailId = ?";
+    private static final String DELETE_LOGS_SQL = "DELETE FROM trailLog WHERE trailId = ?";
+
+    // Compares the stored folded name, so names differing only by case or macrons
+    // count as the same. The name to check must be folded the same way.
+    private static final String EXISTS_BY_NAME_SQL = """
+            SELECT COUNT(*) FROM trail
+            WHERE foldedName = ? AND id IS NOT ?
+            """;
+
+    // Name matches count double a translation match and ten times a description match
+    private static final String TEXT_SEARCH_SQL = """
+            SELECT rowid AS trailId,
+                bm25(trailSearch, 10.0, 5.0, 1.0) AS rank,
+                highlight(trailSearch, 0, '[', ']') AS highlightedName,
+                snippet(trailSearch, 2, '[', ']', '...', 12) AS snippet
+            FROM trailSearch
+            WHERE trailSearch MATCH ?
+            ORDER BY rank
+            LIMIT ?
+            """;
+
+    // The R*Tree stores bounds as 32-bit floats rounded outwards, so its matches
+    // are rechecked against the exact coordinates
+    private static final String SELECT_IN_BOUNDS = SELECT_ALL + """
+             WHERE id IN (
+                SELECT id FROM trailLocation
+                WHERE maxLat >= ? AND minLat <= ? AND maxLon >= ? AND minLon <= ?)
+              AND lat BETWEEN ? AND ?
+              AND lon BETWEEN ? AND ?
+            """;
+
+    private static final String SELECT_WITHIN_RADIUS = """
+            SELECT *
+            FROM (
+                SELECT %s, distance_km(?, ?, lat, lon) AS distanceKm
+                FROM trail
+                WHERE id IN (
+                    SELECT id FROM trailLocation
+                    WHERE maxLat >= ? AND minLat <= ? AND maxLon >= ? AND minLon <= ?)
+            )
+            WHERE distanceKm <= ?
+            ORDER BY distanceKm, id
+            """.formatted(trailColumns("trail"));
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    // Must match the expression index in the schema for time sorts to use it
+    private static final String AVG_TIME_EXPR = "((COALESCE(minCompletionTimeMinutes, 0) + COALESCE(maxCompletionTimeMinutes, 0)) / 2)";
 
     /**
      * Creates a SQL-based trail repository, uses query helper class
@@ -64,7 +156,19 @@ public class SqlBasedTrailRepo {
      * @param databaseService provider of JDBC connection used by QueryHelper
      */
     public SqlBasedTrailRepo(DatabaseService databaseService) {
+        this(databaseService, DataEventBus.getInstance());
+    }
+
+    /**
+     * Creates a SQL-based trail repository that publishes its changes to the
+     * given bus
+     *
+     * @param databaseService provider of JDBC connection used by QueryHelper
+     * @param eventBus        bus to publish trail changes on
+     */
+    public SqlBasedTrailRepo(DatabaseService databaseService, DataEventBus eventBus) {
         this.queryHelper = new QueryHelper(databaseService);
+        this.eventBus = eventBus;
     }
 
     /**
@@ -72,8 +176,21 @@ public class SqlBasedTrailRepo {
      *
      * @return a list of all rows in the trail table
      */
+    @Override
     public List<Trail> getAllTrails() {
-        return queryHelper.executeQuery(SELECT_ALL, null, this::mapRowToTrail);
+        return queryHelper.executeQuery(SELECT_ALL, null, SqlBasedTrailRepo::mapRowToTrail);
+    }
+
+    /**
+     * Streams all trails from the database without loading them all into memory.
+     * The stream holds a database connection until closed, so use it in a
+     * try-with-resources block.
+     *
+     * @return a lazy stream over every row in the trail table
+     */
+    @Override
+    public Stream<Trail> streamAllTrails() {
+        return queryHelper.executeStream(SELECT_ALL, null, SqlBasedTrailRepo::mapRowToTrail);
     }
 
     /**
@@ -82,9 +199,9 @@ public class SqlBasedTrailRepo {
      * @param trail the trail to be checked
      * @return boolean indicating if trail has been processed
      */
+    @Override
     public boolean isTrailProcessed(Trail trail) {
-        String sql = "SELECT COUNT(*) FROM trail WHERE id = ? AND completionType IS NOT NULL AND completionType != 'unknown'";
-        int count = queryHelper.executeCountQuery(sql, stmt -> stmt.setInt(1, trail.getId()));
+        int count = queryHelper.executeCountQuery(COUNT_PROCESSED_SQL, stmt -> stmt.setInt(1, trail.getId()));
         return count > 0;
     }
 
@@ -94,11 +211,32 @@ public class SqlBasedTrailRepo {
      * @param id id of the object
      * @return an Optional containing the trail if found; otherwise empty
      */
+    @Override
     public Optional<Trail> findById(int id) {
         return queryHelper.executeQuerySingle(
                 SELECT_BY_ID,
                 stmt -> stmt.setInt(1, id),
-                this::mapRowToTrail);
+                SqlBasedTrailRepo::mapRowToTrail);
+    }
+
+    /**
+     * Finds every trail with one of the given ids in a single query
+     *
+     * @param ids ids of the trails to find
+     * @return the trails found, in table order; ids with no trail are skipped
+     */
+    @Override
+    public List<Trail> findAllByIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        String idArray = ids.stream()
+                .distinct()
+                .map(String::valueOf)
+                .collect(Collectors.joining(",", "[", "]"));
+        return queryHelper.executeQuery(SELECT_BY_IDS, stmt -> stmt.setString(1, idArray),
+                SqlBasedTrailRepo::mapRowToTrail);
     }
 
     /**
@@ -107,8 +245,16 @@ public class SqlBasedTrailRepo {
      *
      * @param trail trail that needs to be inserted if not exists
      */
+    @Override
     public void insertOrIgnore(Trail trail) {
-        queryHelper.executeUpdate(INSERT_OR_IGNORE_SQL, stmt -> setTrailParameters(stmt, trail));
+        flushPendingWrites();
+        int inserted = queryHelper.supplyInTransaction(() -> {
+            queryHelper.executeTransaction(lookupInserts(List.of(trail)));
+            return queryHelper.executeUpdate(INSERT_OR_IGNORE_SQL, stmt -> setTrailParameters(stmt, trail));
+        });
+        if (inserted > 0) {
+            publishAfterCommit(new DataChangeEvent.TrailsUpserted(List.of(trail.getId())));
+        }
     }
 
     /**
@@ -118,8 +264,48 @@ public class SqlBasedTrailRepo {
      *
      * @param trail trail that needs to be upserted
      */
+    @Override
     public void upsert(Trail trail) {
-        queryHelper.executeUpdate(UPSERT_SQL, stmt -> setTrailParameters(stmt, trail));
+        // Inside a unit of work the upsert joins its transaction instead
+        if (writeBehindQueue != null && !queryHelper.isInTransaction()) {
+            WriteBehindQueue.await(upsertAsync(trail));
+            return;
+        }
+        writeTrails(UPSERT_SQL, List.of(trail));
+        publishAfterCommit(new DataChangeEvent.TrailsUpserted(List.of(trail.getId())));
+    }
+
+    /**
+     * Upserts a trail on the shared database executor, or through the
+     * write-behind queue if one is set
+     *
+     * @param trail trail that needs to be upserted
+     * @return a future completed once the trail is written
+     */
+    @Override
+    public CompletableFuture<Void> upsertAsync(Trail trail) {
+        WriteBehindQueue queue = writeBehindQueue;
+        if (queue == null) {
+            return DatabaseExecutor.runAsync(() -> upsert(trail));
+        }
+        // Queued first, so the names have ids by the time the upsert runs
+        for (QueryHelper.SqlStatement lookupInsert : lookupInserts(List.of(trail))) {
+            queue.submit(lookupInsert.sql(), lookupInsert.paramSetter());
+        }
+        return queue.submit(UPSERT_SQL, stmt -> setTrailParameters(stmt, trail))
+                .thenRun(() -> publish(new DataChangeEvent.TrailsUpserted(List.of(trail.getId()))));
+    }
+
+    /**
+     * Sets the write-behind queue single trail upserts go through, so they are
+     * committed in batches. Other writes wait for pending upserts first so they
+     * stay in order. Reads don't, so flush the queue before reading if it must
+     * include pending upserts.
+     *
+     * @param writeBehindQueue the queue, or null to write straight through
+     */
+    public void setWriteBehindQueue(WriteBehindQueue writeBehindQueue) {
+        this.writeBehindQueue = writeBehindQueue;
     }
 
     /**
@@ -128,11 +314,14 @@ public class SqlBasedTrailRepo {
      *
      * @param trails List of trails to insert if not exists
      */
+    @Override
     public void insertOrIgnoreAll(List<Trail> trails) throws MatchmakingFailedException {
         if (trails.isEmpty())
             throw new MatchmakingFailedException("Trails is empty.");
 
-        queryHelper.executeBatch(INSERT_OR_IGNORE_SQL, trails, this::setTrailParameters);
+        flushPendingWrites();
+        writeTrails(INSERT_OR_IGNORE_SQL, trails);
+        publishAfterCommit(new DataChangeEvent.TrailsUpserted(trailIds(trails)));
     }
 
     /**
@@ -143,11 +332,14 @@ public class SqlBasedTrailRepo {
      * @param trails List of trails to upsert
      * @throws MatchmakingFailedException if there are no trails in the list
      */
+    @Override
     public void upsertAll(List<Trail> trails) throws MatchmakingFailedException {
         if (trails.isEmpty())
             throw new MatchmakingFailedException("Trails is empty.");
 
-        queryHelper.executeBatch(UPSERT_SQL, trails, this::setTrailParameters);
+        flushPendingWrites();
+        writeTrails(UPSERT_SQL, trails);
+        publishAfterCommit(new DataChangeEvent.TrailsUpserted(trailIds(trails)));
     }
 
     /**
@@ -155,15 +347,21 @@ public class SqlBasedTrailRepo {
      *
      * @param trails List of trails to update user weights for
      */
+    @Override
     public void updateUserWeights(List<Trail> trails) {
         if (trails.isEmpty())
             return;
 
-        String sql = "UPDATE trail SET userWeight = ? WHERE id = ?";
-        queryHelper.executeBatch(sql, trails, (stmt, trail) -> {
+        flushPendingWrites();
+        queryHelper.executeBatch(UPDATE_USER_WEIGHT_SQL, trails, (stmt, trail) -> {
             stmt.setDouble(1, trail.getUserWeight());
             stmt.setInt(2, trail.getId());
         });
+        Map<Integer, Double> weights = new LinkedHashMap<>();
+        for (Trail trail : trails) {
+            weights.put(trail.getId(), trail.getUserWeight());
+        }
+        publishAfterCommit(new DataChangeEvent.TrailWeightsUpdated(weights));
     }
 
     /**
@@ -171,20 +369,26 @@ public class SqlBasedTrailRepo {
      *
      * @param id the trail identifier to delete
      */
+    @Override
     public void deleteById(int id) {
         List<QueryHelper.SqlStatement> statements = List.of(
-                new QueryHelper.SqlStatement("DELETE FROM trailCategory WHERE trailId = ?", stmt -> stmt.setInt(1, id)),
-                new QueryHelper.SqlStatement("DELETE FROM trailLog WHERE trailId = ?", stmt -> stmt.setInt(1, id)),
-                new QueryHelper.SqlStatement("DELETE FROM trail WHERE id = ?", stmt -> stmt.setInt(1, id)));
+                new QueryHelper.SqlStatement(DELETE_CATEGORIES_SQL, stmt -> stmt.setInt(1, id)),
+                new QueryHelper.SqlStatement(DELETE_LOGS_SQL, stmt -> stmt.setInt(1, id)),
+                new QueryHelper.SqlStatement(DELETE_SQL, stmt -> stmt.setInt(1, id)));
 
+        flushPendingWrites();
         queryHelper.executeTransaction(statements);
+        publishAfterCommit(new DataChangeEvent.TrailDeleted(id));
     }
 
     /**
      * Clears all user weight values from database
      */
+    @Override
     public void clearUserWeights() {
-        queryHelper.executeUpdate("UPDATE trail SET userWeight = NULL", null);
+        flushPendingWrites();
+        queryHelper.executeUpdate(CLEAR_USER_WEIGHTS_SQL, null);
+        publishAfterCommit(new DataChangeEvent.TrailWeightsCleared());
     }
 
     /**
@@ -192,18 +396,444 @@ public class SqlBasedTrailRepo {
      *
      * @return number of trails as an integer
      */
+    @Override
     public int countTrails() {
         return queryHelper.executeCountQuery(COUNT_SQL, null);
     }
 
     /**
-     * Maps the current result set row to a trail
+     * Finds the page of trails matching a search, sorted as requested. Filtering,
+     * sorting and paging all happen in SQL so only the requested rows are read.
+     *
+     * @param query the search to run
+     * @return the matching trails for the requested page
+     */
+    @Override
+    public List<Trail> searchTrails(TrailQuery query) {
+        StringBuilder sql = new StringBuilder(SELECT_ALL);
+        List<Object> params = new ArrayList<>();
+        appendWhere(sql, params, query);
+        appendOrderBy(sql, params, query);
+
+        if (query.getLimit() >= 0 || query.getOffset() > 0) {
+            sql.append(" LIMIT ? OFFSET ?");
+            params.add(query.getLimit());
+            params.add(query.getOffset());
+        }
+
+        return queryHelper.executeQuery(sql.toString(), stmt -> bindParameters(stmt, params), SqlBasedTrailRepo::mapRowToTrail);
+    }
+
+    /**
+     * Counts the trails matching a search, ignoring its paging
+     *
+     * @param query the search to count
+     * @return number of matching trails
+     */
+    @Override
+    public int countTrails(TrailQuery query) {
+        StringBuilder sql = new StringBuilder(COUNT_SQL);
+        List<Object> params = new ArrayList<>();
+        appendWhere(sql, params, query);
+
+        return queryHelper.executeCountQuery(sql.toString(), stmt -> bindParameters(stmt, params));
+    }
+
+    /**
+     * Counts the trails matching a search for each value of a field, grouping on
+     * the field's lookup id so the trail table is only read once
+     *
+     * @param query the search, whose paging is ignored
+     * @param facet the field to count by
+     * @return count per lower case value; trails with no value are counted under
+     *         the empty string
+     */
+    @Override
+    public Map<String, Integer> countTrailsByFacet(TrailQuery query, TrailQuery.Facet facet) {
+        String column = facet.getColumn();
+        StringBuilder sql = new StringBuilder("SELECT (SELECT name FROM " + column + "Lookup WHERE id = " + column
+                + "Id) AS value, COUNT(*) AS trails FROM trail");
+        List<Object> params = new ArrayList<>();
+        appendWhere(sql, params, query.withoutFilter(facet));
+        sql.append(" GROUP BY ").append(column).append("Id");
+
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        queryHelper.executeForEach(sql.toString(), stmt -> bindParameters(stmt, params), rs -> {
+            String value = rs.getString("value");
+            counts.merge(value == null ? "" : value.toLowerCase(Locale.ROOT), rs.getInt("trails"), Integer::sum);
+        });
+        return counts;
+    }
+
+    /**
+     * Searches trail names, translations and descriptions through the full-text
+     * index, best matches first. Each word in the text matches as a prefix,
+     * ignoring case and macrons, and every word must match.
+     *
+     * @param text  the text to search for
+     * @param limit maximum number of results
+     * @return matching trails ordered by bm25 rank, with highlighted names and
+     *         description snippets
+     */
+    @Override
+    public List<TrailSearchResult> searchTrailText(String text, int limit) {
+        String expression = toMatchExpression(text);
+        if (expression == null || limit <= 0) {
+            return List.of();
+        }
+
+        return queryHelper.executeQuery(TEXT_SEARCH_SQL, stmt -> {
+            stmt.setString(1, expression);
+            stmt.setInt(2, limit);
+        }, rs -> new TrailSearchResult(
+                rs.getInt("trailId"),
+                rs.getDouble("rank"),
+                rs.getString("highlightedName"),
+                rs.getString("snippet")));
+    }
+
+    /**
+     * Finds every trail whose coordinates are inside a box, such as the visible
+     * part of a map, using the spatial index so only trails in the box are read
+     *
+     * @param minLat southern edge in decimal degrees
+     * @param maxLat northern edge in decimal degrees
+     * @param minLon western edge in decimal degrees
+     * @param maxLon eastern edge in decimal degrees
+     * @return the trails in the box, in table order
+     */
+    @Override
+    public List<Trail> findTrailsInBounds(double minLat, double maxLat, double minLon, double maxLon) {
+        return queryHelper.executeQuery(SELECT_IN_BOUNDS, stmt -> {
+            stmt.setDouble(1, minLat);
+            stmt.setDouble(2, maxLat);
+            stmt.setDouble(3, minLon);
+            stmt.setDouble(4, maxLon);
+            stmt.setDouble(5, minLat);
+            stmt.setDouble(6, maxLat);
+            stmt.setDouble(7, minLon);
+            stmt.setDouble(8, maxLon);
+        }, SqlBasedTrailRepo::mapRowToTrail);
+    }
+
+    /**
+     * Finds every trail within a distance of a point. Candidates are found with
+     * the spatial index from the circle's bounding box, then checked against the
+     * exact great-circle distance in SQL.
+     *
+     * @param lat      latitude of the centre in decimal degrees
+     * @param lon      longitude of the centre in decimal degrees
+     * @param radiusKm the distance in kilometres
+     * @return the trails within the distance, nearest first
+     */
+    @Override
+    public List<Trail> findTrailsWithinRadius(double lat, double lon, double radiusKm) {
+        if (radiusKm < 0) {
+            return List.of();
+        }
+
+        double latSpan = GeoUtils.latitudeSpanDegrees(radiusKm);
+        double lonSpan = GeoUtils.longitudeSpanDegrees(lat, radiusKm);
+        // A circle wrapping past the antimeridian is only bound by latitude
+        boolean wraps = lon - lonSpan < -180 || lon + lonSpan > 180;
+        double minLon = wraps ? -180 : lon - lonSpan;
+        double maxLon = wraps ? 180 : lon + lonSpan;
+
+        return queryHelper.executeQuery(SELECT_WITHIN_RADIUS, stmt -> {
+            stmt.setDouble(1, lat);
+            stmt.setDouble(2, lon);
+            stmt.setDouble(3, lat - latSpan);
+            stmt.setDouble(4, lat + latSpan);
+            stmt.setDouble(5, minLon);
+            stmt.setDouble(6, maxLon);
+            stmt.setDouble(7, radiusKm);
+        }, SqlBasedTrailRepo::mapRowToTrail);
+    }
+
+    /**
+     * Turns user typed text into an FTS5 match expression. Each word is quoted so
+     * FTS5 operators and punctuation in the text are never interpreted.
+     *
+     * @param text the text to search for
+     * @return the match expression, or null if the text has no words
+     */
+    static String toMatchExpression(String text) {
+        if (text == null) {
+            return null;
+        }
+
+        List<String> terms = new ArrayList<>();
+        for (String word : NON_WORD.split(text)) {
+            if (!word.isEmpty()) {
+                terms.add("\"" + word + "\"*");
+            }
+        }
+        return terms.isEmpty() ? null : String.join(" ", terms);
+    }
+
+    /**
+     * Appends the WHERE clause for a search
+     *
+     * @param sql    the SQL being built
+     * @param params collects the bind parameters in order
+     * @param query  the search
+     */
+    private void appendWhere(StringBuilder sql, List<Object> params, TrailQuery query) {
+        List<String> conditions = new ArrayList<>();
+
+        String nameContains = query.getNameContains();
+        if (nameContains != null && !nameContains.isEmpty()) {
+            conditions.add("name LIKE ? ESCAPE '\\'");
+            params.add("%" + escapeLike(nameContains) + "%");
+        }
+
+        String textMatch = query.getTextMatch();
+        if (textMatch != null && !textMatch.isBlank()) {
+            String expression = toMatchExpression(textMatch);
+            if (expression == null) {
+                conditions.add("0"); // Only punctuation, nothing can match
+            } else {
+                conditions.add("id IN (SELECT rowid FROM trailSearch WHERE trailSearch MATCH ?)");
+                params.add(expression);
+            }
+        }
+
+        addLookupCondition(conditions, params, "completionType", query.getCompletionTypes());
+        addLookupCondition(conditions, params, "timeUnit", query.getTimeUnits());
+        addLookupCondition(conditions, params, "difficulty", query.getDifficulties());
+
+        Set<String> regions = query.getRegions();
+        if (regions != null) {
+            List<String> regionConditions = new ArrayList<>();
+            if (!regions.isEmpty()) {
+                regionConditions.add(lookupInCondition("region", regions.size()));
+                params.addAll(regions);
+            }
+            if (query.isIncludeUnknownRegion()) {
+                regionConditions.add("regionId IS NULL"); // Blank regions have no lookup id
+            }
+            conditions.add(regionConditions.isEmpty() ? "0" : "(" + String.join(" OR ", regionConditions) + ")");
+        }
+
+        // Trails with no value for the sort field are left out of that sort
+        switch (query.getSortKey()) {
+            case TIME -> conditions.add(AVG_TIME_EXPR + " > 0");
+            case DIFFICULTY -> conditions.add("difficultyId IS NOT NULL"
+                    + " AND difficultyId NOT IN (SELECT id FROM difficultyLookup WHERE name = 'unknown')");
+            default -> {
+            }
+        }
+
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+    }
+
+    /**
+     * Adds a case-insensitive match on a dictionary-encoded column, if the values
+     * restrict it
+     *
+     * @param conditions collects the conditions
+     * @param params     collects the bind parameters in order
+     * @param column     the text column, which has a lookup table named after it
+     * @param values     allowed values, null for any, empty for none
+     */
+    private void addLookupCondition(List<String> conditions, List<Object> params, String column, Set<String> values) {
+        if (values == null) {
+            return;
+        }
+        if (values.isEmpty()) {
+            conditions.add("0");
+            return;
+        }
+        conditions.add(lookupInCondition(column, values.size()));
+        params.addAll(values);
+    }
+
+    /**
+     * Builds a condition matching trails whose lookup id is one of the ids for
+     * some names. The names are matched case-insensitively in the small lookup
+     * table, so the trail table is only compared on its indexed integer ids.
+     *
+     * @param column    the text column, which has a lookup table named after it
+     * @param nameCount number of name parameters to bind
+     * @return the condition
+     */
+    private static String lookupInCondition(String column, int nameCount) {
+        return column + "Id IN (SELECT id FROM " + column + "Lookup WHERE name IN (" + placeholders(nameCount) + "))";
+    }
+
+    /**
+     * Appends the ORDER BY clause for a search. Ties always fall back to id order
+     * so pages are stable.
+     *
+     * @param sql    the SQL being built
+     * @param params collects the bind parameters in order
+     * @param query  the search
+     */
+    private void appendOrderBy(StringBuilder sql, List<Object> params, TrailQuery query) {
+        String direction = query.isAscending() ? "ASC" : "DESC";
+        sql.append(" ORDER BY ");
+
+        switch (query.getSortKey()) {
+            case TIME -> sql.append(AVG_TIME_EXPR).append(' ').append(direction);
+            case DIFFICULTY -> {
+                List<String> order = query.getDifficultyOrder();
+                if (order.isEmpty()) {
+                    sql.append("999");
+                } else {
+                    sql.append("CASE (SELECT lower(name) FROM difficultyLookup WHERE id = difficultyId)");
+                    for (int i = 0; i < order.size(); i++) {
+                        sql.append(" WHEN ? THEN ").append(i);
+                        params.add(order.get(i));
+                    }
+                    sql.append(" ELSE 999 END");
+                }
+                sql.append(' ').append(direction);
+            }
+            // Best match first when ascending
+            case MATCH -> sql.append("COALESCE(userWeight, 0) ").append(query.isAscending() ? "DESC" : "ASC");
+            default -> sql.append("name COLLATE NOCASE ").append(direction);
+        }
+
+        sql.append(", id ASC");
+    }
+
+    /**
+     * Builds a comma separated list of bind placeholders
+     *
+     * @param count number of placeholders
+     * @return the placeholders
+     */
+    private static String placeholders(int count) {
+        return String.join(",", java.util.Collections.nCopies(count, "?"));
+    }
+
+    /**
+     * Escapes the LIKE wildcards in user supplied text
+     *
+     * @param text the text to match literally
+     * @return the escaped text
+     */
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * Binds a list of parameters to a statement in order
+     *
+     * @param stmt   prepared statement to bind
+     * @param params the values to bind
+     * @throws java.sql.SQLException if a parameter cannot be set
+     */
+    private static void bindParameters(java.sql.PreparedStatement stmt, List<Object> params)
+            throws java.sql.SQLException {
+        for (int i = 0; i < params.size(); i++) {
+            stmt.setObject(i + 1, params.get(i));
+        }
+    }
+
+    /**
+     * Writes trails in one transaction, first adding any lookup names they use
+     * that aren't stored yet
+     *
+     * @param sql    the insert or upsert for each trail
+     * @param trails the trails
+     */
+    private void writeTrails(String sql, List<Trail> trails) {
+        queryHelper.runInTransaction(() -> {
+            queryHelper.executeTransaction(lookupInserts(trails));
+            queryHelper.executeBatch(sql, trails, this::setTrailParameters);
+        });
+    }
+
+    /**
+     * Builds the statements adding each distinct lookup name used by some
+     * trails, which are ignored for names that are already stored. Names are
+     * matched ignoring case, so a name keeps the case it was first stored in.
+     *
+     * @param trails the trails
+     * @return the inserts
+     */
+    private static List<QueryHelper.SqlStatement> lookupInserts(List<Trail> trails) {
+        List<QueryHelper.SqlStatement> inserts = new ArrayList<>();
+        for (LookupColumn column : LOOKUP_COLUMNS) {
+            String sql = "INSERT OR IGNORE INTO " + column.name() + "Lookup (name) VALUES (?)";
+            trails.stream()
+                    .map(column.value())
+                    .filter(value -> value != null && !value.isBlank())
+                    .distinct()
+                    .forEach(value -> inserts.add(new QueryHelper.SqlStatement(sql, stmt -> stmt.setString(1, value))));
+        }
+        return inserts;
+    }
+
+    /**
+     * Builds the select list for a trail row, mapping each lookup id back to its
+     * name under the field's column name, or an empty string if it has none
+     *
+     * @param table the trail table or its alias in the query
+     * @return the select list
+     */
+    static String trailColumns(String table) {
+        StringBuilder columns = new StringBuilder(table).append(".*");
+        for (LookupColumn column : LOOKUP_COLUMNS) {
+            columns.append(", COALESCE((SELECT name FROM ").append(column.name()).append("Lookup WHERE id = ")
+                    .append(table).append('.').append(column.name()).append("Id), '') AS ").append(column.name());
+        }
+        return columns.toString();
+    }
+
+    /**
+     * Waits for any upserts in the write-behind queue to be committed. Skipped in
+     * a unit of work, as the queue can't commit while it may hold the write lock.
+     */
+    private void flushPendingWrites() {
+        WriteBehindQueue queue = writeBehindQueue;
+        if (queue != null && !queryHelper.isInTransaction()) {
+            queue.flush();
+        }
+    }
+
+    /**
+     * Publishes a change once it is committed, which is straight away unless the
+     * write was part of a unit of work
+     *
+     * @param event the change
+     */
+    private void publishAfterCommit(DataChangeEvent event) {
+        queryHelper.afterCommit(() -> publish(event));
+    }
+
+    /**
+     * Publishes a committed change to the trail table
+     *
+     * @param event the change
+     */
+    protected void publish(DataChangeEvent event) {
+        eventBus.publish(event);
+    }
+
+    /**
+     * Gets the ids of a list of trails
+     *
+     * @param trails the trails
+     * @return their ids in order
+     */
+    private static List<Integer> trailIds(List<Trail> trails) {
+        return trails.stream().map(Trail::getId).toList();
+    }
+
+    /**
+     * Maps the current result set row to a trail, selected with
+     * {@link #trailColumns}. Also used by other repos to map the trail columns of
+     * a join.
      *
      * @param rs result set positioned at a row from trail
      * @return mapped Trail
      * @throws java.sql.SQLException if the column cannot be read
      */
-    private Trail mapRowToTrail(java.sql.ResultSet rs) throws java.sql.SQLException {
+    static Trail mapRowToTrail(java.sql.ResultSet rs) throws java.sql.SQLException {
         return new Trail.Builder()
                 .id(rs.getInt("id"))
                 .name(rs.getString("name"))
@@ -265,28 +895,34 @@ public class SqlBasedTrailRepo {
         stmt.setDouble(17, trail.getUserWeight());
         stmt.setDouble(18, trail.getLat());
         stmt.setDouble(19, trail.getLon());
+        stmt.setString(20, foldName(trail.getName()));
     }
 
     /**
-     * Checks if a trail name already exists in the database (case and whitespace
-     * insensitive)
+     * Folds a trail name the way it is stored for comparing names, ignoring
+     * case, macrons and surrounding whitespace
+     *
+     * @param name the trail name
+     * @return the folded name, or null if there is no name
+     */
+    private static String foldName(String name) {
+        return name == null ? null : StringManipulator.fold(name.trim());
+    }
+
+    /**
+     * Checks if a trail name already exists in the database (case, macron and
+     * whitespace insensitive)
      *
      * @param name      the trail name to check
      * @param excludeId optional trail ID to exclude from the check (for editing
      *                  existing trails)
      * @return true if the name exists, false otherwise
      */
+    @Override
     public boolean existsByName(String name, Integer excludeId) {
-        String sql = "SELECT COUNT(*) FROM trail WHERE TRIM(LOWER(name)) = TRIM(LOWER(?))";
-        if (excludeId != null) {
-            sql += " AND id != ?";
-        }
-
-        int count = queryHelper.executeCountQuery(sql, stmt -> {
-            stmt.setString(1, name);
-            if (excludeId != null) {
-                stmt.setInt(2, excludeId);
-            }
+        int count = queryHelper.executeCountQuery(EXISTS_BY_NAME_SQL, stmt -> {
+            stmt.setString(1, foldName(name));
+            stmt.setObject(2, excludeId); // id IS NOT NULL excludes nothing
         });
 
         return count > 0;
@@ -297,8 +933,17 @@ public class SqlBasedTrailRepo {
      *
      * @return new trail id
      */
+    @Override
     public int getNewTrailId() {
-        String getIdQuery = "SELECT MAX(id) FROM trail";
-        return queryHelper.executeQuerySingle(getIdQuery, null, this::mapMaxId).get() + 1;
+        return queryHelper.executeQuerySingle(MAX_ID_SQL, null, this::mapMaxId).get() + 1;
+    }
+
+    /**
+     * A trail field stored as an id into a lookup table.
+     *
+     * @param name  the field's column name, which its lookup table is named after
+     * @param value gets the field from a trail
+     */
+    private record LookupColumn(String name, Function<Trail, String> value) {
     }
 }
@@ -0,0 +1,199 @@
+package seng202.team5.data;
+
+import seng202.team5.models.User;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Class is responsible for holding and executing all SQL queries related to
+ * the 'User'
+ */
+public class SqlBasedUserRepo implements UserRepo {
+    private final QueryHelper queryHelper;
+    private final DataEventBus eventBus;
+
+    // SQL Constants
+    private static final String SELECT_USER = "SELECT * FROM user LIMIT 1";
+    private static final String DELETE_ALL_SQL = "DELETE FROM user";
+    private static final String DELETE_INCOMPLETE_SQL = "DELETE FROM user WHERE isProfileComplete = 0";
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO user (
+                id, name, regions, isFamilyFriendly, isAccessible,
+                experienceLevel, gradientPreference, bushPreference,
+                reservePreference, lakeRiverPreference, coastPreference,
+                mountainPreference, wildlifePreference, historicPreference,
+                waterfallPreference, isProfileComplete, profilePicture
+            ) VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)
+            ON CONFLICT(id) DO UPDATE SET
+                name=excluded.name,
+                regions=excluded.regions,
+                isFamilyFriendly=excluded.isFamilyFriendly,
+                isAccessible=excluded.isAccessible,
+                experienceLevel=excluded.experienceLevel,
+                gradientPreference=excluded.gradientPreference,
+                bushPreference=excluded.bushPreference,
+                reservePreference=excluded.reservePreference,
+                lakeRiverPreference=excluded.lakeRiverPreference,
+                coastPreference=excluded.coastPreference,
+                mountainPreference=excluded.mountainPreference,
+                wildlifePreference=excluded.wildlifePreference,
+                historicPreference=excluded.historicPreference,
+                waterfallPreference=excluded.waterfallPreference,
+                isProfileComplete=excluded.isProfileComplete,
+                profilePicture=excluded.profilePicture
+            """;
+
+    /**
+     * Creates a SQL-based user repository, uses query helper class
+     *
+     * @param databaseService provider of JDBC connection used by QueryHelper
+     */
+    public SqlBasedUserRepo(DatabaseService databaseService) {
+        this(databaseService, DataEventBus.getInstance());
+    }
+
+    /**
+     * Creates a SQL-based user repository that publishes its changes to the given
+     * bus
+     *
+     * @param databaseService provider of JDBC connection used by QueryHelper
+     * @param eventBus        bus to publish user changes on
+     */
+    public SqlBasedUserRepo(DatabaseService databaseService, DataEventBus eventBus) {
+        this.queryHelper = new QueryHelper(databaseService);
+        this.eventBus = eventBus;
+    }
+
+    /**
+     * Finds the user in the database
+     *
+     * @return an Optional containing the user if there is one; otherwise empty
+     */
+    @Override
+    public Optional<User> findUser() {
+        List<User> users = queryHelper.executeQuery(SELECT_USER, null, this::mapRowToUser);
+        return users.isEmpty() ? Optional.empty() : Optional.ofNullable(users.getFirst());
+    }
+
+    /**
+     * Inserts or updates the user (UPSERT)
+     *
+     * @param user the user to save
+     */
+    @Override
+    public void upsert(User user) {
+        queryHelper.executeUpdate(UPSERT_SQL, stmt -> setUserParameters(stmt, user));
+        publishAfterCommit();
+    }
+
+    /**
+     * Deletes every row in the user table
+     */
+    @Override
+    public void deleteAll() {
+        queryHelper.executeUpdate(DELETE_ALL_SQL, null);
+        publishAfterCommit();
+    }
+
+    /**
+     * Deletes users whose profile isn't complete
+     *
+     * @return number of users deleted
+     */
+    @Override
+    public int deleteIncomplete() {
+        int removed = queryHelper.executeUpdate(DELETE_INCOMPLETE_SQL, null);
+        if (removed > 0) {
+            publishAfterCommit();
+        }
+        return removed;
+    }
+
+    /**
+     * Runs work in one database transaction, which writes from any repository on
+     * the same database join
+     *
+     * @param work the work
+     * @param <E>  the checked exception the work can throw
+     * @throws E if the work fails, in which case everything it wrote is rolled
+     *           back
+     */
+    @Override
+    public <E extends Exception> void runInTransaction(QueryHelper.TransactionAction<E> work) throws E {
+        queryHelper.runInTransaction(work);
+    }
+
+    /**
+     * Publishes that the user changed once it is committed
+     */
+    private void publishAfterCommit() {
+        queryHelper.afterCommit(() -> eventBus.publish(new DataChangeEvent.UserChanged()));
+    }
+
+    /**
+     * Maps a database row to a User object.
+     *
+     * @param row the database row
+     * @return the User object
+     */
+    private User mapRowToUser(ResultSet row) {
+        try {
+            String regionsString = row.getString("regions");
+            List<String> regions = (regionsString != null && !regionsString.isEmpty())
+                    ? List.of(regionsString.split(","))
+                    : List.of();
+
+            return new User(
+                    row.getInt("id"),
+                    row.getString("name"),
+                    regions,
+                    row.getBoolean("isFamilyFriendly"),
+                    row.getBoolean("isAccessible"),
+                    row.getInt("experienceLevel"),
+                    row.getInt("gradientPreference"),
+                    row.getInt("bushPreference"),
+                    row.getInt("reservePreference"),
+                    row.getInt("lakeRiverPreference"),
+                    row.getInt("coastPreference"),
+                    row.getInt("mountainPreference"),
+                    row.getInt("wildlifePreference"),
+                    row.getInt("historicPreference"),
+                    row.getInt("waterfallPreference"),
+                    row.getBoolean("isProfileComplete"),
+                    row.getString("profilePicture"));
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Binds user fields to the prepared statement. The order must match.
+     *
+     * @param stmt prepared statement to bind
+     * @param user source of values
+     */
+    private void setUserParameters(PreparedStatement stmt, User user) throws SQLException {
+        stmt.setInt(1, user.getId());
+        stmt.setString(2, user.getName());
+        stmt.setString(3, user.getRegion() != null ? String.join(",", user.getRegion()) : "");
+        stmt.setBoolean(4, user.isFamilyFriendly());
+        stmt.setBoolean(5, user.isAccessible());
+        stmt.setInt(6, user.getExperienceLevel());
+        stmt.setInt(7, user.getGradientPreference());
+        stmt.setInt(8, user.getBushPreference());
+        stmt.setInt(9, user.getReservePreference());
+        stmt.setInt(10, user.getLakeRiverPreference());
+        stmt.setInt(11, user.getCoastPreference());
+        stmt.setInt(12, user.getMountainPreference());
+        stmt.setInt(13, user.getWildlifePreference());
+        stmt.setInt(14, user.getHistoricPreference());
+        stmt.setInt(15, user.getWaterfallPreference());
+        stmt.setBoolean(16, user.isProfileComplete());
+        stmt.setString(17, user.getProfilePicture());
+    }
+}
@@ -0,0 +1,70 @@
+package seng202.team5.data;
+
+import org.sqlite.Function;
+import seng202.team5.utils.GeoUtils;
+import seng202.team5.utils.StringManipulator;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Java functions made callable from SQL, so queries can filter and sort on them
+ * instead of loading rows into Java first.
+ * <ul>
+ * <li>{@code distance_km(lat1, lon1, lat2, lon2)}: great-circle distance in
+ * kilometres, see {@link GeoUtils#distanceKm}</li>
+ * <li>{@code fold(text)}: text in lower case with accents and macrons removed,
+ * see {@link StringManipulator#fold}</li>
+ * </ul>
+ * Both return NULL if any argument is NULL. They only exist on connections
+ * this application registers them on, so the schema must not store anything
+ * that calls them, such as an index or trigger, or other tools could no longer
+ * write to the database.
+ */
+final class SqlFunctions {
+    private static final int SQLITE_NULL = 5;
+
+    private SqlFunctions() {
+    }
+
+    /**
+     * Registers every function on a connection
+     *
+     * @param connection a newly opened SQLite connection
+     * @throws SQLException if a function cannot be registered
+     */
+    static void register(Connection connection) throws SQLException {
+        Function.create(connection, "distance_km", new DistanceKm(), 4, Function.FLAG_DETERMINISTIC);
+        Function.create(connection, "fold", new Fold(), 1, Function.FLAG_DETERMINISTIC);
+    }
+
+    /**
+     * SQL function for the distance between two points.
+     */
+    private static class DistanceKm extends Function {
+        @Override
+        protected void xFunc() throws SQLException {
+            for (int i = 0; i < 4; i++) {
+                if (value_type(i) == SQLITE_NULL) {
+                    result();
+                    return;
+                }
+            }
+            result(GeoUtils.distanceKm(value_double(0), value_double(1), value_double(2), value_double(3)));
+        }
+    }
+
+    /**
+     * SQL function for folding text before comparing it.
+     */
+    private static class Fold extends Function {
+        @Override
+        protected void xFunc() throws SQLException {
+            if (value_type(0) == SQLITE_NULL) {
+                result();
+                return;
+            }
+            result(StringManipulator.fold(value_text(0)));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package seng202.team5.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Splits SQL scripts into individual statements.
+ * <p>
+ * Unlike splitting on every semicolon, this skips comments, ignores semicolons
+ * inside quoted strings and keeps CREATE TRIGGER bodies (BEGIN ... END) whole.
+ */
+class SqlScript {
+    private static final Pattern TRIGGER_START = Pattern.compile(
+            "^CREATE\\s+(TEMP\\s+|TEMPORARY\\s+)?TRIGGER\\b.*", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern TRIGGER_END = Pattern.compile(
+            ".*\\bEND$", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private SqlScript() {
+    }
+
+    /**
+     * Splits a script into statements, with comments removed
+     *
+     * @param script the SQL script
+     * @return the non-empty statements in order, without trailing semicolons
+     */
+    static List<String> split(String script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int length = script.length();
+        int i = 0;
+
+        while (i < length) {
+            char c = script.charAt(i);
+
+            if (c == '-' && i + 1 < length && script.charAt(i + 1) == '-') {
+                // Line comment, keep the newline so tokens either side stay apart
+                while (i < length && script.charAt(i) != '\n') {
+                    i++;
+                }
+                continue;
+            }
+
+            if (c == '/' && i + 1 < length && script.charAt(i + 1) == '*') {
+                int end = script.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+                current.append(' ');
+                continue;
+            }
+
+            if (c == '\'' || c == '"' || c == '`') {
+                // Copy the quoted text as is, a doubled quote is an escaped quote
+                int end = i + 1;
+                while (end < length) {
+                    if (script.charAt(end) == c) {
+                        if (end + 1 < length && script.charAt(end + 1) == c) {
+                            end += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    end++;
+                }
+                end = Math.min(end + 1, length);
+                current.append(script, i, end);
+                i = end;
+                continue;
+            }
+
+            if (c == ';') {
+                String statement = current.toString().strip();
+                if (isInsideTrigger(statement)) {
+                    current.append(c);
+                } else {
+                    if (!statement.isEmpty()) {
+                        statements.add(statement);
+                    }
+                    current.setLength(0);
+                }
+                i++;
+                continue;
+            }
+
+            current.append(c);
+            i++;
+        }
+
+        String last = current.toString().strip();
+        if (!last.isEmpty()) {
+            statements.add(last);
+        }
+        return statements;
+    }
+
+    /**
+     * Checks whether a semicolon after the given text is inside a trigger body
+     * rather than ending the statement
+     *
+     * @param statement the statement text so far
+     * @return true if the statement is an unfinished CREATE TRIGGER
+     */
+    private static boolean isInsideTrigger(String statement) {
+        return TRIGGER_START.matcher(statement).matches() && !TRIGGER_END.matcher(statement).matches();
+    }
+}
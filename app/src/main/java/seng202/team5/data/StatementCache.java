@@ -0,0 +1,204 @@
+package seng202.team5.data;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU cache of compiled prepared statements for a single pooled connection,
+ * keyed by SQL text.
+ * <p>
+ * Statements are handed out wrapped so that close() resets them and puts them
+ * back in the cache, meaning repeated SQL skips SQLite's parse/plan step.
+ * A statement is removed from the cache while it is in use, so preparing the
+ * same SQL twice at once just gives a second, uncached statement.
+ */
+class StatementCache {
+    private final Connection raw;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final Map<String, PreparedStatement> idleStatements;
+    private final List<CachedStatementHandler> inUseStatements = new ArrayList<>();
+
+    /**
+     * Creates an empty statement cache for a connection
+     *
+     * @param raw      the underlying connection statements are prepared on
+     * @param capacity the maximum number of idle statements kept
+     * @param hits     counter incremented when a cached statement is reused
+     * @param misses   counter incremented when a statement has to be compiled
+     */
+    StatementCache(Connection raw, int capacity, AtomicLong hits, AtomicLong misses) {
+        this.raw = raw;
+        this.hits = hits;
+        this.misses = misses;
+        this.idleStatements = new LinkedHashMap<>(capacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > capacity) {
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Gets a prepared statement for the SQL, reusing a cached one if available
+     *
+     * @param sql the SQL text
+     * @return the wrapped statement, closing it returns it to the cache
+     * @throws SQLException if the statement cannot be compiled
+     */
+    PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement stmt = idleStatements.remove(sql);
+        if (stmt != null && !stmt.isClosed()) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            stmt = raw.prepareStatement(sql);
+        }
+
+        CachedStatementHandler handler = new CachedStatementHandler(sql, stmt);
+        inUseStatements.add(handler);
+        return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class },
+                handler);
+    }
+
+    /**
+     * Returns any statements the borrower forgot to close, so none are left
+     * holding a read snapshot open when the connection goes back to the pool
+     */
+    void releaseInUse() {
+        for (CachedStatementHandler handler : new ArrayList<>(inUseStatements)) {
+            handler.release();
+        }
+    }
+
+    /**
+     * Gets the number of idle statements in the cache
+     *
+     * @return cached statement count
+     */
+    int size() {
+        return idleStatements.size();
+    }
+
+    /**
+     * Resets a statement and puts it back in the cache
+     *
+     * @param handler the handler of the statement being returned
+     */
+    private void checkIn(CachedStatementHandler handler) {
+        inUseStatements.remove(handler);
+        PreparedStatement stmt = handler.stmt;
+        try {
+            if (stmt.isClosed()) {
+                return;
+            }
+            if (handler.resultSet != null && !handler.resultSet.isClosed()) {
+                handler.resultSet.close();
+            }
+            stmt.clearParameters();
+            stmt.clearBatch();
+
+            // Someone else already cached this SQL while we had it out
+            if (idleStatements.containsKey(handler.sql)) {
+                stmt.close();
+            } else {
+                idleStatements.put(handler.sql, stmt);
+            }
+        } catch (SQLException e) {
+            closeQuietly(stmt);
+        }
+    }
+
+    /**
+     * Closes a statement, ignoring any error
+     *
+     * @param stmt the statement to close
+     */
+    private static void closeQuietly(PreparedStatement stmt) {
+        try {
+            stmt.close();
+        } catch (SQLException ignored) {
+            // Nothing more we can do with it
+        }
+    }
+
+    /**
+     * Forwards calls to the underlying statement, except close() which returns it
+     * to the cache. Keeps hold of the last result set so it can be reset.
+     */
+    private class CachedStatementHandler implements InvocationHandler {
+        private final String sql;
+        private final PreparedStatement stmt;
+        private ResultSet resultSet;
+        private boolean returned = false;
+
+        CachedStatementHandler(String sql, PreparedStatement stmt) {
+            this.sql = sql;
+            this.stmt = stmt;
+        }
+
+        /**
+         * Returns the statement to the cache, once
+         */
+        void release() {
+            if (!returned) {
+                returned = true;
+                checkIn(this);
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    release();
+                    return null;
+                }
+                case "isClosed" -> {
+                    return returned || stmt.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Cached" + stmt;
+                }
+                default -> {
+                    if (returned) {
+                        throw new SQLException("Statement has already been closed");
+                    }
+                }
+            }
+
+            try {
+                Object result = method.invoke(stmt, args);
+                if (result instanceof ResultSet rs) {
+                    resultSet = rs;
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package seng202.team5.data;
+
+import seng202.team5.models.Trail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * A bitmap index over a fixed list of trails, for answering the search
+ * filters without looking at each trail. Every trail gets an ordinal, its
+ * position in the list, and each value of difficulty, region, completion type
+ * and time unit gets a bitmap of the trails that have it.
+ * <p>
+ * A query's filters are answered by OR-ing the bitmaps of the allowed values
+ * within a field and AND-ing the fields together, so the cost depends on the
+ * number of values rather than the number of trails. Values are matched
+ * ignoring case, and blank values only match when a field allows anything, as
+ * in {@link SqlBasedTrailRepo}.
+ * <p>
+ * Each sort order is kept as a permutation of the ordinals, built the first
+ * time it is used, so a sorted page is a walk along the permutation picking
+ * out the matching trails. Descending walks take the groups of equal values in
+ * reverse but keep each group in id order, as the SQL sort does. The walk for
+ * the last search is kept in a {@link TrailPager}, so turning to its next page
+ * carries on where the last page stopped.
+ */
+final class TrailFacetIndex {
+    private final List<Trail> trails;
+    private final Map<String, BitSet> completionTypes;
+    private final Map<String, BitSet> timeUnits;
+    private final Map<String, BitSet> difficulties;
+    private final Map<String, BitSet> regions;
+    private final BitSet unknownRegion;
+    private final BitSet timed; // has a completion time, so can be sorted by time
+    private final BitSet rated; // has a known difficulty, so can be sorted by difficulty
+    private final Map<PermutationKey, Permutation> permutations = new ConcurrentHashMap<>();
+    private volatile PagedSearch lastSearch;
+
+    /**
+     * Indexes a list of trails
+     *
+     * @param trails the trails, which must not change while the index is used
+     */
+    private TrailFacetIndex(List<Trail> trails) {
+        this.trails = trails;
+        this.completionTypes = index(trails, Trail::getCompletionType);
+        this.timeUnits = index(trails, Trail::getTimeUnit);
+        this.difficulties = index(trails, Trail::getDifficulty);
+        this.regions = index(trails, Trail::getRegion);
+        this.unknownRegion = bitmap(trails, trail -> isBlank(trail.getRegion()));
+        this.timed = bitmap(trails, trail -> trail.getAvgCompletionTimeMinutes() > 0);
+        this.rated = bitmap(trails, trail -> !isBlank(trail.getDifficulty())
+                && !trail.getDifficulty().equalsIgnoreCase("unknown"));
+    }
+
+    /**
+     * Indexes a list of trails
+     *
+     * @param trails the trails, in the order ties are left in
+     * @return the index
+     */
+    static TrailFacetIndex of(List<Trail> trails) {
+        return new TrailFacetIndex(List.copyOf(trails));
+    }
+
+    /**
+     * Finds the trails passing a query's field filters, leaving out trails with
+     * no value for the sort field. The name and text filters aren't indexed.
+     *
+     * @param query the search
+     * @return a new bitmap of the ordinals of the matching trails
+     */
+    BitSet matching(TrailQuery query) {
+        BitSet result = new BitSet(trails.size());
+        result.set(0, trails.size());
+
+        and(result, completionTypes, query.getCompletionTypes(), null);
+        and(result, timeUnits, query.getTimeUnits(), null);
+        and(result, difficulties, query.getDifficulties(), null);
+        and(result, regions, query.getRegions(), query.isIncludeUnknownRegion() ? unknownRegion : null);
+
+        switch (query.getSortKey()) {
+            case TIME -> result.and(timed);
+            case DIFFICULTY -> result.and(rated);
+            default -> {
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the page of trails matching a query, sorted as the query asks. The
+     * matches are reused for later pages of the same query, so the residual
+     * check must depend on nothing but the query.
+     *
+     * @param query    the search
+     * @param residual check for the filters the index doesn't cover, or null if
+     *                 the query has none
+     * @return the trails on the requested page
+     */
+    List<Trail> search(TrailQuery query, Predicate<Trail> residual) {
+        TrailQuery unpaged = query.toBuilder().page(0, -1).build();
+        PagedSearch last = lastSearch;
+        if (last == null || !last.query().equals(unpaged)) {
+            BitSet matching = matching(query);
+            IntStream ordinals = permutation(query.getSortKey(), query.getDifficultyOrder())
+                    .walk(query.isAscending())
+                    .filter(matching::get);
+            Stream<Trail> ordered = ordinals.mapToObj(trails::get);
+            if (residual != null) {
+                ordered = ordered.filter(residual);
+            }
+            last = new PagedSearch(unpaged, new TrailPager(ordered.iterator()));
+            lastSearch = last;
+        }
+        return last.pager().page(query.getOffset(), query.getLimit());
+    }
+
+    /**
+     * Counts the trails matching a query
+     *
+     * @param query    the search
+     * @param residual check for the filters the index doesn't cover, or null if
+     *                 the query has none
+     * @return the number of matching trails
+     */
+    int count(TrailQuery query, Predicate<Trail> residual) {
+        BitSet matching = matching(query);
+        return residual == null ? matching.cardinality() : select(matching, residual).size();
+    }
+
+    /**
+     * Counts the trails matching a query for each value of a field, leaving out
+     * the query's own filter on that field. Each count is one AND of bitmaps.
+     *
+     * @param query    the search
+     * @param facet    the field to count by
+     * @param residual check for the filters the index doesn't cover, or null if
+     *                 the query has none; it must not filter on the field
+     * @return count per lower case value, leaving out values with no trails;
+     *         trails with no value are counted under the empty string
+     */
+    Map<String, Integer> countByFacet(TrailQuery query, TrailQuery.Facet facet, Predicate<Trail> residual) {
+        BitSet base = matching(query.withoutFilter(facet));
+        if (residual != null) {
+            for (int i = base.nextSetBit(0); i >= 0; i = base.nextSetBit(i + 1)) {
+                if (!residual.test(trails.get(i))) {
+                    base.clear(i);
+                }
+            }
+        }
+
+        Map<String, Integer> counts = new HashMap<>();
+        int valued = 0;
+        BitSet scratch = new BitSet(trails.size());
+        for (Map.Entry<String, BitSet> entry : facetIndex(facet).entrySet()) {
+            scratch.clear();
+            scratch.or(base);
+            scratch.and(entry.getValue());
+            int count = scratch.cardinality();
+            if (count > 0) {
+                counts.put(entry.getKey(), count);
+                valued += count;
+            }
+        }
+        int unvalued = base.cardinality() - valued;
+        if (unvalued > 0) {
+            counts.put("", unvalued);
+        }
+        return counts;
+    }
+
+    /**
+     * Gets the trails in a bitmap that pass a check
+     *
+     * @param matching ordinals of the trails
+     * @param residual check the trails must pass, or null
+     * @return a new mutable list of the trails
+     */
+    private List<Trail> select(BitSet matching, Predicate<Trail> residual) {
+        List<Trail> selected = new ArrayList<>(matching.cardinality());
+        for (int i = matching.nextSetBit(0); i >= 0; i = matching.nextSetBit(i + 1)) {
+            Trail trail = trails.get(i);
+            if (residual == null || residual.test(trail)) {
+                selected.add(trail);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Gets the permutation for a sort order, building it the first time
+     *
+     * @param sortKey         the field to sort by
+     * @param difficultyOrder lower case difficulties, easiest first, only used
+     *                        when sorting by difficulty
+     * @return the permutation
+     */
+    private Permutation permutation(TrailQuery.SortKey sortKey, List<String> difficultyOrder) {
+        PermutationKey key = new PermutationKey(sortKey,
+                sortKey == TrailQuery.SortKey.DIFFICULTY ? List.copyOf(difficultyOrder) : List.of());
+        return permutations.computeIfAbsent(key, this::buildPermutation);
+    }
+
+    /**
+     * Sorts the ordinals by a sort field, ties in id order
+     *
+     * @param key the sort order
+     * @return the permutation
+     */
+    private Permutation buildPermutation(PermutationKey key) {
+        Comparator<Trail> keyOrder = InMemoryTrailRepo.keyOrder(key.sortKey(), key.difficultyOrder());
+        int[] ascending = IntStream.range(0, trails.size())
+                .boxed()
+                .sorted(Comparator.<Integer, Trail>comparing(trails::get, keyOrder.thenComparingInt(Trail::getId)))
+                .mapToInt(Integer::intValue)
+                .toArray();
+
+        // Reverse the runs of equal values, keeping each run in id order
+        int[] descending = new int[ascending.length];
+        int written = 0;
+        int end = ascending.length;
+        while (end > 0) {
+            Trail last = trails.get(ascending[end - 1]);
+            int start = end - 1;
+            while (start > 0 && keyOrder.compare(trails.get(ascending[start - 1]), last) == 0) {
+                start--;
+            }
+            System.arraycopy(ascending, start, descending, written, end - start);
+            written += end - start;
+            end = start;
+        }
+        return new Permutation(ascending, descending);
+    }
+
+    /**
+     * Gets the bitmaps for a field
+     *
+     * @param facet the field
+     * @return its bitmap per lower case value
+     */
+    private Map<String, BitSet> facetIndex(TrailQuery.Facet facet) {
+        return switch (facet) {
+            case COMPLETION_TYPE -> completionTypes;
+            case TIME_UNIT -> timeUnits;
+            case DIFFICULTY -> difficulties;
+            case REGION -> regions;
+        };
+    }
+
+    /**
+     * Narrows a result to the trails with one of a field's allowed values
+     *
+     * @param result  the bitmap to narrow
+     * @param index   the field's bitmap per lower case value
+     * @param allowed the allowed values, null for any
+     * @param extra   more trails to allow, or null
+     */
+    private static void and(BitSet result, Map<String, BitSet> index, Set<String> allowed, BitSet extra) {
+        if (allowed == null) {
+            return;
+        }
+        BitSet union = extra != null ? (BitSet) extra.clone() : new BitSet();
+        for (String value : allowed) {
+            BitSet bits = value == null ? null : index.get(value.toLowerCase(Locale.ROOT));
+            if (bits != null) {
+                union.or(bits);
+            }
+        }
+        result.and(union);
+    }
+
+    /**
+     * Builds a bitmap per value of a field, keyed by the value in lower case.
+     * Blank values aren't indexed.
+     *
+     * @param trails the trails
+     * @param field  gets the value from a trail
+     * @return the bitmaps
+     */
+    private static Map<String, BitSet> index(List<Trail> trails, Function<Trail, String> field) {
+        Map<String, BitSet> index = new HashMap<>();
+        for (int i = 0; i < trails.size(); i++) {
+            String value = field.apply(trails.get(i));
+            if (!isBlank(value)) {
+                index.computeIfAbsent(value.toLowerCase(Locale.ROOT), key -> new BitSet(trails.size())).set(i);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Builds a bitmap of the trails passing a check
+     *
+     * @param trails the trails
+     * @param check  the check
+     * @return the bitmap
+     */
+    private static BitSet bitmap(List<Trail> trails, Predicate<Trail> check) {
+        BitSet bits = new BitSet(trails.size());
+        for (int i = 0; i < trails.size(); i++) {
+            if (check.test(trails.get(i))) {
+                bits.set(i);
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Checks whether a value is missing
+     *
+     * @param value the value
+     * @return true if it is null or blank
+     */
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    /**
+     * A search, without its paging, and the pager over its matches.
+     *
+     * @param query the search with no offset or limit
+     * @param pager the matching trails, sorted as far as paged
+     */
+    private record PagedSearch(TrailQuery query, TrailPager pager) {
+    }
+
+    /**
+     * A sort order the index can hold a permutation for.
+     *
+     * @param sortKey         the field to sort by
+     * @param difficultyOrder the difficulty order when sorting by difficulty,
+     *                        otherwise empty
+     */
+    private record PermutationKey(TrailQuery.SortKey sortKey, List<String> difficultyOrder) {
+    }
+
+    /**
+     * The ordinals of every trail in a sort order, both ways.
+     *
+     * @param ascending  ordinals in ascending order
+     * @param descending ordinals in descending order
+     */
+    private record Permutation(int[] ascending, int[] descending) {
+
+        /**
+         * Walks the ordinals in one direction
+         *
+         * @param ascending true for ascending order
+         * @return the ordinals, lazily
+         */
+        IntStream walk(boolean ascending) {
+            return Arrays.stream(ascending ? this.ascending : descending);
+        }
+    }
+}
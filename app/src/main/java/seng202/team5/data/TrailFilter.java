@@ -0,0 +1,155 @@
+package seng202.team5.data;
+
+import seng202.team5.models.Trail;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A trail query's filters compiled into one predicate, for repositories that
+ * check trails one at a time. Allowed values are copied into case-insensitive
+ * sets and the search text is compiled once, so apart from the text search
+ * testing a trail is a few set lookups without building any strings.
+ * <p>
+ * Matches the same trails as the SQL {@link SqlBasedTrailRepo} builds from the
+ * query, including leaving out trails with no value for the sort field.
+ */
+final class TrailFilter implements Predicate<Trail> {
+    private final String nameContains;
+    private final Predicate<Trail> textMatch;
+    private final Set<String> completionTypes;
+    private final Set<String> timeUnits;
+    private final Set<String> difficulties;
+    private final Set<String> regions;
+    private final boolean includeUnknownRegion;
+    private final TrailQuery.SortKey sortKey;
+
+    /**
+     * Compiles a query's filters
+     *
+     * @param query       the search
+     * @param textMatcher compiles search text into a check of a trail's text
+     */
+    private TrailFilter(TrailQuery query, Function<String, Predicate<Trail>> textMatcher) {
+        String name = query.getNameContains();
+        this.nameContains = name == null || name.isEmpty() ? null : name;
+        String text = query.getTextMatch();
+        this.textMatch = text == null || text.isBlank() ? null : textMatcher.apply(text);
+        this.completionTypes = ignoringCase(query.getCompletionTypes());
+        this.timeUnits = ignoringCase(query.getTimeUnits());
+        this.difficulties = ignoringCase(query.getDifficulties());
+        this.regions = ignoringCase(query.getRegions());
+        this.includeUnknownRegion = query.isIncludeUnknownRegion();
+        this.sortKey = query.getSortKey();
+    }
+
+    /**
+     * Compiles a query's filters
+     *
+     * @param query       the search
+     * @param textMatcher compiles search text into a check of a trail's text
+     * @return the compiled filter
+     */
+    static TrailFilter compile(TrailQuery query, Function<String, Predicate<Trail>> textMatcher) {
+        return new TrailFilter(query, textMatcher);
+    }
+
+    /**
+     * Compiles the filters of a query that has no text search
+     *
+     * @param query the search
+     * @return the compiled filter
+     * @throws IllegalArgumentException if the query searches text
+     */
+    static TrailFilter compile(TrailQuery query) {
+        return compile(query, text -> {
+            throw new IllegalArgumentException("No text matcher to search for: " + text);
+        });
+    }
+
+    /**
+     * Checks a trail against every filter. The text search runs last, so the
+     * cheap checks rule most trails out first.
+     *
+     * @param trail the trail
+     * @return true if the trail should be in the results
+     */
+    @Override
+    public boolean test(Trail trail) {
+        if (nameContains != null && !containsIgnoreCase(trail.getName(), nameContains)) {
+            return false;
+        }
+
+        if (!isAllowed(trail.getCompletionType(), completionTypes)
+                || !isAllowed(trail.getTimeUnit(), timeUnits)
+                || !isAllowed(trail.getDifficulty(), difficulties)) {
+            return false;
+        }
+
+        if (regions != null) {
+            String region = trail.getRegion();
+            if (region == null || region.isBlank() ? !includeUnknownRegion : !regions.contains(region)) {
+                return false;
+            }
+        }
+
+        // Trails with no value for the sort field are left out of that sort
+        boolean sortable = switch (sortKey) {
+            case TIME -> trail.getAvgCompletionTimeMinutes() > 0;
+            case DIFFICULTY -> trail.getDifficulty() != null && !trail.getDifficulty().isBlank()
+                    && !trail.getDifficulty().equalsIgnoreCase("unknown");
+            default -> true;
+        };
+        return sortable && (textMatch == null || textMatch.test(trail));
+    }
+
+    /**
+     * Copies allowed values into a set that ignores case
+     *
+     * @param values the allowed values, null for any
+     * @return the case-insensitive set, or null for any
+     */
+    private static Set<String> ignoringCase(Set<String> values) {
+        if (values == null) {
+            return null;
+        }
+        Set<String> set = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        set.addAll(values);
+        return Collections.unmodifiableSet(set);
+    }
+
+    /**
+     * Checks a value against the allowed values of a filter. Blank values only
+     * match when the filter allows anything.
+     *
+     * @param value   the trail's value
+     * @param allowed case-insensitive allowed values, null for any
+     * @return true if the value is allowed
+     */
+    private static boolean isAllowed(String value, Set<String> allowed) {
+        return allowed == null || value != null && !value.isBlank() && allowed.contains(value);
+    }
+
+    /**
+     * Checks whether some text contains another ignoring case, without copying
+     * either
+     *
+     * @param text   the text to look in
+     * @param needle the text to look for
+     * @return true if the needle is found
+     */
+    private static boolean containsIgnoreCase(String text, String needle) {
+        if (text == null) {
+            return false;
+        }
+        for (int i = 0; i + needle.length() <= text.length(); i++) {
+            if (text.regionMatches(true, i, needle, 0, needle.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,121 @@
+package seng202.team5.data;
+
+import seng202.team5.exceptions.MatchmakingFailedException;
+import seng202.team5.models.LoggedTrail;
+import seng202.team5.models.TrailLog;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * Storage for the user's trail logs. Implemented over SQLite by
+ * {@link SqlBasedTrailLogRepo} and in memory by {@link InMemoryTrailLogRepo}.
+ */
+public interface TrailLogRepo {
+
+    /**
+     * Retrieves all trailLogs
+     *
+     * @return every trailLog, in id order
+     */
+    List<TrailLog> getAllTrailLogs();
+
+    /**
+     * Streams all trailLogs. Use the stream in a try-with-resources block, as it
+     * may hold a database connection until closed.
+     *
+     * @return a lazy stream over every trailLog
+     */
+    Stream<TrailLog> streamAllTrailLogs();
+
+    /**
+     * Retrieves all trailLogs together with their trails. Logs whose trail no
+     * longer exists are left out.
+     *
+     * @return every trailLog with its trail, in log id order
+     */
+    List<LoggedTrail> getAllTrailLogsWithTrails();
+
+    /**
+     * Retrieves all trailLogs on the shared database executor
+     *
+     * @return a future of every trailLog
+     */
+    default CompletableFuture<List<TrailLog>> getAllTrailLogsAsync() {
+        return DatabaseExecutor.supplyAsync(this::getAllTrailLogs);
+    }
+
+    /**
+     * Finds a single trailLog by its id
+     *
+     * @param id id of the object
+     * @return an Optional containing the trailLog if found; otherwise empty
+     */
+    Optional<TrailLog> findById(int id);
+
+    /**
+     * Counts all trailLogs
+     *
+     * @return number of trailLogs
+     */
+    int countTrailLogs();
+
+    /**
+     * Inserts a trailLog, or replaces the trailLog with the same id
+     *
+     * @param trailLog trailLog that needs to be updated
+     */
+    void upsert(TrailLog trailLog);
+
+    /**
+     * Upserts a trailLog on the shared database executor
+     *
+     * @param trailLog trailLog that needs to be updated
+     * @return a future completed once the trailLog is written
+     */
+    default CompletableFuture<Void> upsertAsync(TrailLog trailLog) {
+        return DatabaseExecutor.runAsync(() -> upsert(trailLog));
+    }
+
+    /**
+     * Inserts or replaces every trailLog
+     *
+     * @param trailLogs trailLogs to upsert
+     * @throws MatchmakingFailedException if trailLogs is empty
+     */
+    void upsertAll(List<TrailLog> trailLogs) throws MatchmakingFailedException;
+
+    /**
+     * Deletes a trailLog by its id
+     *
+     * @param id the trailLog identifier to delete
+     */
+    void deleteById(int id);
+
+    /**
+     * Returns an id no trailLog has yet
+     *
+     * @return new trailLog id
+     */
+    int getNewTrailLogId();
+
+    /**
+     * Finds the trail log for the given trail id
+     *
+     * @param trailId the id of the trail
+     * @return an Optional containing the trail log if found; otherwise empty
+     */
+    Optional<TrailLog> findByTrailId(int trailId);
+
+    /**
+     * Finds the trail log for the given trail id on the shared database executor
+     *
+     * @param trailId the id of the trail
+     * @return a future of an Optional containing the trail log if found
+     */
+    default CompletableFuture<Optional<TrailLog>> findByTrailIdAsync(int trailId) {
+        return DatabaseExecutor.supplyAsync(() -> findByTrailId(trailId));
+    }
+}
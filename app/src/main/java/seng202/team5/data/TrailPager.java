@@ -0,0 +1,47 @@
+package seng202.team5.data;
+
+import seng202.team5.models.Trail;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The trails matching one search, read in sorted order only as far as the
+ * pages asked for so far. The trails come from a lazy walk over a presorted
+ * permutation, so the first page costs only the walk up to its last trail and
+ * later pages carry on the walk from where the last one stopped.
+ */
+final class TrailPager {
+    private final Iterator<Trail> ordered; // guarded by this
+    private final List<Trail> sorted = new ArrayList<>(); // guarded by this
+
+    /**
+     * Creates a pager over the matches of a search
+     *
+     * @param ordered the matching trails, in the order to page them in
+     */
+    TrailPager(Iterator<Trail> ordered) {
+        this.ordered = ordered;
+    }
+
+    /**
+     * Gets a slice of the sorted trails, reading further if the slice reaches
+     * past what has been read so far
+     *
+     * @param offset number of trails to skip
+     * @param limit  maximum trails to return, negative for no limit
+     * @return the trails in the slice
+     */
+    synchronized List<Trail> page(int offset, int limit) {
+        int from = Math.max(offset, 0);
+        int to = limit < 0 ? Integer.MAX_VALUE : (int) Math.min((long) from + limit, Integer.MAX_VALUE);
+        while (sorted.size() < to && ordered.hasNext()) {
+            sorted.add(ordered.next());
+        }
+
+        from = Math.min(from, sorted.size());
+        to = Math.min(to, sorted.size());
+        return List.copyOf(sorted.subList(from, to));
+    }
+}
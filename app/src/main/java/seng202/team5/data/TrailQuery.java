@@ -0,0 +1,220 @@
+package seng202.team5.data;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Describes a search over the trail table: which trails to match, how to sort
+ * them and which page to return. Built by the search service and turned into
+ * SQL by {@link SqlBasedTrailRepo}.
+ * <p>
+ * Each set of allowed values is matched case-insensitively. A null set places
+ * no restriction on that field, an empty set matches no trails at all. The
+ * text match searches the trail name, translation and description through
+ * the full-text index, each word matching as a prefix.
+ */
+public class TrailQuery {
+
+    /**
+     * Fields trails can be sorted by.
+     */
+    public enum SortKey {
+        NAME, TIME, DIFFICULTY, MATCH
+    }
+
+    /**
+     * Dictionary-encoded fields trails can be counted by, named after their
+     * columns.
+     */
+    public enum Facet {
+        COMPLETION_TYPE("completionType"),
+        TIME_UNIT("timeUnit"),
+        DIFFICULTY("difficulty"),
+        REGION("region");
+
+        private final String column;
+
+        Facet(String column) {
+            this.column = column;
+        }
+
+        public String getColumn() { return column; }
+    }
+
+    private final String nameContains;
+    private final String textMatch;
+    private final Set<String> completionTypes;
+    private final Set<String> timeUnits;
+    private final Set<String> difficulties;
+    private final Set<String> regions;
+    private final boolean includeUnknownRegion;
+    private final SortKey sortKey;
+    private final boolean ascending;
+    private final List<String> difficultyOrder;
+    private final int limit;
+    private final int offset;
+
+    /**
+     * Private constructor used by the Builder
+     *
+     * @param builder the instance containing field values
+     */
+    private TrailQuery(Builder builder) {
+        this.nameContains = builder.nameContains;
+        this.textMatch = builder.textMatch;
+        this.completionTypes = builder.completionTypes;
+        this.timeUnits = builder.timeUnits;
+        this.difficulties = builder.difficulties;
+        this.regions = builder.regions;
+        this.includeUnknownRegion = builder.includeUnknownRegion;
+        this.sortKey = builder.sortKey;
+        this.ascending = builder.ascending;
+        this.difficultyOrder = builder.difficultyOrder;
+        this.limit = builder.limit;
+        this.offset = builder.offset;
+    }
+
+    public String getNameContains() { return nameContains; }
+    public String getTextMatch() { return textMatch; }
+    public Set<String> getCompletionTypes() { return completionTypes; }
+    public Set<String> getTimeUnits() { return timeUnits; }
+    public Set<String> getDifficulties() { return difficulties; }
+    public Set<String> getRegions() { return regions; }
+    public boolean isIncludeUnknownRegion() { return includeUnknownRegion; }
+    public SortKey getSortKey() { return sortKey; }
+    public boolean isAscending() { return ascending; }
+    public List<String> getDifficultyOrder() { return difficultyOrder; }
+    public int getLimit() { return limit; }
+    public int getOffset() { return offset; }
+
+    /**
+     * Creates a builder starting from this query's values
+     *
+     * @return a new builder
+     */
+    public Builder toBuilder() {
+        return new Builder()
+                .nameContains(nameContains)
+                .textMatch(textMatch)
+                .completionTypes(completionTypes)
+                .timeUnits(timeUnits)
+                .difficulties(difficulties)
+                .regions(regions, includeUnknownRegion)
+                .sortBy(sortKey, ascending)
+                .difficultyOrder(difficultyOrder)
+                .page(offset, limit);
+    }
+
+    /**
+     * Creates a copy of this query that places no restriction on one field
+     *
+     * @param facet the field to stop filtering on
+     * @return the new query
+     */
+    public TrailQuery withoutFilter(Facet facet) {
+        Builder builder = toBuilder();
+        switch (facet) {
+            case COMPLETION_TYPE -> builder.completionTypes(null);
+            case TIME_UNIT -> builder.timeUnits(null);
+            case DIFFICULTY -> builder.difficulties(null);
+            case REGION -> builder.regions(null, false);
+        }
+        return builder.build();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TrailQuery other)) {
+            return false;
+        }
+        return includeUnknownRegion == other.includeUnknownRegion
+                && ascending == other.ascending
+                && limit == other.limit
+                && offset == other.offset
+                && Objects.equals(nameContains, other.nameContains)
+                && Objects.equals(textMatch, other.textMatch)
+                && Objects.equals(completionTypes, other.completionTypes)
+                && Objects.equals(timeUnits, other.timeUnits)
+                && Objects.equals(difficulties, other.difficulties)
+                && Objects.equals(regions, other.regions)
+                && sortKey == other.sortKey
+                && Objects.equals(difficultyOrder, other.difficultyOrder);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(nameContains, textMatch, completionTypes, timeUnits, difficulties, regions,
+                includeUnknownRegion, sortKey, ascending, difficultyOrder, limit, offset);
+    }
+
+    // Builder
+    public static class Builder {
+        private String nameContains;
+        private String textMatch;
+        private Set<String> completionTypes;
+        private Set<String> timeUnits;
+        private Set<String> difficulties;
+        private Set<String> regions;
+        private boolean includeUnknownRegion = false;
+        private SortKey sortKey = SortKey.NAME;
+        private boolean ascending = true;
+        private List<String> difficultyOrder = List.of();
+        private int limit = -1;
+        private int offset = 0;
+
+        // Builder setters
+        public Builder nameContains(String text) { this.nameContains = text; return this; }
+        public Builder textMatch(String text) { this.textMatch = text; return this; }
+        public Builder completionTypes(Set<String> types) { this.completionTypes = types; return this; }
+        public Builder timeUnits(Set<String> timeUnits) { this.timeUnits = timeUnits; return this; }
+        public Builder difficulties(Set<String> difficulties) { this.difficulties = difficulties; return this; }
+        public Builder difficultyOrder(List<String> order) { this.difficultyOrder = order; return this; }
+
+        /**
+         * Restricts trails to the given regions
+         *
+         * @param regions              allowed regions, or null for any
+         * @param includeUnknownRegion whether trails with no region also match
+         * @return this builder
+         */
+        public Builder regions(Set<String> regions, boolean includeUnknownRegion) {
+            this.regions = regions;
+            this.includeUnknownRegion = includeUnknownRegion;
+            return this;
+        }
+
+        /**
+         * Sets the sort order
+         *
+         * @param sortKey   field to sort by
+         * @param ascending true for the field's natural order
+         * @return this builder
+         */
+        public Builder sortBy(SortKey sortKey, boolean ascending) {
+            this.sortKey = sortKey;
+            this.ascending = ascending;
+            return this;
+        }
+
+        /**
+         * Sets which slice of the sorted results to return
+         *
+         * @param offset number of matching trails to skip
+         * @param limit  maximum trails to return, negative for no limit
+         * @return this builder
+         */
+        public Builder page(int offset, int limit) {
+            this.offset = offset;
+            this.limit = limit;
+            return this;
+        }
+
+        public TrailQuery build() {
+            return new TrailQuery(this);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package seng202.team5.data;
+
+import seng202.team5.exceptions.MatchmakingFailedException;
+import seng202.team5.models.Trail;
+import seng202.team5.models.TrailSearchResult;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * Storage for trails. Implemented over SQLite by {@link SqlBasedTrailRepo} and
+ * in memory by {@link InMemoryTrailRepo}.
+ * <p>
+ * Every write publishes a {@link DataChangeEvent} on the repository's bus once
+ * it is committed.
+ */
+public interface TrailRepo {
+
+    /**
+     * Retrieves all trails
+     *
+     * @return every trail, in id order
+     */
+    List<Trail> getAllTrails();
+
+    /**
+     * Streams all trails. Use the stream in a try-with-resources block, as it may
+     * hold a database connection until closed.
+     *
+     * @return a lazy stream over every trail
+     */
+    Stream<Trail> streamAllTrails();
+
+    /**
+     * Retrieves all trails on the shared database executor
+     *
+     * @return a future of every trail
+     */
+    default CompletableFuture<List<Trail>> getAllTrailsAsync() {
+        return DatabaseExecutor.supplyAsync(this::getAllTrails);
+    }
+
+    /**
+     * Returns if the trail has been processed or not
+     *
+     * @param trail the trail to be checked
+     * @return true if the stored trail has a known completion type
+     */
+    boolean isTrailProcessed(Trail trail);
+
+    /**
+     * Finds a single trail by its id
+     *
+     * @param id id of the trail
+     * @return an Optional containing the trail if found; otherwise empty
+     */
+    Optional<Trail> findById(int id);
+
+    /**
+     * Finds every trail with one of the given ids
+     *
+     * @param ids ids of the trails to find
+     * @return the trails found, in id order; ids with no trail are skipped
+     */
+    List<Trail> findAllByIds(Collection<Integer> ids);
+
+    /**
+     * Finds a single trail by its id on the shared database executor
+     *
+     * @param id id of the trail
+     * @return a future of an Optional containing the trail if found
+     */
+    default CompletableFuture<Optional<Trail>> findByIdAsync(int id) {
+        return DatabaseExecutor.supplyAsync(() -> findById(id));
+    }
+
+    /**
+     * Inserts a trail only if no trail has its id yet
+     *
+     * @param trail trail that needs to be inserted if not exists
+     */
+    void insertOrIgnore(Trail trail);
+
+    /**
+     * Inserts a trail, or replaces the trail with the same id
+     *
+     * @param trail trail that needs to be upserted
+     */
+    void upsert(Trail trail);
+
+    /**
+     * Upserts a trail on the shared database executor
+     *
+     * @param trail trail that needs to be upserted
+     * @return a future completed once the trail is written
+     */
+    default CompletableFuture<Void> upsertAsync(Trail trail) {
+        return DatabaseExecutor.runAsync(() -> upsert(trail));
+    }
+
+    /**
+     * Inserts every trail whose id isn't taken yet
+     *
+     * @param trails trails to insert if not exists
+     * @throws MatchmakingFailedException if there are no trails in the list
+     */
+    void insertOrIgnoreAll(List<Trail> trails) throws MatchmakingFailedException;
+
+    /**
+     * Inserts or replaces every trail
+     *
+     * @param trails trails to upsert
+     * @throws MatchmakingFailedException if there are no trails in the list
+     */
+    void upsertAll(List<Trail> trails) throws MatchmakingFailedException;
+
+    /**
+     * Stores the user weight of each trail given
+     *
+     * @param trails trails carrying their new user weights
+     */
+    void updateUserWeights(List<Trail> trails);
+
+    /**
+     * Deletes a trail along with its logs and categories
+     *
+     * @param id the trail identifier to delete
+     */
+    void deleteById(int id);
+
+    /**
+     * Clears every trail's user weight
+     */
+    void clearUserWeights();
+
+    /**
+     * Counts all trails
+     *
+     * @return number of trails
+     */
+    int countTrails();
+
+    /**
+     * Finds the page of trails matching a search, sorted as requested
+     *
+     * @param query the search to run
+     * @return the matching trails for the requested page
+     */
+    List<Trail> searchTrails(TrailQuery query);
+
+    /**
+     * Counts the trails matching a search, ignoring its paging
+     *
+     * @param query the search to count
+     * @return number of matching trails
+     */
+    int countTrails(TrailQuery query);
+
+    /**
+     * Counts the trails matching a search for each value of a field. The
+     * search's own filter on that field is left out, so each count is how many
+     * trails choosing that value would give alongside the other filters.
+     *
+     * @param query the search, whose paging is ignored
+     * @param facet the field to count by
+     * @return count per lower case value, leaving out values with no trails;
+     *         trails with no value are counted under the empty string
+     */
+    Map<String, Integer> countTrailsByFacet(TrailQuery query, TrailQuery.Facet facet);
+
+    /**
+     * Searches trail names, translations and descriptions, best matches first.
+     * Each word in the text matches as a prefix, ignoring case and macrons, and
+     * every word must match.
+     *
+     * @param text  the text to search for
+     * @param limit maximum number of results
+     * @return matching trails with highlighted names and description snippets
+     */
+    List<TrailSearchResult> searchTrailText(String text, int limit);
+
+    /**
+     * Finds every trail whose coordinates are inside a box
+     *
+     * @param minLat southern edge in decimal degrees
+     * @param maxLat northern edge in decimal degrees
+     * @param minLon western edge in decimal degrees
+     * @param maxLon eastern edge in decimal degrees
+     * @return the trails in the box, in id order
+     */
+    List<Trail> findTrailsInBounds(double minLat, double maxLat, double minLon, double maxLon);
+
+    /**
+     * Finds every trail within a great-circle distance of a point
+     *
+     * @param lat      latitude of the centre in decimal degrees
+     * @param lon      longitude of the centre in decimal degrees
+     * @param radiusKm the distance in kilometres
+     * @return the trails within the distance, nearest first
+     */
+    List<Trail> findTrailsWithinRadius(double lat, double lon, double radiusKm);
+
+    /**
+     * Checks if a trail name is taken (case, macron and whitespace insensitive)
+     *
+     * @param name      the trail name to check
+     * @param excludeId optional trail ID to exclude from the check (for editing
+     *                  existing trails)
+     * @return true if the name exists, false otherwise
+     */
+    boolean existsByName(String name, Integer excludeId);
+
+    /**
+     * Returns an id no trail has yet
+     *
+     * @return new trail id
+     */
+    int getNewTrailId();
+}
@@ -0,0 +1,139 @@
+package seng202.team5.data;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One transaction shared by every statement a thread runs on a database while
+ * it is inside {@link QueryHelper#supplyInTransaction}.
+ * <p>
+ * Statements get a wrapper of the transaction's connection that ignores
+ * close(), commit() and setAutoCommit(), so QueryHelper methods that manage
+ * their own connection or transaction join this one instead. A rollback from
+ * one of them marks the whole unit of work to be rolled back. Work registered
+ * with {@link #afterCommit(Runnable)} only runs once the transaction commits.
+ */
+final class UnitOfWork {
+    private final Connection connection;
+    private final Connection shared;
+    private final List<Runnable> afterCommit = new ArrayList<>();
+    private boolean rollbackOnly = false;
+
+    /**
+     * Starts a transaction on a connection
+     *
+     * @param connection the pooled connection, owned by this unit of work
+     * @throws SQLException if autocommit cannot be turned off, in which case the
+     *                      connection is closed
+     */
+    UnitOfWork(Connection connection) throws SQLException {
+        this.connection = connection;
+        this.shared = (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close", "commit", "setAutoCommit" -> {
+                            return null;
+                        }
+                        case "rollback" -> {
+                            if (args == null) {
+                                rollbackOnly = true;
+                                return null;
+                            }
+                        }
+                        case "equals" -> {
+                            return proxy == args[0];
+                        }
+                        case "hashCode" -> {
+                            return System.identityHashCode(proxy);
+                        }
+                        default -> {
+                        }
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+        try {
+            connection.setAutoCommit(false);
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the connection statements in this unit of work should use
+     *
+     * @return a connection whose close() and commit() do nothing
+     */
+    Connection getConnection() {
+        return shared;
+    }
+
+    /**
+     * Marks the unit of work so it is rolled back rather than committed
+     */
+    void setRollbackOnly() {
+        rollbackOnly = true;
+    }
+
+    /**
+     * Queues work to run once the transaction commits
+     *
+     * @param action the work
+     */
+    void afterCommit(Runnable action) {
+        afterCommit.add(action);
+    }
+
+    /**
+     * Commits the transaction, unless a statement in it was rolled back, then runs
+     * the after-commit work
+     *
+     * @throws SQLException if the commit fails, or the unit of work had to be
+     *                      rolled back instead
+     */
+    void commit() throws SQLException {
+        if (rollbackOnly) {
+            connection.rollback();
+            throw new SQLException("Transaction rolled back after a statement in it failed");
+        }
+        connection.commit();
+        afterCommit.forEach(Runnable::run);
+    }
+
+    /**
+     * Rolls back the transaction, dropping the after-commit work
+     *
+     * @throws SQLException if the rollback fails
+     */
+    void rollback() throws SQLException {
+        afterCommit.clear();
+        connection.rollback();
+    }
+
+    /**
+     * Ends the unit of work and returns its connection to the pool
+     */
+    void close() {
+        try {
+            connection.setAutoCommit(true);
+        } catch (SQLException ignored) {
+            // The pool resets the connection anyway
+        } finally {
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+                // Nothing more we can do with it
+            }
+        }
+    }
+}
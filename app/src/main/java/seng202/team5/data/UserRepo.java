@@ -0,0 +1,49 @@
+package seng202.team5.data;
+
+import seng202.team5.models.User;
+
+import java.util.Optional;
+
+/**
+ * Storage for the user profile. Only one user is kept at a time. Implemented
+ * over SQLite by {@link SqlBasedUserRepo} and in memory by
+ * {@link InMemoryUserRepo}.
+ */
+public interface UserRepo {
+
+    /**
+     * Finds the stored user
+     *
+     * @return an Optional containing the user if there is one; otherwise empty
+     */
+    Optional<User> findUser();
+
+    /**
+     * Inserts the user, or replaces the user with the same id
+     *
+     * @param user the user to save
+     */
+    void upsert(User user);
+
+    /**
+     * Deletes every stored user
+     */
+    void deleteAll();
+
+    /**
+     * Deletes users who never finished setting up their profile
+     *
+     * @return number of users deleted
+     */
+    int deleteIncomplete();
+
+    /**
+     * Runs work so it is committed as one, along with what other repositories on
+     * the same storage write during it
+     *
+     * @param work the work
+     * @param <E>  the checked exception the work can throw
+     * @throws E if the work fails
+     */
+    <E extends Exception> void runInTransaction(QueryHelper.TransactionAction<E> work) throws E;
+}
@@ -0,0 +1,245 @@
+package seng202.team5.data;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Queue of writes that a single background thread commits in batches.
+ * <p>
+ * Each commit costs a sync to disk, so rather than committing every upsert on
+ * its own, the writer thread waits a short batch window after the first pending
+ * write and commits everything that arrived in that window in one transaction.
+ * Callers get a future that completes once their write is committed. If a batch
+ * fails, its writes are retried one at a time so only the bad write fails.
+ * <p>
+ * The queue is bounded, so callers block when the writer falls behind. Call
+ * {@link #flush()} before reading data that must include pending writes, and
+ * {@link #close()} on shutdown.
+ */
+public class WriteBehindQueue implements AutoCloseable {
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final int DEFAULT_MAX_BATCH_SIZE = 256;
+    private static final Duration DEFAULT_BATCH_WINDOW = Duration.ofMillis(5);
+
+    private final QueryHelper queryHelper;
+    private final BlockingQueue<PendingWrite> queue;
+    private final int maxBatchSize;
+    private final long batchWindowNanos;
+    private final Thread writer;
+    // Held to read closed and queue a write, so none can be queued after close
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private volatile boolean closed = false;
+
+    /**
+     * Creates a write-behind queue with the default capacity and batch window
+     *
+     * @param databaseService the database to write to
+     */
+    public WriteBehindQueue(DatabaseService databaseService) {
+        this(databaseService, DEFAULT_CAPACITY, DEFAULT_BATCH_WINDOW, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    /**
+     * Creates a write-behind queue and starts its writer thread
+     *
+     * @param databaseService the database to write to
+     * @param capacity        most writes that can be pending before callers block
+     * @param batchWindow     how long to wait for more writes after the first one
+     * @param maxBatchSize    most writes committed in one transaction
+     */
+    public WriteBehindQueue(DatabaseService databaseService, int capacity, Duration batchWindow, int maxBatchSize) {
+        if (capacity <= 0 || maxBatchSize <= 0 || batchWindow.isNegative()) {
+            throw new IllegalArgumentException("Write-behind capacity and batch size must be positive");
+        }
+        this.queryHelper = new QueryHelper(databaseService);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxBatchSize = maxBatchSize;
+        this.batchWindowNanos = batchWindow.toNanos();
+        this.writer = Thread.ofPlatform().daemon().name("db-write-behind").start(this::runWriter);
+    }
+
+    /**
+     * Queues a write. Blocks if the queue is full.
+     *
+     * @param sql         the SQL insert, update or delete
+     * @param paramSetter functional interface to set parameters
+     * @return a future completed once the write is committed, or exceptionally
+     *         if it fails
+     */
+    public CompletableFuture<Void> submit(String sql, QueryHelper.ParameterSetter paramSetter) {
+        return enqueue(new PendingWrite(new QueryHelper.SqlStatement(sql, paramSetter), new CompletableFuture<>()));
+    }
+
+    /**
+     * Waits until every write queued before this call has been committed or has
+     * failed
+     */
+    public void flush() {
+        if (Thread.currentThread() == writer) {
+            return; // Called from a write's callback, which runs once that batch is done
+        }
+        try {
+            enqueue(new PendingWrite(null, new CompletableFuture<>())).join();
+        } catch (IllegalStateException e) {
+            // Already closed, so there is nothing left to wait for
+        }
+    }
+
+    /**
+     * Gets the number of writes waiting to be committed
+     *
+     * @return pending write count
+     */
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    /**
+     * Commits every pending write and stops the writer thread. Later writes are
+     * rejected.
+     */
+    @Override
+    public void close() {
+        closeLock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+
+        if (Thread.currentThread() == writer) {
+            return; // Called from a write's callback, the writer stops once the queue is empty
+        }
+        // No more writes can be queued, so the writer stops once it has
+        // committed the ones already queued. The marker wakes it if it is idle.
+        try {
+            queue.put(new PendingWrite(null, new CompletableFuture<>()));
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits for a queued write, rethrowing its failure as it would have been
+     * thrown by writing directly
+     *
+     * @param write the write's future
+     */
+    static void await(CompletableFuture<Void> write) {
+        try {
+            write.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Adds a write or flush marker to the queue
+     *
+     * @param pending the write
+     * @return the write's future
+     */
+    private CompletableFuture<Void> enqueue(PendingWrite pending) {
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Write-behind queue is closed");
+            }
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.future().completeExceptionally(e);
+        } finally {
+            closeLock.readLock().unlock();
+        }
+        return pending.future();
+    }
+
+    /**
+     * Writer thread loop: waits for a write, gathers whatever else arrives in the
+     * batch window and commits it
+     */
+    private void runWriter() {
+        List<PendingWrite> batch = new ArrayList<>();
+        while (!closed || !queue.isEmpty()) {
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + batchWindowNanos;
+                while (batch.size() < maxBatchSize && !batch.getLast().isFlush()) {
+                    PendingWrite next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Commit whatever was gathered so no caller is left waiting
+            }
+
+            commit(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Commits a batch in one transaction and completes its futures, retrying
+     * each write alone if the batch fails
+     *
+     * @param batch the writes, possibly ending in a flush marker
+     */
+    private void commit(List<PendingWrite> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<PendingWrite> writes = batch.stream().filter(pending -> !pending.isFlush()).toList();
+
+        try {
+            queryHelper.executeTransaction(writes.stream().map(PendingWrite::statement).toList());
+            writes.forEach(pending -> pending.future().complete(null));
+        } catch (RuntimeException batchFailure) {
+            for (PendingWrite pending : writes) {
+                try {
+                    queryHelper.executeTransaction(List.of(pending.statement()));
+                    pending.future().complete(null);
+                } catch (RuntimeException e) {
+                    pending.future().completeExceptionally(e);
+                }
+            }
+        }
+
+        batch.stream().filter(PendingWrite::isFlush).forEach(pending -> pending.future().complete(null));
+    }
+
+    /**
+     * A queued write, or a flush marker if it has no statement.
+     *
+     * @param statement the SQL to run, or null for a flush marker
+     * @param future    completed once the write is committed
+     */
+    private record PendingWrite(QueryHelper.SqlStatement statement, CompletableFuture<Void> future) {
+
+        /**
+         * Checks whether this is a flush marker rather than a write
+         *
+         * @return true for a flush marker
+         */
+        boolean isFlush() {
+            return statement == null;
+        }
+    }
+}
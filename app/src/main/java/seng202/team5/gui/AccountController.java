@@ -90,8 +90,7 @@ public class AccountController extends Controller {
         this.user = App.getUserService().getUser();
 
         MatchmakingService matchmakingService = new MatchmakingService(App.getKeywordRepo(), App.getTrailRepo());
-        this.statisticsService = new AccountStatisticsService(App.getTrailRepo(), App.getTrailLogRepo(),
-                matchmakingService, user);
+        this.statisticsService = new AccountStatisticsService(App.getTrailLogRepo(), matchmakingService, user);
     }
 
     @FXML
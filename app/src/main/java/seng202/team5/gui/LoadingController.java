@@ -1,12 +1,17 @@
 package seng202.team5.gui;
 
-import javafx.concurrent.Task;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.Label;
 import javafx.scene.control.ProgressIndicator;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.StackPane;
 import seng202.team5.App;
+import seng202.team5.data.DatabaseExecutor;
+import seng202.team5.exceptions.MatchmakingFailedException;
 import seng202.team5.gui.util.BackgroundImageUtil;
 import seng202.team5.models.User;
 import seng202.team5.services.MatchmakingService;
@@ -69,54 +74,50 @@ public class LoadingController extends Controller {
 
         final ScreenNavigator navigator = super.getNavigator();
 
-        // Create a background task for the matchmaking process
-        Task<Void> matchmakingTask = new Task<>() {
-            @Override
-            protected Void call() throws Exception {
-                if (isResetting) {
-                    App.resetApplication();
-                }
-                // Wait for database setup before we do ANYTHING
-                App.getSetupService().waitForDatabaseSetup();
-
-                // If skipping, set user as guest and skip the matchmaking and saving
-                if (isSkip) {
-                    UserService userService = App.getUserService();
-                    if (userService.getUser() == null) {
-                        userService.setGuest(true);
-                    }
-                    return null;
-                }
-
-                // Save the user to the database, clearing any previous user bye bye
-                UserService userService = App.getUserService();
-                userService.clearUser();
-                userService.saveUser(user);
-
-                // Do matchmaking now that we know everything is slaytastic
-                MatchmakingService matchmakingService = new MatchmakingService(App.getKeywordRepo(),
-                        App.getTrailRepo());
-                matchmakingService.generateTrailWeights(user);
-                return null;
+        // Waiting for setup holds no database permit, so only the database work
+        // itself goes through the shared executor
+        CompletableFuture.runAsync(() -> {
+            if (isResetting) {
+                App.resetApplication();
             }
+            // Wait for database setup before we do ANYTHING
+            App.getSetupService().waitForDatabaseSetup();
+        }, task -> Thread.ofVirtual().name("loading").start(task))
+                .thenCompose(ignored -> DatabaseExecutor.runAsync(this::saveUser))
+                .whenComplete((ignored, error) -> Platform.runLater(() -> {
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                        System.err.println("Matchmaking failed: " + cause.getMessage());
+                        navigator.launchScreen(new DashboardController(navigator));
+                        exitThread();
+                        return;
+                    }
 
-            @Override
-            protected void succeeded() {
-                navigator.launchScreen(new DashboardController(navigator));
-            }
+                    navigator.launchScreen(new DashboardController(navigator));
+                }));
+    }
 
-            @Override
-            protected void failed() {
-                Throwable exception = getException();
-                System.err.println("Matchmaking failed: " + exception.getMessage());
-                navigator.launchScreen(new DashboardController(navigator));
-                exitThread();
+    /**
+     * Saves the new user and matches them to trails, or continues as a guest if
+     * skipping
+     *
+     * @throws MatchmakingFailedException if the user couldn't be matched to trails
+     */
+    private void saveUser() throws MatchmakingFailedException {
+        // If skipping, set user as guest and skip the matchmaking and saving
+        if (isSkip) {
+            UserService userService = App.getUserService();
+            if (userService.getUser() == null) {
+                userService.setGuest(true);
             }
-        };
+            return;
+        }
 
-        Thread backgroundThread = new Thread(matchmakingTask);
-        backgroundThread.setDaemon(true);
-        backgroundThread.start();
+        // Save the user to the database, clearing any previous user bye bye,
+        // and do matchmaking now that we know everything is slaytastic
+        MatchmakingService matchmakingService = new MatchmakingService(App.getKeywordRepo(),
+                App.getTrailRepo());
+        App.getUserService().replaceUser(user, matchmakingService);
     }
 
     @Override
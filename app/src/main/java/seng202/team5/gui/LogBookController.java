@@ -9,9 +9,9 @@ import javafx.geometry.Insets;
 import javafx.scene.control.*;
 import javafx.scene.layout.FlowPane;
 import javafx.scene.layout.VBox;
-import javafx.concurrent.Task;
 import javafx.application.Platform;
 import seng202.team5.App;
+import seng202.team5.data.DatabaseExecutor;
 import seng202.team5.gui.components.TrailCardComponent;
 import seng202.team5.models.Trail;
 import seng202.team5.models.TrailLog;
@@ -127,36 +127,22 @@ public class LogBookController extends Controller {
      * Loads initial data asynchronously
      */
     private void loadInitialDataAsync() {
-        Task<Void> loadTask = new Task<>() {
-            @Override
-            protected Void call() {
-                if (searchText != null) {
-                    logService.setCurrentQuery(searchText);
-                }
-                logService.getPage(0);
-                return null;
+        DatabaseExecutor.runAsync(() -> {
+            if (searchText != null) {
+                logService.setCurrentQuery(searchText);
             }
-
-            @Override
-            protected void succeeded() {
-                // JavaFX app thread
-                Platform.runLater(() -> updateSearchDisplay());
-            }
-
-            @Override
-            protected void failed() {
-                Platform.runLater(() -> {
-                    logContainer.getChildren().clear();
-                    Label errorLabel = new Label("Failed to load logs. Please try again.");
-                    logContainer.getChildren().add(errorLabel);
-                    resultsLabel.setText("Error loading logs");
-                });
+            logService.getPage(0);
+        }).whenComplete((ignored, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                logContainer.getChildren().clear();
+                Label errorLabel = new Label("Failed to load logs. Please try again.");
+                logContainer.getChildren().add(errorLabel);
+                resultsLabel.setText("Error loading logs");
+                return;
             }
-        };
 
-        Thread loadThread = new Thread(loadTask);
-        loadThread.setDaemon(true);
-        loadThread.start();
+            updateSearchDisplay();
+        }));
     }
 
     /**
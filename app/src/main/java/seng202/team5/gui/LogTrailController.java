@@ -1,5 +1,6 @@
 package seng202.team5.gui;
 
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import seng202.team5.App;
@@ -118,6 +119,15 @@ public class LogTrailController extends Controller {
     private void showError(Control control, String message) {
         clearErrors();
         control.setStyle("-fx-border-color: red");
+        showError(message);
+    }
+
+    /**
+     * Shows an error message that isn't about a single form field.
+     *
+     * @param message the error message to show
+     */
+    private void showError(String message) {
         if (errorLabel != null) {
             errorLabel.setText(message);
             errorLabel.setVisible(true);
@@ -167,8 +177,15 @@ public class LogTrailController extends Controller {
         trailLog.setPerceivedDifficulty(perceivedDifficultySelector.getValue());
         trailLog.setNotes(noteTextArea.getText());
 
-        logService.addLog(trailLog);
-        super.getNavigator().launchScreen(new LogBookController(getNavigator()));
+        logService.addLogAsync(trailLog).whenComplete((ignored, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                // Stay on the form so the log isn't lost
+                System.err.println("Failed to save log: " + error.getMessage());
+                showError("The log couldn't be saved. Please try again.");
+                return;
+            }
+            super.getNavigator().launchScreen(new LogBookController(getNavigator()));
+        }));
     }
 
     @FXML
@@ -2,6 +2,7 @@ package seng202.team5.gui;
 
 import com.google.gson.Gson;
 import com.sun.javafx.webkit.WebConsoleListener;
+import javafx.application.Platform;
 import javafx.concurrent.Worker;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
@@ -332,8 +333,15 @@ public class ModifyTrailController extends Controller {
     private void onSaveButtonClicked() {
         if (userInputValidation()) {
             Trail updatedTrail = getUpdatedTrail();
-            trailService.addTrail(updatedTrail);
-            super.getNavigator().launchScreen(new ViewTrailController(super.getNavigator(), updatedTrail));
+            trailService.addTrailAsync(updatedTrail).whenComplete((ignored, error) -> Platform.runLater(() -> {
+                if (error != null) {
+                    // Stay on the form so the trail isn't lost
+                    System.err.println("Failed to save trail: " + error.getMessage());
+                    emptyFieldLabel.setText("The trail couldn't be saved. Please try again.");
+                    return;
+                }
+                super.getNavigator().launchScreen(new ViewTrailController(super.getNavigator(), updatedTrail));
+            }));
         }
         // Error message is already set by userInputValidation method
     }
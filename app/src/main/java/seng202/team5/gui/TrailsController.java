@@ -2,13 +2,13 @@ package seng202.team5.gui;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
 import org.controlsfx.control.CheckComboBox;
 
 import javafx.application.Platform;
-import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.geometry.Insets;
 import javafx.scene.control.Button;
@@ -19,7 +19,9 @@ import javafx.scene.control.TextField;
 import javafx.scene.control.ToggleButton;
 import javafx.scene.layout.FlowPane;
 import javafx.scene.layout.VBox;
+import javafx.util.StringConverter;
 import seng202.team5.App;
+import seng202.team5.data.DatabaseExecutor;
 import seng202.team5.gui.components.TrailCardComponent;
 import seng202.team5.models.Trail;
 import seng202.team5.services.SearchService;
@@ -165,51 +167,35 @@ public class TrailsController extends Controller {
      * Loads initial data asynchronously
      */
     private void loadInitialDataAsync() {
-        Task<Void> loadTask = new Task<>() {
-            @Override
-            protected Void call() {
-                if (searchText != null) {
-                    searchService.setCurrentQuery(searchText);
-                }
-                searchService.getPage(0);
-                return null;
+        DatabaseExecutor.runAsync(() -> {
+            if (searchText != null) {
+                searchService.setCurrentQuery(searchText);
+            }
+            searchService.getPage(0);
+        }).whenComplete((ignored, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                trailsContainer.getChildren().clear();
+                Label errorLabel = new Label("Failed to load trails. Please try again.");
+                trailsContainer.getChildren().add(errorLabel);
+                resultsLabel.setText("Error loading trails");
+                return;
             }
 
-            @Override
-            protected void succeeded() {
-                // JavaFX app thread
-                Platform.runLater(() -> {
-                    if (searchText != null) {
-                        executeDashboardSearch();
-                    } else {
-                        onFilterChanged();
-                        updateSearchDisplay();
-                    }
-
-                    // page restoration after trails are loaded
-                    if (isRestoringState) {
-                        restorePageAndScrollPosition();
-                        isRestoringState = false;
-                    }
-
-                    nextPageButton.setVisible(searchService.getNumberOfPages() > 1);
-                });
+            if (searchText != null) {
+                executeDashboardSearch();
+            } else {
+                onFilterChanged();
+                updateSearchDisplay();
             }
 
-            @Override
-            protected void failed() {
-                Platform.runLater(() -> {
-                    trailsContainer.getChildren().clear();
-                    Label errorLabel = new Label("Failed to load trails. Please try again.");
-                    trailsContainer.getChildren().add(errorLabel);
-                    resultsLabel.setText("Error loading trails");
-                });
+            // page restoration after trails are loaded
+            if (isRestoringState) {
+                restorePageAndScrollPosition();
+                isRestoringState = false;
             }
-        };
 
-        Thread loadThread = new Thread(loadTask);
-        loadThread.setDaemon(true);
-        loadThread.start();
+            nextPageButton.setVisible(searchService.getNumberOfPages() > 1);
+        }));
     }
 
     /**
@@ -485,6 +471,44 @@ public class TrailsController extends Controller {
         List<Trail> trails = searchService.getPage(0);
         updateTrailsDisplay(trails);
         resetPageChoiceBox();
+        updateFilterCounts();
+    }
+
+    /**
+     * Shows how many trails each filter option would give next to the option,
+     * given the other filters and search.
+     */
+    private void updateFilterCounts() {
+        showFilterCounts(regionCheckComboBox, "regions");
+        showFilterCounts(completionTypeCheckComboBox, "completionType");
+        showFilterCounts(timeUnitCheckComboBox, "timeUnit");
+        showFilterCounts(difficultyCheckComboBox, "difficulty");
+    }
+
+    /**
+     * Labels each option of a CheckComboBox with its trail count. The items
+     * themselves are left alone as they are the filter values.
+     *
+     * @param checkComboBox The CheckComboBox to label
+     * @param filterType    The filter type identifier
+     */
+    private void showFilterCounts(CheckComboBox<String> checkComboBox, String filterType) {
+        if (checkComboBox == null) {
+            return;
+        }
+        Map<String, Integer> counts = searchService.countFilterOptions(filterType, checkComboBox.getItems());
+        checkComboBox.setConverter(new StringConverter<>() {
+            @Override
+            public String toString(String item) {
+                Integer count = counts.get(item);
+                return count == null ? item : item + " (" + count + ")";
+            }
+
+            @Override
+            public String fromString(String text) {
+                return text;
+            }
+        });
     }
 
     /**
@@ -23,7 +23,6 @@ import seng202.team5.services.RegionFinder;
 import seng202.team5.utils.CompletionTimeParser;
 import seng202.team5.services.TrailService;
 import seng202.team5.utils.StringManipulator;
-import seng202.team5.utils.TrailsProcessor;
 import seng202.team5.services.WeatherService;
 import seng202.team5.models.Weather;
 
@@ -211,7 +210,7 @@ public class ViewTrailController extends Controller {
      * @param radius the radius in km of nearby trails to be viewed
      */
     private void updateNearbyTrails(int radius) {
-        List<Trail> nearby = TrailsProcessor.getNearbyTrails(trail, radius, trailService.getAllTrails());
+        List<Trail> nearby = trailService.getNearbyTrails(trail, radius);
         displayTrailsOnMap(nearby);
     }
 
@@ -0,0 +1,10 @@
+package seng202.team5.models;
+
+/**
+ * A trail log together with the trail it was logged against.
+ *
+ * @param log   the trail log
+ * @param trail the logged trail
+ */
+public record LoggedTrail(TrailLog log, Trail trail) {
+}
@@ -0,0 +1,14 @@
+package seng202.team5.models;
+
+/**
+ * A trail found by full-text search, with its match highlighted.
+ *
+ * @param trailId         id of the matching trail
+ * @param rank            bm25 rank, lower is a better match
+ * @param highlightedName the trail name with matching terms wrapped in
+ *                        brackets
+ * @param snippet         a short extract of the description around the match,
+ *                        with matching terms wrapped in brackets
+ */
+public record TrailSearchResult(int trailId, double rank, String highlightedName, String snippet) {
+}
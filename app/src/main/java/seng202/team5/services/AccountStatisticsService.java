@@ -1,8 +1,8 @@
 package seng202.team5.services;
 
-import seng202.team5.data.SqlBasedTrailLogRepo;
-import seng202.team5.data.SqlBasedTrailRepo;
+import seng202.team5.data.TrailLogRepo;
 import seng202.team5.exceptions.MatchmakingFailedException;
+import seng202.team5.models.LoggedTrail;
 import seng202.team5.models.Trail;
 import seng202.team5.models.TrailLog;
 import seng202.team5.models.User;
@@ -15,7 +15,6 @@ import java.util.stream.Collectors;
  */
 public class AccountStatisticsService {
 
-    private final SqlBasedTrailRepo trailRepo;
     private final MatchmakingService matchmakingService;
 
     private final User user;
@@ -25,33 +24,32 @@ public class AccountStatisticsService {
     /**
      * Constructor for AccountStatisticsService
      *
+     * @param trailLogRepo       repo the user's logs and their trails are read from
      * @param matchmakingService Service for trail categorization and scoring
      */
-    public AccountStatisticsService(SqlBasedTrailRepo trailRepo, SqlBasedTrailLogRepo trailLogRepo,
-            MatchmakingService matchmakingService, User user) {
-        this.trailRepo = trailRepo;
+    public AccountStatisticsService(TrailLogRepo trailLogRepo, MatchmakingService matchmakingService,
+            User user) {
         this.matchmakingService = matchmakingService;
         this.user = user;
-        this.userLogs = trailLogRepo.getAllTrailLogs();
-        this.loggedTrails = getLoggedTrails(userLogs);
+        List<LoggedTrail> loggedTrailLogs = trailLogRepo.getAllTrailLogsWithTrails();
+        this.userLogs = loggedTrailLogs.stream()
+                .map(LoggedTrail::log)
+                .toList();
+        this.loggedTrails = getLoggedTrails(loggedTrailLogs);
     }
 
     /**
      * Get trails that have been logged by the user
      *
-     * @param logs List of trail logs
+     * @param logs List of trail logs with their trails
      * @return List of unique trails logged by user
      */
-    private List<Trail> getLoggedTrails(List<TrailLog> logs) {
-        Set<Integer> loggedTrailIds = logs.stream()
-                .map(TrailLog::getTrailId)
-                .collect(Collectors.toSet());
-
-        return loggedTrailIds.stream()
-                .map(trailRepo::findById)
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .collect(Collectors.toList());
+    private List<Trail> getLoggedTrails(List<LoggedTrail> logs) {
+        Map<Integer, Trail> trailsById = new LinkedHashMap<>();
+        for (LoggedTrail log : logs) {
+            trailsById.putIfAbsent(log.trail().getId(), log.trail());
+        }
+        return new ArrayList<>(trailsById.values());
     }
 
     /**
@@ -1,18 +1,19 @@
 package seng202.team5.services;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
 
-import seng202.team5.data.SqlBasedTrailRepo;
+import seng202.team5.data.TrailRepo;
 import seng202.team5.models.Trail;
 
 public class DashboardService {
 
-    private final SqlBasedTrailRepo trailRepo;
+    private final TrailRepo trailRepo;
 
-    public DashboardService(SqlBasedTrailRepo trailRepo) {
+    public DashboardService(TrailRepo trailRepo) {
         this.trailRepo = trailRepo;
     }
 
@@ -53,7 +54,7 @@ public class DashboardService {
      * @return list of random trails
      */
     public List<Trail> getRandomTrails() {
-        List<Trail> allTrails = trailRepo.getAllTrails();
+        List<Trail> allTrails = new ArrayList<>(trailRepo.getAllTrails());
         Collections.shuffle(allTrails);
         return allTrails.stream().limit(8).collect(Collectors.toList());
     }
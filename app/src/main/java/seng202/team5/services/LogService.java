@@ -1,7 +1,7 @@
 package seng202.team5.services;
 
-import seng202.team5.data.SqlBasedTrailLogRepo;
-import seng202.team5.data.SqlBasedTrailRepo;
+import seng202.team5.data.TrailLogRepo;
+import seng202.team5.data.TrailRepo;
 import seng202.team5.models.Trail;
 import seng202.team5.models.TrailLog;
 import seng202.team5.utils.CompletionTimeParser;
@@ -10,18 +10,20 @@ import java.time.LocalDate;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 public class LogService {
 
-    private final SqlBasedTrailLogRepo trailLogRepo;
+    private final TrailLogRepo trailLogRepo;
     private final List<TrailLog> logs;
     private List<TrailLog> filteredLogs;
     private int maxResults = 50;
     private String currentSearchValue;
-    private final SqlBasedTrailRepo trailRepo;
+    private final TrailRepo trailRepo;
 
-    public LogService(SqlBasedTrailLogRepo trailLogRepo, SqlBasedTrailRepo trailRepo) {
+    public LogService(TrailLogRepo trailLogRepo, TrailRepo trailRepo) {
         this.trailLogRepo = trailLogRepo;
         this.logs = trailLogRepo.getAllTrailLogs();
         this.filteredLogs = logs;
@@ -40,16 +42,22 @@ public class LogService {
     }
 
     /**
-     * Updates logs based on current search
+     * Updates logs based on current search. The logged trails are looked up in a
+     * single query.
      */
     public void updateLogs() {
         String lower = currentSearchValue == null ? "" : currentSearchValue.toLowerCase();
 
+        Set<Integer> trailIds = logs.stream()
+                .map(TrailLog::getTrailId)
+                .collect(Collectors.toSet());
+        Set<Integer> matchingTrailIds = trailRepo.findAllByIds(trailIds).stream()
+                .filter(trail -> trail.getName().toLowerCase().contains(lower))
+                .map(Trail::getId)
+                .collect(Collectors.toSet());
+
         filteredLogs = logs.stream()
-                .filter(t -> {
-                    Optional<Trail> trail = trailRepo.findById(t.getTrailId());
-                    return trail.isPresent() && trail.get().getName().toLowerCase().contains(lower);
-                })
+                .filter(log -> matchingTrailIds.contains(log.getTrailId()))
                 .collect(Collectors.toList());
     }
 
@@ -92,6 +100,10 @@ public class LogService {
         trailLogRepo.upsert(trailLog);
     }
 
+    public CompletableFuture<Void> addLogAsync(TrailLog trailLog) {
+        return trailLogRepo.upsertAsync(trailLog);
+    }
+
     public Optional<Trail> getTrail(int trailId) {
         return trailRepo.findById(trailId);
     }
@@ -1,7 +1,7 @@
 package seng202.team5.services;
 
-import seng202.team5.data.SqlBasedKeywordRepo;
-import seng202.team5.data.SqlBasedTrailRepo;
+import seng202.team5.data.KeywordRepo;
+import seng202.team5.data.TrailRepo;
 import seng202.team5.exceptions.MatchmakingFailedException;
 import seng202.team5.models.Trail;
 import seng202.team5.models.User;
@@ -20,8 +20,8 @@ public class MatchmakingService {
     private final Map<String, List<String>> categoryToKeywords; // category -> keywords
     private final Map<String, Integer> userWeights = new HashMap<>(); // Higher weight is more favourable
     private final Map<Integer, Double> trailWeights = new HashMap<>(); // Identified by trail ID
-    private final SqlBasedKeywordRepo keywordRepo;
-    private final SqlBasedTrailRepo trailRepo;
+    private final KeywordRepo keywordRepo;
+    private final TrailRepo trailRepo;
 
     /**
      * Creates a MatchmakingService instance for testing with custom repos
@@ -30,7 +30,7 @@ public class MatchmakingService {
      * @param trailRepo   repository for trail data which are used for scoring and
      *                    sorting
      */
-    public MatchmakingService(SqlBasedKeywordRepo keywordRepo, SqlBasedTrailRepo trailRepo) {
+    public MatchmakingService(KeywordRepo keywordRepo, TrailRepo trailRepo) {
         this.keywordRepo = keywordRepo;
         this.trailRepo = trailRepo;
         this.categoryToKeywords = keywordRepo.getKeywords();
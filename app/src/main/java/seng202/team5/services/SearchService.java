@@ -1,11 +1,15 @@
 package seng202.team5.services;
 
-import seng202.team5.data.SqlBasedFilterOptionsRepo;
-import seng202.team5.data.SqlBasedTrailRepo;
+import seng202.team5.data.DataChangeEvent;
+import seng202.team5.data.DataEventBus;
+import seng202.team5.data.FilterOptionsRepo;
+import seng202.team5.data.TrailRepo;
+import seng202.team5.data.TrailQuery;
 import seng202.team5.models.Trail;
+import seng202.team5.models.TrailSearchResult;
 
+import java.lang.ref.WeakReference;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Service class responsible for searching, sorting, filtering trails
@@ -21,11 +25,22 @@ public class SearchService {
             "difficulty", "All difficulties",
             "regions", "All regions");
 
-    private final SqlBasedFilterOptionsRepo filterOptionsRepo;
+    /**
+     * Field each filter type filters on, for counting trails per option.
+     */
+    private static final Map<String, TrailQuery.Facet> FACETS = Map.of(
+            "completionType", TrailQuery.Facet.COMPLETION_TYPE,
+            "timeUnit", TrailQuery.Facet.TIME_UNIT,
+            "difficulty", TrailQuery.Facet.DIFFICULTY,
+            "regions", TrailQuery.Facet.REGION);
+
+    private final FilterOptionsRepo filterOptionsRepo;
+    private final TrailRepo trailRepo;
 
-    private final List<Trail> trails;
-    private List<Trail> filteredTrails;
     private final Map<String, String> filters;
+    private TrailQuery query; // built from the filters and sort, null when they have changed
+    private volatile List<String> difficultyOrder; // lower case, null until read or after a refresh
+    private int numberOfTrails;
 
     private int maxResults = 50;
     private String currentSortBy = "name";
@@ -34,11 +49,47 @@ public class SearchService {
     /**
      * Legacy constructor for testing (fallback without filter options repo).
      */
-    public SearchService(SqlBasedTrailRepo sqlBasedTrailRepo, SqlBasedFilterOptionsRepo filterOptionsRepo) {
+    public SearchService(TrailRepo trailRepo, FilterOptionsRepo filterOptionsRepo) {
+        this(trailRepo, filterOptionsRepo, DataEventBus.getInstance());
+    }
+
+    /**
+     * Creates a search service that reads the difficulty order again whenever
+     * the given bus says the filter options have changed
+     *
+     * @param trailRepo         repository to search
+     * @param filterOptionsRepo repository of the filter options, or null
+     * @param eventBus          bus the filter option refreshes are published on
+     */
+    public SearchService(TrailRepo trailRepo, FilterOptionsRepo filterOptionsRepo, DataEventBus eventBus) {
         this.filterOptionsRepo = filterOptionsRepo;
-        this.trails = sqlBasedTrailRepo.getAllTrails();
-        this.filteredTrails = trails;
+        this.trailRepo = trailRepo;
+        this.numberOfTrails = trailRepo.countTrails();
         this.filters = new HashMap<>();
+        subscribeToRefreshes(eventBus);
+    }
+
+    /**
+     * Drops the cached difficulty order whenever the filter options may have
+     * changed. The bus keeps its subscribers until they unsubscribe, so the
+     * listener only holds this service weakly and unsubscribes once it is gone.
+     *
+     * @param eventBus bus the filter option refreshes are published on
+     */
+    private void subscribeToRefreshes(DataEventBus eventBus) {
+        WeakReference<SearchService> service = new WeakReference<>(this);
+        DataEventBus.Subscription[] subscription = new DataEventBus.Subscription[1];
+        subscription[0] = eventBus.subscribe(DataChangeEvent.class, event -> {
+            SearchService searchService = service.get();
+            if (searchService == null) {
+                if (subscription[0] != null) {
+                    subscription[0].close();
+                }
+            } else if (event instanceof DataChangeEvent.FilterOptionsRefreshed
+                    || event instanceof DataChangeEvent.DatabaseRestored) {
+                searchService.difficultyOrder = null;
+            }
+        });
     }
 
     /**
@@ -49,133 +100,172 @@ public class SearchService {
         if (maxResults <= 0) {
             return 1;
         }
-        return (int) Math.ceil((double) filteredTrails.size() / maxResults);
+        return (int) Math.ceil((double) numberOfTrails / maxResults);
     }
 
     /**
      * Gets the total number of trails in the filtered results.
      */
     public int getNumberOfTrails() {
-        return filteredTrails.size();
+        return numberOfTrails;
     }
 
     /**
-     * Gets a specific page of trails from the filtered results.
+     * Gets a specific page of trails from the filtered results. Only that page is
+     * read from the database, and the trails are only counted again when the
+     * filters or sort have changed.
      *
      * @param page the page number (0-indexed)
      * @return list of trails for the specified page
      */
     public List<Trail> getPage(int page) {
-        updateTrails();
-        int startIndex = page * maxResults;
-        return filteredTrails.stream()
-                .skip(startIndex)
-                .limit(maxResults)
-                .collect(Collectors.toList());
+        boolean changed = this.query == null;
+        TrailQuery query = buildQuery();
+        if (changed) {
+            numberOfTrails = trailRepo.countTrails(query);
+        }
+        int limit = Math.max(maxResults, 0);
+        return trailRepo.searchTrails(query.toBuilder().page(page * limit, limit).build());
     }
 
     /**
-     * Updates trails based on current filters and sort settings.
+     * Updates the filtered trail count based on current filters and sort settings.
      */
     public void updateTrails() {
-        filteredTrails = trails.stream()
-                .filter(this::matchesAllFilters)
-                .filter(this::shouldIncludeInSort)
-                .sorted(getSortComparator())
-                .collect(Collectors.toList());
+        numberOfTrails = trailRepo.countTrails(buildQuery());
     }
 
     /**
-     * Checks if a trail matches all current filters, strictly
+     * Gets the trail query for the current filters and sort settings, building
+     * it only when they have changed since it was last built, or when sorting
+     * by difficulty and the difficulty order has been refreshed.
+     *
+     * @return the query, without paging
      */
-    private boolean matchesAllFilters(Trail trail) {
-        String query = filters.get("query");
-        if (query != null && !query.isEmpty() &&
-                !trail.getName().toLowerCase().contains(query.toLowerCase())) {
-            return false;
+    private TrailQuery buildQuery() {
+        if (query == null) {
+            query = compileQuery();
         }
-
-        if (!matchesFilter("completionType", filters.get("completionType"), trail.getCompletionType())) {
-            return false;
-        }
-
-        if (!matchesFilter("timeUnit", filters.get("timeUnit"), trail.getTimeUnit())) {
-            return false;
+        if (query.getSortKey() == TrailQuery.SortKey.DIFFICULTY) {
+            List<String> order = getDifficultyOrder();
+            if (!order.equals(query.getDifficultyOrder())) {
+                query = query.toBuilder().difficultyOrder(order).build();
+            }
         }
+        return query;
+    }
 
-        if (!matchesFilter("difficulty", filters.get("difficulty"), trail.getDifficulty())) {
-            return false;
-        }
+    /**
+     * Builds the trail query for the current filters and sort settings, splitting
+     * each filter value into the set of values it allows
+     *
+     * @return the query, without paging
+     */
+    private TrailQuery compileQuery() {
+        String regionFilter = filters.get("regions");
+        Set<String> regions = toAllowedValues(null, regionFilter);
+        boolean includeUnknownRegion = regions == null || regions.stream().anyMatch("Other"::equalsIgnoreCase);
+
+        TrailQuery.SortKey sortKey = switch (currentSortBy.toLowerCase()) {
+            case "time" -> TrailQuery.SortKey.TIME;
+            case "difficulty" -> TrailQuery.SortKey.DIFFICULTY;
+            case "match" -> TrailQuery.SortKey.MATCH;
+            default -> TrailQuery.SortKey.NAME;
+        };
 
-        return matchesRegionFilter(filters.get("regions"), trail.getRegion());
+        return new TrailQuery.Builder()
+                .textMatch(filters.get("query"))
+                .completionTypes(toAllowedValues("completionType", filters.get("completionType")))
+                .timeUnits(toAllowedValues("timeUnit", filters.get("timeUnit")))
+                .difficulties(toAllowedValues("difficulty", filters.get("difficulty")))
+                .regions(regions, includeUnknownRegion)
+                .sortBy(sortKey, isAscending)
+                .build();
     }
 
     /**
-     * Checks if a trail attribute matches the selected filter values.
+     * Turns a comma separated filter value into the set of values trails may
+     * have.
+     *
+     * @param filterType  the filter type, used to look up its "all" value, or
+     *                    null if it has none
+     * @param filterValue the selected values
+     * @return null if every trail matches, otherwise the allowed values (empty
+     *         means exclude all)
      */
-    private boolean matchesFilter(String filterType, String filterValue, String trailValue) {
+    private Set<String> toAllowedValues(String filterType, String filterValue) {
         if (filterValue == null) {
-            return true; // No filter applied - include all
+            return null; // No filter applied - include all
         }
 
         if (filterValue.isEmpty()) {
-            return false; // Empty filter means exclude all
+            return Set.of(); // Empty filter means exclude all
         }
 
-        List<String> selectedValues = List.of(filterValue.split(","));
+        Set<String> selectedValues = new LinkedHashSet<>();
+        for (String selected : filterValue.split(",")) {
+            selectedValues.add(selected.trim());
+        }
 
         // If "Select All" is in the selected values, allow all trails through
-        if (selectedValues.stream().anyMatch(selected -> selected.trim().equals("Select All"))) {
-            return true;
+        if (selectedValues.contains("Select All")) {
+            return null;
         }
 
-        String defaultValue = DEFAULT_VALUES.get(filterType);
-        if (defaultValue != null && selectedValues.stream()
-                .anyMatch(selected -> selected.trim().equalsIgnoreCase(defaultValue))) {
-            return true; // include all the trails
+        String defaultValue = filterType != null ? DEFAULT_VALUES.get(filterType) : null;
+        if (defaultValue != null && selectedValues.stream().anyMatch(defaultValue::equalsIgnoreCase)) {
+            return null; // include all the trails
         }
 
-        return selectedValues.stream()
-                .anyMatch(selected -> selected.trim().equalsIgnoreCase(trailValue));
+        return Collections.unmodifiableSet(selectedValues);
     }
 
     /**
-     * Checks if a trail's region matches the selected region filter values.
+     * Counts the trails each option of a filter would give alongside the other
+     * filters and the search text, so users can see which options leave no
+     * trails. All the options are counted in one go.
+     *
+     * @param filterType the filter type
+     * @param options    the options shown for it
+     * @return count per option; "Select All" and the default value count every
+     *         trail the other filters allow, and the "Other" region includes
+     *         trails with no region
      */
-    private boolean matchesRegionFilter(String regionFilter, String trailRegion) {
-        if (regionFilter == null) {
-            return true; // No filter applied
+    public Map<String, Integer> countFilterOptions(String filterType, Collection<String> options) {
+        TrailQuery.Facet facet = FACETS.get(filterType);
+        if (facet == null) {
+            return Map.of();
         }
 
-        if (regionFilter.isEmpty()) {
-            return false; // Empty filter means exclude all
-        }
-
-        List<String> selectedRegions = List.of(regionFilter.split(","));
-
-        // If "Select All" is in the selected regions, allow all trails through
-        if (selectedRegions.stream().anyMatch(selected -> selected.trim().equals("Select All"))) {
-            return true;
-        }
-
-        if (trailRegion != null && !trailRegion.isEmpty()) {
-            return selectedRegions.stream()
-                    .anyMatch(selected -> selected.trim().equalsIgnoreCase(trailRegion));
-        } else {
-            return selectedRegions.stream()
-                    .anyMatch(region -> region.trim().equalsIgnoreCase("Other"));
+        Map<String, Integer> counts = trailRepo.countTrailsByFacet(buildQuery(), facet);
+        int total = counts.values().stream().mapToInt(Integer::intValue).sum();
+
+        Map<String, Integer> optionCounts = new LinkedHashMap<>();
+        for (String option : options) {
+            int count;
+            if ("Select All".equals(option) || option.equalsIgnoreCase(DEFAULT_VALUES.get(filterType))) {
+                count = total;
+            } else {
+                count = counts.getOrDefault(option.toLowerCase(Locale.ROOT), 0);
+                if (facet == TrailQuery.Facet.REGION && "Other".equalsIgnoreCase(option)) {
+                    count += counts.getOrDefault("", 0);
+                }
+            }
+            optionCounts.put(option, count);
         }
+        return optionCounts;
     }
 
     /**
-     * Filter out unwanted trails from sort
+     * Ranks trails by how well their name, translation and description match
+     * some text.
+     *
+     * @param text  the text to search for
+     * @param limit maximum number of results
+     * @return best matches first, with matching terms highlighted
      */
-    private boolean shouldIncludeInSort(Trail trail) {
-        return switch (currentSortBy.toLowerCase()) {
-            case "time" -> trail.getAvgCompletionTimeMinutes() > 0;
-            case "difficulty" -> !trail.getDifficulty().equalsIgnoreCase("unknown");
-            default -> true;
-        };
+    public List<TrailSearchResult> searchText(String text, int limit) {
+        return trailRepo.searchTrailText(text, limit);
     }
 
     /**
@@ -183,6 +273,7 @@ public class SearchService {
      */
     public void updateFilter(String filter, String filterString) {
         filters.put(filter, filterString);
+        query = null;
     }
 
     /**
@@ -190,6 +281,7 @@ public class SearchService {
      */
     public void setCurrentQuery(String query) {
         filters.put("query", query);
+        this.query = null;
     }
 
     /**
@@ -199,32 +291,6 @@ public class SearchService {
         setCurrentQuery(query);
     }
 
-    /**
-     * Gets the comparator for sorting trails based on current settings.
-     */
-    private Comparator<Trail> getSortComparator() {
-        Comparator<Trail> comparator = switch (currentSortBy.toLowerCase()) {
-            case "time" -> Comparator.comparingInt(Trail::getAvgCompletionTimeMinutes);
-            case "difficulty" -> getDifficultyComparator();
-            case "match" -> Comparator.comparingDouble(Trail::getUserWeight).reversed();
-            default -> Comparator.comparing(Trail::getName, String.CASE_INSENSITIVE_ORDER);
-        };
-
-        return isAscending ? comparator : comparator.reversed();
-    }
-
-    /**
-     * Gets a comparator for sorting by difficulty level.
-     */
-    private Comparator<Trail> getDifficultyComparator() {
-        List<String> difficultyOrder = getDifficultyOrder();
-        return Comparator.comparing(trail -> {
-            String difficulty = trail.getDifficulty().toLowerCase();
-            int index = difficultyOrder.indexOf(difficulty);
-            return index == -1 ? 999 : index;
-        });
-    }
-
     /**
      * Gets available filter options for a specific filter type.
      */
@@ -281,6 +347,7 @@ public class SearchService {
      */
     public void setSortBy(String sortBy) {
         this.currentSortBy = sortBy;
+        query = null;
     }
 
     /**
@@ -302,6 +369,7 @@ public class SearchService {
      */
     public void setSortAscending(boolean ascending) {
         this.isAscending = ascending;
+        query = null;
     }
 
     /**
@@ -312,9 +380,21 @@ public class SearchService {
     }
 
     /**
-     * Gets the difficulty order for UI components from the database.
+     * Gets the difficulty order for UI components, read from the database the
+     * first time and again only after the filter options are refreshed.
+     *
+     * @return lower case difficulties, easiest first; empty if there is no filter
+     *         options repo
      */
     public List<String> getDifficultyOrder() {
-        return filterOptionsRepo.getFilterOptions("difficulty");
+        List<String> order = difficultyOrder;
+        if (order == null) {
+            order = filterOptionsRepo == null ? List.of()
+                    : filterOptionsRepo.getFilterOptions("difficulty").stream()
+                            .map(difficulty -> difficulty.toLowerCase(Locale.ROOT))
+                            .toList();
+            difficultyOrder = order;
+        }
+        return order;
     }
 }
\ No newline at end of file
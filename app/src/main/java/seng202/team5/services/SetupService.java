@@ -2,12 +2,14 @@ package seng202.team5.services;
 
 import seng202.team5.utils.AppDataManager;
 import seng202.team5.App;
+import seng202.team5.data.DatabaseBackupService;
 import seng202.team5.data.DatabaseService;
 import seng202.team5.data.FileBasedKeywordRepo;
 import seng202.team5.data.FileBasedTrailRepo;
-import seng202.team5.data.SqlBasedKeywordRepo;
-import seng202.team5.data.SqlBasedTrailRepo;
-import seng202.team5.data.SqlBasedFilterOptionsRepo;
+import seng202.team5.data.FilterOptionsRepo;
+import seng202.team5.data.KeywordRepo;
+import seng202.team5.data.QueryHelper;
+import seng202.team5.data.TrailRepo;
 import seng202.team5.exceptions.MatchmakingFailedException;
 import seng202.team5.models.Trail;
 import seng202.team5.utils.TrailsProcessor;
@@ -18,7 +20,9 @@ import java.io.InputStream;
 import java.net.URI;
 import java.net.URL;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
 import java.util.List;
 
 /**
@@ -28,22 +32,44 @@ import java.util.List;
  */
 public class SetupService {
     private final DatabaseService databaseService;
-    private final SqlBasedTrailRepo sqlTrailRepo;
+    private final TrailRepo trailRepo;
     private final FileBasedTrailRepo fileTrailRepo;
+    private final KeywordRepo keywordRepo;
+    private final FilterOptionsRepo filterOptionsRepo;
     private volatile boolean databaseSetupComplete = false;
 
     /**
      * Main constructor with database service
      *
      */
-    public SetupService(SqlBasedTrailRepo sqlTrailRepo, DatabaseService databaseService) {
+    public SetupService(TrailRepo trailRepo, DatabaseService databaseService) {
+        this(trailRepo, databaseService, null, null);
+    }
+
+    /**
+     * Constructor for setting up a database other than the application's own,
+     * such as when building the database snapshot
+     *
+     * @param trailRepo         trail repository for the database
+     * @param databaseService   the database to set up
+     * @param keywordRepo       keyword repository for the database, or null to use
+     *                          the application's
+     * @param filterOptionsRepo filter options repository for the database, or null
+     *                          to use the application's
+     */
+    public SetupService(TrailRepo trailRepo, DatabaseService databaseService,
+            KeywordRepo keywordRepo, FilterOptionsRepo filterOptionsRepo) {
         this.databaseService = databaseService;
-        this.sqlTrailRepo = sqlTrailRepo;
+        this.trailRepo = trailRepo;
+        this.keywordRepo = keywordRepo;
+        this.filterOptionsRepo = filterOptionsRepo;
         this.fileTrailRepo = new FileBasedTrailRepo("/datasets/DOC_Walking_Experiences_-2195374600472221140.csv");
     }
 
     /**
-     * Sets up the database by creating it if it doesn't exist.
+     * Sets up the database by creating it if it doesn't exist. A missing database
+     * is replaced by the bundled snapshot when there is one, which is already
+     * fully populated.
      */
     public void setupDatabase() {
         if (databaseService == null) {
@@ -51,6 +77,12 @@ public class SetupService {
             return;
         }
 
+        if (databaseService.installSnapshot()) {
+            databaseSetupComplete = true;
+            System.out.println("db setup complete from snapshot");
+            return;
+        }
+
         createDbActions();
         syncDbFromTrailFile();
         syncKeywords();
@@ -60,6 +92,19 @@ public class SetupService {
         System.out.println("db setup complete");
     }
 
+    /**
+     * Fills repositories with no database behind them, such as the in-memory
+     * ones, from the bundled trail and keyword files
+     */
+    public void setupWithoutDatabase() {
+        syncDbFromTrailFile();
+        syncKeywords();
+        syncFilterOptions();
+
+        databaseSetupComplete = true;
+        System.out.println("in-memory setup complete");
+    }
+
     /**
      * Scrapes trail image from its URL and downloads it to the data/images/
      * directory.
@@ -94,7 +139,7 @@ public class SetupService {
      * Scrapes images for all trails.
      */
     public void scrapeAllTrailImages() {
-        for (Trail trail : sqlTrailRepo.getAllTrails()) {
+        for (Trail trail : trailRepo.getAllTrails()) {
             scrapeTrailImage(trail.getThumbnailURL());
         }
     }
@@ -110,7 +155,8 @@ public class SetupService {
     }
 
     /**
-     * Creates the database if it doesn't exist.
+     * Creates the database if it doesn't exist, or migrates it if its schema is
+     * outdated. Only recreates it when there is no migration path.
      */
     void createDbActions() {
         if (databaseService.databaseExists() && databaseService.isSchemaUpToDate()) {
@@ -119,7 +165,12 @@ public class SetupService {
 
         try {
             if (databaseService.databaseExists()) {
-                System.out.println("Database schema is outdated. Deleting database.");
+                backupBeforeSchemaChange();
+                if (databaseService.migrateSchema()) {
+                    System.out.println("Database schema migrated.");
+                    return;
+                }
+                System.out.println("Database schema is outdated and cannot be migrated. Deleting database.");
                 databaseService.deleteDatabase();
             }
             databaseService.createDatabaseIfNotExists();
@@ -128,17 +179,30 @@ public class SetupService {
         }
     }
 
+    /**
+     * Backs up the database before it is migrated or deleted, so the user's
+     * logbook can be restored if that goes wrong
+     */
+    private void backupBeforeSchemaChange() {
+        try {
+            Path backup = new DatabaseBackupService(databaseService).backup();
+            System.out.println("Backed up database to " + backup);
+        } catch (SQLException e) {
+            System.err.println("Failed to back up database before schema change: " + e.getMessage());
+        }
+    }
+
     /**
      * Syncs the database from the trail file if trail doesn't exist
      */
     public void syncDbFromTrailFile() {
-        if (sqlTrailRepo.countTrails() > 0) {
+        if (trailRepo.countTrails() > 0) {
             return;
         }
         try {
             List<Trail> source = fileTrailRepo.getAllTrails();
             List<Trail> trails = TrailsProcessor.processTrails(source);
-            sqlTrailRepo.insertOrIgnoreAll(trails);
+            trailRepo.insertOrIgnoreAll(trails);
         } catch (Exception e) {
             System.err.println("Error syncing database from trail file: " + e.getMessage());
         }
@@ -148,7 +212,9 @@ public class SetupService {
      * Syncs filter options in the database.
      */
     public void syncFilterOptions() {
-        SqlBasedFilterOptionsRepo filterOptionsRepo = App.getFilterOptionsRepo();
+        FilterOptionsRepo filterOptionsRepo = this.filterOptionsRepo != null
+                ? this.filterOptionsRepo
+                : App.getFilterOptionsRepo();
         filterOptionsRepo.refreshAllFilterOptions();
     }
 
@@ -156,13 +222,21 @@ public class SetupService {
      * Syncs keywords in the database.
      */
     public void syncKeywords() {
-        SqlBasedKeywordRepo sqlBasedKeywordRepo = App.getKeywordRepo();
+        KeywordRepo keywordRepo = this.keywordRepo != null ? this.keywordRepo : App.getKeywordRepo();
         FileBasedKeywordRepo fileBasedKeywordRepo = new FileBasedKeywordRepo(
                 "/datasets/Categories_and_Keywords.csv");
-        sqlBasedKeywordRepo.insertCategoriesAndKeywords(fileBasedKeywordRepo.getKeywords());
-        MatchmakingService matchmakingService = new MatchmakingService(sqlBasedKeywordRepo, sqlTrailRepo);
-        try {
+        MatchmakingService matchmakingService = new MatchmakingService(keywordRepo, trailRepo);
+        QueryHelper.TransactionAction<MatchmakingFailedException> sync = () -> {
+            keywordRepo.insertCategoriesAndKeywords(fileBasedKeywordRepo.getKeywords());
             matchmakingService.categoriseAllTrails();
+        };
+        try {
+            if (databaseService == null) {
+                sync.run();
+            } else {
+                // Categories, keywords and trail categories are committed together
+                new QueryHelper(databaseService).runInTransaction(sync);
+            }
         } catch (MatchmakingFailedException e) {
             System.err.println("Error generating trail weights: " + e.getMessage());
         }
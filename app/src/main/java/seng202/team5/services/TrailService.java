@@ -1,39 +1,50 @@
 package seng202.team5.services;
 
-import seng202.team5.data.SqlBasedTrailRepo;
+import seng202.team5.data.TrailRepo;
 import seng202.team5.models.Trail;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class TrailService {
 
-    private final SqlBasedTrailRepo sqlBasedTrailRepo;
+    private final TrailRepo trailRepo;
 
-    public TrailService(SqlBasedTrailRepo sqlBasedTrailRepo) {
-        this.sqlBasedTrailRepo = sqlBasedTrailRepo;
+    public TrailService(TrailRepo trailRepo) {
+        this.trailRepo = trailRepo;
     }
 
     public void addTrail(Trail trail) {
-        sqlBasedTrailRepo.upsert(trail);
+        trailRepo.upsert(trail);
+    }
+
+    public CompletableFuture<Void> addTrailAsync(Trail trail) {
+        return trailRepo.upsertAsync(trail);
     }
 
     public boolean existsByName(String inputTrailName, Integer excludeId) {
-        return sqlBasedTrailRepo.existsByName(inputTrailName, excludeId);
+        return trailRepo.existsByName(inputTrailName, excludeId);
     }
 
     public void deleteTrail(Trail trail) {
-        sqlBasedTrailRepo.deleteById(trail.getId());
+        trailRepo.deleteById(trail.getId());
     }
 
     public Trail findTrailById(int id) {
-        return sqlBasedTrailRepo.findById(id).orElse(null);
+        return trailRepo.findById(id).orElse(null);
     }
 
     public int getNewTrailId() {
-        return sqlBasedTrailRepo.getNewTrailId();
+        return trailRepo.getNewTrailId();
+    }
+
+    public List<Trail> getNearbyTrails(Trail trail, double radiusKm) {
+        return trailRepo.findTrailsWithinRadius(trail.getLat(), trail.getLon(), radiusKm).stream()
+                .filter(nearby -> nearby.getId() != trail.getId())
+                .toList();
     }
 
     public List<Trail> getAllTrails() {
-        return sqlBasedTrailRepo.getAllTrails();
+        return trailRepo.getAllTrails();
     }
 }
@@ -1,60 +1,37 @@
 package seng202.team5.services;
 
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.util.*;
-
-import seng202.team5.App;
 import seng202.team5.data.DatabaseService;
-import seng202.team5.data.QueryHelper;
-import seng202.team5.data.SqlBasedTrailRepo;
+import seng202.team5.data.SqlBasedUserRepo;
+import seng202.team5.data.TrailRepo;
+import seng202.team5.data.UserRepo;
 import seng202.team5.exceptions.MatchmakingFailedException;
-import seng202.team5.models.Trail;
 import seng202.team5.models.User;
 
 public class UserService {
     private boolean isGuest;
     private User cachedUser;
-    private final SqlBasedTrailRepo trailRepo;
-    private final QueryHelper queryHelper;
-
-    // SQL Constants
-    private static final String UPSERT_SQL = """
-            INSERT INTO user (
-                id, name, regions, isFamilyFriendly, isAccessible,
-                experienceLevel, gradientPreference, bushPreference,
-                reservePreference, lakeRiverPreference, coastPreference,
-                mountainPreference, wildlifePreference, historicPreference,
-                waterfallPreference, isProfileComplete, profilePicture
-            ) VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)
-            ON CONFLICT(id) DO UPDATE SET
-                name=excluded.name,
-                regions=excluded.regions,
-                isFamilyFriendly=excluded.isFamilyFriendly,
-                isAccessible=excluded.isAccessible,
-                experienceLevel=excluded.experienceLevel,
-                gradientPreference=excluded.gradientPreference,
-                bushPreference=excluded.bushPreference,
-                reservePreference=excluded.reservePreference,
-                lakeRiverPreference=excluded.lakeRiverPreference,
-                coastPreference=excluded.coastPreference,
-                mountainPreference=excluded.mountainPreference,
-                wildlifePreference=excluded.wildlifePreference,
-                historicPreference=excluded.historicPreference,
-                waterfallPreference=excluded.waterfallPreference,
-                isProfileComplete=excluded.isProfileComplete,
-                profilePicture=excluded.profilePicture
-            """;
+    private final TrailRepo trailRepo;
+    private final UserRepo userRepo;
 
     /**
      * Constructor for UserService with custom DatabaseService (for testing)
      *
      * @param databaseService the database service to use
      */
-    public UserService(SqlBasedTrailRepo trailRepo, DatabaseService databaseService) {
+    public UserService(TrailRepo trailRepo, DatabaseService databaseService) {
+        this(trailRepo, new SqlBasedUserRepo(databaseService));
+    }
+
+    /**
+     * Constructor for UserService over any storage backend
+     *
+     * @param trailRepo repository whose user weights belong to the user
+     * @param userRepo  repository the user is stored in
+     */
+    public UserService(TrailRepo trailRepo, UserRepo userRepo) {
         this.isGuest = false;
         this.trailRepo = trailRepo;
-        this.queryHelper = new QueryHelper(databaseService);
+        this.userRepo = userRepo;
     }
 
     /**
@@ -82,8 +59,7 @@ public class UserService {
      * @return the user loaded from the database, or guest user if none found
      */
     private User loadUserFromDatabase() {
-        List<User> users = queryHelper.executeQuery("SELECT * FROM user LIMIT 1", null, this::mapRowToUser);
-        return users.isEmpty() ? null : users.getFirst();
+        return userRepo.findUser().orElse(null);
     }
 
     /**
@@ -93,7 +69,7 @@ public class UserService {
      */
     public void saveUserToDatabase(User user) {
         if (user != null && !isGuest) {
-            queryHelper.executeUpdate(UPSERT_SQL, stmt -> setUserParameters(stmt, user));
+            userRepo.upsert(user);
         }
     }
 
@@ -124,6 +100,15 @@ public class UserService {
         }
     }
 
+    /**
+     * Drops the cached user so it is read from the database again, for when the
+     * database has been replaced.
+     */
+    public void invalidateCache() {
+        this.cachedUser = null;
+        this.isGuest = false;
+    }
+
     /**
      * Checks if a user's name choice is valid.
      *
@@ -160,13 +145,40 @@ public class UserService {
      * Removes last user if exists and resets to clean state.
      */
     public void clearUser() {
-        SqlBasedTrailRepo trailRepo = this.trailRepo;
-        trailRepo.clearUserWeights();
-        queryHelper.executeUpdate("DELETE FROM user", null);
+        userRepo.runInTransaction(() -> {
+            trailRepo.clearUserWeights();
+            userRepo.deleteAll();
+        });
         this.cachedUser = null;
         this.isGuest = false;
     }
 
+    /**
+     * Replaces the last user with a new one and generates the trail weights for
+     * them, committing it all in one transaction so a failed matchmaking run
+     * leaves the previous user in place, both in the database and in the cache.
+     *
+     * @param user               the new user
+     * @param matchmakingService service used to weight the trails for the user
+     * @throws MatchmakingFailedException if the trail weights can't be generated
+     */
+    public void replaceUser(User user, MatchmakingService matchmakingService) throws MatchmakingFailedException {
+        User previousUser = cachedUser;
+        boolean wasGuest = isGuest;
+        try {
+            userRepo.runInTransaction(() -> {
+                clearUser();
+                saveUser(user);
+                matchmakingService.generateTrailWeights(user);
+            });
+        } catch (MatchmakingFailedException | RuntimeException e) {
+            // The transaction rolled back, so the cache goes back with it
+            this.cachedUser = previousUser;
+            this.isGuest = wasGuest;
+            throw e;
+        }
+    }
+
     /**
      * Returns user object to be used when skip is clicked
      */
@@ -185,69 +197,7 @@ public class UserService {
      * This removes any user profiles that were not fully completed.
      */
     public void cleanupIncompleteProfiles() {
-        queryHelper.executeUpdate("DELETE FROM user WHERE isProfileComplete = 0", null);
+        userRepo.deleteIncomplete();
         this.cachedUser = null;
     }
-
-    /**
-     * Maps a database row to a User object.
-     *
-     * @param row the database row
-     * @return the User object
-     */
-    private User mapRowToUser(ResultSet row) {
-        try {
-            String regionsString = row.getString("regions");
-            List<String> regions = (regionsString != null && !regionsString.isEmpty())
-                    ? List.of(regionsString.split(","))
-                    : List.of();
-
-            return new User(
-                    row.getInt("id"),
-                    row.getString("name"),
-                    regions,
-                    row.getBoolean("isFamilyFriendly"),
-                    row.getBoolean("isAccessible"),
-                    row.getInt("experienceLevel"),
-                    row.getInt("gradientPreference"),
-                    row.getInt("bushPreference"),
-                    row.getInt("reservePreference"),
-                    row.getInt("lakeRiverPreference"),
-                    row.getInt("coastPreference"),
-                    row.getInt("mountainPreference"),
-                    row.getInt("wildlifePreference"),
-                    row.getInt("historicPreference"),
-                    row.getInt("waterfallPreference"),
-                    row.getBoolean("isProfileComplete"),
-                    row.getString("profilePicture"));
-        } catch (SQLException e) {
-            return null;
-        }
-    }
-
-    /**
-     * Binds user fields to the prepared statement. The order must match.
-     *
-     * @param stmt prepared statement to bind
-     * @param user source of values
-     */
-    private void setUserParameters(java.sql.PreparedStatement stmt, User user) throws java.sql.SQLException {
-        stmt.setInt(1, user.getId());
-        stmt.setString(2, user.getName());
-        stmt.setString(3, user.getRegion() != null ? String.join(",", user.getRegion()) : "");
-        stmt.setBoolean(4, user.isFamilyFriendly());
-        stmt.setBoolean(5, user.isAccessible());
-        stmt.setInt(6, user.getExperienceLevel());
-        stmt.setInt(7, user.getGradientPreference());
-        stmt.setInt(8, user.getBushPreference());
-        stmt.setInt(9, user.getReservePreference());
-        stmt.setInt(10, user.getLakeRiverPreference());
-        stmt.setInt(11, user.getCoastPreference());
-        stmt.setInt(12, user.getMountainPreference());
-        stmt.setInt(13, user.getWildlifePreference());
-        stmt.setInt(14, user.getHistoricPreference());
-        stmt.setInt(15, user.getWaterfallPreference());
-        stmt.setBoolean(16, user.isProfileComplete());
-        stmt.setString(17, user.getProfilePicture());
-    }
 }
@@ -0,0 +1,48 @@
+package seng202.team5.utils;
+
+import seng202.team5.data.DatabaseService;
+import seng202.team5.data.SqlBasedFilterOptionsRepo;
+import seng202.team5.data.SqlBasedKeywordRepo;
+import seng202.team5.data.SqlBasedTrailRepo;
+import seng202.team5.services.SetupService;
+
+import java.io.File;
+import java.sql.SQLException;
+
+/**
+ * Build step that produces the prebuilt trail database bundled with the
+ * application. Runs the same setup as a first start (parsing, processing and
+ * categorising every trail) once at build time, then analyses and compacts the
+ * result.
+ */
+public class DatabaseSnapshotBuilder {
+
+    /**
+     * Builds the snapshot
+     *
+     * @param args the path to write the snapshot database to
+     * @throws SQLException if the snapshot cannot be finished
+     */
+    public static void main(String[] args) throws SQLException {
+        if (args.length != 1) {
+            System.err.println("Usage: DatabaseSnapshotBuilder <output database path>");
+            System.exit(1);
+        }
+
+        File output = new File(args[0]);
+        if (output.exists() && !output.delete()) {
+            throw new IllegalStateException("Could not replace existing snapshot " + output);
+        }
+
+        DatabaseService databaseService = new DatabaseService(output.getPath());
+        SetupService setupService = new SetupService(
+                new SqlBasedTrailRepo(databaseService),
+                databaseService,
+                new SqlBasedKeywordRepo(databaseService),
+                new SqlBasedFilterOptionsRepo(databaseService));
+
+        setupService.setupDatabase();
+        databaseService.optimiseForSnapshot();
+        System.out.println("Database snapshot written to " + output);
+    }
+}
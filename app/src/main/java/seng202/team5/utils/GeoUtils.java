@@ -25,4 +25,34 @@ public class GeoUtils {
         double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1-a));
         return EARTH_RADIUS_KM * c;
     }
+
+    /**
+     * Calculates how many degrees of latitude a circle of the given radius spans
+     * either side of its centre
+     *
+     * @param radiusKm the radius of the circle in kilometres
+     * @return the half-height of the circle's bounding box in degrees
+     */
+    public static double latitudeSpanDegrees(double radiusKm) {
+        return Math.toDegrees(radiusKm / EARTH_RADIUS_KM);
+    }
+
+    /**
+     * Calculates how many degrees of longitude a circle of the given radius spans
+     * either side of its centre. This is wider than at the centre's latitude, as
+     * the circle bulges furthest east and west nearer the pole.
+     *
+     * @param lat      the latitude of the centre in decimal degrees
+     * @param radiusKm the radius of the circle in kilometres
+     * @return the half-width of the circle's bounding box in degrees, or 180 if the
+     *         circle reaches a pole
+     */
+    public static double longitudeSpanDegrees(double lat, double radiusKm) {
+        double angularRadius = radiusKm / EARTH_RADIUS_KM;
+        double ratio = Math.sin(angularRadius) / Math.cos(Math.toRadians(lat));
+        if (angularRadius >= Math.PI / 2 || ratio >= 1) {
+            return 180;
+        }
+        return Math.toDegrees(Math.asin(ratio));
+    }
 }
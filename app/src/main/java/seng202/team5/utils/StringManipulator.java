@@ -1,6 +1,11 @@
 package seng202.team5.utils;
 
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
 public class StringManipulator {
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
 
     /**
      * Capitalise the first letter of a string.
@@ -14,4 +19,20 @@ public class StringManipulator {
         }
         return str.substring(0, 1).toUpperCase() + str.substring(1);
     }
+
+    /**
+     * Folds a string for comparing it loosely: lower case, with accents and
+     * macrons removed, so "Tōtara" and "totara" match.
+     *
+     * @param str The input string
+     * @return The folded string
+     */
+    public static String fold(String str) {
+        if (str == null || str.isEmpty()) {
+            return str;
+        }
+        return COMBINING_MARKS.matcher(Normalizer.normalize(str, Normalizer.Form.NFD))
+                .replaceAll("")
+                .toLowerCase(Locale.ROOT);
+    }
 }
@@ -5,7 +5,9 @@ import seng202.team5.services.RegionFinder;
 
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
@@ -68,13 +70,20 @@ public class TrailsProcessor {
      * @return a list of nearby trails sorted by proximity to the current trail
      */
     public static List<Trail> getNearbyTrails(Trail currentTrail, double radiusKm, List<Trail> allTrails) {
-        return allTrails.stream()
-                .filter(trail -> !trail.equals(currentTrail)) // exclude the current trail
-                .filter(trail -> GeoUtils.distanceKm(currentTrail.getLat(), currentTrail.getLon(),
-                        trail.getLat(), trail.getLon()) <= radiusKm)
-                .sorted(Comparator.comparingDouble(trail ->
-                        GeoUtils.distanceKm(currentTrail.getLat(), currentTrail.getLon(),
-                                trail.getLat(), trail.getLon())))
+        // Work out each distance once rather than again for every comparison in the sort
+        Map<Trail, Double> distances = new LinkedHashMap<>();
+        for (Trail trail : allTrails) {
+            if (trail == currentTrail) {
+                continue; // exclude the current trail
+            }
+            double distance = GeoUtils.distanceKm(currentTrail.getLat(), currentTrail.getLon(),
+                    trail.getLat(), trail.getLon());
+            if (distance <= radiusKm) {
+                distances.put(trail, distance);
+            }
+        }
+        return distances.keySet().stream()
+                .sorted(Comparator.comparingDouble(distances::get))
                 .collect(Collectors.toList());
     }
 }
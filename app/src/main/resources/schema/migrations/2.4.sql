@@ -0,0 +1,16 @@
+-- Indexes backing the trail search filters and sorts, which now run in SQL
+CREATE INDEX IF NOT EXISTS idx_trail_name ON trail (name COLLATE NOCASE);
+
+CREATE INDEX IF NOT EXISTS idx_trail_difficulty ON trail (difficulty COLLATE NOCASE);
+
+CREATE INDEX IF NOT EXISTS idx_trail_completion_type ON trail (completionType COLLATE NOCASE);
+
+CREATE INDEX IF NOT EXISTS idx_trail_time_unit ON trail (timeUnit COLLATE NOCASE);
+
+CREATE INDEX IF NOT EXISTS idx_trail_region ON trail (region COLLATE NOCASE);
+
+CREATE INDEX IF NOT EXISTS idx_trail_user_weight ON trail (userWeight);
+
+CREATE INDEX IF NOT EXISTS idx_trail_avg_time ON trail (
+    ((COALESCE(minCompletionTimeMinutes, 0) + COALESCE(maxCompletionTimeMinutes, 0)) / 2)
+);
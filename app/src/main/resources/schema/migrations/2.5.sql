@@ -0,0 +1,29 @@
+-- Full-text index over trail text, kept in step with the trail table by triggers
+CREATE VIRTUAL TABLE IF NOT EXISTS trailSearch USING fts5 (
+    name,
+    translation,
+    description,
+    content = 'trail',
+    content_rowid = 'id',
+    tokenize = 'unicode61 remove_diacritics 2'
+);
+
+CREATE TRIGGER IF NOT EXISTS trailSearchInsert AFTER INSERT ON trail BEGIN
+    INSERT INTO trailSearch (rowid, name, translation, description)
+    VALUES (new.id, new.name, new.translation, new.description);
+END;
+
+CREATE TRIGGER IF NOT EXISTS trailSearchDelete AFTER DELETE ON trail BEGIN
+    INSERT INTO trailSearch (trailSearch, rowid, name, translation, description)
+    VALUES ('delete', old.id, old.name, old.translation, old.description);
+END;
+
+CREATE TRIGGER IF NOT EXISTS trailSearchUpdate AFTER UPDATE OF id, name, translation, description ON trail BEGIN
+    INSERT INTO trailSearch (trailSearch, rowid, name, translation, description)
+    VALUES ('delete', old.id, old.name, old.translation, old.description);
+    INSERT INTO trailSearch (rowid, name, translation, description)
+    VALUES (new.id, new.name, new.translation, new.description);
+END;
+
+-- Index the trails already in the database
+INSERT INTO trailSearch (trailSearch) VALUES ('rebuild');
@@ -0,0 +1,29 @@
+-- Spatial index over trail coordinates, kept in step with the trail table by triggers
+CREATE VIRTUAL TABLE IF NOT EXISTS trailLocation USING rtree (
+    id,
+    minLat,
+    maxLat,
+    minLon,
+    maxLon
+);
+
+CREATE TRIGGER IF NOT EXISTS trailLocationInsert AFTER INSERT ON trail
+WHEN new.lat IS NOT NULL AND new.lon IS NOT NULL BEGIN
+    INSERT INTO trailLocation (id, minLat, maxLat, minLon, maxLon)
+    VALUES (new.id, new.lat, new.lat, new.lon, new.lon);
+END;
+
+CREATE TRIGGER IF NOT EXISTS trailLocationDelete AFTER DELETE ON trail BEGIN
+    DELETE FROM trailLocation WHERE id = old.id;
+END;
+
+CREATE TRIGGER IF NOT EXISTS trailLocationUpdate AFTER UPDATE OF id, lat, lon ON trail BEGIN
+    DELETE FROM trailLocation WHERE id = old.id;
+    INSERT INTO trailLocation (id, minLat, maxLat, minLon, maxLon)
+    SELECT new.id, new.lat, new.lat, new.lon, new.lon
+    WHERE new.lat IS NOT NULL AND new.lon IS NOT NULL;
+END;
+
+-- Index the trails already in the database
+INSERT INTO trailLocation (id, minLat, maxLat, minLon, maxLon)
+SELECT id, lat, lat, lon, lon FROM trail WHERE lat IS NOT NULL AND lon IS NOT NULL;
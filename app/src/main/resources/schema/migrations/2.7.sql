@@ -0,0 +1,58 @@
+-- Lookup tables for the low-cardinality trail columns. Each trail stores the
+-- lookup ids in place of its text values, so filters compare indexed integers
+-- rather than strings and each name is only stored once.
+CREATE TABLE IF NOT EXISTS regionLookup (id INTEGER PRIMARY KEY, name TEXT NOT NULL UNIQUE COLLATE NOCASE);
+
+CREATE TABLE IF NOT EXISTS difficultyLookup (id INTEGER PRIMARY KEY, name TEXT NOT NULL UNIQUE COLLATE NOCASE);
+
+CREATE TABLE IF NOT EXISTS completionTypeLookup (id INTEGER PRIMARY KEY, name TEXT NOT NULL UNIQUE COLLATE NOCASE);
+
+CREATE TABLE IF NOT EXISTS timeUnitLookup (id INTEGER PRIMARY KEY, name TEXT NOT NULL UNIQUE COLLATE NOCASE);
+
+ALTER TABLE trail ADD COLUMN regionId INTEGER REFERENCES regionLookup (id);
+
+ALTER TABLE trail ADD COLUMN difficultyId INTEGER REFERENCES difficultyLookup (id);
+
+ALTER TABLE trail ADD COLUMN completionTypeId INTEGER REFERENCES completionTypeLookup (id);
+
+ALTER TABLE trail ADD COLUMN timeUnitId INTEGER REFERENCES timeUnitLookup (id);
+
+-- Encode the trails already in the database
+INSERT OR IGNORE INTO regionLookup (name) SELECT region FROM trail WHERE region <> '';
+
+INSERT OR IGNORE INTO difficultyLookup (name) SELECT difficulty FROM trail WHERE difficulty <> '';
+
+INSERT OR IGNORE INTO completionTypeLookup (name) SELECT completionType FROM trail WHERE completionType <> '';
+
+INSERT OR IGNORE INTO timeUnitLookup (name) SELECT timeUnit FROM trail WHERE timeUnit <> '';
+
+UPDATE trail SET
+    regionId = (SELECT id FROM regionLookup WHERE name = trail.region),
+    difficultyId = (SELECT id FROM difficultyLookup WHERE name = trail.difficulty),
+    completionTypeId = (SELECT id FROM completionTypeLookup WHERE name = trail.completionType),
+    timeUnitId = (SELECT id FROM timeUnitLookup WHERE name = trail.timeUnit);
+
+-- The text columns and their indexes are replaced by the ids
+DROP INDEX IF EXISTS idx_trail_difficulty;
+
+DROP INDEX IF EXISTS idx_trail_completion_type;
+
+DROP INDEX IF EXISTS idx_trail_time_unit;
+
+DROP INDEX IF EXISTS idx_trail_region;
+
+ALTER TABLE trail DROP COLUMN region;
+
+ALTER TABLE trail DROP COLUMN difficulty;
+
+ALTER TABLE trail DROP COLUMN completionType;
+
+ALTER TABLE trail DROP COLUMN timeUnit;
+
+CREATE INDEX IF NOT EXISTS idx_trail_region_id ON trail (regionId);
+
+CREATE INDEX IF NOT EXISTS idx_trail_difficulty_id ON trail (difficultyId);
+
+CREATE INDEX IF NOT EXISTS idx_trail_completion_type_id ON trail (completionTypeId);
+
+CREATE INDEX IF NOT EXISTS idx_trail_time_unit_id ON trail (timeUnitId);
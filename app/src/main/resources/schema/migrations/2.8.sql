@@ -0,0 +1,12 @@
+-- Indexes for per-trail lookups found by QueryPlanTest. trailLog.trailId is also
+-- needed by the foreign key check whenever a trail is written or deleted.
+-- Names are compared folded, so the folded name is stored in a column the app
+-- fills on every write and indexed like any other. An index on fold(name) would
+-- stop anything without the Java function from writing to trail.
+ALTER TABLE trail ADD COLUMN foldedName TEXT;
+
+UPDATE trail SET foldedName = fold(TRIM(name));
+
+CREATE INDEX IF NOT EXISTS idx_trail_folded_name ON trail (foldedName);
+
+CREATE INDEX IF NOT EXISTS idx_trail_log_trail_id ON trailLog (trailId);
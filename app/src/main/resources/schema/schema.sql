@@ -1,5 +1,6 @@
 -- Remember to increment the schema version here when making changes!
--- Schema version: 2.3
+-- Also add a script to schema/migrations and list it in DatabaseService.
+-- Schema version: 2.8
 PRAGMA foreign_keys = off;
 
 BEGIN TRANSACTION;
@@ -20,7 +21,33 @@ CREATE TABLE
         PRIMARY KEY (value, categoryId)
     );
 
+-- Table: regionLookup
+DROP TABLE IF EXISTS regionLookup;
+
+CREATE TABLE
+    IF NOT EXISTS regionLookup (id INTEGER PRIMARY KEY, name TEXT NOT NULL UNIQUE COLLATE NOCASE);
+
+-- Table: difficultyLookup
+DROP TABLE IF EXISTS difficultyLookup;
+
+CREATE TABLE
+    IF NOT EXISTS difficultyLookup (id INTEGER PRIMARY KEY, name TEXT NOT NULL UNIQUE COLLATE NOCASE);
+
+-- Table: completionTypeLookup
+DROP TABLE IF EXISTS completionTypeLookup;
+
+CREATE TABLE
+    IF NOT EXISTS completionTypeLookup (id INTEGER PRIMARY KEY, name TEXT NOT NULL UNIQUE COLLATE NOCASE);
+
+-- Table: timeUnitLookup
+DROP TABLE IF EXISTS timeUnitLookup;
+
+CREATE TABLE
+    IF NOT EXISTS timeUnitLookup (id INTEGER PRIMARY KEY, name TEXT NOT NULL UNIQUE COLLATE NOCASE);
+
 -- Table: trail
+-- Region, difficulty, completion type and time unit are stored as ids into
+-- their lookup tables, which SqlBasedTrailRepo maps back to names when reading
 DROP TABLE IF EXISTS trail;
 
 CREATE TABLE
@@ -28,14 +55,10 @@ CREATE TABLE
         id INTEGER,
         name TEXT,
         translation TEXT,
-        region TEXT,
-        difficulty TEXT,
         description TEXT,
         completionInfo TEXT,
         minCompletionTimeMinutes INTEGER,
         maxCompletionTimeMinutes INTEGER,
-        completionType TEXT,
-        timeUnit TEXT,
         isMultiDay BOOL,
         hasVariableTime BOOL,
         thumbUrl TEXT,
@@ -44,9 +67,91 @@ CREATE TABLE
         userWeight REAL,
         lat REAL,
         lon REAL,
+        regionId INTEGER REFERENCES regionLookup (id),
+        difficultyId INTEGER REFERENCES difficultyLookup (id),
+        completionTypeId INTEGER REFERENCES completionTypeLookup (id),
+        timeUnitId INTEGER REFERENCES timeUnitLookup (id),
+        foldedName TEXT,
         PRIMARY KEY (id)
     );
 
+-- Indexes backing the trail search filters and sorts
+CREATE INDEX IF NOT EXISTS idx_trail_name ON trail (name COLLATE NOCASE);
+
+-- foldedName is filled in by SqlBasedTrailRepo on every write
+CREATE INDEX IF NOT EXISTS idx_trail_folded_name ON trail (foldedName);
+
+CREATE INDEX IF NOT EXISTS idx_trail_region_id ON trail (regionId);
+
+CREATE INDEX IF NOT EXISTS idx_trail_difficulty_id ON trail (difficultyId);
+
+CREATE INDEX IF NOT EXISTS idx_trail_completion_type_id ON trail (completionTypeId);
+
+CREATE INDEX IF NOT EXISTS idx_trail_time_unit_id ON trail (timeUnitId);
+
+CREATE INDEX IF NOT EXISTS idx_trail_user_weight ON trail (userWeight);
+
+CREATE INDEX IF NOT EXISTS idx_trail_avg_time ON trail (
+    ((COALESCE(minCompletionTimeMinutes, 0) + COALESCE(maxCompletionTimeMinutes, 0)) / 2)
+);
+
+-- Table: trailSearch
+DROP TABLE IF EXISTS trailSearch;
+
+CREATE VIRTUAL TABLE IF NOT EXISTS trailSearch USING fts5 (
+    name,
+    translation,
+    description,
+    content = 'trail',
+    content_rowid = 'id',
+    tokenize = 'unicode61 remove_diacritics 2'
+);
+
+CREATE TRIGGER IF NOT EXISTS trailSearchInsert AFTER INSERT ON trail BEGIN
+    INSERT INTO trailSearch (rowid, name, translation, description)
+    VALUES (new.id, new.name, new.translation, new.description);
+END;
+
+CREATE TRIGGER IF NOT EXISTS trailSearchDelete AFTER DELETE ON trail BEGIN
+    INSERT INTO trailSearch (trailSearch, rowid, name, translation, description)
+    VALUES ('delete', old.id, old.name, old.translation, old.description);
+END;
+
+CREATE TRIGGER IF NOT EXISTS trailSearchUpdate AFTER UPDATE OF id, name, translation, description ON trail BEGIN
+    INSERT INTO trailSearch (trailSearch, rowid, name, translation, description)
+    VALUES ('delete', old.id, old.name, old.translation, old.description);
+    INSERT INTO trailSearch (rowid, name, translation, description)
+    VALUES (new.id, new.name, new.translation, new.description);
+END;
+
+-- Table: trailLocation
+DROP TABLE IF EXISTS trailLocation;
+
+CREATE VIRTUAL TABLE IF NOT EXISTS trailLocation USING rtree (
+    id,
+    minLat,
+    maxLat,
+    minLon,
+    maxLon
+);
+
+CREATE TRIGGER IF NOT EXISTS trailLocationInsert AFTER INSERT ON trail
+WHEN new.lat IS NOT NULL AND new.lon IS NOT NULL BEGIN
+    INSERT INTO trailLocation (id, minLat, maxLat, minLon, maxLon)
+    VALUES (new.id, new.lat, new.lat, new.lon, new.lon);
+END;
+
+CREATE TRIGGER IF NOT EXISTS trailLocationDelete AFTER DELETE ON trail BEGIN
+    DELETE FROM trailLocation WHERE id = old.id;
+END;
+
+CREATE TRIGGER IF NOT EXISTS trailLocationUpdate AFTER UPDATE OF id, lat, lon ON trail BEGIN
+    DELETE FROM trailLocation WHERE id = old.id;
+    INSERT INTO trailLocation (id, minLat, maxLat, minLon, maxLon)
+    SELECT new.id, new.lat, new.lat, new.lon, new.lon
+    WHERE new.lat IS NOT NULL AND new.lon IS NOT NULL;
+END;
+
 -- Table: trailCategory
 DROP TABLE IF EXISTS trailCategory;
 
@@ -108,6 +213,8 @@ CREATE TABLE
         notes TEXT
     );
 
+CREATE INDEX IF NOT EXISTS idx_trail_log_trail_id ON trailLog (trailId);
+
 
 COMMIT TRANSACTION;
 
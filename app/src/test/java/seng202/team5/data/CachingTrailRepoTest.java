@@ -0,0 +1,168 @@
+package seng202.team5.data;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import seng202.team5.models.Trail;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CachingTrailRepoTest {
+
+    @TempDir
+    Path tempDir;
+
+    private DatabaseService databaseService;
+    private CachingTrailRepo trailRepo;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        databaseService = new DatabaseService(tempDir.resolve("test.db").toString());
+        databaseService.createDatabaseIfNotExists();
+        trailRepo = new CachingTrailRepo(databaseService);
+        trailRepo.upsertAll(List.of(
+                new Trail.Builder().id(1).name("Alpine Trail").userWeight(0.8).build(),
+                new Trail.Builder().id(2).name("Forest Trail").userWeight(0.5).build()));
+    }
+
+    @Test
+    @DisplayName("Should only read the trail table once for repeated reads")
+    void testReadsAreCached() throws Exception {
+        List<Trail> first = trailRepo.getAllTrails();
+        // Changed behind the cache's back, so only visible after a reload
+        try (Connection conn = databaseService.getConnection();
+                Statement stmt = conn.createStatement()) {
+            stmt.execute("UPDATE trail SET name = 'Renamed' WHERE id = 1");
+        }
+
+        assertSame(first, trailRepo.getAllTrails());
+        assertEquals("Alpine Trail", trailRepo.findById(1).get().getName());
+        assertEquals(1, trailRepo.getMissCount());
+        assertEquals(2, trailRepo.getHitCount());
+        assertEquals(2.0 / 3, trailRepo.getHitRate(), 1e-9);
+
+        trailRepo.invalidate();
+        assertEquals("Renamed", trailRepo.findById(1).get().getName());
+        assertEquals(2, trailRepo.getMissCount());
+    }
+
+    @Test
+    @DisplayName("Should return an unmodifiable list")
+    void testSnapshotIsImmutable() {
+        List<Trail> trails = trailRepo.getAllTrails();
+        assertThrows(UnsupportedOperationException.class, () -> trails.remove(0));
+    }
+
+    @Test
+    @DisplayName("Should update the cache for single trail writes without reloading")
+    void testWritesUpdateCache() {
+        trailRepo.getAllTrails();
+
+        trailRepo.upsert(new Trail.Builder().id(3).name("River Trail").build());
+        trailRepo.upsert(new Trail.Builder().id(1).name("Alpine Loop").userWeight(0.8).build());
+        trailRepo.deleteById(2);
+        trailRepo.updateUserWeights(List.of(new Trail.Builder().id(3).userWeight(0.9).build()));
+
+        List<Trail> trails = trailRepo.getAllTrails();
+        assertEquals(List.of(1, 3), trails.stream().map(Trail::getId).toList());
+        assertEquals("Alpine Loop", trails.get(0).getName());
+        assertEquals(0.9, trailRepo.findById(3).get().getUserWeight());
+        assertTrue(trailRepo.findById(2).isEmpty());
+
+        trailRepo.clearUserWeights();
+        assertEquals(0.0, trailRepo.findById(1).get().getUserWeight());
+
+        assertEquals(1, trailRepo.getMissCount(), "Writes should not force a reload");
+        for (Trail stored : new SqlBasedTrailRepo(databaseService).getAllTrails()) {
+            Trail cached = trailRepo.findById(stored.getId()).get();
+            assertEquals(stored.getName(), cached.getName(), "Cache should match the database");
+            assertEquals(stored.getUserWeight(), cached.getUserWeight(), "Cache should match the database");
+        }
+    }
+
+    @Test
+    @DisplayName("Should patch small batch writes and drop the cache after large ones")
+    void testBatchWrites() throws Exception {
+        trailRepo.getAllTrails();
+        long invalidations = trailRepo.getInvalidationCount();
+
+        trailRepo.insertOrIgnoreAll(List.of(new Trail.Builder().id(3).name("River Trail").build()));
+        assertEquals(invalidations, trailRepo.getInvalidationCount());
+        assertEquals(3, trailRepo.getAllTrails().size());
+
+        List<Trail> many = IntStream.range(100, 200)
+                .mapToObj(id -> new Trail.Builder().id(id).name("Trail " + id).build())
+                .toList();
+        trailRepo.upsertAll(many);
+        assertEquals(invalidations + 1, trailRepo.getInvalidationCount());
+        assertEquals(103, trailRepo.getAllTrails().size());
+        assertEquals(2, trailRepo.getMissCount());
+    }
+
+    @Test
+    @DisplayName("Should update the cache before subscribers hear about a change")
+    void testCacheUpdatedBeforeEvent() {
+        DataEventBus eventBus = DataEventBus.getInstance();
+        trailRepo.getAllTrails();
+        List<String> seen = new ArrayList<>();
+
+        try (DataEventBus.Subscription ignored = eventBus.subscribe(DataChangeEvent.TrailsUpserted.class,
+                event -> seen.add(trailRepo.findById(event.trailIds().getFirst()).get().getName()))) {
+            trailRepo.upsert(new Trail.Builder().id(1).name("Alpine Loop").build());
+        }
+
+        assertEquals(List.of("Alpine Loop"), seen);
+    }
+
+    @Test
+    @DisplayName("Should find several trails by id from the cache")
+    void testFindAllByIds() {
+        assertEquals(List.of(2), trailRepo.findAllByIds(Set.of(2, 9999)).stream().map(Trail::getId).toList());
+        assertEquals(1, trailRepo.getMissCount());
+    }
+
+
+    @Test
+    @DisplayName("Should answer filtered searches from the cache the same as the database")
+    void testFilteredSearchesFromCache() throws Exception {
+        String[] difficulties = { "Easy", "intermediate", "expert", "unknown" };
+        trailRepo.upsertAll(IntStream.rangeClosed(3, 40)
+                .mapToObj(id -> new Trail.Builder()
+                        .id(id)
+                        .name("Trail " + id)
+                        .difficulty(difficulties[id % difficulties.length])
+                        .region(id % 5 == 0 ? "" : "Region " + id % 3)
+                        .completionType(id % 2 == 0 ? "return" : "One way")
+                        .timeUnit("hours")
+                        .minCompletionTimeMinutes(id % 4 == 0 ? 0 : id)
+                        .maxCompletionTimeMinutes(id % 4 == 0 ? 0 : id * 2)
+                        .build())
+                .toList());
+        SqlBasedTrailRepo database = new SqlBasedTrailRepo(databaseService);
+        List<TrailQuery> queries = List.of(
+                new TrailQuery.Builder().difficulties(Set.of("easy", "EXPERT")).build(),
+                new TrailQuery.Builder().regions(Set.of("region 1"), true).completionTypes(Set.of("return")).build(),
+                new TrailQuery.Builder().regions(Set.of(), false).build(),
+                new TrailQuery.Builder().nameContains("trail 1").sortBy(TrailQuery.SortKey.TIME, false).build(),
+                new TrailQuery.Builder().sortBy(TrailQuery.SortKey.MATCH, true).page(10, 5).build());
+
+        trailRepo.getAllTrails();
+        for (TrailQuery query : queries) {
+            assertEquals(database.searchTrails(query).stream().map(Trail::getId).toList(),
+                    trailRepo.searchTrails(query).stream().map(Trail::getId).toList());
+            assertEquals(database.countTrails(query), trailRepo.countTrails(query));
+            assertEquals(database.countTrailsByFacet(query, TrailQuery.Facet.REGION),
+                    trailRepo.countTrailsByFacet(query, TrailQuery.Facet.REGION));
+        }
+        assertEquals(1, trailRepo.getMissCount());
+    }
+}
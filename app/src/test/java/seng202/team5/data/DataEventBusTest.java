@@ -0,0 +1,100 @@
+package seng202.team5.data;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import seng202.team5.models.Trail;
+import seng202.team5.models.TrailLog;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DataEventBusTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("Should deliver events to subscribers of their type in order")
+    void testSubscribeByType() {
+        DataEventBus eventBus = new DataEventBus();
+        List<String> seen = new ArrayList<>();
+        eventBus.subscribe(DataChangeEvent.class, event -> seen.add("any " + event));
+        eventBus.subscribe(DataChangeEvent.TrailDeleted.class, event -> seen.add("deleted " + event.trailId()));
+
+        eventBus.publish(new DataChangeEvent.TrailDeleted(4));
+        eventBus.publish(new DataChangeEvent.UserChanged());
+
+        assertEquals(List.of("any TrailDeleted[trailId=4]", "deleted 4", "any UserChanged[]"), seen);
+    }
+
+    @Test
+    @DisplayName("Should keep delivering after a subscriber throws or unsubscribes")
+    void testFailingAndClosedSubscribers() {
+        DataEventBus eventBus = new DataEventBus();
+        List<DataChangeEvent> seen = new ArrayList<>();
+        eventBus.subscribe(DataChangeEvent.class, event -> {
+            throw new IllegalStateException("boom");
+        });
+        DataEventBus.Subscription subscription = eventBus.subscribe(DataChangeEvent.class, seen::add);
+
+        eventBus.publish(new DataChangeEvent.TrailWeightsCleared());
+        subscription.close();
+        eventBus.publish(new DataChangeEvent.TrailWeightsCleared());
+
+        assertEquals(1, seen.size());
+        assertEquals(1, eventBus.getSubscriberCount());
+    }
+
+    @Test
+    @DisplayName("Should run async subscribers off the publishing thread")
+    void testSubscribeAsync() throws Exception {
+        DataEventBus eventBus = new DataEventBus();
+        CompletableFuture<Thread> listenerThread = new CompletableFuture<>();
+        eventBus.subscribeAsync(DataChangeEvent.UserChanged.class, event -> listenerThread.complete(Thread.currentThread()));
+
+        eventBus.publish(new DataChangeEvent.UserChanged());
+
+        Thread thread = listenerThread.get(5, TimeUnit.SECONDS);
+        assertNotEquals(Thread.currentThread(), thread);
+        assertTrue(thread.isVirtual());
+    }
+
+    @Test
+    @DisplayName("Should publish trail and log changes once they are written")
+    void testReposPublishChanges() throws Exception {
+        DatabaseService databaseService = new DatabaseService(tempDir.resolve("test.db").toString());
+        databaseService.createDatabaseIfNotExists();
+        DataEventBus eventBus = new DataEventBus();
+        SqlBasedTrailRepo trailRepo = new SqlBasedTrailRepo(databaseService, eventBus);
+        SqlBasedTrailLogRepo trailLogRepo = new SqlBasedTrailLogRepo(databaseService, eventBus);
+        List<DataChangeEvent> seen = new ArrayList<>();
+        eventBus.subscribe(DataChangeEvent.class, event -> {
+            // Written before publishing, so already visible
+            if (event instanceof DataChangeEvent.TrailsUpserted upserted) {
+                assertTrue(trailRepo.findById(upserted.trailIds().getFirst()).isPresent());
+            }
+            seen.add(event);
+        });
+
+        trailRepo.upsert(new Trail.Builder().id(1).name("Alpine Trail").build());
+        trailRepo.updateUserWeights(List.of(new Trail.Builder().id(1).userWeight(0.5).build()));
+        trailLogRepo.upsert(new TrailLog(7, 1, LocalDate.now(), 60, "minutes", "loop", 4, "easy", ""));
+        trailLogRepo.deleteById(7);
+        trailRepo.deleteById(1);
+
+        assertEquals(List.of(
+                new DataChangeEvent.TrailsUpserted(List.of(1)),
+                new DataChangeEvent.TrailWeightsUpdated(Map.of(1, 0.5)),
+                new DataChangeEvent.TrailLogsUpserted(List.of(7)),
+                new DataChangeEvent.TrailLogDeleted(7),
+                new DataChangeEvent.TrailDeleted(1)), seen);
+    }
+}
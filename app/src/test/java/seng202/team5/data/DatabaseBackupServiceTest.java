@@ -0,0 +1,140 @@
+package seng202.team5.data;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import seng202.team5.models.Trail;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DatabaseBackupServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private DatabaseService databaseService;
+    private SqlBasedTrailRepo trailRepo;
+    private DatabaseBackupService backupService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        databaseService = new DatabaseService(tempDir.resolve("main.db").toString());
+        databaseService.createDatabaseIfNotExists();
+        trailRepo = new SqlBasedTrailRepo(databaseService);
+        trailRepo.upsertAll(IntStream.rangeClosed(1, 200)
+                .mapToObj(id -> new Trail.Builder().id(id).name("Trail " + id).difficulty("easy").build())
+                .toList());
+        backupService = new DatabaseBackupService(databaseService, tempDir.resolve("backups"), 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        databaseService.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should copy the database to a new backup and keep only the newest ones")
+    void testBackupRotates() throws Exception {
+        Path first = backupService.backup();
+        Path second = backupService.backup();
+        Path third = backupService.backupAsync().join();
+
+        assertEquals(List.of(third, second), backupService.listBackups());
+        assertFalse(Files.exists(first));
+        try (var files = Files.list(tempDir.resolve("backups"))) {
+            assertEquals(2, files.count(), "No partial files should be left behind");
+        }
+
+        DatabaseService copy = new DatabaseService(third.toString());
+        assertEquals(200, new SqlBasedTrailRepo(copy).countTrails());
+        copy.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should keep serving reads while a backup runs")
+    void testBackupIsOnline() throws Exception {
+        List<Integer> counts = new ArrayList<>();
+        Thread reader = Thread.ofPlatform().start(() -> {
+            for (int i = 0; i < 20; i++) {
+                counts.add(trailRepo.countTrails());
+            }
+        });
+
+        backupService.backup();
+        reader.join();
+
+        assertEquals(20, counts.size());
+        assertTrue(counts.stream().allMatch(count -> count == 200));
+    }
+
+    @Test
+    @DisplayName("Should put the database back as it was when the backup was taken")
+    void testRestore() throws Exception {
+        Path backup = backupService.backup();
+        trailRepo.deleteById(1);
+        trailRepo.upsert(new Trail.Builder().id(2).name("Renamed").build());
+
+        List<DataChangeEvent> events = new ArrayList<>();
+        try (DataEventBus.Subscription ignored = DataEventBus.getInstance()
+                .subscribe(DataChangeEvent.DatabaseRestored.class, events::add)) {
+            backupService.restore(backup);
+        }
+
+        assertEquals(200, trailRepo.countTrails());
+        assertEquals("Trail 2", trailRepo.findById(2).get().getName());
+        assertEquals(1, events.size());
+        assertTrue(databaseService.isSchemaUpToDate());
+    }
+
+    @Test
+    @DisplayName("Should migrate a backup taken on an older schema when restoring it")
+    void testRestoreMigratesOldBackup() throws Exception {
+        Path backup = backupService.backup();
+        DatabaseService old = new DatabaseService(backup.toString());
+        try (Connection conn = old.getConnection();
+                Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP INDEX idx_trail_log_trail_id");
+            stmt.execute("DROP INDEX idx_trail_folded_name");
+            stmt.execute("ALTER TABLE trail DROP COLUMN foldedName");
+            stmt.execute("UPDATE schema_version SET version = '2.7'");
+        }
+        old.shutdown();
+
+        backupService.restore(backup);
+
+        assertTrue(databaseService.isSchemaUpToDate());
+        assertEquals(200, trailRepo.countTrails());
+    }
+
+    @Test
+    @DisplayName("Should leave the database alone when a backup can't be used")
+    void testRestoreRejectsBadBackup() throws Exception {
+        Path notABackup = tempDir.resolve("notes.db");
+        Files.writeString(notABackup, "not a database");
+
+        assertThrows(SQLException.class, () -> backupService.restore(notABackup));
+        assertThrows(SQLException.class, () -> backupService.restore(tempDir.resolve("missing.db")));
+        assertEquals(200, trailRepo.countTrails());
+    }
+
+    @Test
+    @DisplayName("Should fail to back up a database that doesn't exist")
+    void testBackupMissingDatabase() {
+        DatabaseService missing = new DatabaseService(tempDir.resolve("missing.db").toString());
+        DatabaseBackupService service = new DatabaseBackupService(missing);
+
+        assertThrows(SQLException.class, service::backup);
+        assertTrue(service.listBackups().isEmpty());
+    }
+}
@@ -0,0 +1,54 @@
+package seng202.team5.data;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DatabaseExecutorTest {
+
+    @Test
+    @DisplayName("Should run tasks on virtual threads")
+    void testRunsOnVirtualThread() {
+        boolean virtual = DatabaseExecutor.supplyAsync(() -> Thread.currentThread().isVirtual()).join();
+
+        assertTrue(virtual);
+    }
+
+    @Test
+    @DisplayName("Should complete exceptionally with the checked exception a task throws")
+    void testCheckedExceptionPropagates() {
+        CompletableFuture<Void> future = DatabaseExecutor.runAsync(() -> {
+            throw new Exception("boom");
+        });
+
+        CompletionException e = assertThrows(CompletionException.class, future::join);
+        assertEquals("boom", e.getCause().getMessage());
+    }
+
+    @Test
+    @DisplayName("Should never run more tasks at once than the concurrency limit")
+    void testBoundedConcurrency() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+        for (int i = 0; i < 20; i++) {
+            futures.add(DatabaseExecutor.runAsync(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(20);
+                running.decrementAndGet();
+            }));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        assertTrue(maxRunning.get() <= DatabaseExecutor.getMaxConcurrentTasks());
+        assertTrue(maxRunning.get() > 1);
+    }
+}
@@ -12,6 +12,7 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.ResultSet;
+import java.util.List;
 
 public class DatabaseServiceTest {
 
@@ -206,4 +207,324 @@ public class DatabaseServiceTest {
 
         assertFalse(databaseService.isSchemaUpToDate());
     }
+
+    @Test
+    @DisplayName("Should hand a closed connection back to the pool and reuse it")
+    void testConnectionReusedFromPool() throws SQLException {
+        Connection connection1 = databaseService.getConnection();
+        Connection raw1 = connection1.unwrap(Connection.class);
+        assertEquals(1, databaseService.getInUseConnectionCount());
+        assertEquals(0, databaseService.getIdleConnectionCount());
+
+        connection1.close();
+        assertTrue(connection1.isClosed());
+        assertEquals(0, databaseService.getInUseConnectionCount());
+        assertEquals(1, databaseService.getIdleConnectionCount());
+
+        try (Connection connection2 = databaseService.getConnection()) {
+            assertSame(raw1, connection2.unwrap(Connection.class));
+            assertFalse(connection2.isClosed());
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep connection settings on reused connections")
+    void testPooledConnectionKeepsPragmas() throws SQLException {
+        databaseService.getConnection().close();
+
+        try (Connection connection = databaseService.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("PRAGMA journal_mode")) {
+            assertTrue(result.next());
+            assertEquals("wal", result.getString(1).toLowerCase());
+        }
+    }
+
+    @Test
+    @DisplayName("Should close idle connections on shutdown and open a fresh pool afterwards")
+    void testShutdownClosesPool() throws SQLException {
+        Connection connection = databaseService.getConnection();
+        Connection raw = connection.unwrap(Connection.class);
+        connection.close();
+
+        databaseService.shutdown();
+        assertTrue(raw.isClosed());
+
+        try (Connection fresh = databaseService.getConnection()) {
+            assertNotSame(raw, fresh.unwrap(Connection.class));
+        }
+    }
+
+    @Test
+    @DisplayName("Should reject use of a connection after it has been returned")
+    void testReturnedConnectionUnusable() throws SQLException {
+        Connection connection = databaseService.getConnection();
+        connection.close();
+
+        assertThrows(SQLException.class, connection::createStatement);
+    }
+
+    @Test
+    @DisplayName("Should migrate an older schema in order while keeping existing data")
+    void testMigrateSchemaKeepsData() throws SQLException {
+        databaseService.createDatabaseIfNotExists();
+        String currentVersion = readStoredVersion();
+        setStoredVersion("1.0");
+        try (Connection conn = databaseService.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO category (id, name) VALUES (1, 'Coast')");
+        }
+
+        boolean migrated = databaseService.migrateSchema("1.0", List.of(
+                new DatabaseService.Migration("1.5", "CREATE TABLE extra (id INTEGER); -- first"),
+                new DatabaseService.Migration(currentVersion, "INSERT INTO extra (id) VALUES (7);")));
+
+        assertTrue(migrated);
+        assertTrue(databaseService.isSchemaUpToDate());
+        try (Connection conn = databaseService.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet categories = stmt.executeQuery("SELECT name FROM category WHERE id = 1")) {
+            assertTrue(categories.next());
+            assertEquals("Coast", categories.getString(1));
+        }
+        try (Connection conn = databaseService.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet extra = stmt.executeQuery("SELECT id FROM extra")) {
+            assertTrue(extra.next());
+            assertEquals(7, extra.getInt(1));
+        }
+    }
+
+    @Test
+    @DisplayName("Should roll back a failing migration and keep the old version")
+    void testMigrateSchemaRollsBack() throws SQLException {
+        databaseService.createDatabaseIfNotExists();
+        String currentVersion = readStoredVersion();
+        setStoredVersion("1.0");
+
+        List<DatabaseService.Migration> migrations = List.of(
+                new DatabaseService.Migration(currentVersion, "CREATE TABLE extra (id INTEGER); SELECT * FROM nope;"));
+
+        assertThrows(SQLException.class, () -> databaseService.migrateSchema("1.0", migrations));
+        assertEquals("1.0", readStoredVersion());
+        try (Connection conn = databaseService.getConnection();
+             ResultSet tables = conn.getMetaData().getTables(null, null, "extra", null)) {
+            assertFalse(tables.next());
+        }
+    }
+
+    @Test
+    @DisplayName("Should report no migration path for versions older than the baseline")
+    void testMigrateSchemaNoPath() throws SQLException {
+        databaseService.createDatabaseIfNotExists();
+        String currentVersion = readStoredVersion();
+        setStoredVersion("0.9");
+
+        assertFalse(databaseService.migrateSchema("1.0",
+                List.of(new DatabaseService.Migration(currentVersion, "SELECT 1;"))));
+        assertEquals("0.9", readStoredVersion());
+    }
+
+    @Test
+    @DisplayName("Should treat an up to date database as migrated")
+    void testMigrateSchemaAlreadyCurrent() throws SQLException {
+        databaseService.createDatabaseIfNotExists();
+
+        assertTrue(databaseService.migrateSchema());
+    }
+
+    @Test
+    @DisplayName("Should index existing trails when migrating to the full-text search schema")
+    void testMigrateSchemaBuildsTrailSearch() throws SQLException {
+        databaseService.createDatabaseIfNotExists();
+        try (Connection conn = databaseService.getConnection();
+                Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TRIGGER trailSearchInsert");
+            stmt.execute("DROP TRIGGER trailSearchDelete");
+            stmt.execute("DROP TRIGGER trailSearchUpdate");
+            stmt.execute("DROP TABLE trailSearch");
+            dropTrailLookups(stmt);
+            stmt.execute("INSERT INTO trail (id, name, description) VALUES (1, 'Tōtara Walk', 'Old forest')");
+        }
+        setStoredVersion("2.4");
+
+        assertTrue(databaseService.migrateSchema());
+
+        try (Connection conn = databaseService.getConnection();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT rowid FROM trailSearch WHERE trailSearch MATCH 'totara'")) {
+            assertTrue(rs.next());
+            assertEquals(1, rs.getInt(1));
+        }
+    }
+
+    @Test
+    @DisplayName("Should index existing trail locations when migrating to the spatial index")
+    void testMigrateSchemaBuildsTrailLocation() throws SQLException {
+        databaseService.createDatabaseIfNotExists();
+        try (Connection conn = databaseService.getConnection();
+                Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TRIGGER trailLocationInsert");
+            stmt.execute("DROP TRIGGER trailLocationDelete");
+            stmt.execute("DROP TRIGGER trailLocationUpdate");
+            stmt.execute("DROP TABLE trailLocation");
+            dropTrailLookups(stmt);
+            stmt.execute("INSERT INTO trail (id, name, lat, lon) VALUES (1, 'Port Hills', -43.585, 172.675)");
+            stmt.execute("INSERT INTO trail (id, name) VALUES (2, 'No Location')");
+        }
+        setStoredVersion("2.5");
+
+        assertTrue(databaseService.migrateSchema());
+
+        try (Connection conn = databaseService.getConnection();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(
+                        "SELECT id FROM trailLocation WHERE minLat <= -43 AND maxLat >= -44")) {
+            assertTrue(rs.next());
+            assertEquals(1, rs.getInt(1));
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    @DisplayName("Should encode existing trail values when migrating to the lookup tables")
+    void testMigrateSchemaBuildsTrailLookups() throws SQLException {
+        databaseService.createDatabaseIfNotExists();
+        try (Connection conn = databaseService.getConnection();
+                Statement stmt = conn.createStatement()) {
+            dropTrailLookups(stmt);
+            stmt.execute("INSERT INTO trail (id, name, difficulty, region) VALUES (1, 'Port Hills', 'Easy', 'Canterbury')");
+            stmt.execute("INSERT INTO trail (id, name, difficulty, region) VALUES (2, 'Godley Head', 'easy', '')");
+        }
+        setStoredVersion("2.6");
+
+        assertTrue(databaseService.migrateSchema());
+
+        try (Connection conn = databaseService.getConnection();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("""
+                        SELECT t.id, d.name, t.regionId FROM trail t
+                        JOIN difficultyLookup d ON d.id = t.difficultyId ORDER BY t.id""")) {
+            assertTrue(rs.next());
+            assertEquals("Easy", rs.getString(2));
+            assertTrue(rs.getInt(3) > 0);
+            assertTrue(rs.next());
+            assertEquals("Easy", rs.getString(2), "Values differing only by case should share an id");
+            rs.getInt(3);
+            assertTrue(rs.wasNull(), "Blank regions should have no id");
+        }
+        assertEquals("Canterbury", new SqlBasedTrailRepo(databaseService).findById(1).get().getRegion());
+    }
+
+    @Test
+    @DisplayName("Should fill in folded names when migrating existing trails")
+    void testMigrateSchemaFoldsTrailNames() throws SQLException {
+        databaseService.createDatabaseIfNotExists();
+        try (Connection conn = databaseService.getConnection();
+                Statement stmt = conn.createStatement()) {
+            dropFoldedNames(stmt);
+            stmt.execute("INSERT INTO trail (id, name) VALUES (1, ' Tōtara WALK ')");
+        }
+        setStoredVersion("2.7");
+
+        assertTrue(databaseService.migrateSchema());
+
+        try (Connection conn = databaseService.getConnection();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT foldedName FROM trail WHERE id = 1")) {
+            assertTrue(rs.next());
+            assertEquals("totara walk", rs.getString(1));
+        }
+    }
+
+    @Test
+    @DisplayName("Should compare schema versions numerically")
+    void testCompareVersions() {
+        assertTrue(DatabaseService.compareVersions("2.10", "2.9") > 0);
+        assertTrue(DatabaseService.compareVersions("2.3", "3") < 0);
+        assertEquals(0, DatabaseService.compareVersions("2.3", "2.3.0"));
+    }
+
+    @Test
+    @DisplayName("Should install a populated snapshot in place of a missing database")
+    void testInstallSnapshot() throws Exception {
+        String snapshotPath = tempDir.resolve("snapshot.db").toString();
+        DatabaseService snapshotService = new DatabaseService(snapshotPath);
+        snapshotService.createDatabaseIfNotExists();
+        try (Connection conn = snapshotService.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO category (id, name) VALUES (1, 'Coast')");
+        }
+        snapshotService.optimiseForSnapshot();
+
+        try (var snapshot = new java.io.FileInputStream(snapshotPath)) {
+            assertTrue(databaseService.installSnapshot(snapshot));
+        }
+
+        assertTrue(databaseService.isSchemaUpToDate());
+        try (Connection conn = databaseService.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT name FROM category")) {
+            assertTrue(rs.next());
+            assertEquals("Coast", rs.getString(1));
+        }
+    }
+
+    @Test
+    @DisplayName("Should discard a snapshot that has no schema version")
+    void testInstallSnapshotWithoutVersion() throws Exception {
+        String snapshotPath = tempDir.resolve("snapshot.db").toString();
+        try (Connection conn = java.sql.DriverManager.getConnection("jdbc:sqlite:" + snapshotPath);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE category (id INTEGER PRIMARY KEY, name TEXT)");
+        }
+
+        try (var snapshot = new java.io.FileInputStream(snapshotPath)) {
+            assertFalse(databaseService.installSnapshot(snapshot));
+        }
+        assertFalse(databaseService.databaseExists());
+    }
+
+    @Test
+    @DisplayName("Should not install the snapshot over an existing database")
+    void testInstallSnapshotExistingDatabase() throws SQLException {
+        databaseService.createDatabaseIfNotExists();
+
+        assertFalse(databaseService.installSnapshot());
+    }
+
+    private String readStoredVersion() throws SQLException {
+        try (Connection conn = databaseService.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version FROM schema_version")) {
+            assertTrue(rs.next());
+            return rs.getString(1);
+        }
+    }
+
+    private void dropFoldedNames(Statement stmt) throws SQLException {
+        stmt.execute("DROP INDEX idx_trail_folded_name");
+        stmt.execute("DROP INDEX idx_trail_log_trail_id");
+        stmt.execute("ALTER TABLE trail DROP COLUMN foldedName");
+    }
+
+    private void dropTrailLookups(Statement stmt) throws SQLException {
+        dropFoldedNames(stmt);
+        stmt.execute("DROP INDEX idx_trail_region_id");
+        stmt.execute("DROP INDEX idx_trail_difficulty_id");
+        stmt.execute("DROP INDEX idx_trail_completion_type_id");
+        stmt.execute("DROP INDEX idx_trail_time_unit_id");
+        for (String column : List.of("region", "difficulty", "completionType", "timeUnit")) {
+            stmt.execute("ALTER TABLE trail DROP COLUMN " + column + "Id");
+            stmt.execute("DROP TABLE " + column + "Lookup");
+            stmt.execute("ALTER TABLE trail ADD COLUMN " + column + " TEXT");
+        }
+    }
+
+    private void setStoredVersion(String version) throws SQLException {
+        try (Connection conn = databaseService.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("UPDATE schema_version SET version = '" + version + "'");
+        }
+    }
 }
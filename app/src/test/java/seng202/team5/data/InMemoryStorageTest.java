@@ -0,0 +1,117 @@
+package seng202.team5.data;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import seng202.team5.models.Trail;
+import seng202.team5.models.TrailLog;
+import seng202.team5.models.User;
+import seng202.team5.services.LogService;
+import seng202.team5.services.SearchService;
+import seng202.team5.services.UserService;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the in-memory repositories together, and the services running on them.
+ */
+public class InMemoryStorageTest {
+    private InMemoryStorage storage;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        storage = new InMemoryStorage(new DataEventBus());
+        storage.getTrailRepo().upsertAll(List.of(
+                trail(1, "Kauri Loop", "Easy", "return"),
+                trail(2, "Summit Route", "Expert", "One way"),
+                trail(3, "Beach Track", "easy", "return")));
+    }
+
+    @Test
+    @DisplayName("Should drop a trail's logs and categories when the trail is deleted")
+    void testDeleteTrailCascades() {
+        storage.getKeywordRepo().insertCategoriesAndKeywords(Map.of("Coast", List.of("beach"), "Bush", List.of("kauri")));
+        storage.getKeywordRepo().assignTrailCategories(List.of(
+                new Trail.Builder().id(1).categories(Set.of("Bush", "Unknown")).build(),
+                new Trail.Builder().id(3).categories(Set.of("Coast")).build()));
+        storage.getTrailLogRepo().upsert(log(1, 1));
+        storage.getTrailLogRepo().upsert(log(2, 3));
+
+        storage.getTrailRepo().deleteById(1);
+
+        assertEquals(Set.of("Coast"), storage.getKeywordRepo().getCategoriesForTrail(3));
+        assertTrue(storage.getKeywordRepo().getCategoriesForTrail(1).isEmpty());
+        assertTrue(storage.getTrailLogRepo().findById(1).isEmpty());
+        assertEquals(1, storage.getTrailLogRepo().countTrailLogs());
+    }
+
+    @Test
+    @DisplayName("Should refuse logs and categories for trails that don't exist")
+    void testMissingTrailRejected() {
+        assertThrows(IllegalArgumentException.class, () -> storage.getTrailLogRepo().upsert(log(1, 99)));
+        assertThrows(IllegalArgumentException.class, () -> storage.getKeywordRepo()
+                .assignTrailCategories(List.of(new Trail.Builder().id(99).categories(Set.of()).build())));
+    }
+
+    @Test
+    @DisplayName("Should work out filter options from the trails")
+    void testFilterOptions() {
+        FilterOptionsRepo filterOptionsRepo = storage.getFilterOptionsRepo();
+        assertFalse(filterOptionsRepo.hasFilterOptions("difficulty"));
+
+        filterOptionsRepo.refreshAllFilterOptions();
+
+        assertEquals(List.of("Easy", "Expert"), filterOptionsRepo.getFilterOptions("difficulty"));
+        assertEquals(List.of("One way", "return"), filterOptionsRepo.getFilterOptions("completionType"));
+        assertEquals(List.of("Multi-day", "Day walk"), filterOptionsRepo.getFilterOptions("multiDay"));
+    }
+
+    @Test
+    @DisplayName("Should run the search, log and user services on in-memory storage")
+    void testServicesOnMemoryStorage() {
+        SearchService searchService = new SearchService(storage.getTrailRepo(), storage.getFilterOptionsRepo());
+        searchService.updateFilter("completionType", "return");
+        assertEquals(List.of(3, 1), searchService.getPage(0).stream().map(Trail::getId).toList());
+
+        LogService logService = new LogService(storage.getTrailLogRepo(), storage.getTrailRepo());
+        logService.addLog(log(1, 2));
+        assertTrue(logService.isTrailLogged(2));
+        assertEquals(1, logService.countLogs());
+
+        UserService userService = new UserService(storage.getTrailRepo(), storage.getUserRepo());
+        User user = new User();
+        user.setName("Tester");
+        user.setProfileComplete(true);
+        userService.saveUserToDatabase(user);
+        userService.invalidateCache();
+        assertEquals("Tester", userService.getUser().getName());
+
+        userService.clearUser();
+        assertNull(userService.getUser());
+
+        storage.clear();
+        assertEquals(0, storage.getTrailRepo().countTrails());
+        assertEquals(0, storage.getTrailLogRepo().countTrailLogs());
+    }
+
+    private static Trail trail(int id, String name, String difficulty, String completionType) {
+        return new Trail.Builder()
+                .id(id)
+                .name(name)
+                .description("")
+                .difficulty(difficulty)
+                .completionType(completionType)
+                .timeUnit("hours")
+                .region("")
+                .build();
+    }
+
+    private static TrailLog log(int id, int trailId) {
+        return new TrailLog(id, trailId, LocalDate.of(2025, 1, 1), 60, "hours", "return", 4, "easy", "");
+    }
+}
@@ -0,0 +1,169 @@
+package seng202.team5.data;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import seng202.team5.models.Trail;
+import seng202.team5.models.TrailSearchResult;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the in-memory trail repository answers the same as the SQL one for
+ * the same trails.
+ */
+public class InMemoryTrailRepoTest {
+    private static final List<String> DIFFICULTY_ORDER = List.of("easy", "intermediate", "advanced", "expert");
+
+    @TempDir
+    Path tempDir;
+
+    private DatabaseService databaseService;
+    private SqlBasedTrailRepo sqlRepo;
+    private InMemoryTrailRepo memoryRepo;
+    private DataEventBus eventBus;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        databaseService = new DatabaseService(tempDir.resolve("test.db").toString());
+        databaseService.createDatabaseIfNotExists();
+        eventBus = new DataEventBus();
+        sqlRepo = new SqlBasedTrailRepo(databaseService, eventBus);
+        memoryRepo = new InMemoryTrailRepo(eventBus);
+
+        String[] difficulties = { "Easy", "intermediate", "advanced", "expert", "unknown" };
+        String[] names = { "Tōtara Walk", "Kauri Loop", "Beach Track", "Summit Route", "Lake Circuit" };
+        List<Trail> trails = IntStream.rangeClosed(1, 60)
+                .mapToObj(id -> new Trail.Builder()
+                        .id(id)
+                        .name(names[id % names.length] + " " + id)
+                        .translation(id % 7 == 0 ? "Te Ara Moana" : "")
+                        .description(id % 3 == 0 ? "Walk along the coast past native bush" : "A climb to the ridge")
+                        .difficulty(difficulties[id % difficulties.length])
+                        .region(id % 5 == 0 ? "" : "Region " + id % 4)
+                        .completionType(id % 2 == 0 ? "return" : "One way")
+                        .timeUnit(id % 3 == 0 ? "days" : "hours")
+                        .minCompletionTimeMinutes(id % 6 == 0 ? 0 : id * 10)
+                        .maxCompletionTimeMinutes(id % 6 == 0 ? 0 : id * 15)
+                        .userWeight((id * 37) % 11 / 10.0)
+                        .lat(-45 + id % 9 * 0.5)
+                        .lon(170 + id % 8 * 0.5)
+                        .build())
+                .toList();
+        sqlRepo.upsertAll(trails);
+        memoryRepo.upsertAll(trails);
+    }
+
+    @AfterEach
+    void tearDown() {
+        databaseService.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should filter, sort and page searches the same as the SQL repository")
+    void testSearchTrailsMatchesSql() {
+        List<TrailQuery> queries = new ArrayList<>();
+        for (TrailQuery.SortKey sortKey : TrailQuery.SortKey.values()) {
+            for (boolean ascending : new boolean[] { true, false }) {
+                queries.add(new TrailQuery.Builder()
+                        .sortBy(sortKey, ascending)
+                        .difficultyOrder(DIFFICULTY_ORDER)
+                        .build());
+            }
+        }
+        queries.add(new TrailQuery.Builder().nameContains("LOOP").build());
+        queries.add(new TrailQuery.Builder().textMatch("coast nat").build());
+        queries.add(new TrailQuery.Builder().textMatch("totara").build());
+        queries.add(new TrailQuery.Builder().textMatch("!!").build());
+        queries.add(new TrailQuery.Builder().completionTypes(Set.of("one way")).timeUnits(Set.of("DAYS")).build());
+        queries.add(new TrailQuery.Builder().difficulties(Set.of("easy", "expert")).build());
+        queries.add(new TrailQuery.Builder().difficulties(Set.of()).build());
+        queries.add(new TrailQuery.Builder().regions(Set.of("region 1", "Region 2"), false).build());
+        queries.add(new TrailQuery.Builder().regions(Set.of("Region 3"), true).build());
+        queries.add(new TrailQuery.Builder().regions(Set.of(), true).build());
+        queries.add(new TrailQuery.Builder()
+                .completionTypes(Set.of("return"))
+                .sortBy(TrailQuery.SortKey.TIME, false)
+                .page(5, 10)
+                .build());
+
+        for (TrailQuery query : queries) {
+            assertEquals(ids(sqlRepo.searchTrails(query)), ids(memoryRepo.searchTrails(query)));
+            assertEquals(sqlRepo.countTrails(query), memoryRepo.countTrails(query));
+            for (TrailQuery.Facet facet : TrailQuery.Facet.values()) {
+                assertEquals(sqlRepo.countTrailsByFacet(query, facet), memoryRepo.countTrailsByFacet(query, facet));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should find the same trails by text, name, box and radius as the SQL repository")
+    void testLookupsMatchSql() {
+        assertEquals(resultIds(sqlRepo.searchTrailText("walk coast", 100)),
+                resultIds(memoryRepo.searchTrailText("walk coast", 100)));
+        assertTrue(memoryRepo.searchTrailText("   ", 10).isEmpty());
+
+        TrailSearchResult best = memoryRepo.searchTrailText("totara", 1).getFirst();
+        assertEquals("[Tōtara] Walk " + best.trailId(), best.highlightedName());
+
+        assertEquals(sqlRepo.existsByName(" TOTARA walk 5 ", null), memoryRepo.existsByName(" TOTARA walk 5 ", null));
+        assertFalse(memoryRepo.existsByName("Tōtara Walk 5", 5));
+
+        assertEquals(ids(sqlRepo.findTrailsInBounds(-44, -43, 171, 172)),
+                ids(memoryRepo.findTrailsInBounds(-44, -43, 171, 172)));
+        assertEquals(ids(sqlRepo.findTrailsWithinRadius(-44, 171, 60)),
+                ids(memoryRepo.findTrailsWithinRadius(-44, 171, 60)));
+        assertEquals(sqlRepo.getNewTrailId(), memoryRepo.getNewTrailId());
+    }
+
+    @Test
+    @DisplayName("Should agree with the SQL repository on which trails are processed")
+    void testIsTrailProcessedMatchesSql() throws Exception {
+        List<Trail> trails = List.of(
+                new Trail.Builder().id(101).name("Known").completionType("Loop").build(),
+                new Trail.Builder().id(102).name("Unknown").completionType("Unknown").build(),
+                new Trail.Builder().id(103).name("Blank").completionType("").build());
+        sqlRepo.upsertAll(trails);
+        memoryRepo.upsertAll(trails);
+
+        for (Trail trail : trails) {
+            assertEquals(sqlRepo.isTrailProcessed(trail), memoryRepo.isTrailProcessed(trail), trail.getName());
+        }
+        assertTrue(memoryRepo.isTrailProcessed(trails.get(0)));
+        assertFalse(memoryRepo.isTrailProcessed(trails.get(1)));
+    }
+
+    @Test
+    @DisplayName("Should publish each change and read back weights like the database")
+    void testWritesPublishChanges() {
+        List<DataChangeEvent> events = new ArrayList<>();
+        eventBus.subscribe(DataChangeEvent.class, events::add);
+
+        memoryRepo.updateUserWeights(List.of(new Trail.Builder().id(1).userWeight(0.9).build()));
+        memoryRepo.clearUserWeights();
+        memoryRepo.deleteById(2);
+
+        assertEquals(0, memoryRepo.findById(1).get().getUserWeight());
+        assertTrue(memoryRepo.findById(2).isEmpty());
+        assertEquals(List.of(
+                new DataChangeEvent.TrailWeightsUpdated(java.util.Map.of(1, 0.9)),
+                new DataChangeEvent.TrailWeightsCleared(),
+                new DataChangeEvent.TrailDeleted(2)), events);
+    }
+
+    private static List<Integer> ids(List<Trail> trails) {
+        return trails.stream().map(Trail::getId).toList();
+    }
+
+    private static Set<Integer> resultIds(List<TrailSearchResult> results) {
+        return Set.copyOf(results.stream().map(TrailSearchResult::trailId).toList());
+    }
+}
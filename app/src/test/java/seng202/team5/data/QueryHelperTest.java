@@ -10,10 +10,16 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import java.nio.file.Path;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
 
 public class QueryHelperTest {
 
@@ -105,6 +111,214 @@ public class QueryHelperTest {
         assertEquals(1, count);
     }
 
+    @Test
+    @DisplayName("Should stream rows lazily and release the connection when closed")
+    void testExecuteStream() {
+        try (Stream<String> names = queryHelper.executeStream(
+                "SELECT name FROM test_table ORDER BY id",
+                null,
+                rs -> rs.getString("name"))) {
+            assertEquals(1, databaseService.getInUseConnectionCount());
+            assertEquals(List.of("Test1", "Test2"), names.toList());
+        }
+
+        assertEquals(0, databaseService.getInUseConnectionCount());
+    }
+
+    @Test
+    @DisplayName("Should stop reading rows when the stream stops early")
+    void testExecuteStreamStopsEarly() {
+        List<Integer> mapped = new ArrayList<>();
+        try (Stream<Integer> ids = queryHelper.executeStream(
+                "SELECT id FROM test_table ORDER BY id",
+                null,
+                rs -> {
+                    mapped.add(rs.getInt("id"));
+                    return rs.getInt("id");
+                })) {
+            assertEquals(Optional.of(1), ids.findFirst());
+        }
+
+        assertEquals(List.of(1), mapped);
+        assertEquals(0, databaseService.getInUseConnectionCount());
+    }
+
+    @Test
+    @DisplayName("Should pass every row to the consumer")
+    void testExecuteForEach() {
+        List<String> names = new ArrayList<>();
+        queryHelper.executeForEach(
+                "SELECT name FROM test_table WHERE value > ?",
+                stmt -> stmt.setInt(1, 50),
+                rs -> names.add(rs.getString("name")));
+
+        assertEquals(List.of("Test1", "Test2"), names);
+    }
+
+    @Test
+    @DisplayName("Should reject a fetch size that is not positive")
+    void testSetFetchSize() {
+        queryHelper.setFetchSize(10);
+        assertEquals(10, queryHelper.getFetchSize());
+        assertThrows(IllegalArgumentException.class, () -> queryHelper.setFetchSize(0));
+    }
+
+    @Test
+    @DisplayName("Should reuse the compiled statement when the same SQL runs again")
+    void testStatementCacheHit() {
+        String sql = "SELECT COUNT(*) FROM test_table WHERE value > ?";
+        queryHelper.executeCountQuery(sql, stmt -> stmt.setInt(1, 0));
+        long hitsBefore = databaseService.getStatementCacheHits();
+        long missesBefore = databaseService.getStatementCacheMisses();
+
+        int count = queryHelper.executeCountQuery(sql, stmt -> stmt.setInt(1, 150));
+
+        assertEquals(1, count);
+        assertEquals(hitsBefore + 1, databaseService.getStatementCacheHits());
+        assertEquals(missesBefore, databaseService.getStatementCacheMisses());
+    }
+
+    @Test
+    @DisplayName("Should see writes made after a cached statement was last used")
+    void testCachedStatementSeesNewRows() {
+        String sql = "SELECT id, name, value FROM test_table ORDER BY id";
+        assertEquals(2, queryHelper.executeQuery(sql, null, rs -> rs.getInt("id")).size());
+
+        queryHelper.executeUpdate("INSERT INTO test_table (id, name, value) VALUES (3, 'Test3', 300)", null);
+
+        assertEquals(3, queryHelper.executeQuery(sql, null, rs -> rs.getInt("id")).size());
+    }
+
+    @Test
+    @DisplayName("Should allow the same SQL to be prepared twice on one connection")
+    void testSameSqlPreparedTwice() throws SQLException {
+        String sql = "SELECT name FROM test_table WHERE id = ?";
+        try (Connection conn = databaseService.getConnection();
+                PreparedStatement first = conn.prepareStatement(sql);
+                PreparedStatement second = conn.prepareStatement(sql)) {
+            first.setInt(1, 1);
+            second.setInt(1, 2);
+            try (ResultSet rs1 = first.executeQuery(); ResultSet rs2 = second.executeQuery()) {
+                assertTrue(rs1.next());
+                assertTrue(rs2.next());
+                assertEquals("Test1", rs1.getString("name"));
+                assertEquals("Test2", rs2.getString("name"));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should run queries asynchronously off the calling thread")
+    void testExecuteQueryAsync() {
+        Thread caller = Thread.currentThread();
+
+        List<Boolean> ranOnCaller = queryHelper.executeQueryAsync(
+                "SELECT id FROM test_table", null, rs -> Thread.currentThread() == caller).join();
+        int count = queryHelper.executeCountQueryAsync("SELECT COUNT(*) FROM test_table", null).join();
+
+        assertEquals(List.of(false, false), ranOnCaller);
+        assertEquals(2, count);
+    }
+
+    @Test
+    @DisplayName("Should complete exceptionally when an async query fails")
+    void testExecuteQueryAsyncFailure() {
+        CompletableFuture<Integer> future = queryHelper.executeUpdateAsync("INSERT INTO missing_table VALUES (1)", null);
+
+        CompletionException e = assertThrows(CompletionException.class, future::join);
+        assertInstanceOf(RuntimeException.class, e.getCause());
+        assertTrue(e.getCause().getMessage().contains("missing_table"));
+    }
+
+    @Test
+    @DisplayName("Should record timings, rows and errors for each statement")
+    void testQueryMetricsRecorded() {
+        QueryMetrics metrics = new QueryMetrics();
+        QueryHelper instrumented = new QueryHelper(databaseService, metrics);
+        String select = "SELECT id FROM test_table";
+        String update = "UPDATE test_table SET value = ? WHERE id = ?";
+
+        instrumented.executeQuery(select, null, rs -> rs.getInt("id"));
+        instrumented.executeUpdate(update, stmt -> {
+            stmt.setInt(1, 5);
+            stmt.setInt(2, 1);
+        });
+        assertThrows(RuntimeException.class, () -> instrumented.executeCountQuery("SELECT COUNT(*) FROM nope", null));
+
+        assertEquals(2, metrics.getStats(select).orElseThrow().getTotalRows());
+        assertEquals(1, metrics.getStats(update).orElseThrow().getTotalRows());
+        assertEquals(2, metrics.getStats(update).orElseThrow().getParameterCount());
+        assertEquals(1, metrics.getStats("SELECT COUNT(*) FROM nope").orElseThrow().getErrorCount());
+    }
+
+    @Test
+    @DisplayName("Should share one connection and commit once across helpers in a unit of work")
+    void testRunInTransactionCommits() {
+        QueryHelper otherHelper = new QueryHelper(databaseService);
+        List<String> committed = new ArrayList<>();
+
+        queryHelper.runInTransaction(() -> {
+            queryHelper.executeUpdate("INSERT INTO test_table (id, name, value) VALUES (3, 'Test3', 300)", null);
+            otherHelper.executeBatch("UPDATE test_table SET value = ? WHERE id = ?", List.of(1, 2),
+                    (stmt, id) -> {
+                        stmt.setInt(1, 0);
+                        stmt.setInt(2, id);
+                    });
+            otherHelper.afterCommit(() -> committed.add("batch"));
+            assertTrue(otherHelper.isInTransaction());
+            assertEquals(1, databaseService.getInUseConnectionCount());
+            assertEquals(0, otherHelper.executeCountQuery("SELECT SUM(value) - 300 FROM test_table", null));
+            assertTrue(committed.isEmpty(), "After-commit work should wait for the commit");
+        });
+
+        assertFalse(queryHelper.isInTransaction());
+        assertEquals(List.of("batch"), committed);
+        assertEquals(0, databaseService.getInUseConnectionCount());
+        assertEquals(300, queryHelper.executeCountQuery("SELECT SUM(value) FROM test_table", null));
+    }
+
+    @Test
+    @DisplayName("Should roll back every statement in a unit of work when it throws")
+    void testRunInTransactionRollsBack() {
+        List<String> committed = new ArrayList<>();
+
+        SQLException e = assertThrows(SQLException.class, () -> queryHelper.runInTransaction(() -> {
+            queryHelper.executeUpdate("DELETE FROM test_table", null);
+            queryHelper.afterCommit(() -> committed.add("delete"));
+            throw new SQLException("Failed part way");
+        }));
+
+        assertEquals("Failed part way", e.getMessage());
+        assertTrue(committed.isEmpty());
+        assertEquals(2, queryHelper.executeCountQuery("SELECT COUNT(*) FROM test_table", null));
+        assertEquals(0, databaseService.getInUseConnectionCount());
+    }
+
+    @Test
+    @DisplayName("Should roll back a unit of work when a statement in it failed, even if caught")
+    void testRunInTransactionRollbackOnly() {
+        assertThrows(RuntimeException.class, () -> queryHelper.runInTransaction(() -> {
+            queryHelper.executeUpdate("DELETE FROM test_table WHERE id = 1", null);
+            assertThrows(RuntimeException.class, () -> queryHelper.executeTransaction(List.of(
+                    new QueryHelper.SqlStatement("DELETE FROM test_table WHERE id = 2", null),
+                    new QueryHelper.SqlStatement("INSERT INTO missing_table VALUES (1)", null))));
+        }));
+
+        assertEquals(2, queryHelper.executeCountQuery("SELECT COUNT(*) FROM test_table", null));
+    }
+
+    @Test
+    @DisplayName("Should join an outer unit of work and return the work's result")
+    void testSupplyInTransactionNested() {
+        int count = queryHelper.supplyInTransaction(() -> {
+            queryHelper.runInTransaction(() -> queryHelper.executeUpdate("DELETE FROM test_table WHERE id = 1", null));
+            return queryHelper.executeCountQuery("SELECT COUNT(*) FROM test_table", null);
+        });
+
+        assertEquals(1, count);
+        assertEquals(1, queryHelper.executeCountQuery("SELECT COUNT(*) FROM test_table", null));
+    }
+
     /**
      * Helper record class for testing, basically just used to hold test data as
      * records
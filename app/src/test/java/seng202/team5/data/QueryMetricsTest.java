@@ -0,0 +1,105 @@
+package seng202.team5.data;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+public class QueryMetricsTest {
+
+    private QueryMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        metrics = new QueryMetrics();
+    }
+
+    @Test
+    @DisplayName("Should group runs of the same SQL regardless of whitespace")
+    void testGroupsByTemplate() {
+        metrics.record("SELECT * FROM trail WHERE id = ?", 1_000_000, 1, false);
+        metrics.record("SELECT *\n    FROM trail\n    WHERE id = ?\n", 3_000_000, 0, true);
+
+        QueryMetrics.QueryStats stats = metrics.getStats("SELECT * FROM trail WHERE id = ?").orElseThrow();
+        assertEquals(2, stats.getCount());
+        assertEquals(1, stats.getErrorCount());
+        assertEquals(1, stats.getTotalRows());
+        assertEquals(1, stats.getParameterCount());
+        assertEquals(2.0, stats.getMeanMillis(), 0.001);
+        assertEquals(3.0, stats.getMaxMillis(), 0.001);
+    }
+
+    @Test
+    @DisplayName("Should estimate percentiles to within a factor of two")
+    void testPercentiles() {
+        for (int i = 0; i < 99; i++) {
+            metrics.record("SELECT 1", 1_000_000, 1, false);
+        }
+        metrics.record("SELECT 1", 100_000_000, 1, false);
+
+        QueryMetrics.QueryStats stats = metrics.getStats("SELECT 1").orElseThrow();
+        double p50 = stats.getPercentileMillis(50);
+        double p100 = stats.getPercentileMillis(100);
+        assertTrue(p50 >= 1.0 && p50 <= 2.0, "p50 was " + p50);
+        assertEquals(100.0, p100, 0.001);
+        assertThrows(IllegalArgumentException.class, () -> stats.getPercentileMillis(101));
+    }
+
+    @Test
+    @DisplayName("Should order all stats by total time spent")
+    void testAllStatsOrdering() {
+        metrics.record("SELECT 1", 1_000, 1, false);
+        metrics.record("SELECT 2", 5_000, 1, false);
+
+        List<QueryMetrics.QueryStats> all = metrics.getAllStats();
+        assertEquals("SELECT 2", all.get(0).getSql());
+        assertEquals("SELECT 1", all.get(1).getSql());
+
+        metrics.reset();
+        assertTrue(metrics.getAllStats().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should count placeholder lists of any length as one template")
+    void testGroupsPlaceholderLists() {
+        metrics.record("SELECT * FROM trail WHERE id IN (?) AND regionId = ?", 1_000, 1, false);
+        metrics.record("SELECT * FROM trail WHERE id IN (?,?) AND regionId = ?", 1_000, 2, false);
+        metrics.record("SELECT * FROM trail WHERE id IN (?, ?,\n ?) AND regionId = ?", 1_000, 3, false);
+
+        assertEquals(2, metrics.getAllStats().size());
+        assertEquals("SELECT * FROM trail WHERE id IN (?…) AND regionId = ?",
+                QueryMetrics.normalise("SELECT * FROM trail WHERE id IN (?, ?, ?, ?) AND regionId = ?"));
+        assertEquals(2, metrics.getStats("SELECT * FROM trail WHERE id IN (?, ?) AND regionId = ?")
+                .orElseThrow().getCount());
+    }
+
+    @Test
+    @DisplayName("Should only cache templates for the most recently run SQL")
+    void testTemplateCacheIsBounded() {
+        for (int i = 0; i < QueryMetrics.TEMPLATE_CACHE_SIZE * 2; i++) {
+            metrics.record("SELECT " + i, 1_000, 1, false);
+        }
+        metrics.record("SELECT  0", 1_000, 1, false);
+
+        assertEquals(QueryMetrics.TEMPLATE_CACHE_SIZE, metrics.getCachedTemplateCount());
+        assertEquals(2, metrics.getStats("SELECT 0").orElseThrow().getCount());
+    }
+
+    @Test
+    @DisplayName("Should not count question marks inside string literals as parameters")
+    void testCountParameters() {
+        assertEquals(2, QueryMetrics.countParameters("SELECT * FROM t WHERE a = ? AND b = '?' AND c = ?"));
+        assertEquals(0, QueryMetrics.countParameters("SELECT 1"));
+    }
+
+    @Test
+    @DisplayName("Should reject a negative slow query threshold")
+    void testSlowQueryThreshold() {
+        metrics.setSlowQueryThresholdMillis(10);
+        assertEquals(10, metrics.getSlowQueryThresholdMillis());
+        assertThrows(IllegalArgumentException.class, () -> metrics.setSlowQueryThresholdMillis(-1));
+    }
+}
@@ -0,0 +1,186 @@
+package seng202.team5.data;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import seng202.team5.models.Trail;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs EXPLAIN QUERY PLAN over the SQL constants of every repository against a
+ * populated database, so a query that stops using an index fails here rather
+ * than slowing the app down as the tables grow.
+ */
+public class QueryPlanTest {
+    private static final List<Class<?>> REPOSITORIES = List.of(
+            SqlBasedTrailRepo.class,
+            SqlBasedTrailLogRepo.class,
+            SqlBasedKeywordRepo.class,
+            SqlBasedFilterOptionsRepo.class,
+            SqlBasedUserRepo.class);
+
+    // Queries meant to read the whole table, or tables only ever a few rows long
+    private static final Map<Class<?>, Set<String>> FULL_READS = Map.of(
+            SqlBasedTrailRepo.class, Set.of("SELECT_ALL", "COUNT_SQL", "CLEAR_USER_WEIGHTS_SQL"),
+            SqlBasedTrailLogRepo.class, Set.of("SELECT_ALL", "SELECT_ALL_WITH_TRAIL", "COUNT_SQL"),
+            SqlBasedKeywordRepo.class, Set.of("SELECT_ALL_CATEGORIES_WITH_KEYWORDS", "SELECT_ALL_TRAIL_CATEGORIES",
+                    "COUNT_CATEGORIES"),
+            SqlBasedFilterOptionsRepo.class, Set.of("REFRESH_COMPLETION_TYPE_OPTIONS", "REFRESH_TIME_UNIT_OPTIONS",
+                    "REFRESH_DIFFICULTY_OPTIONS", "SELECT_FILTER_TYPES", "DELETE_ALL_OPTIONS"),
+            SqlBasedUserRepo.class, Set.of("SELECT_USER", "DELETE_ALL_SQL", "DELETE_INCOMPLETE_SQL"));
+
+    @TempDir
+    Path tempDir;
+
+    private DatabaseService databaseService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        databaseService = new DatabaseService(tempDir.resolve("test.db").toString());
+        databaseService.createDatabaseIfNotExists();
+
+        String[] difficulties = { "easy", "intermediate", "advanced", "expert" };
+        new SqlBasedTrailRepo(databaseService).upsertAll(IntStream.rangeClosed(1, 500)
+                .mapToObj(id -> new Trail.Builder()
+                        .id(id)
+                        .name("Trail " + id)
+                        .difficulty(difficulties[id % difficulties.length])
+                        .region("Region " + id % 16)
+                        .completionType(id % 2 == 0 ? "return" : "one way")
+                        .timeUnit(id % 3 == 0 ? "days" : "hours")
+                        .lat(-47 + id % 13)
+                        .lon(167 + id % 11)
+                        .build())
+                .toList());
+
+        SqlBasedKeywordRepo keywordRepo = new SqlBasedKeywordRepo(databaseService);
+        keywordRepo.insertCategoriesAndKeywords(Map.of(
+                "Coast", List.of("beach", "coast", "sea"),
+                "Forest", List.of("bush", "forest", "native")));
+
+        try (Connection conn = databaseService.getConnection();
+                Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                    INSERT INTO trailLog (trailId, startDate, rating)
+                    SELECT id, '2025-01-01', 1 + id % 5 FROM trail WHERE id % 4 = 0
+                    """);
+            stmt.execute("""
+                    INSERT INTO trailCategory (trailId, categoryId)
+                    SELECT trail.id, category.id FROM trail, category WHERE trail.id % 2 = category.id % 2
+                    """);
+            stmt.execute("INSERT INTO user (id, name, isProfileComplete) VALUES (1, 'Tester', 1)");
+            stmt.execute("ANALYZE"); // As the shipped snapshot is
+        }
+        new SqlBasedFilterOptionsRepo(databaseService).refreshAllFilterOptions();
+    }
+
+    @AfterEach
+    void tearDown() {
+        databaseService.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should use an index for every repository query that isn't a full read")
+    void testQueriesUseIndexes() throws Exception {
+        List<String> failures = new ArrayList<>();
+
+        for (Class<?> repository : REPOSITORIES) {
+            Map<String, String> queries = getSqlConstants(repository);
+            assertFalse(queries.isEmpty(), "No SQL constants found in " + repository.getSimpleName());
+            Set<String> fullReads = FULL_READS.getOrDefault(repository, Set.of());
+
+            for (Map.Entry<String, String> query : queries.entrySet()) {
+                String name = repository.getSimpleName() + "." + query.getKey();
+                for (String step : explain(query.getValue())) {
+                    if (step.contains("AUTOMATIC") || (isTableScan(step) && !fullReads.contains(query.getKey()))) {
+                        failures.add(name + ": " + step);
+                    }
+                }
+            }
+        }
+
+        assertTrue(failures.isEmpty(), "Queries without a usable index:\n" + String.join("\n", failures));
+    }
+
+    @Test
+    @DisplayName("Should only list full reads that are still repository queries")
+    void testFullReadsExist() throws Exception {
+        for (Map.Entry<Class<?>, Set<String>> entry : FULL_READS.entrySet()) {
+            Set<String> queries = getSqlConstants(entry.getKey()).keySet();
+            for (String name : entry.getValue()) {
+                assertTrue(queries.contains(name), entry.getKey().getSimpleName() + "." + name + " no longer exists");
+            }
+        }
+    }
+
+    /**
+     * Reads a class's static final String constants that hold SQL statements
+     *
+     * @param type the class to read
+     * @return the SQL keyed by constant name
+     */
+    private static Map<String, String> getSqlConstants(Class<?> type) throws IllegalAccessException {
+        Map<String, String> queries = new LinkedHashMap<>();
+        for (Field field : type.getDeclaredFields()) {
+            int modifiers = field.getModifiers();
+            if (field.getType() != String.class || !Modifier.isStatic(modifiers) || !Modifier.isFinal(modifiers)) {
+                continue;
+            }
+            field.setAccessible(true);
+            String sql = ((String) field.get(null)).strip();
+            String keyword = sql.split("\\s+", 2)[0].toUpperCase(Locale.ROOT);
+            if (Set.of("SELECT", "INSERT", "UPDATE", "DELETE", "WITH").contains(keyword)) {
+                queries.put(field.getName(), sql);
+            }
+        }
+        return queries;
+    }
+
+    /**
+     * Gets the query plan for a statement without running it
+     *
+     * @param sql the statement, with its parameters left unbound
+     * @return the detail of each step in the plan
+     */
+    private List<String> explain(String sql) throws SQLException {
+        List<String> steps = new ArrayList<>();
+        try (Connection conn = databaseService.getConnection();
+                PreparedStatement stmt = conn.prepareStatement("EXPLAIN QUERY PLAN " + sql);
+                ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                steps.add(rs.getString("detail"));
+            }
+        }
+        return steps;
+    }
+
+    /**
+     * Checks whether a plan step reads every row of a table or index. Virtual
+     * tables such as the full-text and spatial indexes do their own filtering.
+     *
+     * @param step the plan step
+     * @return true for a full scan
+     */
+    private static boolean isTableScan(String step) {
+        return step.startsWith("SCAN ") && !step.contains("VIRTUAL TABLE") && !step.equals("SCAN CONSTANT ROW");
+    }
+}
@@ -5,11 +5,10 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import seng202.team5.models.Trail;
 
 import java.io.File;
 import java.nio.file.Path;
-import java.sql.Connection;
-import java.sql.Statement;
 import java.util.List;
 import java.util.Map;
 
@@ -35,16 +34,10 @@ public class SqlBasedFilterOptionsRepoTest {
         databaseService.createDatabaseIfNotExists();
 
         // Add fake data
-        try (Connection connection = databaseService.getConnection();
-             Statement stmt = connection.createStatement()) {
-
-            stmt.execute("""
-                    INSERT INTO trail (id, name, difficulty, completionType, timeUnit, isMultiDay) VALUES
-                    (1, 'Easy Trail', 'easy', 'walk', 'hours', 0),
-                    (2, 'Hard Trail', 'expert', 'hike', 'days', 1),
-                    (3, 'Medium Trail', 'intermediate', 'walk', 'hours', 0)
-                    """);
-        }
+        new SqlBasedTrailRepo(databaseService).upsertAll(List.of(
+                trail(1, "Easy Trail", "easy", "walk", "hours", false),
+                trail(2, "Hard Trail", "expert", "hike", "days", true),
+                trail(3, "Medium Trail", "intermediate", "walk", "hours", false)));
     }
 
     @AfterEach
@@ -123,4 +116,16 @@ public class SqlBasedFilterOptionsRepoTest {
         assertTrue(optionsMap.get("completionType").contains("walk"), "CompletionType should contain walk");
         assertTrue(optionsMap.get("multiDay").contains("Multi-day"), "MultiDay should contain Multi-day");
     }
-}
\ No newline at end of file
+
+    private static Trail trail(int id, String name, String difficulty, String completionType, String timeUnit,
+            boolean isMultiDay) {
+        return new Trail.Builder()
+                .id(id)
+                .name(name)
+                .difficulty(difficulty)
+                .completionType(completionType)
+                .timeUnit(timeUnit)
+                .isMultiDay(isMultiDay)
+                .build();
+    }
+}
@@ -6,6 +6,8 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import seng202.team5.exceptions.MatchmakingFailedException;
+import seng202.team5.models.LoggedTrail;
+import seng202.team5.models.Trail;
 import seng202.team5.models.TrailLog;
 
 import java.io.File;
@@ -15,6 +17,8 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -33,60 +37,9 @@ public class SqlBasedTrailLogRepoTest {
         databaseService = new DatabaseService(testDbPath);
         sqlBasedTrailLogRepo = new SqlBasedTrailLogRepo(databaseService);
 
-        // Create a 'Trail' table to test with
+        databaseService.createDatabaseIfNotExists();
         try (Connection connection = databaseService.getConnection();
              Statement stmt = connection.createStatement()) {
-            stmt.execute("""
-                        CREATE TABLE IF NOT EXISTS trail (
-                          id INTEGER PRIMARY KEY,
-                          name TEXT,
-                          translation TEXT,
-                          region TEXT,
-                          description TEXT,
-                          difficulty TEXT,
-                          completionInfo TEXT,
-                          minCompletionTimeMinutes INTEGER,
-                          maxCompletionTimeMinutes INTEGER,
-                          completionType TEXT,
-                          timeUnit TEXT,
-                          isMultiDay BOOL,
-                          hasVariableTime BOOL,
-                          thumbUrl TEXT,
-                          webUrl TEXT,
-                          cultureUrl TEXT,
-                          userWeight REAL,
-                          lat REAL,
-                          lon REAL
-                        )
-                    """);
-
-            stmt.execute("""
-                        CREATE TABLE IF NOT EXISTS trailCategory (
-                          id INTEGER PRIMARY KEY,
-                          trailId INTEGER,
-                          categoryId INTEGER,
-                          FOREIGN KEY (trailId) REFERENCES trail(id)
-                        )
-                    """);
-
-            stmt.execute("""
-                        CREATE TABLE IF NOT EXISTS trailLog (
-                          id INTEGER PRIMARY KEY,
-                          trailId INTEGER,
-                          startDate TEXT,
-                          completionTime INTEGER,
-                          timeUnit TEXT,
-                          completionType TEXT,
-                          rating INTEGER,
-                          perceivedDifficulty TEXT,
-                          notes TEXT,
-                          FOREIGN KEY (trailId) REFERENCES trail(id)
-                        )
-                    """);
-
-            stmt.execute("DELETE FROM trail");
-            stmt.execute("DELETE FROM trailCategory");
-            stmt.execute("DELETE FROM trailLog");
             stmt.execute(
                     "INSERT INTO trail (id) VALUES (99)");
             stmt.execute(
@@ -132,6 +85,14 @@ public class SqlBasedTrailLogRepoTest {
         assertEquals(100, logs.get(1).getTrailId());
     }
 
+    @Test
+    @DisplayName("Should stream all logs in the test table")
+    void testStreamAllTrailLogs() {
+        try (Stream<TrailLog> logs = sqlBasedTrailLogRepo.streamAllTrailLogs()) {
+            assertEquals(List.of(99, 100), logs.map(TrailLog::getTrailId).toList());
+        }
+    }
+
     @Test
     @DisplayName("Should find correct trail from ID, and return empty when not found")
     void testFindByID() {
@@ -207,6 +168,50 @@ public class SqlBasedTrailLogRepoTest {
     void testFindByTrailId() {
         assertEquals(2, sqlBasedTrailLogRepo.findByTrailId(100).get().getId());
     }
-}
 
+    @Test
+    @DisplayName("Should return logs joined with their trails in one query")
+    void testGetAllTrailLogsWithTrails() throws SQLException {
+        new SqlBasedTrailRepo(databaseService).upsert(new Trail.Builder().id(100).name("Hooker Valley")
+                .timeUnit("hours").build());
+        try (Connection conn = databaseService.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("UPDATE trailLog SET timeUnit = 'minutes' WHERE id = 2");
+        }
+
+        List<LoggedTrail> logs = sqlBasedTrailLogRepo.getAllTrailLogsWithTrails();
+
+        assertEquals(2, logs.size(), "Trails without logs should not be included");
+        LoggedTrail second = logs.get(1);
+        assertEquals(2, second.log().getId());
+        assertEquals(100, second.log().getTrailId());
+        assertEquals("minutes", second.log().getTimeUnit());
+        assertEquals(LocalDate.of(2025, 10, 9), second.log().getStartDate());
+        assertEquals(100, second.trail().getId());
+        assertEquals("Hooker Valley", second.trail().getName());
+        assertEquals("hours", second.trail().getTimeUnit());
+    }
+
+    @Test
+    @DisplayName("Should write upserts through the write-behind queue as they were when submitted")
+    void testUpsertWriteBehind() {
+        try (WriteBehindQueue writeBehindQueue = new WriteBehindQueue(databaseService)) {
+            sqlBasedTrailLogRepo.setWriteBehindQueue(writeBehindQueue);
+            TrailLog log = new TrailLog(3, 101, LocalDate.of(2025, 10, 10), 3, "hours", "loop", 4, "easy", "Windy");
+
+            CompletableFuture<Void> write = sqlBasedTrailLogRepo.upsertAsync(log);
+            log.setNotes("Changed after submitting");
+            write.join();
+            sqlBasedTrailLogRepo.upsert(new TrailLog(4, 102, LocalDate.of(2025, 10, 11), 1, "hours", "loop", 2,
+                    "hard", ""));
+            sqlBasedTrailLogRepo.deleteById(1);
+
+            List<TrailLog> logs = sqlBasedTrailLogRepo.getAllTrailLogs();
+            assertEquals(List.of(2, 3, 4), logs.stream().map(TrailLog::getId).toList());
+            assertEquals("Windy", logs.get(1).getNotes());
+        } finally {
+            sqlBasedTrailLogRepo.setWriteBehindQueue(null);
+        }
+    }
 
+}
@@ -8,12 +8,10 @@ import org.junit.jupiter.api.io.TempDir;
 import seng202.team5.exceptions.MatchmakingFailedException;
 import seng202.team5.models.Trail;
 
-import java.io.File;
 import java.nio.file.Path;
-import java.sql.Connection;
-import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -21,92 +19,26 @@ public class SqlBasedTrailRepoTest {
 
     private SqlBasedTrailRepo sqlBasedTrailRepo;
     private DatabaseService databaseService;
-    private String testDbPath;
 
     @TempDir
     Path tempDir;
 
     @BeforeEach
     void setUp() throws Exception {
-        testDbPath = tempDir.resolve("test.db").toString();
-        databaseService = new DatabaseService(testDbPath);
+        databaseService = new DatabaseService(tempDir.resolve("test.db").toString());
         sqlBasedTrailRepo = new SqlBasedTrailRepo(databaseService);
 
-        // Create a 'Trail' table to test with
-        try (Connection connection = databaseService.getConnection();
-                Statement stmt = connection.createStatement()) {
-            stmt.execute("""
-                        CREATE TABLE IF NOT EXISTS trail (
-                          id INTEGER PRIMARY KEY,
-                          name TEXT NOT NULL,
-                          translation TEXT,
-                          region TEXT,
-                          description TEXT,
-                          difficulty TEXT,
-                          completionInfo TEXT,
-                          minCompletionTimeMinutes INTEGER,
-                          maxCompletionTimeMinutes INTEGER,
-                          completionType TEXT,
-                          timeUnit TEXT,
-                          isMultiDay BOOL,
-                          hasVariableTime BOOL,
-                          thumbUrl TEXT,
-                          webUrl TEXT,
-                          cultureUrl TEXT,
-                          userWeight REAL,
-                          lat REAL,
-                          lon REAL
-                        )
-                    """);
-
-            stmt.execute("""
-                        CREATE TABLE IF NOT EXISTS trailCategory (
-                          id INTEGER PRIMARY KEY,
-                          trailId INTEGER,
-                          categoryId INTEGER,
-                          FOREIGN KEY (trailId) REFERENCES trail(id)
-                        )
-                    """);
-
-            stmt.execute("""
-                        CREATE TABLE IF NOT EXISTS trailLog (
-                          id INTEGER PRIMARY KEY,
-                          trailId INTEGER,
-                          startDate TEXT,
-                          completionTime INTEGER,
-                          timeUnit TEXT,
-                          completionType TEXT,
-                          rating INTEGER,
-                          perceivedDifficulty TEXT,
-                          notes TEXT,
-                          FOREIGN KEY (trailId) REFERENCES trail(id)
-                        )
-                    """);
-
-            stmt.execute("DELETE FROM trail");
-            stmt.execute("DELETE FROM trailCategory");
-            stmt.execute("DELETE FROM trailLog");
-            stmt.execute(
-                    "INSERT INTO trail (id, name, description, difficulty, userWeight) VALUES (1, 'Test1', 'Test Trail 1', 'Hard', 0.8)");
-            stmt.execute(
-                    "INSERT INTO trail (id, name, description, difficulty, userWeight) VALUES (2, 'Test2', 'Test Trail 2', 'Easy', 0.5)");
-        }
+        databaseService.createDatabaseIfNotExists();
+        sqlBasedTrailRepo.upsertAll(List.of(
+                new Trail.Builder().id(1).name("Test1").description("Test Trail 1").difficulty("Hard")
+                        .userWeight(0.8).build(),
+                new Trail.Builder().id(2).name("Test2").description("Test Trail 2").difficulty("Easy")
+                        .userWeight(0.5).build()));
     }
 
     @AfterEach
-    void tearDown() throws SQLException {
-        // Get rid of tables after testing
-        try (Connection conn = databaseService.getConnection();
-                Statement stmt = conn.createStatement()) {
-            stmt.execute("DROP TABLE IF EXISTS trailCategory");
-            stmt.execute("DROP TABLE IF EXISTS trailLog");
-            stmt.execute("DROP TABLE IF EXISTS trail");
-        }
-
-        File dbFile = new File(testDbPath);
-        if (dbFile.exists()) {
-            dbFile.delete();
-        }
+    void tearDown() {
+        databaseService.shutdown();
     }
 
     @Test
@@ -118,6 +50,14 @@ public class SqlBasedTrailRepoTest {
         assertEquals(2, trails.get(1).getId());
     }
 
+    @Test
+    @DisplayName("Should stream all trails in the test table")
+    void testStreamAllTrails() {
+        try (Stream<Trail> trails = sqlBasedTrailRepo.streamAllTrails()) {
+            assertEquals(List.of("Test1", "Test2"), trails.map(Trail::getName).toList());
+        }
+    }
+
     @Test
     @DisplayName("Should find correct trail from ID, and return empty when not found")
     void testFindByID() {
@@ -338,9 +278,13 @@ public class SqlBasedTrailRepoTest {
         assertTrue(sqlBasedTrailRepo.existsByName("Test1", null));
         assertTrue(sqlBasedTrailRepo.existsByName("test1", null)); // Case-insensitive
         assertTrue(sqlBasedTrailRepo.existsByName("  Test1  ", null)); // Whitespace insensitive
+        assertTrue(sqlBasedTrailRepo.existsByName("Tēst1", null)); // Macron insensitive
 
         assertFalse(sqlBasedTrailRepo.existsByName("NonExistentTrail", null));
 
+        sqlBasedTrailRepo.upsert(new Trail.Builder().id(3).name(" Tōtara Walk ").build());
+        assertTrue(sqlBasedTrailRepo.existsByName("TOTARA walk", null));
+
         // Exclusion
         assertFalse(sqlBasedTrailRepo.existsByName("Test1", 1));
         assertTrue(sqlBasedTrailRepo.existsByName("Test1", 2));
@@ -366,4 +310,114 @@ public class SqlBasedTrailRepoTest {
         assertEquals(6, sqlBasedTrailRepo.getNewTrailId());
     }
 
+    @Test
+    @DisplayName("Should filter, sort and page trails in SQL")
+    void testSearchTrails() throws Exception {
+        // The filters match on the lookup tables, which only the full schema has
+        DatabaseService searchDatabase = new DatabaseService(tempDir.resolve("search.db").toString());
+        searchDatabase.createDatabaseIfNotExists();
+        SqlBasedTrailRepo repo = new SqlBasedTrailRepo(searchDatabase);
+        repo.upsertAll(List.of(
+                new Trail.Builder().id(1).name("Test1").difficulty("Hard").region("Canterbury").userWeight(0.8).build(),
+                new Trail.Builder().id(2).name("Test2").difficulty("Easy").region("").userWeight(0.5).build()));
+
+        TrailQuery all = new TrailQuery.Builder().build();
+        assertEquals(List.of("Test1", "Test2"), repo.searchTrails(all).stream().map(Trail::getName).toList());
+
+        TrailQuery byMatch = new TrailQuery.Builder().sortBy(TrailQuery.SortKey.MATCH, true).build();
+        assertEquals(1, repo.searchTrails(byMatch).getFirst().getId(), "Best match should come first");
+
+        TrailQuery secondPage = new TrailQuery.Builder().page(1, 1).build();
+        assertEquals(List.of(2), ids(repo.searchTrails(secondPage)));
+
+        TrailQuery easy = new TrailQuery.Builder().difficulties(Set.of("easy")).build();
+        assertEquals(1, repo.countTrails(easy));
+        assertEquals(0, repo.countTrails(new TrailQuery.Builder().difficulties(Set.of()).build()));
+
+        assertEquals(List.of(1), ids(repo.searchTrails(new TrailQuery.Builder()
+                .regions(Set.of("CANTERBURY"), false).build())));
+        assertEquals(List.of(2), ids(repo.searchTrails(new TrailQuery.Builder()
+                .regions(Set.of(), true).build())));
+
+        // Lookup ids follow updates to the text values
+        repo.upsert(new Trail.Builder().id(1).name("Test1").difficulty("easy").build());
+        assertEquals(2, repo.countTrails(easy));
+
+        // Trails with no difficulty have no lookup id and are left out of a difficulty sort
+        repo.upsert(new Trail.Builder().id(3).name("Test3").difficulty("").build());
+        assertEquals(List.of(1, 2), ids(repo.searchTrails(new TrailQuery.Builder()
+                .sortBy(TrailQuery.SortKey.DIFFICULTY, true).difficultyOrder(List.of("easy")).build())));
+        searchDatabase.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should treat LIKE wildcards in the name search literally")
+    void testSearchTrailsEscapesWildcards() {
+        sqlBasedTrailRepo.upsert(new Trail.Builder().id(3).name("100% Fun_Run").build());
+
+        assertEquals(1, sqlBasedTrailRepo.countTrails(new TrailQuery.Builder().nameContains("%").build()));
+        assertEquals(1, sqlBasedTrailRepo.countTrails(new TrailQuery.Builder().nameContains("n_r").build()));
+        assertEquals(2, sqlBasedTrailRepo.countTrails(new TrailQuery.Builder().nameContains("TEST").build()));
+    }
+
+    @Test
+    @DisplayName("Should quote each word of a text search as a prefix term")
+    void testToMatchExpression() {
+        assertEquals("\"alpine\"* \"trail\"*", SqlBasedTrailRepo.toMatchExpression("alpine trail"));
+        assertEquals("\"Tōtara\"* \"OR\"*", SqlBasedTrailRepo.toMatchExpression(" Tōtara \"OR\"* "));
+        assertNull(SqlBasedTrailRepo.toMatchExpression("-- ? *"));
+        assertNull(SqlBasedTrailRepo.toMatchExpression(null));
+    }
+
+    @Test
+    @DisplayName("Should find several trails by id in one query")
+    void testFindAllByIds() {
+        assertEquals(List.of(1, 2), sqlBasedTrailRepo.findAllByIds(List.of(2, 1, 2, 9999)).stream()
+                .map(Trail::getId).toList());
+        assertTrue(sqlBasedTrailRepo.findAllByIds(List.of()).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should find trails in a box or radius through the spatial index as trails change")
+    void testSpatialQueries() throws Exception {
+        DatabaseService spatialDatabase = new DatabaseService(tempDir.resolve("spatial.db").toString());
+        spatialDatabase.createDatabaseIfNotExists();
+        SqlBasedTrailRepo repo = new SqlBasedTrailRepo(spatialDatabase);
+        repo.upsertAll(List.of(
+                new Trail.Builder().id(1).name("Port Hills").lat(-43.585).lon(172.675).build(),
+                new Trail.Builder().id(2).name("Godley Head").lat(-43.586).lon(172.782).build(),
+                new Trail.Builder().id(3).name("Rangitoto").lat(-36.787).lon(174.860).build(),
+                new Trail.Builder().id(4).name("Chatham Walk").lat(-43.950).lon(-176.560).build(),
+                new Trail.Builder().id(5).name("No Location").build()));
+
+        assertEquals(List.of(1, 2), ids(repo.findTrailsInBounds(-44, -43, 172, 173)));
+        assertEquals(List.of(2, 1), ids(repo.findTrailsWithinRadius(-43.59, 172.8, 20)));
+        assertEquals(List.of(1), ids(repo.findTrailsWithinRadius(-43.585, 172.675, 5)));
+        // Reached across the antimeridian
+        assertEquals(List.of(4), ids(repo.findTrailsWithinRadius(-43.95, 179.9, 500)));
+
+        repo.upsert(new Trail.Builder().id(3).name("Rangitoto").lat(-43.6).lon(172.7).build());
+        repo.deleteById(2);
+        repo.upsert(new Trail.Builder().id(1).name("Port Hills").build());
+
+        assertEquals(List.of(3), ids(repo.findTrailsWithinRadius(-43.59, 172.8, 20)));
+        spatialDatabase.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should be able to call the Java SQL functions on any connection")
+    void testSqlFunctions() {
+        QueryHelper queryHelper = new QueryHelper(databaseService);
+
+        assertEquals(List.of("totara walk"), queryHelper.executeQuery("SELECT fold('Tōtara WALK')", null,
+                rs -> rs.getString(1)));
+        assertEquals(111, queryHelper.executeCountQuery("SELECT distance_km(0, 0, 1, 0)", null));
+        assertEquals(List.of(true), queryHelper.executeQuery("SELECT distance_km(0, 0, NULL, 0) IS NULL", null,
+                rs -> rs.getBoolean(1)));
+    }
+
+    private static List<Integer> ids(List<Trail> trails) {
+        return trails.stream().map(Trail::getId).toList();
+    }
+
 }
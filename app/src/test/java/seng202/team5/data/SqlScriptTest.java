@@ -0,0 +1,49 @@
+package seng202.team5.data;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+public class SqlScriptTest {
+
+    @Test
+    @DisplayName("Should split on semicolons and drop comments")
+    void testSplitSkipsComments() {
+        List<String> statements = SqlScript.split("""
+                -- Table: a
+                DROP TABLE IF EXISTS a;
+                /* block; comment */
+                CREATE TABLE a (id INTEGER); -- trailing
+                """);
+
+        assertEquals(List.of("DROP TABLE IF EXISTS a", "CREATE TABLE a (id INTEGER)"), statements);
+    }
+
+    @Test
+    @DisplayName("Should not split on semicolons inside string literals")
+    void testSplitKeepsQuotedSemicolons() {
+        List<String> statements = SqlScript.split("INSERT INTO a VALUES ('x;y', 'it''s; fine'); SELECT 1");
+
+        assertEquals(2, statements.size());
+        assertEquals("INSERT INTO a VALUES ('x;y', 'it''s; fine')", statements.get(0));
+    }
+
+    @Test
+    @DisplayName("Should keep trigger bodies in a single statement")
+    void testSplitKeepsTriggerWhole() {
+        List<String> statements = SqlScript.split("""
+                CREATE TRIGGER a_ai AFTER INSERT ON a BEGIN
+                    INSERT INTO b VALUES (new.id);
+                    DELETE FROM c;
+                END;
+                BEGIN TRANSACTION;
+                """);
+
+        assertEquals(2, statements.size());
+        assertTrue(statements.get(0).endsWith("END"));
+        assertEquals("BEGIN TRANSACTION", statements.get(1));
+    }
+}
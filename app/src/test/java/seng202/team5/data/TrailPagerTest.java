@@ -0,0 +1,65 @@
+package seng202.team5.data;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import seng202.team5.models.Trail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TrailPagerTest {
+    private static final Comparator<Trail> BY_WEIGHT = InMemoryTrailRepo.comparator(
+            new TrailQuery.Builder().sortBy(TrailQuery.SortKey.MATCH, true).build());
+
+    private static List<Trail> shuffledTrails(int count) {
+        List<Trail> trails = new ArrayList<>(IntStream.rangeClosed(1, count)
+                .mapToObj(id -> new Trail.Builder().id(id).name("Trail " + id).userWeight(id % 7 / 10.0).build())
+                .toList());
+        Collections.shuffle(trails, new Random(42));
+        return trails;
+    }
+
+    @Test
+    @DisplayName("Should return the same pages as sorting everything, in any order of page turns")
+    void testPagesMatchFullSort() {
+        List<Trail> trails = shuffledTrails(500);
+        List<Trail> expected = trails.stream().sorted(BY_WEIGHT).toList();
+        TrailPager pager = new TrailPager(trails.stream().sorted(BY_WEIGHT).iterator());
+
+        for (int page : new int[] { 0, 1, 2, 7, 3, 9, 0 }) {
+            assertEquals(expected.subList(page * 50, page * 50 + 50), pager.page(page * 50, 50));
+        }
+        assertEquals(expected.subList(480, 500), pager.page(480, 50));
+        assertTrue(pager.page(600, 50).isEmpty());
+        assertEquals(expected, pager.page(0, -1));
+    }
+
+    @Test
+    @DisplayName("Should handle no matches and pages larger than the matches")
+    void testSmallInputs() {
+        assertTrue(new TrailPager(List.<Trail>of().iterator()).page(0, 50).isEmpty());
+
+        List<Trail> trails = shuffledTrails(3).stream().sorted(BY_WEIGHT).toList();
+        assertEquals(trails, new TrailPager(trails.iterator()).page(-5, 50));
+    }
+
+    @Test
+    @DisplayName("Should only read as many trails as the pages asked for need")
+    void testReadsLazily() {
+        AtomicInteger read = new AtomicInteger();
+        TrailPager pager = new TrailPager(shuffledTrails(500).stream().peek(trail -> read.incrementAndGet()).iterator());
+
+        pager.page(0, 50);
+        assertEquals(50, read.get());
+        pager.page(50, 50);
+        pager.page(0, 50);
+        assertEquals(100, read.get());
+    }
+}
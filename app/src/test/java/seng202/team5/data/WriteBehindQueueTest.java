@@ -0,0 +1,142 @@
+package seng202.team5.data;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WriteBehindQueueTest {
+    private static final String INSERT_SQL = "INSERT INTO test_table (id, name) VALUES (?, ?)";
+
+    @TempDir
+    Path tempDir;
+
+    private DatabaseService databaseService;
+    private QueryHelper queryHelper;
+    private WriteBehindQueue writeBehindQueue;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        databaseService = new DatabaseService(tempDir.resolve("test.db").toString());
+        queryHelper = new QueryHelper(databaseService);
+        try (Connection conn = databaseService.getConnection();
+                Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE test_table (id INTEGER PRIMARY KEY, name TEXT NOT NULL)");
+        }
+        writeBehindQueue = new WriteBehindQueue(databaseService, 16, Duration.ofMillis(50), 8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        writeBehindQueue.close();
+        databaseService.shutdown();
+    }
+
+    private CompletableFuture<Void> insert(int id, String name) {
+        return writeBehindQueue.submit(INSERT_SQL, stmt -> {
+            stmt.setInt(1, id);
+            stmt.setString(2, name);
+        });
+    }
+
+    private int countRows() {
+        return queryHelper.executeCountQuery("SELECT COUNT(*) FROM test_table", null);
+    }
+
+    @Test
+    @DisplayName("Should complete each write's future once it is committed")
+    void testSubmitCommits() {
+        List<CompletableFuture<Void>> writes = IntStream.range(0, 20)
+                .mapToObj(id -> insert(id, "Row " + id))
+                .toList();
+
+        CompletableFuture.allOf(writes.toArray(CompletableFuture[]::new)).join();
+
+        assertEquals(20, countRows());
+        assertEquals(0, writeBehindQueue.getPendingCount());
+    }
+
+    @Test
+    @DisplayName("Should only fail the bad write when a batch fails")
+    void testFailedWriteIsolated() {
+        CompletableFuture<Void> first = insert(1, "First");
+        CompletableFuture<Void> bad = insert(2, null);
+        CompletableFuture<Void> last = insert(3, "Last");
+
+        writeBehindQueue.flush();
+
+        assertDoesNotThrow(first::join);
+        assertDoesNotThrow(last::join);
+        CompletionException e = assertThrows(CompletionException.class, bad::join);
+        assertInstanceOf(RuntimeException.class, e.getCause());
+        assertEquals(2, countRows());
+    }
+
+    @Test
+    @DisplayName("Should rethrow a failed write's cause when awaited")
+    void testAwaitUnwrapsFailure() {
+        RuntimeException e = assertThrows(RuntimeException.class, () -> WriteBehindQueue.await(insert(1, null)));
+        assertFalse(e instanceof CompletionException);
+    }
+
+    @Test
+    @DisplayName("Should wait for queued writes when flushed")
+    void testFlush() {
+        insert(1, "First");
+        insert(2, "Second");
+
+        writeBehindQueue.flush();
+
+        assertEquals(2, countRows());
+    }
+
+    @Test
+    @DisplayName("Should commit pending writes and reject new ones when closed")
+    void testClose() {
+        CompletableFuture<Void> pending = insert(1, "First");
+
+        writeBehindQueue.close();
+
+        assertTrue(pending.isDone());
+        assertEquals(1, countRows());
+        assertThrows(IllegalStateException.class, () -> insert(2, "Second"));
+        assertDoesNotThrow(writeBehindQueue::flush);
+    }
+
+    @Test
+    @DisplayName("Should commit every write accepted while closing, leaving no caller waiting")
+    void testCloseWhileWriting() throws Exception {
+        List<CompletableFuture<Void>> accepted = new CopyOnWriteArrayList<>();
+        Thread submitter = new Thread(() -> {
+            for (int id = 1; id <= 200; id++) {
+                try {
+                    accepted.add(insert(id, "Trail " + id));
+                } catch (IllegalStateException e) {
+                    return; // Closed
+                }
+            }
+        });
+        submitter.start();
+        Thread.sleep(5);
+
+        writeBehindQueue.close();
+        submitter.join();
+
+        assertTrue(accepted.stream().allMatch(CompletableFuture::isDone), "Every accepted write should be finished");
+        assertEquals(accepted.size(), countRows());
+    }
+}
@@ -7,8 +7,8 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import seng202.team5.data.SqlBasedTrailLogRepo;
-import seng202.team5.data.SqlBasedTrailRepo;
 import seng202.team5.exceptions.MatchmakingFailedException;
+import seng202.team5.models.LoggedTrail;
 import seng202.team5.models.Trail;
 import seng202.team5.models.TrailLog;
 import seng202.team5.models.User;
@@ -26,9 +26,6 @@ class AccountStatisticsServiceTest {
     @Mock
     private SqlBasedTrailLogRepo mockTrailLogRepo;
 
-    @Mock
-    private SqlBasedTrailRepo mockTrailRepo;
-
     @Mock
     private MatchmakingService mockMatchmakingService;
 
@@ -46,13 +43,13 @@ class AccountStatisticsServiceTest {
         testTrails = createTestTrails();
 
         // Mock repo behaviours
-        when(mockTrailLogRepo.getAllTrailLogs()).thenReturn(testTrailLogs);
-        when(mockTrailRepo.findById(1)).thenReturn(Optional.of(testTrails.get(0)));
-        when(mockTrailRepo.findById(2)).thenReturn(Optional.of(testTrails.get(1)));
-        when(mockTrailRepo.findById(3)).thenReturn(Optional.of(testTrails.get(2)));
+        List<LoggedTrail> testLoggedTrails = testTrailLogs.stream()
+                .map(log -> new LoggedTrail(log, testTrails.get(log.getTrailId() - 1)))
+                .toList();
+        when(mockTrailLogRepo.getAllTrailLogsWithTrails()).thenReturn(testLoggedTrails);
 
         accountStatisticsService = new AccountStatisticsService(
-                mockTrailRepo, mockTrailLogRepo, mockMatchmakingService, testUser);
+                mockTrailLogRepo, mockMatchmakingService, testUser);
     }
 
     private User createTestUser() {
@@ -175,7 +172,7 @@ class AccountStatisticsServiceTest {
     @Test
     @DisplayName("Should return 0.0 if logged trails is empty")
     void testGetAverageMatchScore_EmptyList() {
-        AccountStatisticsService accountStatisticsService2 = new AccountStatisticsService(mockTrailRepo, mockTrailLogRepo2, mockMatchmakingService, null);
+        AccountStatisticsService accountStatisticsService2 = new AccountStatisticsService(mockTrailLogRepo2, mockMatchmakingService, null);
         double averageScore = accountStatisticsService2.getAverageMatchScore();
         assertEquals(0.0, averageScore, "If there are no logs it should return 0.0");
     }
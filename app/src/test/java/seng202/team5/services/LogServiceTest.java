@@ -15,6 +15,7 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -122,6 +123,11 @@ public class LogServiceTest {
                     .findFirst();
         });
 
+        when(mockTrailRepo.findAllByIds(anyCollection())).thenAnswer(invocation -> {
+            Collection<Integer> ids = invocation.getArgument(0);
+            return mockTrails.stream().filter(t -> ids.contains(t.getId())).toList();
+        });
+
         doAnswer(invocation -> {
             TrailLog newLog = invocation.getArgument(0);
             mockLogs.add(newLog);
@@ -3,27 +3,36 @@ package seng202.team5.services;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
-import org.mockito.Mock;
-import org.mockito.MockitoAnnotations;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import seng202.team5.data.DataChangeEvent;
+import seng202.team5.data.DataEventBus;
+import seng202.team5.data.DatabaseService;
 import seng202.team5.data.SqlBasedFilterOptionsRepo;
 import seng202.team5.data.SqlBasedTrailRepo;
+import seng202.team5.data.TrailQuery;
 import seng202.team5.models.Trail;
+import seng202.team5.models.TrailSearchResult;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
+import java.nio.file.Path;
 import java.util.*;
 
 public class SearchServiceTest {
 
-    @Mock
-    private SqlBasedTrailRepo mockTrailRepo;
+    @TempDir
+    Path tempDir;
 
+    private SqlBasedTrailRepo trailRepo;
     private SearchService searchService;
     private List<Trail> mockTrails;
 
     @BeforeEach
-    void setUp() {
-        MockitoAnnotations.openMocks(this);
+    void setUp() throws Exception {
+        DatabaseService databaseService = new DatabaseService(tempDir.resolve("test.db").toString());
+        databaseService.createDatabaseIfNotExists();
+        trailRepo = new SqlBasedTrailRepo(databaseService);
 
         // mock trail data
         mockTrails = Arrays.asList(
@@ -38,9 +47,9 @@ public class SearchServiceTest {
                 createMockTrail(5, "River Trail", "Medium", "Trail following the river through the valley",
                         "2.5 hours", "thumb5.jpg", "http://example.com/trail5", -43.5300, 172.6450));
 
-        when(mockTrailRepo.getAllTrails()).thenReturn(mockTrails);
+        trailRepo.upsertAll(mockTrails);
 
-        searchService = new SearchService(mockTrailRepo, null);
+        searchService = new SearchService(trailRepo, null);
         searchService.setMaxResults(20); // testing 20 results per page, but there are only 5 trails
     }
 
@@ -160,74 +169,114 @@ public class SearchServiceTest {
     }
 
     @Test
-    @DisplayName("matchesAllFilters correctly evaluates all filters")
-    void testMatchesAllFilters() throws Exception {
-        var method = SearchService.class.getDeclaredMethod("matchesAllFilters", Trail.class);
-        method.setAccessible(true);
-
-        // Trail with name that won't match query
-        Trail trail = mockTrails.getFirst();
+    @DisplayName("Should apply the search query and difficulty filter together")
+    void testQueryAndDifficultyFilters() {
         searchService.updateFilter("query", "nonexistent");
-        assertFalse((boolean) method.invoke(searchService, trail));
+        assertTrue(searchService.getPage(0).isEmpty());
 
-        // Trail with matching query
         searchService.updateFilter("query", "Alpine");
-        assertTrue((boolean) method.invoke(searchService, trail));
+        assertEquals(List.of(1), ids(searchService.getPage(0)));
 
-        // Difficulty filter that fails
         searchService.updateFilter("difficulty", "Hard");
-        assertFalse((boolean) method.invoke(searchService, mockTrails.getFirst()));
+        assertTrue(searchService.getPage(0).isEmpty());
 
-        // Difficulty filter that passes
         searchService.updateFilter("difficulty", "Easy");
-        assertTrue((boolean) method.invoke(searchService, mockTrails.getFirst()));
+        assertEquals(List.of(1), ids(searchService.getPage(0)));
+    }
+
+    @Test
+    @DisplayName("Should handle every kind of difficulty filter value")
+    void testDifficultyFilterValues() {
+        searchService.updateFilter("difficulty", null);
+        assertEquals(5, searchService.getPage(0).size(), "No filter should include all trails");
+
+        searchService.updateFilter("difficulty", "");
+        assertTrue(searchService.getPage(0).isEmpty(), "Empty filter should exclude all trails");
+
+        searchService.updateFilter("difficulty", "Select All");
+        assertEquals(5, searchService.getPage(0).size(), "Select All should include all trails");
+
+        searchService.updateFilter("difficulty", "all difficulties");
+        assertEquals(5, searchService.getPage(0).size(), "Default value should include all trails");
+
+        searchService.updateFilter("difficulty", "Easy,Medium");
+        assertEquals(List.of(1, 4, 2, 5), ids(searchService.getPage(0)),
+                "Should only include matching trails, sorted by name");
+
+        searchService.updateFilter("difficulty", "medium,hard");
+        assertEquals(List.of(2, 3, 5), ids(searchService.getPage(0)), "Should match regardless of case");
     }
 
     @Test
-    @DisplayName("matchesFilter handles all cases")
-    void testMatchesFilter() throws Exception {
-        var method = SearchService.class.getDeclaredMethod("matchesFilter", String.class, String.class, String.class);
-        method.setAccessible(true);
+    @DisplayName("Should handle every kind of region filter value")
+    void testRegionFilterValues() {
+        trailRepo.upsert(new Trail.Builder().id(6).name("Northern Track").region("North").build());
+        trailRepo.upsert(new Trail.Builder().id(7).name("Southern Track").region("South").build());
 
-        // null filter -> true
-        assertTrue((boolean) method.invoke(searchService, "difficulty", null, "Easy"));
+        searchService.updateFilter("regions", null);
+        assertEquals(7, searchService.getPage(0).size(), "No filter should include all trails");
 
-        // empty filter -> false
-        assertFalse((boolean) method.invoke(searchService, "difficulty", "", "Easy"));
+        searchService.updateFilter("regions", "");
+        assertTrue(searchService.getPage(0).isEmpty(), "Empty filter should exclude all trails");
 
-        // Select All -> true
-        assertTrue((boolean) method.invoke(searchService, "difficulty", "Select All", "Unknown"));
+        searchService.updateFilter("regions", "Select All");
+        assertEquals(7, searchService.getPage(0).size(), "Select All should include all trails");
 
-        // default value included -> true
-        assertTrue((boolean) method.invoke(searchService, "difficulty", "easy", "Easy"));
+        searchService.updateFilter("regions", "North,South");
+        assertEquals(List.of(6, 7), ids(searchService.getPage(0)));
 
-        // matching trailValue -> true
-        assertTrue((boolean) method.invoke(searchService, "difficulty", "Easy,Medium", "Easy"));
+        searchService.updateFilter("regions", "Other,North");
+        assertEquals(List.of(1, 4, 2, 3, 6, 5), ids(searchService.getPage(0)),
+                "Trails without a region should match Other");
+    }
 
-        // not matching -> false
-        assertFalse((boolean) method.invoke(searchService, "difficulty", "Medium,Hard", "Easy"));
+    @Test
+    @DisplayName("Should sort by time and skip trails without a time")
+    void testSortByTime() {
+        trailRepo.upsert(new Trail.Builder().id(6).name("Quick Loop").minCompletionTimeMinutes(30)
+                .maxCompletionTimeMinutes(30).build());
+        trailRepo.upsert(new Trail.Builder().id(7).name("Long Loop").minCompletionTimeMinutes(60)
+                .maxCompletionTimeMinutes(120).build());
+
+        searchService.setSortBy("time");
+        assertEquals(List.of(6, 7), ids(searchService.getPage(0)));
+        assertEquals(2, searchService.getNumberOfTrails());
+
+        searchService.setSortAscending(false);
+        assertEquals(List.of(7, 6), ids(searchService.getPage(0)));
     }
 
     @Test
-    @DisplayName("matchesRegionFilter handles all cases")
-    void testMatchesRegionFilter() throws Exception {
-        var method = SearchService.class.getDeclaredMethod("matchesRegionFilter", String.class, String.class);
-        method.setAccessible(true);
+    @DisplayName("Should search trail descriptions and translations as well as names")
+    void testSearchMatchesDescriptionAndTranslation() {
+        trailRepo.upsert(new Trail.Builder().id(6).name("Bush Walk").translation("Te Ara Tōtara").build());
 
-        // null filter -> true
-        assertTrue((boolean) method.invoke(searchService, null, "North"));
+        searchService.updateSearch("wildlife");
+        assertEquals(List.of(2), ids(searchService.getPage(0)));
 
-        // empty filter -> false
-        assertFalse((boolean) method.invoke(searchService, "", "North"));
+        searchService.updateSearch("totara");
+        assertEquals(List.of(6), ids(searchService.getPage(0)), "Macrons should not matter");
 
-        // Select All -> true
-        assertTrue((boolean) method.invoke(searchService, "Select All", "North"));
+        searchService.updateSearch("mount");
+        assertEquals(List.of(1, 3), ids(searchService.getPage(0)), "Words should match as prefixes");
+    }
+
+    @Test
+    @DisplayName("Should rank text matches with highlighted names and snippets")
+    void testSearchText() {
+        List<TrailSearchResult> results = searchService.searchText("river", 10);
 
-        // trailRegion matches -> true
-        assertTrue((boolean) method.invoke(searchService, "North,South", "North"));
+        assertEquals(5, results.getFirst().trailId(), "Should find the river trail");
+        assertEquals("[River] Trail", results.getFirst().highlightedName());
+        assertTrue(results.getFirst().snippet().contains("[river]"));
+        assertEquals(1, results.size());
 
-        // trailRegion null -> match "Other"
-        assertTrue((boolean) method.invoke(searchService, "Other,North", null));
+        assertTrue(searchService.searchText("trail", 2).size() <= 2);
+        assertTrue(searchService.searchText("\"*", 10).isEmpty());
+    }
+
+    private List<Integer> ids(List<Trail> trails) {
+        return trails.stream().map(Trail::getId).toList();
     }
 
     @Test
@@ -237,7 +286,7 @@ public class SearchServiceTest {
         when(mockFilterRepo.hasFilterOptions("difficulty")).thenReturn(true);
         when(mockFilterRepo.getFilterOptions("difficulty")).thenReturn(List.of("easy", "medium", "hard"));
 
-        SearchService serviceWithRepo = new SearchService(mockTrailRepo, mockFilterRepo);
+        SearchService serviceWithRepo = new SearchService(trailRepo, mockFilterRepo);
         List<String> options = serviceWithRepo.getFilterOptions("difficulty");
 
         // Default + capitalized options
@@ -249,7 +298,7 @@ public class SearchServiceTest {
     @Test
     @DisplayName("getFilterOptions should return null if filterOptionsRepo is null")
     void testGetFilterOptionsRepoNull() {
-        SearchService serviceWithoutRepo = new SearchService(mockTrailRepo, null);
+        SearchService serviceWithoutRepo = new SearchService(trailRepo, null);
         assertNull(serviceWithoutRepo.getFilterOptions("difficulty"));
     }
 
@@ -260,7 +309,7 @@ public class SearchServiceTest {
         when(mockFilterRepo.hasFilterOptions("region")).thenReturn(false);
         when(mockFilterRepo.getFilterOptions("region")).thenReturn(List.of("north", "south"));
 
-        SearchService service = new SearchService(mockTrailRepo, mockFilterRepo);
+        SearchService service = new SearchService(trailRepo, mockFilterRepo);
         List<String> options = service.getFilterOptions("region");
 
         verify(mockFilterRepo).refreshAllFilterOptions();
@@ -273,4 +322,80 @@ public class SearchServiceTest {
     void testGetDefaultFilterValue() {
         assertEquals("All", searchService.getDefaultFilterValue("nonexistent"));
     }
+
+    @Test
+    @DisplayName("Should only count the trails again when the query changes")
+    void testPagesCountOncePerChange() {
+        var mockTrailRepo = mock(SqlBasedTrailRepo.class);
+        SearchService service = new SearchService(mockTrailRepo, null);
+
+        service.getPage(0);
+        service.getPage(1);
+        service.getPage(2);
+        verify(mockTrailRepo, times(1)).countTrails(any(TrailQuery.class));
+
+        service.updateFilter("difficulty", "Easy");
+        service.getPage(0);
+        verify(mockTrailRepo, times(2)).countTrails(any(TrailQuery.class));
+    }
+
+    @Test
+    @DisplayName("Should read the difficulty order once until the filter options are refreshed")
+    void testDifficultyOrderCachedUntilRefresh() {
+        var mockTrailRepo = mock(SqlBasedTrailRepo.class);
+        var mockFilterRepo = mock(SqlBasedFilterOptionsRepo.class);
+        when(mockFilterRepo.getFilterOptions("difficulty")).thenReturn(List.of("Easy", "Hard"));
+        DataEventBus eventBus = new DataEventBus();
+        SearchService service = new SearchService(mockTrailRepo, mockFilterRepo, eventBus);
+        service.setSortBy("difficulty");
+
+        service.getPage(0);
+        service.getPage(1);
+        service.countFilterOptions("difficulty", List.of("Easy"));
+        verify(mockFilterRepo, times(1)).getFilterOptions("difficulty");
+
+        var queries = ArgumentCaptor.forClass(TrailQuery.class);
+        verify(mockTrailRepo).countTrails(queries.capture());
+        assertEquals(List.of("easy", "hard"), queries.getValue().getDifficultyOrder());
+
+        when(mockFilterRepo.getFilterOptions("difficulty")).thenReturn(List.of("easy", "medium", "hard"));
+        eventBus.publish(new DataChangeEvent.FilterOptionsRefreshed());
+        service.getPage(0);
+        verify(mockFilterRepo, times(2)).getFilterOptions("difficulty");
+        assertEquals(List.of("easy", "medium", "hard"), service.getDifficultyOrder());
+    }
+
+    @Test
+    @DisplayName("Should build the trail query once per filter change")
+    void testQueryBuiltOncePerChange() {
+        var mockTrailRepo = mock(SqlBasedTrailRepo.class);
+        SearchService service = new SearchService(mockTrailRepo, null);
+        service.updateFilter("difficulty", "Easy, Hard");
+
+        service.updateTrails();
+        service.updateTrails();
+
+        var queries = ArgumentCaptor.forClass(TrailQuery.class);
+        verify(mockTrailRepo, times(2)).countTrails(queries.capture());
+        assertSame(queries.getAllValues().get(0), queries.getAllValues().get(1));
+        assertEquals(Set.of("Easy", "Hard"), queries.getValue().getDifficulties());
+
+        service.setSortBy("time");
+        service.updateTrails();
+        verify(mockTrailRepo, times(3)).countTrails(queries.capture());
+        assertNotSame(queries.getAllValues().get(0), queries.getValue());
+    }
+
+    @Test
+    @DisplayName("Should count the trails each filter option would give alongside the other filters")
+    void testCountFilterOptions() {
+        searchService.updateSearch("trail");
+        searchService.updateFilter("difficulty", "Easy");
+
+        assertEquals(Map.of("Select All", 4, "Easy", 1, "Medium", 2, "Hard", 1, "Expert", 0),
+                searchService.countFilterOptions("difficulty", List.of("Select All", "Easy", "Medium", "Hard", "Expert")));
+        assertEquals(Map.of("All types", 1),
+                searchService.countFilterOptions("completionType", List.of("All types")));
+        assertTrue(searchService.countFilterOptions("unknown", List.of("Select All")).isEmpty());
+    }
 }
@@ -48,6 +48,8 @@ public class SetupServiceTest {
     void setUp() {
         MockitoAnnotations.openMocks(this);
         testDbPath = tempDir.resolve("test.db").toString();
+        // Nothing there, so backups before a schema change fail and are skipped
+        when(mockDatabaseService.getDatabasePath()).thenReturn(testDbPath);
         setupService = new SetupService(mockSqlBasedTrailRepo, mockDatabaseService);
     }
 
@@ -369,6 +371,21 @@ public class SetupServiceTest {
         assertTrue(spyService.isDatabaseSetupComplete());
     }
 
+    @Test
+    @DisplayName("setupDatabase should skip building the database when a snapshot is installed")
+    void testSetupDatabase_FromSnapshot() {
+        when(mockDatabaseService.installSnapshot()).thenReturn(true);
+        SetupService spyService = spy(new SetupService(mockSqlBasedTrailRepo, mockDatabaseService));
+
+        spyService.setupDatabase();
+
+        verify(spyService, never()).createDbActions();
+        verify(spyService, never()).syncDbFromTrailFile();
+        verify(spyService, never()).syncKeywords();
+        verify(spyService, never()).syncFilterOptions();
+        assertTrue(spyService.isDatabaseSetupComplete());
+    }
+
     @Test
     @DisplayName("createDbActions should return early if database exists and schema up to date")
     void testCreateDbActions_ReturnsEarly() throws SQLException {
@@ -383,7 +400,7 @@ public class SetupServiceTest {
     }
 
     @Test
-    @DisplayName("createDbActions should delete and recreate database if schema outdated")
+    @DisplayName("createDbActions should delete and recreate database if schema cannot be migrated")
     void testCreateDbActions_SchemaOutdated() throws SQLException {
         when(mockDatabaseService.databaseExists()).thenReturn(true);
         when(mockDatabaseService.isSchemaUpToDate()).thenReturn(false);
@@ -395,6 +412,21 @@ public class SetupServiceTest {
         verify(mockDatabaseService).createDatabaseIfNotExists();
     }
 
+    @Test
+    @DisplayName("createDbActions should migrate the database instead of deleting it when possible")
+    void testCreateDbActions_SchemaMigrated() throws SQLException {
+        when(mockDatabaseService.databaseExists()).thenReturn(true);
+        when(mockDatabaseService.isSchemaUpToDate()).thenReturn(false);
+        when(mockDatabaseService.migrateSchema()).thenReturn(true);
+
+        SetupService service = new SetupService(mockSqlBasedTrailRepo, mockDatabaseService);
+        service.createDbActions();
+
+        verify(mockDatabaseService).migrateSchema();
+        verify(mockDatabaseService, never()).deleteDatabase();
+        verify(mockDatabaseService, never()).createDatabaseIfNotExists();
+    }
+
     @Test
     @DisplayName("syncKeywords should insert categories and call matchmaking")
     void testSyncKeywords_NormalFlow() throws Exception {
@@ -405,7 +437,8 @@ public class SetupServiceTest {
             mockedApp.when(App::getKeywordRepo).thenReturn(mockKeywordRepo);
             mockedApp.when(App::getFilterOptionsRepo).thenReturn(mock(SqlBasedFilterOptionsRepo.class));
 
-            SetupService service = new SetupService(mockTrailRepo, mock(DatabaseService.class));
+            // Runs in a transaction, so needs a real database
+            SetupService service = new SetupService(mockTrailRepo, new DatabaseService(testDbPath));
             service.syncKeywords();
 
             verify(mockKeywordRepo).insertCategoriesAndKeywords(any());
@@ -430,7 +463,9 @@ public class SetupServiceTest {
     @Test
     @DisplayName("waitForDatabaseSetup should exit once setup complete")
     void testWaitForDatabaseSetup_Normal() throws InterruptedException {
-        SetupService service = new SetupService(mockSqlBasedTrailRepo, mockDatabaseService);
+        SetupService service = spy(new SetupService(mockSqlBasedTrailRepo, mockDatabaseService));
+        doNothing().when(service).syncKeywords();
+        doNothing().when(service).syncFilterOptions();
 
         Thread t = new Thread(() -> {
             try {
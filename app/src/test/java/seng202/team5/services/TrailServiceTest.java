@@ -13,6 +13,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 public class TrailServiceTest {
@@ -109,6 +110,18 @@ public class TrailServiceTest {
                 .build();
     }
 
+    @Test
+    @DisplayName("getNearbyTrails should look up the radius in the repo and leave out the trail itself")
+    void testGetNearbyTrails() {
+        Trail current = mockTrails.get(0);
+        when(mockTrailRepo.findTrailsWithinRadius(current.getLat(), current.getLon(), 10))
+                .thenReturn(List.of(current, mockTrails.get(1)));
+
+        List<Trail> nearby = trailService.getNearbyTrails(current, 10);
+
+        assertEquals(List.of(mockTrails.get(1)), nearby);
+    }
+
     @Test
     @DisplayName("addTrail should call repo upsert() once")
     void testAddTrail() {
@@ -11,6 +11,7 @@ import org.mockito.quality.Strictness;
 
 import seng202.team5.data.DatabaseService;
 import seng202.team5.data.SqlBasedTrailRepo;
+import seng202.team5.exceptions.MatchmakingFailedException;
 import seng202.team5.models.User;
 
 import java.sql.Connection;
@@ -173,6 +174,44 @@ public class UserServiceTest {
         verify(mockPreparedStatement, atLeastOnce()).executeUpdate();
     }
 
+    @Test
+    @DisplayName("clearUser should commit the weights and user delete together")
+    void testClearUserInOneTransaction() throws SQLException {
+        userService.clearUser();
+
+        verify(mockConnection).setAutoCommit(false);
+        verify(mockConnection, times(1)).commit();
+        verify(mockConnection, never()).rollback();
+    }
+
+    @Test
+    @DisplayName("replaceUser should roll back the new user if matchmaking fails")
+    void testReplaceUserRollsBack() throws Exception {
+        MatchmakingService matchmakingService = mock(MatchmakingService.class);
+        doThrow(new MatchmakingFailedException("No trails")).when(matchmakingService).generateTrailWeights(testUser);
+
+        assertThrows(MatchmakingFailedException.class, () -> userService.replaceUser(testUser, matchmakingService));
+
+        verify(mockSqlBasedTrailRepo).clearUserWeights();
+        verify(mockConnection).rollback();
+        verify(mockConnection, never()).commit();
+    }
+
+    @Test
+    @DisplayName("replaceUser should keep the previous user cached if matchmaking fails")
+    void testReplaceUserKeepsPreviousUser() throws Exception {
+        userService.saveUser(testUser);
+        User newUser = new User();
+        newUser.setName("New User");
+        MatchmakingService matchmakingService = mock(MatchmakingService.class);
+        doThrow(new MatchmakingFailedException("No trails")).when(matchmakingService).generateTrailWeights(newUser);
+
+        assertThrows(MatchmakingFailedException.class, () -> userService.replaceUser(newUser, matchmakingService));
+
+        assertSame(testUser, userService.getUser());
+        assertFalse(userService.isGuest());
+    }
+
     @Test
     @DisplayName("getUserAfterSkip should return previous user when valid")
     void testGetUserAfterSkipWithPreviousUser() {
@@ -32,4 +32,28 @@ public class GeoUtilsTest {
         double distance2 = GeoUtils.distanceKm(90, 0, 0, 0);
         assertEquals(10007, distance2, 10);
     }
+
+    @Test
+    @DisplayName("Should bound a circle by a box that contains every point on it")
+    public void testSpanDegrees() {
+        double lat = -45;
+        double radiusKm = 100;
+        double latSpan = GeoUtils.latitudeSpanDegrees(radiusKm);
+        double lonSpan = GeoUtils.longitudeSpanDegrees(lat, radiusKm);
+
+        assertEquals(0.899, latSpan, 0.001);
+        assertEquals(radiusKm, GeoUtils.distanceKm(lat, 0, lat + latSpan, 0), 1e-6);
+        for (double bearing = 0; bearing < 2 * Math.PI; bearing += Math.PI / 180) {
+            // Walk round the circle and check each point is inside the box
+            double angular = radiusKm / 6371;
+            double lat1 = Math.toRadians(lat);
+            double lat2 = Math.asin(Math.sin(lat1) * Math.cos(angular)
+                    + Math.cos(lat1) * Math.sin(angular) * Math.cos(bearing));
+            double lon2 = Math.atan2(Math.sin(bearing) * Math.sin(angular) * Math.cos(lat1),
+                    Math.cos(angular) - Math.sin(lat1) * Math.sin(lat2));
+            assertTrue(Math.abs(Math.toDegrees(lat2) - lat) <= latSpan + 1e-9);
+            assertTrue(Math.abs(Math.toDegrees(lon2)) <= lonSpan + 1e-9);
+        }
+        assertEquals(180, GeoUtils.longitudeSpanDegrees(89.9, radiusKm));
+    }
 }
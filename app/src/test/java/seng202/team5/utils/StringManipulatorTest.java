@@ -42,4 +42,13 @@ public class StringManipulatorTest {
         String result = StringManipulator.capitaliseFirstLetter("trailName");
         assertEquals("TrailName", result, "Only first letter should change");
     }
+
+    @Test
+    @DisplayName("Should fold case, accents and macrons")
+    void testFold() {
+        assertEquals("totara", StringManipulator.fold("Tōtara"));
+        assertEquals("aoraki / mount cook", StringManipulator.fold("AORAKI / Mount Cook"));
+        assertEquals("", StringManipulator.fold(""));
+        assertNull(StringManipulator.fold(null));
+    }
 }